@@ -0,0 +1,59 @@
+package com.blackduck.integration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IntegrationEscapeUtilsBenchmark {
+    // "clean" values need no escaping at all, "mixed" values contain a few special characters each, as real property values do.
+    @Param({ "clean", "mixed" })
+    public String valueKind;
+
+    private List<String> values;
+
+    @Setup
+    public void setUp() {
+        values = new ArrayList<>();
+        for (int i = 0; i < 240; i++) {
+            if ("clean".equals(valueKind)) {
+                values.add("https://blackduck.example.com/api/projects/" + i);
+            } else {
+                values.add(String.format("project (%d) with spaces, commas & $variables;|path\\to\\file", i));
+            }
+        }
+    }
+
+    @Benchmark
+    public void escapePowerShell(Blackhole blackhole) {
+        for (String value : values) {
+            blackhole.consume(IntegrationEscapeUtils.escapePowerShell(value));
+        }
+    }
+
+    @Benchmark
+    public void escapeXSI(Blackhole blackhole) {
+        for (String value : values) {
+            blackhole.consume(IntegrationEscapeUtils.escapeXSI(value));
+        }
+    }
+
+}
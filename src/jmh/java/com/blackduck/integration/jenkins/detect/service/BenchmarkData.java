@@ -0,0 +1,62 @@
+package com.blackduck.integration.jenkins.detect.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.mockito.Mockito;
+
+public class BenchmarkData {
+    public static final int ENVIRONMENT_SIZE = 500;
+    public static final int PROPERTY_COUNT = 240;
+
+    private BenchmarkData() {
+    }
+
+    // Regular mocks record every invocation, which would be measured along with the code under test; stub-only mocks just answer.
+    public static <T> T createStub(Class<T> type) {
+        return Mockito.mock(type, Mockito.withSettings().stubOnly());
+    }
+
+    public static Map<String, String> createEnvironment() {
+        Map<String, String> environment = new LinkedHashMap<>();
+        environment.put("PATH", "/usr/local/sbin:/usr/local/bin:/usr/sbin:/usr/bin:/sbin:/bin:/opt/java/openjdk/bin");
+        environment.put("JAVA_HOME", "/opt/java/openjdk");
+        environment.put("WORKSPACE", "/home/jenkins/agent/workspace/example-project_main");
+        environment.put("BUILD_NUMBER", "1234");
+        environment.put("JOB_NAME", "example-project/main");
+        environment.put("GIT_BRANCH", "origin/main");
+        environment.put("DETECT_PLUGIN_ESCAPING", "true");
+        for (int i = environment.size(); i < ENVIRONMENT_SIZE; i++) {
+            environment.put(String.format("BENCHMARK_VARIABLE_%03d", i), "value-" + i + "-/some/path with spaces/and,commas");
+        }
+        return environment;
+    }
+
+    // Mirrors what users paste into the Detect properties field: one property per line, some quoted, some using macros.
+    public static String createArgumentBlock() {
+        StringBuilder argumentBlock = new StringBuilder();
+        argumentBlock.append("--blackduck.url=https://blackduck.example.com\n");
+        argumentBlock.append("--detect.project.name=$JOB_NAME\n");
+        argumentBlock.append("--detect.project.version.name=${GIT_BRANCH}-$BUILD_NUMBER\n");
+        argumentBlock.append("--detect.source.path=${WORKSPACE}\n");
+        argumentBlock.append("--detect.excluded.directories=\"node_modules,build,.gradle,target\"\n");
+        for (int i = 0; i < PROPERTY_COUNT; i++) {
+            switch (i % 4) {
+                case 0:
+                    argumentBlock.append(String.format("--detect.benchmark.property%d=plain-value-%d\n", i, i));
+                    break;
+                case 1:
+                    argumentBlock.append(String.format("--detect.benchmark.property%d=\"quoted value with spaces %d\"\n", i, i));
+                    break;
+                case 2:
+                    argumentBlock.append(String.format("--detect.benchmark.property%d=$BENCHMARK_VARIABLE_%03d\n", i, 100 + i));
+                    break;
+                default:
+                    argumentBlock.append(String.format("--detect.benchmark.property%d='single (quoted) $value & more;'\n", i));
+                    break;
+            }
+        }
+        return argumentBlock.toString();
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.blackduck.integration.jenkins.detect.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.blackduck.integration.IntegrationEscapeUtils;
+import com.blackduck.integration.jenkins.extensions.JenkinsIntLogger;
+import com.blackduck.integration.jenkins.wrapper.JenkinsVersionHelper;
+
+import hudson.model.TaskListener;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DetectArgumentServiceBenchmark {
+    private final Function<String, String> powerShellEscaper = IntegrationEscapeUtils::escapePowerShell;
+    private final Function<String, String> xsiEscaper = IntegrationEscapeUtils::escapeXSI;
+
+    private DetectArgumentService detectArgumentService;
+    private Map<String, String> environment;
+    private String argumentBlock;
+
+    @Setup
+    public void setUp() {
+        detectArgumentService = new DetectArgumentService(JenkinsIntLogger.logToListener(TaskListener.NULL), BenchmarkData.createStub(JenkinsVersionHelper.class));
+        environment = BenchmarkData.createEnvironment();
+        argumentBlock = BenchmarkData.createArgumentBlock();
+    }
+
+    @Benchmark
+    public List<String> parseWithoutEscaping() {
+        return detectArgumentService.parseDetectArgumentString(environment, Function.identity(), argumentBlock);
+    }
+
+    @Benchmark
+    public List<String> parseWithPowerShellEscaping() {
+        return detectArgumentService.parseDetectArgumentString(environment, powerShellEscaper, argumentBlock);
+    }
+
+    @Benchmark
+    public List<String> parseWithXsiEscaping() {
+        return detectArgumentService.parseDetectArgumentString(environment, xsiEscaper, argumentBlock);
+    }
+
+}
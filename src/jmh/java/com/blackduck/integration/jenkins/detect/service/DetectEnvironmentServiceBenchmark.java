@@ -0,0 +1,82 @@
+package com.blackduck.integration.jenkins.detect.service;
+
+import static com.blackduck.integration.blackduck.configuration.BlackDuckServerConfigKeys.KEYS;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.blackduck.integration.blackduck.configuration.BlackDuckServerConfigBuilder;
+import com.blackduck.integration.jenkins.detect.extensions.global.DetectGlobalConfig;
+import com.blackduck.integration.jenkins.extensions.JenkinsIntLogger;
+import com.blackduck.integration.jenkins.service.JenkinsConfigService;
+import com.blackduck.integration.jenkins.wrapper.BlackduckCredentialsHelper;
+import com.blackduck.integration.jenkins.wrapper.JenkinsProxyHelper;
+import com.blackduck.integration.jenkins.wrapper.JenkinsVersionHelper;
+import com.blackduck.integration.util.IntEnvironmentVariables;
+
+import hudson.model.TaskListener;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DetectEnvironmentServiceBenchmark {
+    private DetectEnvironmentService detectEnvironmentService;
+
+    @Setup
+    public void setUp() {
+        Map<String, String> environment = BenchmarkData.createEnvironment();
+
+        BlackDuckServerConfigBuilder blackDuckServerConfigBuilder = new BlackDuckServerConfigBuilder(KEYS.common)
+            .setUrl("https://blackduck.example.com")
+            .setApiToken("benchmark-api-token")
+            .setTimeoutInSeconds(120);
+        DetectGlobalConfig detectGlobalConfig = BenchmarkData.createStub(DetectGlobalConfig.class);
+        Mockito.when(detectGlobalConfig.getBlackDuckServerConfigBuilder(ArgumentMatchers.any(), ArgumentMatchers.any())).thenReturn(blackDuckServerConfigBuilder);
+
+        JenkinsConfigService jenkinsConfigService = BenchmarkData.createStub(JenkinsConfigService.class);
+        Mockito.when(jenkinsConfigService.getGlobalConfiguration(DetectGlobalConfig.class)).thenReturn(Optional.of(detectGlobalConfig));
+
+        JenkinsVersionHelper jenkinsVersionHelper = BenchmarkData.createStub(JenkinsVersionHelper.class);
+        Mockito.when(jenkinsVersionHelper.getPluginVersion(ArgumentMatchers.anyString())).thenReturn(Optional.of("benchmark"));
+
+        detectEnvironmentService = new DetectEnvironmentService(
+            JenkinsIntLogger.logToListener(TaskListener.NULL),
+            BenchmarkData.createStub(JenkinsProxyHelper.class),
+            jenkinsVersionHelper,
+            BenchmarkData.createStub(BlackduckCredentialsHelper.class),
+            jenkinsConfigService,
+            environment
+        );
+    }
+
+    @Benchmark
+    public IntEnvironmentVariables createDetectEnvironment() {
+        // After the first call the Black Duck environment comes from the snapshot cache, as it does for most builds.
+        return detectEnvironmentService.createDetectEnvironment();
+    }
+
+    @Benchmark
+    public IntEnvironmentVariables createDetectEnvironmentWithoutSnapshot() {
+        // The first build after the configuration changed resolves the Black Duck server configuration again.
+        BlackDuckEnvironmentSnapshotCache.getInstance().invalidate();
+        return detectEnvironmentService.createDetectEnvironment();
+    }
+
+}
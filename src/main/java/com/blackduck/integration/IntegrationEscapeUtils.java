@@ -18,6 +18,14 @@ import java.util.Map;
 public class IntegrationEscapeUtils extends StringEscapeUtils {
     public static final CharSequenceTranslator ESCAPE_POWERSHELL;
 
+    // Per ASCII character: copy it, prefix it with the escape character, or drop it as (part of) a line break. Everything outside ASCII is copied.
+    private static final byte COPY = 0;
+    private static final byte ESCAPE = 1;
+    private static final byte LINE_FEED = 2;
+    private static final byte CARRIAGE_RETURN = 3;
+    private static final byte[] POWERSHELL_ACTIONS = new byte[128];
+    private static final byte[] XSI_ACTIONS = new byte[128];
+
     static {
         Map<CharSequence, CharSequence> escapePowershellMap = new HashMap<>();
         escapePowershellMap.put("|", "`|");
@@ -47,9 +55,66 @@ public class IntegrationEscapeUtils extends StringEscapeUtils {
         ESCAPE_POWERSHELL = new LookupTranslator(
             Collections.unmodifiableMap(escapePowershellMap)
         );
+
+        // The same characters StringEscapeUtils.ESCAPE_XSI and ESCAPE_POWERSHELL translate; PowerShell additionally escapes commas.
+        for (char c : "|&;<>()$`\\\"' \t*?[#~=%".toCharArray()) {
+            XSI_ACTIONS[c] = ESCAPE;
+            POWERSHELL_ACTIONS[c] = ESCAPE;
+        }
+        POWERSHELL_ACTIONS[','] = ESCAPE;
+        for (byte[] actions : new byte[][] { XSI_ACTIONS, POWERSHELL_ACTIONS }) {
+            actions['\n'] = LINE_FEED;
+            actions['\r'] = CARRIAGE_RETURN;
+        }
     }
 
+    /**
+     * Produces the same output as {@link #ESCAPE_POWERSHELL}, without probing a map at every position.
+     */
     public static String escapePowerShell(String input) {
-        return ESCAPE_POWERSHELL.translate(input);
+        return escape(input, POWERSHELL_ACTIONS, '`');
+    }
+
+    /**
+     * Produces the same output as {@link StringEscapeUtils#ESCAPE_XSI}, without probing a map at every position.
+     */
+    public static String escapeXSI(String input) {
+        return escape(input, XSI_ACTIONS, '\\');
+    }
+
+    private static String escape(String input, byte[] actions, char escapeCharacter) {
+        if (input == null) {
+            return null;
+        }
+
+        int length = input.length();
+        int start = 0;
+        while (start < length && actionFor(input.charAt(start), actions) == COPY) {
+            start++;
+        }
+        if (start == length) {
+            return input;
+        }
+
+        StringBuilder escaped = new StringBuilder(length + 16).append(input, 0, start);
+        for (int i = start; i < length; i++) {
+            char c = input.charAt(i);
+            byte action = actionFor(c, actions);
+            if (action == ESCAPE) {
+                escaped.append(escapeCharacter).append(c);
+            } else if (action == LINE_FEED) {
+                continue;
+            } else if (action == CARRIAGE_RETURN && i + 1 < length && input.charAt(i + 1) == '\n') {
+                // \r\n is removed as a whole; a lone \r is kept.
+                i++;
+            } else {
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    private static byte actionFor(char c, byte[] actions) {
+        return c < actions.length ? actions[c] : COPY;
     }
 }
@@ -0,0 +1,74 @@
+/*
+ * blackduck-detect
+ *
+ * Copyright (c) 2024 Black Duck Software, Inc.
+ *
+ * Use subject to the terms and conditions of the Black Duck Software End User Software License and Maintenance Agreement. All rights reserved worldwide.
+ */
+package com.blackduck.integration.jenkins.detect;
+
+import com.blackduck.integration.jenkins.detect.service.DetectPhaseTimings;
+import com.blackduck.integration.util.IntEnvironmentVariables;
+import com.blackduck.integration.util.OperatingSystemType;
+import jenkins.security.MasterToSlaveCallable;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A fully resolved Detect invocation: the command line and environment Detect is started with, the operating system of the node it is started on, how long
+ * resolving it took, and what to run on the node once Detect has finished.
+ */
+public class DetectCommand {
+    private final IntEnvironmentVariables environmentVariables;
+    private final List<String> commands;
+    private final OperatingSystemType operatingSystemType;
+    private final DetectPhaseTimings phaseTimings;
+    @Nullable
+    private final MasterToSlaveCallable<Void, IOException> finishCallable;
+
+    public DetectCommand(IntEnvironmentVariables environmentVariables, List<String> commands, OperatingSystemType operatingSystemType) {
+        this(environmentVariables, commands, operatingSystemType, new DetectPhaseTimings());
+    }
+
+    public DetectCommand(IntEnvironmentVariables environmentVariables, List<String> commands, OperatingSystemType operatingSystemType, DetectPhaseTimings phaseTimings) {
+        this(environmentVariables, commands, operatingSystemType, phaseTimings, null);
+    }
+
+    public DetectCommand(
+        IntEnvironmentVariables environmentVariables,
+        List<String> commands,
+        OperatingSystemType operatingSystemType,
+        DetectPhaseTimings phaseTimings,
+        @Nullable MasterToSlaveCallable<Void, IOException> finishCallable
+    ) {
+        this.environmentVariables = environmentVariables;
+        this.commands = commands;
+        this.operatingSystemType = operatingSystemType;
+        this.phaseTimings = phaseTimings;
+        this.finishCallable = finishCallable;
+    }
+
+    public IntEnvironmentVariables getEnvironmentVariables() {
+        return environmentVariables;
+    }
+
+    public List<String> getCommands() {
+        return commands;
+    }
+
+    public OperatingSystemType getOperatingSystemType() {
+        return operatingSystemType;
+    }
+
+    public DetectPhaseTimings getPhaseTimings() {
+        return phaseTimings;
+    }
+
+    @Nullable
+    public MasterToSlaveCallable<Void, IOException> getFinishCallable() {
+        return finishCallable;
+    }
+
+}
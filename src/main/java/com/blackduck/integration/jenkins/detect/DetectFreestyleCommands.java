@@ -19,19 +19,22 @@ public class DetectFreestyleCommands {
         this.detectRunner = detectRunner;
     }
 
-    public void runDetect(String detectArgumentString, DetectDownloadStrategy detectDownloadStrategy) {
+    public boolean runDetect(String detectArgumentString, DetectDownloadStrategy detectDownloadStrategy) {
         try {
             String remoteJdkHome = jenkinsBuildService.getJDKRemoteHomeOrEmpty().orElse(null);
             int exitCode = detectRunner.runDetect(remoteJdkHome, detectArgumentString, detectDownloadStrategy);
             if (exitCode > 0) {
                 jenkinsBuildService.markBuildFailed("Detect failed with exit code " + exitCode);
+                return false;
             }
+            return true;
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             jenkinsBuildService.markBuildInterrupted();
         } catch (Exception e) {
             jenkinsBuildService.markBuildFailed(e);
         }
+        return false;
     }
 
 }
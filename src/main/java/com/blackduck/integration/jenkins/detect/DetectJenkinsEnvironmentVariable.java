@@ -9,7 +9,11 @@ package com.blackduck.integration.jenkins.detect;
 
 public enum DetectJenkinsEnvironmentVariable {
     USER_PROVIDED_JAR_PATH("DETECT_JAR"),
-    SHOULD_ESCAPE("DETECT_PLUGIN_ESCAPING");
+    SHOULD_ESCAPE("DETECT_PLUGIN_ESCAPING"),
+    WARM_START("DETECT_PLUGIN_WARM_START"),
+    QUIET("DETECT_PLUGIN_QUIET"),
+    FORCE_SCAN("DETECT_PLUGIN_FORCE_SCAN"),
+    DETECT_VERSION("DETECT_PLUGIN_DETECT_VERSION");
 
     private final String environmentVariable;
 
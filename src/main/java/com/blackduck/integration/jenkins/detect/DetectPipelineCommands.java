@@ -12,7 +12,11 @@ import com.blackduck.integration.jenkins.detect.extensions.DetectDownloadStrateg
 import com.blackduck.integration.exception.IntegrationException;
 import com.blackduck.integration.jenkins.extensions.JenkinsIntLogger;
 
+import com.blackduck.integration.jenkins.detect.extensions.pipeline.DetectScan;
+
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class DetectPipelineCommands {
     private final JenkinsIntLogger logger;
@@ -25,6 +29,14 @@ public class DetectPipelineCommands {
 
     public int runDetect(boolean returnStatus, String detectArgumentString, DetectDownloadStrategy detectDownloadStrategy) throws IOException, IntegrationException, InterruptedException {
         int exitCode = detectRunner.runDetect(null, detectArgumentString, detectDownloadStrategy);
+        return handleExitCode(logger, returnStatus, exitCode);
+    }
+
+    public DetectCommand prepareDetect(String detectArgumentString, DetectDownloadStrategy detectDownloadStrategy) throws IOException, IntegrationException, InterruptedException {
+        return detectRunner.prepareDetect(null, detectArgumentString, detectDownloadStrategy);
+    }
+
+    public static int handleExitCode(JenkinsIntLogger logger, boolean returnStatus, int exitCode) throws DetectJenkinsException {
         if (exitCode > 0) {
             String errorMsg = "Detect failed with exit code " + exitCode;
             if (returnStatus) {
@@ -37,4 +49,31 @@ public class DetectPipelineCommands {
         return exitCode;
     }
 
+    public int runDetectScans(boolean returnStatus, String detectArgumentString, List<DetectScan> detectScans, int maxParallelScans, DetectDownloadStrategy detectDownloadStrategy)
+        throws IOException, IntegrationException, InterruptedException {
+        List<Integer> exitCodes = detectRunner.runDetectScans(null, detectArgumentString, detectScans, maxParallelScans, detectDownloadStrategy);
+
+        int exitCode = 0;
+        List<String> failedScans = new ArrayList<>();
+        for (int i = 0; i < exitCodes.size(); i++) {
+            int scanExitCode = exitCodes.get(i);
+            logger.info(String.format("Detect scan %s finished with exit code %d", DetectRunner.getScanName(detectScans.get(i), i), scanExitCode));
+            if (scanExitCode > 0) {
+                failedScans.add(String.format("%s (exit code %d)", DetectRunner.getScanName(detectScans.get(i), i), scanExitCode));
+                exitCode = exitCode > 0 ? exitCode : scanExitCode;
+            }
+        }
+
+        if (!failedScans.isEmpty()) {
+            String errorMsg = "Detect failed for scans: " + String.join(", ", failedScans);
+            if (returnStatus) {
+                logger.error(errorMsg);
+            } else {
+                throw new DetectJenkinsException(errorMsg);
+            }
+        }
+
+        return exitCode;
+    }
+
 }
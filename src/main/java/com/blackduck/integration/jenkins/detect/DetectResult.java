@@ -0,0 +1,74 @@
+/*
+ * blackduck-detect
+ *
+ * Copyright (c) 2024 Black Duck Software, Inc.
+ *
+ * Use subject to the terms and conditions of the Black Duck Software End User Software License and Maintenance Agreement. All rights reserved worldwide.
+ */
+package com.blackduck.integration.jenkins.detect;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * What a Detect run reported about itself in the summary it logs when it finishes: the overall status, the result of each detector and scan, and the results such as
+ * the Black Duck project BOM URL.
+ */
+public class DetectResult {
+    public static final String BOM_RESULT = "Black Duck Project BOM";
+    public static final String RISK_REPORT_RESULT = "Risk Report";
+
+    private String overallStatus;
+    private String statusMessage;
+    private final LinkedHashMap<String, String> detectorResults = new LinkedHashMap<>();
+    private final LinkedHashMap<String, String> results = new LinkedHashMap<>();
+
+    public String getOverallStatus() {
+        return overallStatus;
+    }
+
+    public void setOverallStatus(String overallStatus) {
+        this.overallStatus = overallStatus;
+    }
+
+    public String getStatusMessage() {
+        return statusMessage;
+    }
+
+    public void setStatusMessage(String statusMessage) {
+        this.statusMessage = statusMessage;
+    }
+
+    public Map<String, String> getDetectorResults() {
+        return detectorResults;
+    }
+
+    public Map<String, String> getResults() {
+        return results;
+    }
+
+    public String getBomUrl() {
+        // The URL is linked from the build page, so anything that is not a web address is ignored.
+        String bomUrl = results.get(BOM_RESULT);
+        return StringUtils.startsWithAny(bomUrl, "https://", "http://") ? bomUrl : null;
+    }
+
+    public String getRiskReportUrl() {
+        return results.entrySet().stream()
+            .filter(result -> result.getKey().contains(RISK_REPORT_RESULT))
+            .map(Map.Entry::getValue)
+            .findFirst()
+            .orElse(null);
+    }
+
+    public boolean isSuccess() {
+        return "SUCCESS".equals(overallStatus);
+    }
+
+    public boolean isEmpty() {
+        return StringUtils.isBlank(overallStatus) && detectorResults.isEmpty() && results.isEmpty();
+    }
+
+}
@@ -7,28 +7,67 @@
  */
 package com.blackduck.integration.jenkins.detect;
 
+import com.blackduck.integration.jenkins.detect.exception.DetectJenkinsException;
 import com.blackduck.integration.jenkins.detect.extensions.DetectDownloadStrategy;
+import com.blackduck.integration.jenkins.detect.extensions.DetectResultAction;
+import com.blackduck.integration.jenkins.detect.extensions.DetectTimingsAction;
+import com.blackduck.integration.jenkins.detect.extensions.pipeline.DetectScan;
 import com.blackduck.integration.jenkins.detect.service.DetectArgumentService;
 import com.blackduck.integration.jenkins.detect.service.DetectEnvironmentService;
+import com.blackduck.integration.jenkins.detect.service.DetectExecutionLimiter;
+import com.blackduck.integration.jenkins.detect.service.DetectLogFilter;
+import com.blackduck.integration.jenkins.detect.service.DetectPhaseMetrics;
+import com.blackduck.integration.jenkins.detect.service.DetectPhaseTimings;
+import com.blackduck.integration.jenkins.detect.service.DetectStatusJsonCallable;
+import com.blackduck.integration.jenkins.detect.service.PrefixingOutputStream;
 import com.blackduck.integration.jenkins.detect.service.strategy.DetectExecutionStrategy;
+import com.blackduck.integration.jenkins.detect.service.strategy.DetectSetupResult;
 import com.blackduck.integration.jenkins.detect.service.strategy.DetectStrategyService;
 import com.blackduck.integration.exception.IntegrationException;
 import com.blackduck.integration.jenkins.extensions.JenkinsIntLogger;
 import com.blackduck.integration.jenkins.service.JenkinsRemotingService;
 import com.blackduck.integration.util.IntEnvironmentVariables;
 import com.blackduck.integration.util.OperatingSystemType;
+import hudson.model.Action;
+import hudson.model.Node;
+import hudson.model.TaskListener;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import hudson.util.StreamTaskListener;
+import jenkins.security.MasterToSlaveCallable;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.commons.lang3.StringUtils;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 public class DetectRunner {
     public static final String ASTERISKS = "******************************************************************************";
+    private static final ExecutorService SETUP_THREADS = Executors.newCachedThreadPool(new NamingThreadFactory(new DaemonThreadFactory(), "Black Duck Detect setup"));
 
     private final DetectEnvironmentService detectEnvironmentService;
     private final JenkinsRemotingService remotingService;
     private final DetectStrategyService detectStrategyService;
     private final DetectArgumentService detectArgumentService;
     private final JenkinsIntLogger logger;
+    private final Function<TaskListener, JenkinsRemotingService> remotingServiceFactory;
+    private final Consumer<Action> actionConsumer;
+    @Nullable
+    private final Node node;
+    private final Supplier<CompletableFuture<DetectExecutionLimiter.Permit>> scanPermitSupplier;
 
     public DetectRunner(
         DetectEnvironmentService detectEnvironmentService,
@@ -36,44 +75,378 @@ public class DetectRunner {
         DetectStrategyService detectStrategyService,
         DetectArgumentService detectArgumentService,
         JenkinsIntLogger logger
+    ) {
+        this(detectEnvironmentService, remotingService, detectStrategyService, detectArgumentService, logger, listener -> remotingService);
+    }
+
+    public DetectRunner(
+        DetectEnvironmentService detectEnvironmentService,
+        JenkinsRemotingService remotingService,
+        DetectStrategyService detectStrategyService,
+        DetectArgumentService detectArgumentService,
+        JenkinsIntLogger logger,
+        Function<TaskListener, JenkinsRemotingService> remotingServiceFactory
+    ) {
+        this(detectEnvironmentService, remotingService, detectStrategyService, detectArgumentService, logger, remotingServiceFactory, action -> {});
+    }
+
+    public DetectRunner(
+        DetectEnvironmentService detectEnvironmentService,
+        JenkinsRemotingService remotingService,
+        DetectStrategyService detectStrategyService,
+        DetectArgumentService detectArgumentService,
+        JenkinsIntLogger logger,
+        Function<TaskListener, JenkinsRemotingService> remotingServiceFactory,
+        Consumer<Action> actionConsumer
+    ) {
+        this(detectEnvironmentService, remotingService, detectStrategyService, detectArgumentService, logger, remotingServiceFactory, actionConsumer, null);
+    }
+
+    public DetectRunner(
+        DetectEnvironmentService detectEnvironmentService,
+        JenkinsRemotingService remotingService,
+        DetectStrategyService detectStrategyService,
+        DetectArgumentService detectArgumentService,
+        JenkinsIntLogger logger,
+        Function<TaskListener, JenkinsRemotingService> remotingServiceFactory,
+        Consumer<Action> actionConsumer,
+        @Nullable Node node
+    ) {
+        this(
+            detectEnvironmentService,
+            remotingService,
+            detectStrategyService,
+            detectArgumentService,
+            logger,
+            remotingServiceFactory,
+            actionConsumer,
+            node,
+            () -> CompletableFuture.completedFuture(DetectExecutionLimiter.Permit.UNLIMITED)
+        );
+    }
+
+    /**
+     * @param scanPermitSupplier requests the Detect slot each of several scans run by {@link #runDetectScans} waits for before it starts
+     */
+    public DetectRunner(
+        DetectEnvironmentService detectEnvironmentService,
+        JenkinsRemotingService remotingService,
+        DetectStrategyService detectStrategyService,
+        DetectArgumentService detectArgumentService,
+        JenkinsIntLogger logger,
+        Function<TaskListener, JenkinsRemotingService> remotingServiceFactory,
+        Consumer<Action> actionConsumer,
+        @Nullable Node node,
+        Supplier<CompletableFuture<DetectExecutionLimiter.Permit>> scanPermitSupplier
     ) {
         this.detectEnvironmentService = detectEnvironmentService;
         this.remotingService = remotingService;
         this.detectStrategyService = detectStrategyService;
         this.detectArgumentService = detectArgumentService;
         this.logger = logger;
+        this.remotingServiceFactory = remotingServiceFactory;
+        this.actionConsumer = actionConsumer;
+        this.node = node;
+        this.scanPermitSupplier = scanPermitSupplier;
     }
 
     public int runDetect(String remoteJdkHome, String detectArgumentString, DetectDownloadStrategy detectDownloadStrategy)
         throws IOException, InterruptedException, IntegrationException {
-        IntEnvironmentVariables intEnvironmentVariables = detectEnvironmentService.createDetectEnvironment();
-        OperatingSystemType operatingSystemType = remotingService.getRemoteOperatingSystemType();
-        DetectExecutionStrategy detectExecutionStrategy = detectStrategyService.getExecutionStrategy(
-            intEnvironmentVariables,
-            operatingSystemType,
-            remoteJdkHome,
-            detectDownloadStrategy
-        );
-
-        List<String> initialArguments = remotingService.call(detectExecutionStrategy.getSetupCallable());
-
-        List<String> detectCommands = detectArgumentService.getDetectArguments(
-            intEnvironmentVariables,
-            detectExecutionStrategy.getArgumentEscaper(),
-            initialArguments,
-            detectArgumentString
-        );
+        DetectCommand detectCommand = prepareDetect(remoteJdkHome, detectArgumentString, detectDownloadStrategy);
 
         logger.info(ASTERISKS);
         logger.info("START OF DETECT");
         logger.info(ASTERISKS);
 
-        int detectRun = remotingService.launch(intEnvironmentVariables, detectCommands);
+        DetectPhaseTimings detectPhaseTimings = detectCommand.getPhaseTimings();
+        DetectLogFilter detectLogFilter = new DetectLogFilter(getBuildLog(), isQuiet(detectCommand.getEnvironmentVariables()));
+        long startedAt = System.currentTimeMillis();
+        long detectStartedAt = DetectPhaseTimings.start();
+        int detectRun;
+        try {
+            TaskListener detectListener = new StreamTaskListener(detectLogFilter, StandardCharsets.UTF_8);
+            detectRun = remotingServiceFactory.apply(detectListener).launch(detectCommand.getEnvironmentVariables(), detectCommand.getCommands());
+        } finally {
+            detectLogFilter.close();
+            detectPhaseTimings.record(DetectPhaseTimings.DETECT, detectStartedAt);
+            finishDetect(detectCommand.getFinishCallable());
+        }
 
+        long statusStartedAt = DetectPhaseTimings.start();
+        DetectStatusSummary statusSummary = readStatusSummary(DetectStatusJsonCallable.forDetectCommand(detectCommand, startedAt));
+        detectPhaseTimings.record(DetectPhaseTimings.STATUS, statusStartedAt);
+
+        logEndOfDetect(logger, detectPhaseTimings);
+
+        publishResult(null, detectLogFilter.getDetectResult(), statusSummary);
+        publishTimings(detectPhaseTimings);
+        return detectRun;
+    }
+
+    public static void logEndOfDetect(JenkinsIntLogger logger, DetectPhaseTimings detectPhaseTimings) {
         logger.info(ASTERISKS);
         logger.info("END OF DETECT");
+        logger.info("Time spent in each phase (phases can overlap):");
+        detectPhaseTimings.formatTable().forEach(line -> logger.info("  " + line));
         logger.info(ASTERISKS);
+    }
 
-        return detectRun;
+    private DetectStatusSummary readStatusSummary(DetectStatusJsonCallable detectStatusJsonCallable) throws InterruptedException {
+        // The summary is only informational, so a missing or unreadable status.json never fails the build.
+        try {
+            DetectStatusSummary statusSummary = remotingService.call(detectStatusJsonCallable);
+            if (null == statusSummary) {
+                logger.debug("No status.json was found for this Detect run");
+            } else {
+                logger.debug("Read the Detect status from " + statusSummary.getStatusJsonPath());
+            }
+            return statusSummary;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not read the Detect status.json: " + e.getMessage());
+            logger.trace("Stack trace:", e);
+            return null;
+        }
+    }
+
+    private void finishDetect(@Nullable MasterToSlaveCallable<Void, IOException> finishCallable) throws InterruptedException {
+        if (null == finishCallable) {
+            return;
+        }
+        // Nothing left to do on the agent once Detect has finished is worth failing the build over.
+        try {
+            remotingService.call(finishCallable);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not finish up after Detect on the agent: " + e.getMessage());
+            logger.trace("Stack trace:", e);
+        }
+    }
+
+    public static boolean isQuiet(IntEnvironmentVariables intEnvironmentVariables) {
+        return Boolean.parseBoolean(intEnvironmentVariables.getValue(DetectJenkinsEnvironmentVariable.QUIET.stringValue()));
+    }
+
+    private OutputStream getBuildLog() {
+        TaskListener listener = logger.getTaskListener();
+        return null != listener ? listener.getLogger() : NullOutputStream.NULL_OUTPUT_STREAM;
+    }
+
+    private void publishResult(String scanName, DetectResult detectResult, DetectStatusSummary statusSummary) {
+        if (!detectResult.isEmpty() || null != statusSummary) {
+            actionConsumer.accept(new DetectResultAction(scanName, detectResult, statusSummary));
+        }
+    }
+
+    private void publishTimings(DetectPhaseTimings detectPhaseTimings) {
+        DetectPhaseMetrics.record(logger, node, detectPhaseTimings.getPhaseMillis(), detectPhaseTimings.getElapsedMillis());
+        actionConsumer.accept(new DetectTimingsAction(detectPhaseTimings));
+    }
+
+    public DetectCommand prepareDetect(String remoteJdkHome, String detectArgumentString, DetectDownloadStrategy detectDownloadStrategy)
+        throws IOException, InterruptedException, IntegrationException {
+        DetectSetup detectSetup = setUpDetect(remoteJdkHome, Collections.singletonList(detectArgumentString), detectDownloadStrategy);
+        return new DetectCommand(
+            detectSetup.intEnvironmentVariables,
+            detectSetup.detectCommands.get(0),
+            detectSetup.operatingSystemType,
+            detectSetup.detectPhaseTimings,
+            detectSetup.finishCallable
+        );
+    }
+
+    private DetectSetup setUpDetect(String remoteJdkHome, List<String> detectArgumentStrings, DetectDownloadStrategy detectDownloadStrategy)
+        throws IOException, InterruptedException, IntegrationException {
+        DetectPhaseTimings detectPhaseTimings = new DetectPhaseTimings();
+
+        // Asking the agent for its operating system is a remoting round-trip, so it overlaps building the environment on the controller.
+        Future<OperatingSystemType> operatingSystemFuture = SETUP_THREADS.submit(() -> {
+            long startedAt = DetectPhaseTimings.start();
+            try {
+                return remotingService.getRemoteOperatingSystemType();
+            } finally {
+                detectPhaseTimings.record(DetectPhaseTimings.OPERATING_SYSTEM, startedAt);
+            }
+        });
+        Future<DetectSetupResult> setupFuture = null;
+        try {
+            long startedAt = DetectPhaseTimings.start();
+            IntEnvironmentVariables intEnvironmentVariables = detectEnvironmentService.createDetectEnvironment();
+            detectPhaseTimings.record(DetectPhaseTimings.ENVIRONMENT, startedAt);
+
+            OperatingSystemType operatingSystemType = await(operatingSystemFuture, "Could not determine the agent's operating system");
+
+            startedAt = DetectPhaseTimings.start();
+            DetectExecutionStrategy detectExecutionStrategy = detectStrategyService.getExecutionStrategy(
+                intEnvironmentVariables,
+                operatingSystemType,
+                remoteJdkHome,
+                detectDownloadStrategy
+            );
+            detectPhaseTimings.record(DetectPhaseTimings.STRATEGY, startedAt);
+            detectExecutionStrategy.setPhaseTimings(detectPhaseTimings);
+
+            // Resolving Java and fetching the script or jar happen on the agent while the arguments are parsed here.
+            setupFuture = SETUP_THREADS.submit(() -> {
+                MasterToSlaveCallable<DetectSetupResult, IntegrationException> setupCallable = detectExecutionStrategy.getSetupCallable();
+                long setupStartedAt = DetectPhaseTimings.start();
+                try {
+                    return remotingService.call(setupCallable);
+                } finally {
+                    detectPhaseTimings.record(DetectPhaseTimings.SETUP, setupStartedAt);
+                }
+            });
+
+            startedAt = DetectPhaseTimings.start();
+            Function<String, String> argumentEscaper = detectArgumentService.getArgumentEscaper(intEnvironmentVariables, detectExecutionStrategy.getArgumentEscaper());
+            List<List<String>> parsedArguments = new ArrayList<>();
+            for (String detectArgumentString : detectArgumentStrings) {
+                parsedArguments.add(detectArgumentService.parseDetectArgumentString(intEnvironmentVariables.getVariables(), argumentEscaper, detectArgumentString));
+            }
+            detectPhaseTimings.record(DetectPhaseTimings.ARGUMENTS, startedAt);
+
+            DetectSetupResult detectSetupResult = await(setupFuture, "Could not set up Detect on the agent");
+            // Downloading Detect and resolving Java happen inside the setup on the agent, which timed them there.
+            detectSetupResult.getPhaseTimings().getPhaseMillis().forEach(detectPhaseTimings::recordMillis);
+            List<String> initialArguments = detectSetupResult.getDetectCommand();
+            List<List<String>> detectCommands = new ArrayList<>();
+            for (List<String> arguments : parsedArguments) {
+                detectCommands.add(detectArgumentService.combineDetectArguments(argumentEscaper, initialArguments, arguments));
+            }
+
+            logger.info("Detect setup took " + detectPhaseTimings);
+            return new DetectSetup(intEnvironmentVariables, operatingSystemType, detectCommands, detectPhaseTimings, detectSetupResult.getFinishCallable());
+        } finally {
+            operatingSystemFuture.cancel(true);
+            if (null != setupFuture) {
+                setupFuture.cancel(true);
+            }
+        }
+    }
+
+    public List<Integer> runDetectScans(
+        String remoteJdkHome,
+        String detectArgumentString,
+        List<DetectScan> detectScans,
+        int maxParallelScans,
+        DetectDownloadStrategy detectDownloadStrategy
+    ) throws IOException, InterruptedException, IntegrationException {
+        // Every scan runs the same Detect, so the script or jar is resolved once and shared.
+        List<String> detectArgumentStrings = new ArrayList<>();
+        for (DetectScan detectScan : detectScans) {
+            detectArgumentStrings.add(detectScan.toArgumentString(detectArgumentString));
+        }
+        DetectSetup detectSetup = setUpDetect(remoteJdkHome, detectArgumentStrings, detectDownloadStrategy);
+        IntEnvironmentVariables intEnvironmentVariables = detectSetup.intEnvironmentVariables;
+
+        int parallelism = Math.max(1, Math.min(maxParallelScans, detectScans.size()));
+        logger.info(String.format("Running %d Detect scans, at most %d at a time", detectScans.size(), parallelism));
+
+        ExecutorService executorService = Executors.newFixedThreadPool(parallelism, new NamingThreadFactory(new DaemonThreadFactory(), "Black Duck Detect scan"));
+        List<Future<Integer>> scanFutures = new ArrayList<>();
+        try {
+            for (int i = 0; i < detectScans.size(); i++) {
+                DetectScan detectScan = detectScans.get(i);
+                String scanName = getScanName(detectScan, i);
+                List<String> detectCommands = detectSetup.detectCommands.get(i);
+                boolean quiet = isQuiet(intEnvironmentVariables);
+                scanFutures.add(executorService.submit(() -> {
+                    // Every scan is a Detect run of its own, so each one waits for its own slot on the node.
+                    DetectExecutionLimiter.Permit permit = DetectExecutionLimiter.getInstance().await(scanPermitSupplier.get());
+                    long scanStartedAt = DetectPhaseTimings.start();
+                    try {
+                        return launchScan(scanName, intEnvironmentVariables, detectCommands, quiet);
+                    } finally {
+                        detectSetup.detectPhaseTimings.record(DetectPhaseTimings.DETECT + " [" + scanName + "]", scanStartedAt);
+                        permit.release();
+                    }
+                }));
+            }
+
+            List<Integer> exitCodes = new ArrayList<>();
+            for (Future<Integer> scanFuture : scanFutures) {
+                exitCodes.add(getScanResult(scanFuture));
+            }
+
+            logger.info("Time spent in each phase of the Detect scans (phases can overlap):");
+            detectSetup.detectPhaseTimings.formatTable().forEach(line -> logger.info("  " + line));
+            publishTimings(detectSetup.detectPhaseTimings);
+            return exitCodes;
+        } finally {
+            scanFutures.forEach(scanFuture -> scanFuture.cancel(true));
+            executorService.shutdownNow();
+            finishDetect(detectSetup.finishCallable);
+        }
+    }
+
+    public static String getScanName(DetectScan detectScan, int index) {
+        return StringUtils.defaultIfBlank(detectScan.getName(), "scan " + (index + 1));
+    }
+
+    private int launchScan(String scanName, IntEnvironmentVariables intEnvironmentVariables, List<String> detectCommands, boolean quiet) throws IOException, InterruptedException {
+        PrefixingOutputStream scanOutputStream = new PrefixingOutputStream(getBuildLog(), String.format("[%s] ", scanName));
+        DetectLogFilter detectLogFilter = new DetectLogFilter(scanOutputStream, quiet);
+        try {
+            JenkinsIntLogger scanLogger = JenkinsIntLogger.logToListener(new StreamTaskListener(scanOutputStream, StandardCharsets.UTF_8));
+
+            scanLogger.info(ASTERISKS);
+            scanLogger.info("START OF DETECT");
+            scanLogger.info(ASTERISKS);
+
+            int detectRun = remotingServiceFactory.apply(new StreamTaskListener(detectLogFilter, StandardCharsets.UTF_8)).launch(intEnvironmentVariables, detectCommands);
+            detectLogFilter.close();
+
+            scanLogger.info(ASTERISKS);
+            scanLogger.info("END OF DETECT");
+            scanLogger.info(ASTERISKS);
+
+            // Parallel scans share the agent's Detect output directory, so their status.json files cannot be told apart reliably and are not read.
+            publishResult(scanName, detectLogFilter.getDetectResult(), null);
+            return detectRun;
+        } finally {
+            detectLogFilter.close();
+            scanOutputStream.close();
+        }
+    }
+
+    private int getScanResult(Future<Integer> scanFuture) throws IOException, InterruptedException, IntegrationException {
+        return await(scanFuture, "A Detect scan failed unexpectedly");
+    }
+
+    private static <T> T await(Future<T> future, String failureMessage) throws IOException, InterruptedException, IntegrationException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            } else if (cause instanceof IntegrationException) {
+                throw (IntegrationException) cause;
+            }
+            throw new DetectJenkinsException(failureMessage + ": " + cause.getMessage(), cause);
+        }
+    }
+
+    private static class DetectSetup {
+        private final IntEnvironmentVariables intEnvironmentVariables;
+        private final OperatingSystemType operatingSystemType;
+        private final List<List<String>> detectCommands;
+        private final DetectPhaseTimings detectPhaseTimings;
+        @Nullable
+        private final MasterToSlaveCallable<Void, IOException> finishCallable;
+
+        private DetectSetup(
+            IntEnvironmentVariables intEnvironmentVariables,
+            OperatingSystemType operatingSystemType,
+            List<List<String>> detectCommands,
+            DetectPhaseTimings detectPhaseTimings,
+            @Nullable MasterToSlaveCallable<Void, IOException> finishCallable
+        ) {
+            this.intEnvironmentVariables = intEnvironmentVariables;
+            this.operatingSystemType = operatingSystemType;
+            this.detectCommands = detectCommands;
+            this.detectPhaseTimings = detectPhaseTimings;
+            this.finishCallable = finishCallable;
+        }
     }
 }
@@ -0,0 +1,108 @@
+/*
+ * blackduck-detect
+ *
+ * Copyright (c) 2024 Black Duck Software, Inc.
+ *
+ * Use subject to the terms and conditions of the Black Duck Software End User Software License and Maintenance Agreement. All rights reserved worldwide.
+ */
+package com.blackduck.integration.jenkins.detect;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The parts of Detect's status.json worth keeping with the build. It is built on the agent and sent back to the controller, so it only holds counts and short,
+ * capped lists rather than the whole file.
+ */
+public class DetectStatusSummary implements Serializable {
+    private static final long serialVersionUID = 4137960188240957061L;
+
+    private String statusJsonPath;
+    private String detectVersion;
+    private String projectName;
+    private String projectVersion;
+    private String overallStatus;
+    private final LinkedHashMap<String, String> detectorStatuses = new LinkedHashMap<>();
+    private final LinkedHashMap<String, Integer> issueCounts = new LinkedHashMap<>();
+    private final ArrayList<String> resultLocations = new ArrayList<>();
+    private int issueCount;
+    private int codeLocationCount;
+
+    public String getStatusJsonPath() {
+        return statusJsonPath;
+    }
+
+    public void setStatusJsonPath(String statusJsonPath) {
+        this.statusJsonPath = statusJsonPath;
+    }
+
+    public String getDetectVersion() {
+        return detectVersion;
+    }
+
+    public void setDetectVersion(String detectVersion) {
+        this.detectVersion = detectVersion;
+    }
+
+    public String getProjectName() {
+        return projectName;
+    }
+
+    public void setProjectName(String projectName) {
+        this.projectName = projectName;
+    }
+
+    public String getProjectVersion() {
+        return projectVersion;
+    }
+
+    public void setProjectVersion(String projectVersion) {
+        this.projectVersion = projectVersion;
+    }
+
+    public String getOverallStatus() {
+        return overallStatus;
+    }
+
+    public void setOverallStatus(String overallStatus) {
+        this.overallStatus = overallStatus;
+    }
+
+    public Map<String, String> getDetectorStatuses() {
+        return detectorStatuses;
+    }
+
+    public Map<String, Integer> getIssueCounts() {
+        return issueCounts;
+    }
+
+    public List<String> getResultLocations() {
+        return resultLocations;
+    }
+
+    public int getIssueCount() {
+        return issueCount;
+    }
+
+    public void setIssueCount(int issueCount) {
+        this.issueCount = issueCount;
+    }
+
+    public int getCodeLocationCount() {
+        return codeLocationCount;
+    }
+
+    public void setCodeLocationCount(int codeLocationCount) {
+        this.codeLocationCount = codeLocationCount;
+    }
+
+    public int getFailedDetectorCount() {
+        return (int) detectorStatuses.values().stream()
+            .filter(status -> !"SUCCESS".equals(status))
+            .count();
+    }
+
+}
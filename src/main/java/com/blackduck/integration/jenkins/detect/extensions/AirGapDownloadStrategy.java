@@ -7,6 +7,7 @@
  */
 package com.blackduck.integration.jenkins.detect.extensions;
 
+import com.blackduck.integration.jenkins.annotations.HelpMarkdown;
 import com.blackduck.integration.jenkins.detect.extensions.tool.DetectAirGapInstallation;
 import hudson.Extension;
 import hudson.tools.ToolInstallation;
@@ -24,6 +25,10 @@ public class AirGapDownloadStrategy extends DetectDownloadStrategy {
     public static final String DISPLAY_NAME = "Install AirGapped Detect as a Tool Installation";
     @Nullable
     private String airGapInstallationName;
+    @Nullable
+    @HelpMarkdown("The Detect version to run when the AirGap installation holds several side by side, such as 9.10.0. A partial version such as 9 or 9.10 runs the newest matching one.  \r\n" +
+        "If empty, the installation must contain exactly one Detect jar.")
+    private String airGapVersion;
 
     @DataBoundConstructor
     public AirGapDownloadStrategy() {
@@ -44,6 +49,15 @@ public class AirGapDownloadStrategy extends DetectDownloadStrategy {
         this.airGapInstallationName = airGapInstallationName;
     }
 
+    public String getAirGapVersion() {
+        return airGapVersion;
+    }
+
+    @DataBoundSetter
+    public void setAirGapVersion(String airGapVersion) {
+        this.airGapVersion = airGapVersion;
+    }
+
     @Override
     public String getDisplayName() {
         return DISPLAY_NAME;
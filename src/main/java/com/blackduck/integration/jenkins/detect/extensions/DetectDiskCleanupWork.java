@@ -0,0 +1,98 @@
+/*
+ * blackduck-detect
+ *
+ * Copyright (c) 2024 Black Duck Software, Inc.
+ *
+ * Use subject to the terms and conditions of the Black Duck Software End User Software License and Maintenance Agreement. All rights reserved worldwide.
+ */
+package com.blackduck.integration.jenkins.detect.extensions;
+
+import com.blackduck.integration.jenkins.detect.extensions.global.DetectGlobalConfig;
+import com.blackduck.integration.jenkins.detect.service.DetectCommandsFactory;
+import com.blackduck.integration.jenkins.detect.service.DetectDiskCleanupCallable;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.Functions;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.Computer;
+import hudson.model.Node;
+import hudson.model.TaskListener;
+import hudson.model.TopLevelItem;
+import hudson.remoting.VirtualChannel;
+import jenkins.model.GlobalConfiguration;
+import jenkins.model.Jenkins;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically removes old Detect output and downloaded Detect artifacts from every online node, so long-lived agents do not fill their disks. What was reclaimed on
+ * each node is reported in the log of this task. Nothing is removed until a maximum age or a quota is configured, since the Detect output directories may also
+ * hold runs that did not come from Jenkins.
+ */
+@Extension
+public class DetectDiskCleanupWork extends AsyncPeriodicWork {
+    public static final long RECURRENCE_PERIOD_MILLIS = TimeUnit.HOURS.toMillis(6);
+
+    public DetectDiskCleanupWork() {
+        super("Black Duck Detect disk cleanup");
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return RECURRENCE_PERIOD_MILLIS;
+    }
+
+    @Override
+    protected void execute(TaskListener listener) throws InterruptedException {
+        DetectGlobalConfig detectGlobalConfig = GlobalConfiguration.all().get(DetectGlobalConfig.class);
+        if (null == detectGlobalConfig || (detectGlobalConfig.getDiskCleanupMaxAge() <= 0 && detectGlobalConfig.getDiskCleanupQuota() <= 0)) {
+            return;
+        }
+
+        long maxAgeMillis = TimeUnit.DAYS.toMillis(Math.max(0, detectGlobalConfig.getDiskCleanupMaxAge()));
+        long quotaBytes = Math.max(0L, detectGlobalConfig.getDiskCleanupQuota()) * 1024L * 1024L;
+        long totalReclaimedBytes = 0L;
+        for (Computer computer : Jenkins.get().getComputers()) {
+            Node node = computer.getNode();
+            FilePath nodeRootPath = null != node ? node.getRootPath() : null;
+            VirtualChannel channel = computer.getChannel();
+            if (null == nodeRootPath || null == channel) {
+                continue;
+            }
+
+            String nodeName = computer.getDisplayName();
+            try {
+                String toolsDirectory = nodeRootPath.child(DetectCommandsFactory.TOOLS_DIRECTORY).getRemote();
+                DetectDiskCleanupCallable.Result result = channel.call(new DetectDiskCleanupCallable(toolsDirectory, Collections.emptyList(), getWorkspaceDirectories(node), maxAgeMillis, quotaBytes));
+                totalReclaimedBytes += result.getReclaimedBytes();
+                listener.getLogger().println(String.format(
+                    "Reclaimed %s from %d Detect entries on %s, %s remain",
+                    Functions.humanReadableByteSize(result.getReclaimedBytes()),
+                    result.getRemovedEntries(),
+                    nodeName,
+                    Functions.humanReadableByteSize(result.getRemainingBytes())
+                ));
+            } catch (IOException e) {
+                // One unreachable node should not keep the others from being cleaned up.
+                listener.error(String.format("Could not clean up Detect output on %s: %s", nodeName, e.getMessage()));
+            }
+        }
+        listener.getLogger().println(String.format("Reclaimed %s from Detect output in total", Functions.humanReadableByteSize(totalReclaimedBytes)));
+    }
+
+    private static List<String> getWorkspaceDirectories(Node node) {
+        List<String> workspaceDirectories = new ArrayList<>();
+        for (TopLevelItem item : Jenkins.get().getAllItems(TopLevelItem.class)) {
+            FilePath workspace = node.getWorkspaceFor(item);
+            if (null != workspace) {
+                workspaceDirectories.add(workspace.getRemote());
+            }
+        }
+        return workspaceDirectories;
+    }
+
+}
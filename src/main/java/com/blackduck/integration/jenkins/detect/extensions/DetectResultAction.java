@@ -0,0 +1,97 @@
+/*
+ * blackduck-detect
+ *
+ * Copyright (c) 2024 Black Duck Software, Inc.
+ *
+ * Use subject to the terms and conditions of the Black Duck Software End User Software License and Maintenance Agreement. All rights reserved worldwide.
+ */
+package com.blackduck.integration.jenkins.detect.extensions;
+
+import com.blackduck.integration.jenkins.detect.DetectResult;
+import com.blackduck.integration.jenkins.detect.DetectStatusSummary;
+import hudson.model.Run;
+import jenkins.model.RunAction2;
+
+import javax.annotation.Nullable;
+
+/**
+ * Shows the summary of a Detect run on the build page: the overall status, the result of each detector and scan, and links to the Black Duck BOM and risk report.
+ * When Detect's status.json could be read it is kept as well, and the job's {@link DetectTrendAction} charts it across builds.
+ */
+public class DetectResultAction implements RunAction2 {
+    public static final String DISPLAY_NAME = "Black Duck Detect Result";
+
+    @Nullable
+    private final String scanName;
+    private final DetectResult detectResult;
+    @Nullable
+    private final DetectStatusSummary statusSummary;
+    private transient Run<?, ?> run;
+
+    public DetectResultAction(@Nullable String scanName, DetectResult detectResult) {
+        this(scanName, detectResult, null);
+    }
+
+    public DetectResultAction(@Nullable String scanName, DetectResult detectResult, @Nullable DetectStatusSummary statusSummary) {
+        this.scanName = scanName;
+        this.detectResult = detectResult;
+        this.statusSummary = statusSummary;
+    }
+
+    @Nullable
+    public String getScanName() {
+        return scanName;
+    }
+
+    public DetectResult getDetectResult() {
+        return detectResult;
+    }
+
+    @Nullable
+    public DetectStatusSummary getStatusSummary() {
+        return statusSummary;
+    }
+
+    public int getIssueCount() {
+        return null != statusSummary ? statusSummary.getIssueCount() : 0;
+    }
+
+    public int getFailedDetectorCount() {
+        if (null != statusSummary) {
+            return statusSummary.getFailedDetectorCount();
+        }
+        return (int) detectResult.getDetectorResults().values().stream()
+            .filter(status -> !"SUCCESS".equals(status))
+            .count();
+    }
+
+    public Run<?, ?> getRun() {
+        return run;
+    }
+
+    @Override
+    public void onAttached(Run<?, ?> run) {
+        this.run = run;
+    }
+
+    @Override
+    public void onLoad(Run<?, ?> run) {
+        this.run = run;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return null != scanName ? DISPLAY_NAME + " (" + scanName + ")" : DISPLAY_NAME;
+    }
+
+    @Override
+    public String getUrlName() {
+        return null;
+    }
+
+}
@@ -0,0 +1,53 @@
+/*
+ * blackduck-detect
+ *
+ * Copyright (c) 2024 Black Duck Software, Inc.
+ *
+ * Use subject to the terms and conditions of the Black Duck Software End User Software License and Maintenance Agreement. All rights reserved worldwide.
+ */
+package com.blackduck.integration.jenkins.detect.extensions;
+
+import com.blackduck.integration.jenkins.detect.service.DetectPhaseTimings;
+import hudson.model.Action;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Shows how long each phase of a Detect run took on the build page, so a slow step can be attributed to the download, the setup on the agent or Detect itself.
+ */
+public class DetectTimingsAction implements Action {
+    public static final String DISPLAY_NAME = "Black Duck Detect Timings";
+
+    private final LinkedHashMap<String, Long> phaseMillis;
+    private final long elapsedMillis;
+
+    public DetectTimingsAction(DetectPhaseTimings detectPhaseTimings) {
+        this.phaseMillis = new LinkedHashMap<>(detectPhaseTimings.getPhaseMillis());
+        this.elapsedMillis = detectPhaseTimings.getElapsedMillis();
+    }
+
+    public Map<String, Long> getPhaseMillis() {
+        return phaseMillis;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return DISPLAY_NAME;
+    }
+
+    @Override
+    public String getUrlName() {
+        return null;
+    }
+
+}
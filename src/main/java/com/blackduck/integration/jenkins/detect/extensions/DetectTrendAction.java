@@ -0,0 +1,85 @@
+/*
+ * blackduck-detect
+ *
+ * Copyright (c) 2024 Black Duck Software, Inc.
+ *
+ * Use subject to the terms and conditions of the Black Duck Software End User Software License and Maintenance Agreement. All rights reserved worldwide.
+ */
+package com.blackduck.integration.jenkins.detect.extensions;
+
+import hudson.model.Action;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.util.ChartUtil;
+import hudson.util.DataSetBuilder;
+import hudson.util.Graph;
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.plot.PlotOrientation;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Charts the issues and failed detectors Detect reported over a job's recent builds. Only the {@link DetectResultAction}s stored with the builds are read, never their
+ * console logs.
+ */
+public class DetectTrendAction implements Action {
+    public static final String URL_NAME = "detectTrend";
+    public static final int MAX_BUILDS = 30;
+
+    private final Job<?, ?> job;
+
+    public DetectTrendAction(Job<?, ?> job) {
+        this.job = job;
+    }
+
+    public Job<?, ?> getJob() {
+        return job;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Black Duck Detect Trend";
+    }
+
+    @Override
+    public String getUrlName() {
+        return URL_NAME;
+    }
+
+    public void doGraph(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        Run<?, ?> lastBuild = job.getLastBuild();
+        if (null == lastBuild) {
+            rsp.setStatus(StaplerResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        DataSetBuilder<String, ChartUtil.NumberOnlyBuildLabel> dataSetBuilder = new DataSetBuilder<>();
+        for (Run<?, ?> run : job.getBuilds().limit(MAX_BUILDS)) {
+            List<DetectResultAction> detectResultActions = run.getActions(DetectResultAction.class);
+            if (detectResultActions.isEmpty()) {
+                continue;
+            }
+
+            ChartUtil.NumberOnlyBuildLabel buildLabel = new ChartUtil.NumberOnlyBuildLabel(run);
+            dataSetBuilder.add(detectResultActions.stream().mapToInt(DetectResultAction::getIssueCount).sum(), "Issues", buildLabel);
+            dataSetBuilder.add(detectResultActions.stream().mapToInt(DetectResultAction::getFailedDetectorCount).sum(), "Failed detectors", buildLabel);
+        }
+
+        new Graph(lastBuild.getTimestamp(), 500, 200) {
+            @Override
+            protected JFreeChart createGraph() {
+                return ChartFactory.createLineChart(null, null, "Count", dataSetBuilder.build(), PlotOrientation.VERTICAL, true, true, false);
+            }
+        }.doPng(req, rsp);
+    }
+
+}
@@ -0,0 +1,38 @@
+/*
+ * blackduck-detect
+ *
+ * Copyright (c) 2024 Black Duck Software, Inc.
+ *
+ * Use subject to the terms and conditions of the Black Duck Software End User Software License and Maintenance Agreement. All rights reserved worldwide.
+ */
+package com.blackduck.integration.jenkins.detect.extensions;
+
+import hudson.Extension;
+import hudson.model.Action;
+import hudson.model.Job;
+import hudson.model.Run;
+import jenkins.model.TransientActionFactory;
+
+import javax.annotation.Nonnull;
+import java.util.Collection;
+import java.util.Collections;
+
+@Extension
+public class DetectTrendActionFactory extends TransientActionFactory<Job> {
+    @Override
+    public Class<Job> type() {
+        return Job.class;
+    }
+
+    @Nonnull
+    @Override
+    public Collection<? extends Action> createFor(@Nonnull Job target) {
+        // Only the last completed build is checked, so jobs that never ran Detect do not pay for loading older builds.
+        Run<?, ?> lastCompletedBuild = target.getLastCompletedBuild();
+        if (null == lastCompletedBuild || lastCompletedBuild.getActions(DetectResultAction.class).isEmpty()) {
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(new DetectTrendAction(target));
+    }
+
+}
@@ -24,6 +24,7 @@ import com.blackduck.integration.log.LogLevel;
 import com.blackduck.integration.log.PrintStreamIntLogger;
 import com.blackduck.integration.rest.proxy.ProxyInfo;
 import com.blackduck.integration.rest.response.Response;
+import hudson.BulkChange;
 import hudson.Extension;
 import hudson.Functions;
 import hudson.Util;
@@ -36,6 +37,7 @@ import hudson.util.Messages;
 import jenkins.model.GlobalConfiguration;
 import jenkins.model.Jenkins;
 import jenkins.util.xml.XMLUtils;
+import net.sf.json.JSONObject;
 import org.apache.commons.lang.StringUtils;
 import org.apache.http.impl.EnglishReasonPhraseCatalog;
 import org.kohsuke.stapler.*;
@@ -63,6 +65,13 @@ import java.util.*;
 @Extension
 public class DetectGlobalConfig extends GlobalConfiguration implements Serializable {
     private static final long serialVersionUID = -7629542889827231313L;
+    public static final int DEFAULT_SCRIPT_CACHE_TIME_TO_LIVE = 60;
+    public static final int DEFAULT_DOWNLOAD_TIMEOUT = 120;
+    public static final int DEFAULT_PREWARM_CONCURRENCY = 2;
+    public static final int DEFAULT_FORCED_RESCAN_INTERVAL = 24;
+    public static final int DEFAULT_ARTIFACT_STORE_QUOTA = 2048;
+    public static final int DEFAULT_DISK_CLEANUP_MAX_AGE = 0;
+    public static final int DEFAULT_DISK_CLEANUP_QUOTA = 0;
 
     @HelpMarkdown("Provide the URL that lets you access your Black Duck server.")
     private String blackDuckUrl;
@@ -78,6 +87,50 @@ public class DetectGlobalConfig extends GlobalConfiguration implements Serializa
 
     private int blackDuckTimeout = 120;
 
+    @HelpMarkdown("How long, in minutes, a Detect script cached on an agent is used without checking the download site for a newer version.  \r\n" +
+        "Once this time has passed the cached script is revalidated, and only downloaded again if it has changed. Set to 0 to revalidate on every build.")
+    private int scriptCacheTimeToLive = DEFAULT_SCRIPT_CACHE_TIME_TO_LIVE;
+
+    @HelpMarkdown("How long, in seconds, downloading the Detect script may wait to connect or for data before it fails.  \r\n" +
+        "Connections are kept open and reused by later downloads on the same node.")
+    private int downloadTimeout = DEFAULT_DOWNLOAD_TIMEOUT;
+
+    @HelpMarkdown("If selected, the controller downloads and verifies the Detect script and the Detect jar once and streams them to agents over the agent connection.  \r\n" +
+        "Interrupted transfers are resumed. The controller runs the Detect script to download the jar, so it needs bash (or PowerShell on Windows) and access to the " +
+        "Detect download site. Agents only ask the download site for the latest Detect version, unless a Detect version is pinned. If the controller cannot download " +
+        "the jar, each agent downloads it itself.")
+    private boolean distributeFromController;
+
+    @HelpMarkdown("The maximum number of Detect runs that may execute at the same time on one node. Further runs wait in the order they arrived.  \r\n" +
+        "Set to 0 for no limit.")
+    private int maxConcurrentScansPerNode;
+
+    @HelpMarkdown("If set, the limit above is shared by all nodes matching this label expression instead of applying to each of them separately.")
+    private String concurrencyLimitLabel;
+
+    @HelpMarkdown("For steps with incremental scanning enabled, how many hours a previous scan may be reused while the dependency manifests are unchanged.  \r\n" +
+        "Once this time has passed Detect runs again. Set to 0 to reuse a scan for as long as nothing changes.")
+    private int forcedRescanInterval = DEFAULT_FORCED_RESCAN_INTERVAL;
+
+    @HelpMarkdown("How many megabytes the Detect versions that builds pin with detectVersion may take up on each agent. The least recently used versions are removed beyond that.  \r\n" +
+        "Set to 0 for no limit.")
+    private int artifactStoreQuota = DEFAULT_ARTIFACT_STORE_QUOTA;
+
+    @HelpMarkdown("How many days Detect run output and downloaded Detect artifacts are kept on each node after they were last used. Older ones are removed periodically.  \r\n" +
+        "This includes every run in the Detect output directory of the node, also those of Detect runs outside Jenkins. Set to 0, the default, to keep them regardless of age.")
+    private int diskCleanupMaxAge = DEFAULT_DISK_CLEANUP_MAX_AGE;
+
+    @HelpMarkdown("How many megabytes Detect run output and downloaded Detect artifacts may take up on each node. The least recently used ones are removed periodically beyond that.  \r\n" +
+        "Set to 0, the default, for no limit. Nothing is removed unless this or the maximum age is set.")
+    private int diskCleanupQuota = DEFAULT_DISK_CLEANUP_QUOTA;
+
+    @HelpMarkdown("Agents matching this label expression download Detect as soon as they come online, so the first build on them does not pay for it.  \r\n" +
+        "Leave blank to disable pre-warming.")
+    private String prewarmLabelExpression;
+
+    @HelpMarkdown("The maximum number of agents that are pre-warmed at the same time.")
+    private int prewarmConcurrency = DEFAULT_PREWARM_CONCURRENCY;
+
     @Nullable
     private DetectDownloadStrategy downloadStrategy;
 
@@ -126,6 +179,137 @@ public class DetectGlobalConfig extends GlobalConfiguration implements Serializa
         save();
     }
 
+    public int getScriptCacheTimeToLive() {
+        return scriptCacheTimeToLive;
+    }
+
+    @DataBoundSetter
+    public void setScriptCacheTimeToLive(int scriptCacheTimeToLive) {
+        this.scriptCacheTimeToLive = scriptCacheTimeToLive;
+        save();
+    }
+
+    public int getDownloadTimeout() {
+        return downloadTimeout;
+    }
+
+    @DataBoundSetter
+    public void setDownloadTimeout(int downloadTimeout) {
+        this.downloadTimeout = downloadTimeout;
+        save();
+    }
+
+    public boolean getDistributeFromController() {
+        return distributeFromController;
+    }
+
+    @DataBoundSetter
+    public void setDistributeFromController(boolean distributeFromController) {
+        this.distributeFromController = distributeFromController;
+        save();
+    }
+
+    public int getMaxConcurrentScansPerNode() {
+        return maxConcurrentScansPerNode;
+    }
+
+    @DataBoundSetter
+    public void setMaxConcurrentScansPerNode(int maxConcurrentScansPerNode) {
+        this.maxConcurrentScansPerNode = maxConcurrentScansPerNode;
+        save();
+    }
+
+    public String getConcurrencyLimitLabel() {
+        return concurrencyLimitLabel;
+    }
+
+    @DataBoundSetter
+    public void setConcurrencyLimitLabel(String concurrencyLimitLabel) {
+        this.concurrencyLimitLabel = concurrencyLimitLabel;
+        save();
+    }
+
+    public int getForcedRescanInterval() {
+        return forcedRescanInterval;
+    }
+
+    @DataBoundSetter
+    public void setForcedRescanInterval(int forcedRescanInterval) {
+        this.forcedRescanInterval = forcedRescanInterval;
+        save();
+    }
+
+    public int getArtifactStoreQuota() {
+        return artifactStoreQuota;
+    }
+
+    @DataBoundSetter
+    public void setArtifactStoreQuota(int artifactStoreQuota) {
+        this.artifactStoreQuota = artifactStoreQuota;
+        save();
+    }
+
+    public int getDiskCleanupMaxAge() {
+        return diskCleanupMaxAge;
+    }
+
+    @DataBoundSetter
+    public void setDiskCleanupMaxAge(int diskCleanupMaxAge) {
+        this.diskCleanupMaxAge = diskCleanupMaxAge;
+        save();
+    }
+
+    public int getDiskCleanupQuota() {
+        return diskCleanupQuota;
+    }
+
+    @DataBoundSetter
+    public void setDiskCleanupQuota(int diskCleanupQuota) {
+        this.diskCleanupQuota = diskCleanupQuota;
+        save();
+    }
+
+    public String getPrewarmLabelExpression() {
+        return prewarmLabelExpression;
+    }
+
+    @DataBoundSetter
+    public void setPrewarmLabelExpression(String prewarmLabelExpression) {
+        this.prewarmLabelExpression = prewarmLabelExpression;
+        save();
+    }
+
+    public int getPrewarmConcurrency() {
+        return prewarmConcurrency;
+    }
+
+    @DataBoundSetter
+    public void setPrewarmConcurrency(int prewarmConcurrency) {
+        this.prewarmConcurrency = prewarmConcurrency;
+        save();
+    }
+
+    @Override
+    public boolean configure(StaplerRequest req, JSONObject json) throws FormException {
+        // Every setter saves, so binding the form is grouped into a single write.
+        try (BulkChange bulkChange = new BulkChange(this)) {
+            req.bindJSON(this, json);
+            bulkChange.commit();
+        } catch (IOException e) {
+            throw new FormException("Failed to save the Black Duck Detect configuration: " + e.getMessage(), e, "blackDuckUrl");
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized void save() {
+        if (BulkChange.contains(this)) {
+            return;
+        }
+        super.save();
+        DetectGlobalConfigListener.fireOnChange(this);
+    }
+
     public DetectDownloadStrategy getDownloadStrategy() {
         return downloadStrategy;
     }
@@ -284,11 +468,13 @@ public class DetectGlobalConfig extends GlobalConfiguration implements Serializa
         int timeout = getNodeIntegerValue(doc, "blackDuckTimeout").orElse(120);
         boolean trustCerts = getNodeBooleanValue(doc, "trustBlackDuckCertificates").orElse(false);
 
-        setBlackDuckUrl(url);
-        setBlackDuckCredentialsId(credentialsId);
-        setBlackDuckTimeout(timeout);
-        setTrustBlackDuckCertificates(trustCerts);
-        save();
+        try (BulkChange bulkChange = new BulkChange(this)) {
+            setBlackDuckUrl(url);
+            setBlackDuckCredentialsId(credentialsId);
+            setBlackDuckTimeout(timeout);
+            setTrustBlackDuckCertificates(trustCerts);
+            bulkChange.commit();
+        }
     }
 
     private Optional<String> getNodeValue(Document doc, String tagName) {
@@ -0,0 +1,35 @@
+/*
+ * blackduck-detect
+ *
+ * Copyright (c) 2024 Black Duck Software, Inc.
+ *
+ * Use subject to the terms and conditions of the Black Duck Software End User Software License and Maintenance Agreement. All rights reserved worldwide.
+ */
+package com.blackduck.integration.jenkins.detect.extensions.global;
+
+import hudson.ExtensionList;
+import hudson.ExtensionPoint;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Notified once after each change to the Detect global configuration has been written, however many settings the change touched. Implementations should only drop
+ * or refresh state derived from the configuration; they run on the thread that saved it.
+ */
+public abstract class DetectGlobalConfigListener implements ExtensionPoint {
+    private static final Logger LOGGER = Logger.getLogger(DetectGlobalConfigListener.class.getName());
+
+    public abstract void onChange(DetectGlobalConfig detectGlobalConfig);
+
+    public static void fireOnChange(DetectGlobalConfig detectGlobalConfig) {
+        for (DetectGlobalConfigListener detectGlobalConfigListener : ExtensionList.lookup(DetectGlobalConfigListener.class)) {
+            try {
+                detectGlobalConfigListener.onChange(detectGlobalConfig);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "A listener failed to handle a change to the Black Duck Detect configuration", e);
+            }
+        }
+    }
+
+}
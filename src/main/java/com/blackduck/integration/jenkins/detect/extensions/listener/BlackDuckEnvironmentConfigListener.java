@@ -0,0 +1,22 @@
+/*
+ * blackduck-detect
+ *
+ * Copyright (c) 2024 Black Duck Software, Inc.
+ *
+ * Use subject to the terms and conditions of the Black Duck Software End User Software License and Maintenance Agreement. All rights reserved worldwide.
+ */
+package com.blackduck.integration.jenkins.detect.extensions.listener;
+
+import com.blackduck.integration.jenkins.detect.extensions.global.DetectGlobalConfig;
+import com.blackduck.integration.jenkins.detect.extensions.global.DetectGlobalConfigListener;
+import com.blackduck.integration.jenkins.detect.service.BlackDuckEnvironmentSnapshotCache;
+import hudson.Extension;
+
+@Extension
+public class BlackDuckEnvironmentConfigListener extends DetectGlobalConfigListener {
+    @Override
+    public void onChange(DetectGlobalConfig detectGlobalConfig) {
+        BlackDuckEnvironmentSnapshotCache.getInstance().invalidate();
+    }
+
+}
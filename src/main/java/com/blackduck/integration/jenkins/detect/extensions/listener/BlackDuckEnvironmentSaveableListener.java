@@ -0,0 +1,36 @@
+/*
+ * blackduck-detect
+ *
+ * Copyright (c) 2024 Black Duck Software, Inc.
+ *
+ * Use subject to the terms and conditions of the Black Duck Software End User Software License and Maintenance Agreement. All rights reserved worldwide.
+ */
+package com.blackduck.integration.jenkins.detect.extensions.listener;
+
+import com.blackduck.integration.jenkins.detect.service.BlackDuckEnvironmentSnapshotCache;
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import hudson.Extension;
+import hudson.ProxyConfiguration;
+import hudson.XmlFile;
+import hudson.model.ItemGroup;
+import hudson.model.Saveable;
+import hudson.model.User;
+import hudson.model.listeners.SaveableListener;
+
+/**
+ * Drops the cached Black Duck environment when anything outside the Detect global configuration it was resolved from is saved: the proxy or a credentials store.
+ * Folder and user scoped credentials are saved along with their folder or user, so those saves count as well.
+ */
+@Extension
+public class BlackDuckEnvironmentSaveableListener extends SaveableListener {
+    @Override
+    public void onChange(Saveable saveable, XmlFile file) {
+        if (saveable instanceof ProxyConfiguration
+            || saveable instanceof SystemCredentialsProvider
+            || saveable instanceof ItemGroup
+            || saveable instanceof User) {
+            BlackDuckEnvironmentSnapshotCache.getInstance().invalidate();
+        }
+    }
+
+}
@@ -0,0 +1,31 @@
+/*
+ * blackduck-detect
+ *
+ * Copyright (c) 2024 Black Duck Software, Inc.
+ *
+ * Use subject to the terms and conditions of the Black Duck Software End User Software License and Maintenance Agreement. All rights reserved worldwide.
+ */
+package com.blackduck.integration.jenkins.detect.extensions.listener;
+
+import com.blackduck.integration.jenkins.detect.extensions.global.DetectGlobalConfig;
+import com.blackduck.integration.jenkins.detect.service.DetectPrewarmService;
+import com.blackduck.integration.jenkins.wrapper.JenkinsWrapper;
+import hudson.Extension;
+import hudson.model.Computer;
+import hudson.model.TaskListener;
+import hudson.slaves.ComputerListener;
+import jenkins.model.GlobalConfiguration;
+
+@Extension
+public class DetectPrewarmComputerListener extends ComputerListener {
+    @Override
+    public void onOnline(Computer computer, TaskListener listener) {
+        DetectGlobalConfig detectGlobalConfig = GlobalConfiguration.all().get(DetectGlobalConfig.class);
+        if (null == detectGlobalConfig) {
+            return;
+        }
+
+        new DetectPrewarmService(detectGlobalConfig, JenkinsWrapper.initializeFromJenkinsJVM().getProxyHelper()).schedulePrewarm(computer, listener);
+    }
+
+}
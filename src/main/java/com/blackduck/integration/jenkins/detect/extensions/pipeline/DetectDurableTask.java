@@ -0,0 +1,126 @@
+/*
+ * blackduck-detect
+ *
+ * Copyright (c) 2024 Black Duck Software, Inc.
+ *
+ * Use subject to the terms and conditions of the Black Duck Software End User Software License and Maintenance Agreement. All rights reserved worldwide.
+ */
+package com.blackduck.integration.jenkins.detect.extensions.pipeline;
+
+import com.blackduck.integration.jenkins.detect.DetectCommand;
+import com.blackduck.integration.util.OperatingSystemType;
+import hudson.EnvVars;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.TaskListener;
+import org.jenkinsci.plugins.durabletask.BourneShellScript;
+import org.jenkinsci.plugins.durabletask.Controller;
+import org.jenkinsci.plugins.durabletask.DurableTask;
+import org.jenkinsci.plugins.durabletask.WindowsBatchScript;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Wraps a resolved Detect command in a durable task, so Detect keeps running on the agent independently of the controller and its output and exit code can be
+ * collected again after the controller restarts. This is the only class that touches the durable-task plugin, which is optional, so it is only loaded once the plugin
+ * is known to be installed.
+ */
+public class DetectDurableTask {
+    public static final String DURABLE_TASK_PLUGIN = "durable-task";
+
+    public static final String WINDOWS_ARGUMENT_VARIABLE_PREFIX = "DETECT_PLUGIN_ARGUMENT_";
+
+    private DetectDurableTask() {
+        // Utility class
+    }
+
+    public static DurableTask create(DetectCommand detectCommand) {
+        if (detectCommand.getOperatingSystemType() == OperatingSystemType.WINDOWS) {
+            return new WindowsBatchScript(toWindowsBatchScript(detectCommand.getCommands()));
+        }
+        return new BourneShellScript(toBourneShellScript(detectCommand.getCommands()));
+    }
+
+    public static DetectRemoteProcess launch(DetectCommand detectCommand, FilePath workspace, Launcher launcher, TaskListener listener) throws IOException, InterruptedException {
+        return new DurableTaskProcess(create(detectCommand).launch(toEnvVars(detectCommand), workspace, launcher, listener));
+    }
+
+    public static EnvVars toEnvVars(DetectCommand detectCommand) {
+        EnvVars envVars = new EnvVars(detectCommand.getEnvironmentVariables().getVariables());
+        if (detectCommand.getOperatingSystemType() == OperatingSystemType.WINDOWS) {
+            envVars.putAll(toWindowsArgumentVariables(detectCommand.getCommands()));
+        }
+        return envVars;
+    }
+
+    public static String toBourneShellScript(List<String> commands) {
+        // Tracing is turned off so the command line, which may carry credentials, is not echoed to the log.
+        return "set +x\nexec " + commands.stream()
+            .map(command -> "'" + command.replace("'", "'\\''") + "'")
+            .collect(Collectors.joining(" "));
+    }
+
+    /**
+     * The command line only refers to the arguments, which are passed in the environment variables from {@link #toWindowsArgumentVariables}. With delayed expansion
+     * they are substituted after cmd has parsed the line, so quotes, percent signs and characters such as {@code &} or {@code |} in them reach Detect unchanged.
+     */
+    public static String toWindowsBatchScript(List<String> commands) {
+        return "@echo off\r\nsetlocal EnableDelayedExpansion\r\n" + IntStream.range(0, commands.size())
+            .mapToObj(index -> "!" + WINDOWS_ARGUMENT_VARIABLE_PREFIX + index + "!")
+            .collect(Collectors.joining(" "));
+    }
+
+    public static Map<String, String> toWindowsArgumentVariables(List<String> commands) {
+        Map<String, String> argumentVariables = new LinkedHashMap<>();
+        for (int index = 0; index < commands.size(); index++) {
+            argumentVariables.put(WINDOWS_ARGUMENT_VARIABLE_PREFIX + index, quoteForCreateProcess(commands.get(index)));
+        }
+        return argumentVariables;
+    }
+
+    private static String quoteForCreateProcess(String argument) {
+        // The arguments are quoted the way ProcessBuilder quotes them on Windows, which is how the launcher started Detect before.
+        boolean alreadyQuoted = argument.length() > 1 && argument.startsWith("\"") && argument.endsWith("\"");
+        if (alreadyQuoted || !(argument.isEmpty() || argument.indexOf(' ') >= 0 || argument.indexOf('\t') >= 0)) {
+            return argument;
+        }
+        // A trailing backslash would otherwise escape the closing quote.
+        return "\"" + argument + (argument.endsWith("\\") ? "\\" : "") + "\"";
+    }
+
+    private static class DurableTaskProcess implements DetectRemoteProcess {
+        private static final long serialVersionUID = 4702515573046264186L;
+        private final Controller controller;
+
+        private DurableTaskProcess(Controller controller) {
+            this.controller = controller;
+        }
+
+        @Override
+        public boolean writeLog(FilePath workspace, OutputStream sink) throws IOException, InterruptedException {
+            return controller.writeLog(workspace, sink);
+        }
+
+        @Override
+        public Integer exitStatus(FilePath workspace, Launcher launcher, TaskListener listener) throws IOException, InterruptedException {
+            return controller.exitStatus(workspace, launcher, listener);
+        }
+
+        @Override
+        public void cleanup(FilePath workspace) throws IOException, InterruptedException {
+            controller.cleanup(workspace);
+        }
+
+        @Override
+        public void stop(FilePath workspace, Launcher launcher) throws IOException, InterruptedException {
+            controller.stop(workspace, launcher);
+        }
+    }
+
+}
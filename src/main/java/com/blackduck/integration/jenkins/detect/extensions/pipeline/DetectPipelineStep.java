@@ -7,16 +7,40 @@
  */
 package com.blackduck.integration.jenkins.detect.extensions.pipeline;
 
+import com.blackduck.integration.jenkins.detect.DetectCommand;
+import com.blackduck.integration.jenkins.detect.DetectJenkinsEnvironmentVariable;
+import com.blackduck.integration.jenkins.detect.DetectPipelineCommands;
+import com.blackduck.integration.jenkins.detect.DetectResult;
+import com.blackduck.integration.jenkins.detect.DetectRunner;
+import com.blackduck.integration.jenkins.detect.DetectStatusSummary;
+import com.blackduck.integration.jenkins.detect.exception.DetectJenkinsException;
 import com.blackduck.integration.jenkins.detect.extensions.DetectDownloadStrategy;
+import com.blackduck.integration.jenkins.detect.extensions.DetectResultAction;
+import com.blackduck.integration.jenkins.detect.extensions.DetectTimingsAction;
 import com.blackduck.integration.jenkins.detect.extensions.InheritFromGlobalDownloadStrategy;
 import com.blackduck.integration.jenkins.detect.service.DetectCommandsFactory;
+import com.blackduck.integration.jenkins.detect.service.DetectExecutionLimiter;
+import com.blackduck.integration.jenkins.detect.service.DetectIncrementalScanService;
+import com.blackduck.integration.jenkins.detect.service.DetectLogFilter;
+import com.blackduck.integration.jenkins.detect.service.DetectPhaseMetrics;
+import com.blackduck.integration.jenkins.detect.service.DetectPhaseTimings;
+import com.blackduck.integration.jenkins.detect.service.DetectStatusJsonCallable;
 import com.blackduck.integration.jenkins.annotations.HelpMarkdown;
+import com.blackduck.integration.jenkins.extensions.JenkinsIntLogger;
 import hudson.EnvVars;
 import hudson.Extension;
 import hudson.FilePath;
 import hudson.Launcher;
+import hudson.Util;
 import hudson.model.Node;
+import hudson.model.Run;
 import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.model.Jenkins;
+import jenkins.security.MasterToSlaveCallable;
+import jenkins.util.Timer;
 import org.jenkinsci.plugins.workflow.steps.*;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
@@ -25,16 +49,29 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 public class DetectPipelineStep extends Step implements Serializable {
     public static final String DISPLAY_NAME = "Black Duck Detect";
     public static final String PIPELINE_NAME = "blackduck_detect";
+    public static final int DEFAULT_MAX_PARALLEL_SCANS = 2;
     private static final long serialVersionUID = 8126672300843832671L;
+    private static final ExecutorService EXECUTION_THREADS = Executors.newCachedThreadPool(new NamingThreadFactory(new DaemonThreadFactory(), "Black Duck Detect step"));
 
-    @HelpMarkdown("The command line options to pass to Black Duck Detect")
+    @HelpMarkdown("The command line options to pass to Black Duck Detect.  \r\n" +
+        "With the Durable Task plugin installed, a single scan keeps running on the agent through a Jenkins restart. Without it, the step waits for Detect on the " +
+        "controller, and a restart fails the step.")
     private final String detectProperties;
 
     @HelpMarkdown("If true (checked), returns the status code of the Detect run instead of throwing an exception")
@@ -43,6 +80,23 @@ public class DetectPipelineStep extends Step implements Serializable {
     @Nullable
     private DetectDownloadStrategy downloadStrategyOverride;
 
+    @HelpMarkdown("Run several Detect scans from this step, for example one per sub-project. The Detect properties above apply to every scan.  \r\n" +
+        "Detect is only resolved once, and every line a scan logs is prefixed with its name.  \r\n" +
+        "The step waits for the scans on the controller, so unlike a single scan they do not survive a Jenkins restart; a restart fails the step.")
+    private List<DetectScan> scans = new ArrayList<>();
+
+    @HelpMarkdown("How many of the scans may run at the same time. Each running scan also takes one of the node's Detect slots, if their number is limited in the system configuration.")
+    private int maxParallelScans = DEFAULT_MAX_PARALLEL_SCANS;
+
+    @HelpMarkdown("If true (checked), Detect is skipped when the dependency manifests and lock files in the workspace are unchanged since this job's last successful scan.  \r\n" +
+        "Set the DETECT_PLUGIN_FORCE_SCAN environment variable to true to scan anyway.")
+    private boolean incrementalScan = false;
+
+    @HelpMarkdown("The Detect version to run, such as 10.3.0. Each agent keeps the versions builds ask for side by side, so switching between them does not download Detect again.  \r\n" +
+        "Leave blank to run the version the Detect script picks. Freestyle jobs can set the DETECT_PLUGIN_DETECT_VERSION environment variable instead.")
+    @Nullable
+    private String detectVersion;
+
     @DataBoundConstructor
     public DetectPipelineStep(String detectProperties) {
         this.detectProperties = detectProperties;
@@ -74,6 +128,42 @@ public class DetectPipelineStep extends Step implements Serializable {
         this.returnStatus = returnStatus;
     }
 
+    public List<DetectScan> getScans() {
+        return scans;
+    }
+
+    @DataBoundSetter
+    public void setScans(List<DetectScan> scans) {
+        this.scans = null != scans ? new ArrayList<>(scans) : new ArrayList<>();
+    }
+
+    public int getMaxParallelScans() {
+        return maxParallelScans;
+    }
+
+    @DataBoundSetter
+    public void setMaxParallelScans(int maxParallelScans) {
+        this.maxParallelScans = maxParallelScans;
+    }
+
+    public boolean getIncrementalScan() {
+        return incrementalScan;
+    }
+
+    @DataBoundSetter
+    public void setIncrementalScan(boolean incrementalScan) {
+        this.incrementalScan = incrementalScan;
+    }
+
+    public String getDetectVersion() {
+        return detectVersion;
+    }
+
+    @DataBoundSetter
+    public void setDetectVersion(String detectVersion) {
+        this.detectVersion = Util.fixEmptyAndTrim(detectVersion);
+    }
+
     @Override
     public StepExecution start(StepContext context) throws Exception {
         return new Execution(context);
@@ -83,7 +173,7 @@ public class DetectPipelineStep extends Step implements Serializable {
     public static final class DescriptorImpl extends StepDescriptor {
         @Override
         public Set<? extends Class<?>> getRequiredContext() {
-            return new HashSet<>(Arrays.asList(TaskListener.class, EnvVars.class, FilePath.class, Launcher.class, Node.class));
+            return new HashSet<>(Arrays.asList(TaskListener.class, EnvVars.class, FilePath.class, Launcher.class, Node.class, Run.class));
         }
 
         @Override
@@ -99,13 +189,39 @@ public class DetectPipelineStep extends Step implements Serializable {
 
     }
 
-    public class Execution extends SynchronousNonBlockingStepExecution<Integer> {
+    public class Execution extends StepExecution {
         private static final long serialVersionUID = -5807577350749324767L;
+        private static final long MIN_POLL_INTERVAL_MILLIS = 250;
+        private static final long MAX_POLL_INTERVAL_MILLIS = 15000;
+        // How long the agent may stay unreachable before the step gives up on the Detect process running there.
+        private static final long AGENT_UNREACHABLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
         private final transient TaskListener listener;
         private final transient EnvVars envVars;
         private final transient FilePath workspace;
         private final transient Launcher launcher;
         private final transient Node node;
+        private final transient Run<?, ?> run;
+        private transient volatile CompletableFuture<DetectExecutionLimiter.Permit> permitFuture;
+        private transient volatile DetectExecutionLimiter.Permit permit;
+        private transient volatile Future<?> runFuture;
+        private transient volatile ScheduledFuture<?> pollFuture;
+        private transient long pollIntervalMillis = MIN_POLL_INTERVAL_MILLIS;
+        private transient volatile boolean stopped;
+        private transient long unreachableSince;
+        private transient long agentUnreachableTimeoutMillis;
+        private transient ScheduledExecutorService scheduler;
+        private transient DetectLogFilter detectLogFilter;
+        private boolean quiet;
+        private DetectStatusJsonCallable statusJsonCallable;
+        private String fingerprint;
+        private DetectPhaseTimings phaseTimings;
+        private long detectStartedAt;
+        private MasterToSlaveCallable<Void, IOException> finishCallable;
+        // Together with the fields above, the handle to the Detect process running on the agent and the node it runs on are kept across a controller
+        // restart, so that the process can be watched again and hold its Detect slot once more.
+        private volatile DetectRemoteProcess detectProcess;
+        private String nodeName;
 
         protected Execution(@Nonnull StepContext context) throws InterruptedException, IOException {
             super(context);
@@ -114,12 +230,325 @@ public class DetectPipelineStep extends Step implements Serializable {
             workspace = context.get(FilePath.class);
             launcher = context.get(Launcher.class);
             node = context.get(Node.class);
+            run = context.get(Run.class);
+            nodeName = null != node ? node.getNodeName() : null;
+        }
+
+        @Override
+        public boolean start() {
+            if (null != scans && !scans.isEmpty()) {
+                // Each of the scans waits for a Detect slot of its own once Detect is set up, so the step itself does not take one.
+                runFuture = EXECUTION_THREADS.submit(this::launch);
+                return false;
+            }
+
+            // Waiting for a free Detect slot happens without a thread; one is only taken from the pool once the slot is ours.
+            permitFuture = DetectExecutionLimiter.getInstance().acquire(JenkinsIntLogger.logToListener(listener), node);
+            permitFuture.thenAccept(grantedPermit -> {
+                if (stopped) {
+                    grantedPermit.release();
+                    return;
+                }
+                permit = grantedPermit;
+                runFuture = EXECUTION_THREADS.submit(this::launch);
+            });
+            return false;
+        }
+
+        private void launch() {
+            try {
+                if (incrementalScan && skipUnchangedScan()) {
+                    return;
+                }
+
+                DetectPipelineCommands detectPipelineCommands = DetectCommandsFactory.fromPipeline(listener, getDetectEnvVars(), launcher, node, workspace, run);
+                if (null != scans && !scans.isEmpty()) {
+                    // Several scans share one step, so they are run and awaited on this thread rather than as a single durable task.
+                    int exitCode = detectPipelineCommands.runDetectScans(returnStatus, detectProperties, scans, maxParallelScans, downloadStrategyOverride);
+                    recordSuccessfulScan(JenkinsIntLogger.logToListener(listener), exitCode, run);
+                    finish(exitCode);
+                    return;
+                }
+
+                if (!isDurableTaskInstalled()) {
+                    // Without the durable-task plugin Detect cannot outlive a controller restart, so it is run and awaited on this thread like a freestyle build.
+                    int exitCode = detectPipelineCommands.runDetect(returnStatus, detectProperties, downloadStrategyOverride);
+                    recordSuccessfulScan(JenkinsIntLogger.logToListener(listener), exitCode, run);
+                    finish(exitCode);
+                    return;
+                }
+
+                DetectCommand detectCommand = detectPipelineCommands.prepareDetect(detectProperties, downloadStrategyOverride);
+                finishCallable = detectCommand.getFinishCallable();
+                if (stopped) {
+                    finishDetect(launcher, JenkinsIntLogger.logToListener(listener));
+                    releasePermit();
+                    return;
+                }
+
+                JenkinsIntLogger logger = JenkinsIntLogger.logToListener(listener);
+                logger.info(DetectRunner.ASTERISKS);
+                logger.info("START OF DETECT");
+                logger.info(DetectRunner.ASTERISKS);
+
+                detectStartedAt = System.currentTimeMillis();
+                DetectStatusJsonCallable detectStatusJsonCallable = DetectStatusJsonCallable.forDetectCommand(detectCommand, detectStartedAt);
+                DetectRemoteProcess launchedProcess = DetectDurableTask.launch(detectCommand, workspace, launcher, listener);
+                watch(launchedProcess, detectCommand.getPhaseTimings(), detectStatusJsonCallable, DetectRunner.isQuiet(detectCommand.getEnvironmentVariables()));
+            } catch (Throwable t) {
+                fail(t);
+            }
+        }
+
+        void watch(DetectRemoteProcess launchedProcess, DetectPhaseTimings detectPhaseTimings, @Nullable DetectStatusJsonCallable detectStatusJsonCallable, boolean quietDetect)
+            throws IOException, InterruptedException {
+            quiet = quietDetect;
+            phaseTimings = detectPhaseTimings;
+            statusJsonCallable = detectStatusJsonCallable;
+            detectProcess = launchedProcess;
+            if (stopped) {
+                // The step was stopped while Detect was being launched, before stop() could see the process.
+                launchedProcess.stop(workspace, launcher);
+                return;
+            }
+            getContext().saveState();
+            schedulePoll();
+        }
+
+        private boolean isDurableTaskInstalled() {
+            Jenkins jenkins = Jenkins.getInstanceOrNull();
+            return null != jenkins && null != jenkins.getPlugin(DetectDurableTask.DURABLE_TASK_PLUGIN);
+        }
+
+        private EnvVars getDetectEnvVars() {
+            if (null == detectVersion) {
+                return envVars;
+            }
+            EnvVars detectEnvVars = new EnvVars(envVars);
+            detectEnvVars.put(DetectJenkinsEnvironmentVariable.DETECT_VERSION.stringValue(), detectVersion);
+            return detectEnvVars;
+        }
+
+        private boolean skipUnchangedScan() throws IOException, InterruptedException {
+            String fingerprintInput = DetectIncrementalScanService.getFingerprintInput(detectProperties, getDetectEnvVars(), downloadStrategyOverride, scans);
+
+            DetectIncrementalScanService incrementalScanService = DetectIncrementalScanService.forRun(JenkinsIntLogger.logToListener(listener), run);
+            fingerprint = incrementalScanService.computeFingerprint(workspace, fingerprintInput);
+            if (!incrementalScanService.canSkip(fingerprint, DetectIncrementalScanService.isScanForced(envVars))) {
+                return false;
+            }
+
+            run.addAction(incrementalScanService.createCachedResultAction());
+            finish(0);
+            return true;
+        }
+
+        private void recordSuccessfulScan(JenkinsIntLogger logger, int exitCode, Run<?, ?> currentRun) {
+            if (exitCode == 0 && null != fingerprint) {
+                DetectIncrementalScanService.forRun(logger, currentRun).recordSuccessfulScan(fingerprint, currentRun);
+            }
+        }
+
+        private void schedulePoll() {
+            if (!stopped) {
+                pollFuture = getScheduler().schedule(this::poll, pollIntervalMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private ScheduledExecutorService getScheduler() {
+            return null != scheduler ? scheduler : Timer.get();
+        }
+
+        void setScheduler(ScheduledExecutorService scheduler) {
+            this.scheduler = scheduler;
+        }
+
+        void setAgentUnreachableTimeout(long agentUnreachableTimeoutMillis) {
+            this.agentUnreachableTimeoutMillis = agentUnreachableTimeoutMillis;
+        }
+
+        long getPollIntervalMillis() {
+            return pollIntervalMillis;
+        }
+
+        void poll() {
+            if (stopped) {
+                return;
+            }
+
+            try {
+                StepContext context = getContext();
+                FilePath currentWorkspace = context.get(FilePath.class);
+                TaskListener currentListener = context.get(TaskListener.class);
+                Launcher currentLauncher = context.get(Launcher.class);
+                Node currentNode = context.get(Node.class);
+                if (null == currentWorkspace || null == currentLauncher) {
+                    throw new IOException("The agent running Black Duck Detect is not connected");
+                }
+
+                if (null == detectLogFilter) {
+                    // Recreated after a restart, in which case only the output Detect writes from then on is parsed.
+                    detectLogFilter = new DetectLogFilter(currentListener.getLogger(), quiet);
+                }
+
+                boolean producedOutput = detectProcess.writeLog(currentWorkspace, detectLogFilter);
+                Integer exitCode = detectProcess.exitStatus(currentWorkspace, currentLauncher, currentListener);
+                unreachableSince = 0L;
+                if (null == exitCode) {
+                    // Poll eagerly while Detect is writing output and back off while it is quiet.
+                    pollIntervalMillis = producedOutput ? MIN_POLL_INTERVAL_MILLIS : Math.min(MAX_POLL_INTERVAL_MILLIS, pollIntervalMillis * 2);
+                    schedulePoll();
+                    return;
+                }
+
+                detectProcess.writeLog(currentWorkspace, detectLogFilter);
+                detectProcess.cleanup(currentWorkspace);
+                detectLogFilter.close();
+
+                // The Detect process is watched by polling, so its duration is taken from the wall clock, which also holds across a controller restart.
+                JenkinsIntLogger logger = JenkinsIntLogger.logToListener(currentListener);
+                phaseTimings.recordMillis(DetectPhaseTimings.DETECT, System.currentTimeMillis() - detectStartedAt);
+
+                long statusStartedAt = DetectPhaseTimings.start();
+                DetectStatusSummary statusSummary = readStatusSummary(currentLauncher, logger);
+                phaseTimings.record(DetectPhaseTimings.STATUS, statusStartedAt);
+
+                DetectRunner.logEndOfDetect(logger, phaseTimings);
+                finishDetect(currentLauncher, logger);
+
+                Run<?, ?> currentRun = context.get(Run.class);
+                DetectResult detectResult = detectLogFilter.getDetectResult();
+                if (!detectResult.isEmpty() || null != statusSummary) {
+                    currentRun.addAction(new DetectResultAction(null, detectResult, statusSummary));
+                }
+                DetectPhaseMetrics.record(logger, currentNode, phaseTimings.getPhaseMillis(), phaseTimings.getElapsedMillis());
+                currentRun.addAction(new DetectTimingsAction(phaseTimings));
+                recordSuccessfulScan(logger, exitCode, currentRun);
+                finish(DetectPipelineCommands.handleExitCode(logger, returnStatus, exitCode));
+            } catch (IOException e) {
+                // Most likely the agent is disconnected; the process keeps running there, so keep polling for a while in case the agent returns.
+                long now = System.currentTimeMillis();
+                if (0L == unreachableSince) {
+                    unreachableSince = now;
+                } else if (now - unreachableSince >= (agentUnreachableTimeoutMillis > 0 ? agentUnreachableTimeoutMillis : AGENT_UNREACHABLE_TIMEOUT_MILLIS)) {
+                    fail(new DetectJenkinsException(String.format(
+                        "The agent running Black Duck Detect could not be reached for %d minutes: %s",
+                        TimeUnit.MILLISECONDS.toMinutes(now - unreachableSince),
+                        e.getMessage()
+                    ), e));
+                    return;
+                }
+                pollIntervalMillis = MAX_POLL_INTERVAL_MILLIS;
+                schedulePoll();
+            } catch (Throwable t) {
+                fail(t);
+            }
+        }
+
+        private DetectStatusSummary readStatusSummary(Launcher currentLauncher, JenkinsIntLogger logger) throws InterruptedException {
+            // The summary is only informational, so a missing or unreadable status.json never fails the build.
+            try {
+                VirtualChannel channel = currentLauncher.getChannel();
+                return null != channel && null != statusJsonCallable ? channel.call(statusJsonCallable) : null;
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Could not read the Detect status.json: " + e.getMessage());
+                return null;
+            }
+        }
+
+        private void finishDetect(Launcher currentLauncher, JenkinsIntLogger logger) throws InterruptedException {
+            if (null == finishCallable) {
+                return;
+            }
+            // Nothing left to do on the agent once Detect has finished is worth failing the build over.
+            try {
+                VirtualChannel channel = currentLauncher.getChannel();
+                if (null != channel) {
+                    channel.call(finishCallable);
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Could not finish up after Detect on the agent: " + e.getMessage());
+            }
+            finishCallable = null;
+        }
+
+        private void finish(int exitCode) {
+            releasePermit();
+            getContext().onSuccess(exitCode);
+        }
+
+        private void fail(Throwable cause) {
+            releasePermit();
+            getContext().onFailure(cause);
+        }
+
+        private void releasePermit() {
+            if (null != permit) {
+                permit.release();
+            }
+        }
+
+        @Override
+        public void stop(@Nonnull Throwable cause) throws Exception {
+            stopped = true;
+            if (null != permitFuture) {
+                DetectExecutionLimiter.getInstance().cancel(permitFuture);
+            }
+            if (null != runFuture) {
+                runFuture.cancel(true);
+            }
+            if (null != pollFuture) {
+                pollFuture.cancel(false);
+            }
+            if (null != detectProcess) {
+                StepContext context = getContext();
+                FilePath currentWorkspace = context.get(FilePath.class);
+                Launcher currentLauncher = context.get(Launcher.class);
+                if (null != currentWorkspace) {
+                    detectProcess.stop(currentWorkspace, currentLauncher);
+                }
+                if (null != currentLauncher) {
+                    finishDetect(currentLauncher, JenkinsIntLogger.logToListener(context.get(TaskListener.class)));
+                }
+            }
+            fail(cause);
+        }
+
+        @Override
+        public void onResume() {
+            if (null == detectProcess) {
+                String interruptedMessage = null != scans && !scans.isEmpty()
+                    ? "The Black Duck Detect scans were interrupted by a Jenkins restart and have to be run again, as several scans do not survive a restart."
+                    : "Black Duck Detect was interrupted by a Jenkins restart before it was started and has to be run again.";
+                getContext().onFailure(new DetectJenkinsException(interruptedMessage));
+                return;
+            }
+
+            // The Detect process is already running, so its slot is taken again at once rather than queued for.
+            permit = DetectExecutionLimiter.getInstance().register(getResumedNode());
+            pollIntervalMillis = MIN_POLL_INTERVAL_MILLIS;
+            schedulePoll();
+        }
+
+        @Nullable
+        private Node getResumedNode() {
+            Jenkins jenkins = Jenkins.getInstanceOrNull();
+            if (null == jenkins || null == nodeName) {
+                return null;
+            }
+            // The node is looked up by name, as the agent may not have reconnected yet.
+            return nodeName.isEmpty() ? jenkins : jenkins.getNode(nodeName);
         }
 
         @Override
-        protected Integer run() throws Exception {
-            return DetectCommandsFactory.fromPipeline(listener, envVars, launcher, node, workspace)
-                       .runDetect(returnStatus, detectProperties, downloadStrategyOverride);
+        public String getStatus() {
+            if (null != detectProcess) {
+                return "Waiting for Black Duck Detect to finish on the agent";
+            }
+            if (null != permitFuture && !permitFuture.isDone()) {
+                return "Waiting for a free Black Duck Detect slot";
+            }
+            return super.getStatus();
         }
 
     }
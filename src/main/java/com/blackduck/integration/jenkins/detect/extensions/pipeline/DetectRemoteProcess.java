@@ -0,0 +1,39 @@
+/*
+ * blackduck-detect
+ *
+ * Copyright (c) 2024 Black Duck Software, Inc.
+ *
+ * Use subject to the terms and conditions of the Black Duck Software End User Software License and Maintenance Agreement. All rights reserved worldwide.
+ */
+package com.blackduck.integration.jenkins.detect.extensions.pipeline;
+
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.TaskListener;
+
+import javax.annotation.CheckForNull;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+
+/**
+ * A Detect process running on an agent independently of the controller, which the pipeline step watches by polling. It is saved with the step, so the process can
+ * be watched again after the controller restarts. The durable-task plugin is optional, so only {@link DetectDurableTask} touches its classes.
+ */
+public interface DetectRemoteProcess extends Serializable {
+    /**
+     * @return whether any new output was written
+     */
+    boolean writeLog(FilePath workspace, OutputStream sink) throws IOException, InterruptedException;
+
+    /**
+     * @return the exit code of Detect, or null while it is still running
+     */
+    @CheckForNull
+    Integer exitStatus(FilePath workspace, Launcher launcher, TaskListener listener) throws IOException, InterruptedException;
+
+    void cleanup(FilePath workspace) throws IOException, InterruptedException;
+
+    void stop(FilePath workspace, Launcher launcher) throws IOException, InterruptedException;
+
+}
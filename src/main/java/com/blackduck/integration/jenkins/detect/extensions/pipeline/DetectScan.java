@@ -0,0 +1,128 @@
+/*
+ * blackduck-detect
+ *
+ * Copyright (c) 2024 Black Duck Software, Inc.
+ *
+ * Use subject to the terms and conditions of the Black Duck Software End User Software License and Maintenance Agreement. All rights reserved worldwide.
+ */
+package com.blackduck.integration.jenkins.detect.extensions.pipeline;
+
+import com.blackduck.integration.jenkins.annotations.HelpMarkdown;
+import hudson.Extension;
+import hudson.model.AbstractDescribableImpl;
+import hudson.model.Descriptor;
+import org.apache.commons.lang3.StringUtils;
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+import javax.annotation.Nonnull;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+public class DetectScan extends AbstractDescribableImpl<DetectScan> implements Serializable {
+    private static final long serialVersionUID = -3340528116209446627L;
+
+    @HelpMarkdown("A short name for this scan. Every line this scan logs is prefixed with it.")
+    private final String name;
+
+    @HelpMarkdown("The directory to scan, passed to Detect as detect.source.path")
+    private String sourcePath;
+
+    @HelpMarkdown("The Black Duck project name, passed to Detect as detect.project.name")
+    private String projectName;
+
+    @HelpMarkdown("The Black Duck project version name, passed to Detect as detect.project.version.name")
+    private String projectVersionName;
+
+    @HelpMarkdown("Additional command line options for this scan only. They are added after the step's Detect properties.")
+    private String detectProperties;
+
+    @DataBoundConstructor
+    public DetectScan(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getSourcePath() {
+        return sourcePath;
+    }
+
+    @DataBoundSetter
+    public void setSourcePath(String sourcePath) {
+        this.sourcePath = sourcePath;
+    }
+
+    public String getProjectName() {
+        return projectName;
+    }
+
+    @DataBoundSetter
+    public void setProjectName(String projectName) {
+        this.projectName = projectName;
+    }
+
+    public String getProjectVersionName() {
+        return projectVersionName;
+    }
+
+    @DataBoundSetter
+    public void setProjectVersionName(String projectVersionName) {
+        this.projectVersionName = projectVersionName;
+    }
+
+    public String getDetectProperties() {
+        return detectProperties;
+    }
+
+    @DataBoundSetter
+    public void setDetectProperties(String detectProperties) {
+        this.detectProperties = detectProperties;
+    }
+
+    public String toArgumentString(String sharedDetectProperties) {
+        List<String> argumentLines = new ArrayList<>();
+        addIfNotBlank(argumentLines, sharedDetectProperties);
+        addIfNotBlank(argumentLines, toPropertyArgument("detect.source.path", sourcePath));
+        addIfNotBlank(argumentLines, toPropertyArgument("detect.project.name", projectName));
+        addIfNotBlank(argumentLines, toPropertyArgument("detect.project.version.name", projectVersionName));
+        addIfNotBlank(argumentLines, detectProperties);
+        return String.join("\n", argumentLines);
+    }
+
+    private String toPropertyArgument(String property, String value) {
+        if (StringUtils.isBlank(value)) {
+            return null;
+        }
+
+        // The argument goes through the same tokenizer as the Detect properties, so values with spaces have to be quoted with a quote they do not contain.
+        String argument = String.format("--%s=%s", property, value);
+        if (!value.contains("\"")) {
+            return "\"" + argument + "\"";
+        } else if (!value.contains("'")) {
+            return "'" + argument + "'";
+        }
+        return argument;
+    }
+
+    private void addIfNotBlank(List<String> argumentLines, String argumentLine) {
+        if (StringUtils.isNotBlank(argumentLine)) {
+            argumentLines.add(argumentLine);
+        }
+    }
+
+    @Symbol("detectScan")
+    @Extension
+    public static class DescriptorImpl extends Descriptor<DetectScan> {
+        @Nonnull
+        @Override
+        public String getDisplayName() {
+            return "Detect scan";
+        }
+    }
+
+}
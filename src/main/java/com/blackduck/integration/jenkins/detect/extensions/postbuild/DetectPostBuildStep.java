@@ -10,8 +10,13 @@ package com.blackduck.integration.jenkins.detect.extensions.postbuild;
 import com.blackduck.integration.jenkins.detect.extensions.DetectDownloadStrategy;
 import com.blackduck.integration.jenkins.detect.extensions.InheritFromGlobalDownloadStrategy;
 import com.blackduck.integration.jenkins.detect.service.DetectCommandsFactory;
+import com.blackduck.integration.jenkins.detect.service.DetectExecutionLimiter;
+import com.blackduck.integration.jenkins.detect.service.DetectIncrementalScanService;
 import com.blackduck.integration.jenkins.annotations.HelpMarkdown;
+import com.blackduck.integration.jenkins.extensions.JenkinsIntLogger;
+import hudson.EnvVars;
 import hudson.Extension;
+import hudson.FilePath;
 import hudson.Launcher;
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
@@ -37,6 +42,10 @@ public class DetectPostBuildStep extends Recorder {
     @Nullable
     private DetectDownloadStrategy downloadStrategyOverride;
 
+    @HelpMarkdown("If true (checked), Detect is skipped when the dependency manifests and lock files in the workspace are unchanged since this job's last successful scan.  \r\n" +
+        "Set the DETECT_PLUGIN_FORCE_SCAN environment variable to true to scan anyway.")
+    private boolean incrementalScan = false;
+
     @DataBoundConstructor
     public DetectPostBuildStep(String detectProperties) {
         this.detectProperties = detectProperties;
@@ -55,6 +64,15 @@ public class DetectPostBuildStep extends Recorder {
         this.downloadStrategyOverride = downloadStrategyOverride;
     }
 
+    public boolean getIncrementalScan() {
+        return incrementalScan;
+    }
+
+    @DataBoundSetter
+    public void setIncrementalScan(boolean incrementalScan) {
+        this.incrementalScan = incrementalScan;
+    }
+
     public DetectDownloadStrategy getDefaultDownloadStrategyOverride() {
         return new InheritFromGlobalDownloadStrategy();
     }
@@ -72,8 +90,31 @@ public class DetectPostBuildStep extends Recorder {
     // Freestyle
     @Override
     public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener) throws InterruptedException, IOException {
-        DetectCommandsFactory.fromPostBuild(build, launcher, listener)
-            .runDetect(detectProperties, downloadStrategyOverride);
+        JenkinsIntLogger logger = JenkinsIntLogger.logToListener(listener);
+        FilePath workspace = build.getWorkspace();
+        DetectIncrementalScanService incrementalScanService = null;
+        String fingerprint = null;
+        if (incrementalScan && null != workspace) {
+            EnvVars envVars = build.getEnvironment(listener);
+            incrementalScanService = DetectIncrementalScanService.forRun(logger, build);
+            String fingerprintInput = DetectIncrementalScanService.getFingerprintInput(detectProperties, envVars, downloadStrategyOverride, null);
+            fingerprint = incrementalScanService.computeFingerprint(workspace, fingerprintInput);
+            if (incrementalScanService.canSkip(fingerprint, DetectIncrementalScanService.isScanForced(envVars))) {
+                build.addAction(incrementalScanService.createCachedResultAction());
+                return true;
+            }
+        }
+
+        DetectExecutionLimiter.Permit permit = DetectExecutionLimiter.getInstance().acquireBlocking(logger, build.getBuiltOn());
+        try {
+            boolean succeeded = DetectCommandsFactory.fromPostBuild(build, launcher, listener)
+                .runDetect(detectProperties, downloadStrategyOverride);
+            if (succeeded && null != incrementalScanService) {
+                incrementalScanService.recordSuccessfulScan(fingerprint, build);
+            }
+        } finally {
+            permit.release();
+        }
         return true;
     }
 
@@ -0,0 +1,174 @@
+/*
+ * blackduck-detect
+ *
+ * Copyright (c) 2024 Black Duck Software, Inc.
+ *
+ * Use subject to the terms and conditions of the Black Duck Software End User Software License and Maintenance Agreement. All rights reserved worldwide.
+ */
+package com.blackduck.integration.jenkins.detect.extensions.tool;
+
+import com.blackduck.integration.jenkins.annotations.HelpMarkdown;
+import com.blackduck.integration.jenkins.detect.exception.DetectJenkinsException;
+import com.blackduck.integration.jenkins.detect.service.strategy.DetectAirGapZipInstaller;
+import com.blackduck.integration.jenkins.extensions.JenkinsIntLogger;
+import com.blackduck.integration.jenkins.wrapper.JenkinsWrapper;
+import com.blackduck.integration.rest.credentials.Credentials;
+import com.blackduck.integration.rest.credentials.CredentialsBuilder;
+import com.blackduck.integration.rest.proxy.ProxyInfo;
+import com.blackduck.integration.rest.proxy.ProxyInfoBuilder;
+import hudson.AbortException;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.Util;
+import hudson.model.Node;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import hudson.tools.ToolInstallation;
+import hudson.tools.ToolInstaller;
+import hudson.tools.ToolInstallerDescriptor;
+import hudson.util.FormValidation;
+import jenkins.MasterToSlaveFileCallable;
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.QueryParameter;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.regex.Pattern;
+
+public class DetectAirGapInstaller extends ToolInstaller {
+    public static final String DISPLAY_NAME = "Extract Detect Air Gap zip from a mirror";
+
+    private static final Pattern SHA256_PATTERN = Pattern.compile("[0-9a-fA-F]{64}");
+
+    @HelpMarkdown("The URL of the Detect Air Gap zip, such as a file under the controller's userContent or a local mirror. Agents download it directly, through the proxy configured in Jenkins for the URL.  \r\n" +
+        "A file: URL is read in place from the agent's file system.")
+    private final String url;
+
+    @HelpMarkdown("The SHA-256 of the Detect Air Gap zip. Nothing is installed unless the downloaded zip matches it, and changing it installs the zip again.")
+    private final String sha256;
+
+    @DataBoundConstructor
+    public DetectAirGapInstaller(String label, String url, String sha256) {
+        super(label);
+        this.url = Util.fixEmptyAndTrim(url);
+        this.sha256 = Util.fixEmptyAndTrim(sha256);
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    @Override
+    public FilePath performInstallation(ToolInstallation tool, Node node, TaskListener log) throws IOException, InterruptedException {
+        FilePath installDirectory = preferredLocation(tool, node);
+        JenkinsIntLogger logger = JenkinsIntLogger.logToListener(log);
+        installDirectory.act(new InstallCallable(logger, url, sha256, getProxyInfo(logger)));
+        return installDirectory;
+    }
+
+    private ProxyInfo getProxyInfo(JenkinsIntLogger logger) {
+        // The proxy configuration lives on the controller, which is where the installation is started.
+        try {
+            return JenkinsWrapper.initializeFromJenkinsJVM().getProxyHelper().getProxyInfo(url);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Black Duck Detect for Jenkins could not resolve proxy info from Jenkins because: " + e.getMessage());
+            logger.warn("Continuing without proxy...");
+            logger.trace("Stack trace:", e);
+            return ProxyInfo.NO_PROXY_INFO;
+        }
+    }
+
+    private static class InstallCallable extends MasterToSlaveFileCallable<Boolean> {
+        private static final long serialVersionUID = 4186573925437385316L;
+
+        private final JenkinsIntLogger logger;
+        private final String url;
+        private final String sha256;
+        // ProxyInfo itself isn't serializable, so it is unpacked here and rebuilt on the agent.
+        private final String proxyHost;
+        private final int proxyPort;
+        private final String proxyUsername;
+        private final String proxyPassword;
+        private final String proxyNtlmDomain;
+        private final String proxyNtlmWorkstation;
+
+        public InstallCallable(JenkinsIntLogger logger, String url, String sha256, ProxyInfo proxyInfo) {
+            this.logger = logger;
+            this.url = url;
+            this.sha256 = sha256;
+            this.proxyHost = proxyInfo.getHost().orElse(null);
+            this.proxyPort = proxyInfo.getPort();
+            this.proxyUsername = proxyInfo.getUsername().orElse(null);
+            this.proxyPassword = proxyInfo.getPassword().orElse(null);
+            this.proxyNtlmDomain = proxyInfo.getNtlmDomain().orElse(null);
+            this.proxyNtlmWorkstation = proxyInfo.getNtlmWorkstation().orElse(null);
+        }
+
+        @Override
+        public Boolean invoke(File file, VirtualChannel channel) throws IOException {
+            try {
+                return new DetectAirGapZipInstaller(logger, url, sha256, rebuildProxyInfo()).install(file.toPath());
+            } catch (DetectJenkinsException e) {
+                throw new AbortException(e.getMessage());
+            }
+        }
+
+        private ProxyInfo rebuildProxyInfo() {
+            CredentialsBuilder credentialsBuilder = Credentials.newBuilder();
+            credentialsBuilder.setUsernameAndPassword(proxyUsername, proxyPassword);
+            Credentials proxyCredentials = credentialsBuilder.build();
+
+            ProxyInfoBuilder proxyInfoBuilder = ProxyInfo.newBuilder();
+            proxyInfoBuilder.setHost(proxyHost);
+            proxyInfoBuilder.setPort(proxyPort);
+            proxyInfoBuilder.setCredentials(proxyCredentials);
+            proxyInfoBuilder.setNtlmDomain(proxyNtlmDomain);
+            proxyInfoBuilder.setNtlmWorkstation(proxyNtlmWorkstation);
+
+            return proxyInfoBuilder.build();
+        }
+    }
+
+    @Extension
+    @Symbol("detectAirGapZip")
+    public static final class DescriptorImpl extends ToolInstallerDescriptor<DetectAirGapInstaller> {
+        @Override
+        @Nonnull
+        public String getDisplayName() {
+            return DISPLAY_NAME;
+        }
+
+        @Override
+        public boolean isApplicable(Class<? extends ToolInstallation> toolType) {
+            return toolType == DetectAirGapInstallation.class;
+        }
+
+        public FormValidation doCheckUrl(@QueryParameter String value) {
+            if (null == Util.fixEmptyAndTrim(value)) {
+                return FormValidation.error("The URL of the Detect Air Gap zip is required.");
+            }
+            try {
+                new URL(value.trim());
+                return FormValidation.ok();
+            } catch (MalformedURLException e) {
+                return FormValidation.error("Not a valid URL: " + e.getMessage());
+            }
+        }
+
+        public FormValidation doCheckSha256(@QueryParameter String value) {
+            if (null == Util.fixEmptyAndTrim(value) || !SHA256_PATTERN.matcher(value.trim()).matches()) {
+                return FormValidation.error("The SHA-256 of the Detect Air Gap zip is required, as 64 hexadecimal digits.");
+            }
+            return FormValidation.ok();
+        }
+    }
+
+}
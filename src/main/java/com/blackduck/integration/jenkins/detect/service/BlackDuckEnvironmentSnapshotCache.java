@@ -0,0 +1,79 @@
+/*
+ * blackduck-detect
+ *
+ * Copyright (c) 2024 Black Duck Software, Inc.
+ *
+ * Use subject to the terms and conditions of the Black Duck Software End User Software License and Maintenance Agreement. All rights reserved worldwide.
+ */
+package com.blackduck.integration.jenkins.detect.service;
+
+import com.blackduck.integration.jenkins.detect.extensions.global.DetectGlobalConfig;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Holds the Black Duck environment variables resolved from the global configuration, so builds copy a map instead of resolving the proxy and looking up the API token
+ * every time. The snapshot is dropped whenever the global configuration, the proxy or a credentials store is saved, and in any case after
+ * {@link #TIME_TO_LIVE_MILLIS}, which bounds how long a token rotated by an external credentials provider can go unnoticed.
+ */
+public class BlackDuckEnvironmentSnapshotCache {
+    public static final long TIME_TO_LIVE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private static final BlackDuckEnvironmentSnapshotCache INSTANCE = new BlackDuckEnvironmentSnapshotCache(TIME_TO_LIVE_MILLIS);
+
+    private final long timeToLiveMillis;
+    private final AtomicLong generation = new AtomicLong();
+    private volatile Snapshot snapshot;
+
+    BlackDuckEnvironmentSnapshotCache(long timeToLiveMillis) {
+        this.timeToLiveMillis = timeToLiveMillis;
+    }
+
+    public static BlackDuckEnvironmentSnapshotCache getInstance() {
+        return INSTANCE;
+    }
+
+    public Map<String, String> getOrCreate(DetectGlobalConfig detectGlobalConfig, Supplier<Map<String, String>> environmentSupplier) {
+        Snapshot current = snapshot;
+        long now = System.currentTimeMillis();
+        if (null != current && current.detectGlobalConfig == detectGlobalConfig && current.generation == generation.get() && now - current.createdAt < timeToLiveMillis) {
+            return current.environment;
+        }
+
+        // An invalidation that happens while the environment is being resolved wins, so a snapshot of the old configuration is never stored.
+        long expectedGeneration = generation.get();
+        Map<String, String> environment = Collections.unmodifiableMap(environmentSupplier.get());
+        synchronized (this) {
+            if (expectedGeneration == generation.get()) {
+                snapshot = new Snapshot(detectGlobalConfig, expectedGeneration, now, environment);
+            }
+        }
+        return environment;
+    }
+
+    public void invalidate() {
+        synchronized (this) {
+            generation.incrementAndGet();
+            snapshot = null;
+        }
+    }
+
+    private static class Snapshot {
+        private final DetectGlobalConfig detectGlobalConfig;
+        private final long generation;
+        private final long createdAt;
+        private final Map<String, String> environment;
+
+        private Snapshot(DetectGlobalConfig detectGlobalConfig, long generation, long createdAt, Map<String, String> environment) {
+            this.detectGlobalConfig = detectGlobalConfig;
+            this.generation = generation;
+            this.createdAt = createdAt;
+            this.environment = environment;
+        }
+    }
+
+}
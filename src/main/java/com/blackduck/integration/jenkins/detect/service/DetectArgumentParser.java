@@ -0,0 +1,180 @@
+/*
+ * blackduck-detect
+ *
+ * Copyright (c) 2024 Black Duck Software, Inc.
+ *
+ * Use subject to the terms and conditions of the Black Duck Software End User Software License and Maintenance Agreement. All rights reserved worldwide.
+ */
+package com.blackduck.integration.jenkins.detect.service;
+
+import com.blackduck.integration.jenkins.extensions.JenkinsIntLogger;
+import org.apache.tools.ant.BuildException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Turns the Detect properties a user configured into Detect arguments. The result is the same as tokenizing with Ant's Commandline.translateCommandline, splitting
+ * every token on line breaks, expanding each piece with Jenkins' Util.replaceMacro and escaping property values. Tokenizing does not depend on the environment, so
+ * each distinct properties string is compiled once into a {@link DetectArgumentTemplate} and later builds only substitute their variables.
+ */
+public class DetectArgumentParser {
+    public static final int TEMPLATE_CACHE_CAPACITY = 256;
+
+    private static final DetectArgumentTemplateCache TEMPLATE_CACHE = new DetectArgumentTemplateCache(TEMPLATE_CACHE_CAPACITY);
+
+    private static final int NORMAL = 0;
+    private static final int IN_QUOTE = 1;
+    private static final int IN_DOUBLE_QUOTE = 2;
+
+    private final JenkinsIntLogger logger;
+    private final DetectArgumentTemplateCache templateCache;
+
+    public DetectArgumentParser(JenkinsIntLogger logger) {
+        this(logger, TEMPLATE_CACHE);
+    }
+
+    public DetectArgumentParser(JenkinsIntLogger logger, DetectArgumentTemplateCache templateCache) {
+        this.logger = logger;
+        this.templateCache = templateCache;
+    }
+
+    public static DetectArgumentTemplateCache getTemplateCache() {
+        return TEMPLATE_CACHE;
+    }
+
+    public List<String> parse(Map<String, String> environmentVariables, Function<String, String> argumentEscaper, String argumentString) {
+        if (argumentString == null || argumentString.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        DetectArgumentTemplate detectArgumentTemplate = templateCache.getOrCompile(argumentString, DetectArgumentParser::compile);
+        logger.debug(String.format("Detect argument templates: %d cached, %d hits, %d misses", templateCache.size(), templateCache.getHitCount(), templateCache.getMissCount()));
+
+        return detectArgumentTemplate.render(logger, environmentVariables, argumentEscaper);
+    }
+
+    public static DetectArgumentTemplate compile(String argumentString) {
+        List<DetectArgumentTemplate.Piece> pieces = new ArrayList<>();
+        StringBuilder piece = new StringBuilder();
+        int state = NORMAL;
+
+        for (int i = 0; i < argumentString.length(); i++) {
+            char c = argumentString.charAt(i);
+            if (state == IN_QUOTE || state == IN_DOUBLE_QUOTE) {
+                if ((state == IN_QUOTE && c == '\'') || (state == IN_DOUBLE_QUOTE && c == '"')) {
+                    state = NORMAL;
+                } else if (c == '\n') {
+                    endPiece(piece, true, pieces);
+                } else {
+                    piece.append(c);
+                }
+                continue;
+            }
+
+            if (c == '\'') {
+                state = IN_QUOTE;
+            } else if (c == '"') {
+                state = IN_DOUBLE_QUOTE;
+            } else if (c == ' ') {
+                // Ant keeps empty quoted tokens, but they would be dropped as blank arguments anyway, so every space simply ends the current piece.
+                endPiece(piece, false, pieces);
+            } else if (c == '\n') {
+                endPiece(piece, true, pieces);
+            } else {
+                piece.append(c);
+            }
+        }
+
+        if (state != NORMAL) {
+            throw new BuildException("unbalanced quotes in " + argumentString);
+        }
+        endPiece(piece, false, pieces);
+
+        return new DetectArgumentTemplate(pieces);
+    }
+
+    private static void endPiece(StringBuilder piece, boolean endsWithLineFeed, List<DetectArgumentTemplate.Piece> pieces) {
+        // Line breaks are \r?\n, so a carriage return directly before the line feed belongs to the break rather than the argument.
+        int pieceLength = piece.length();
+        if (pieceLength > 0 && piece.charAt(pieceLength - 1) == '\r' && endsWithLineFeed) {
+            pieceLength--;
+        }
+
+        if (pieceLength > 0) {
+            pieces.add(compileMacros(piece, pieceLength));
+        }
+        piece.setLength(0);
+    }
+
+    private static DetectArgumentTemplate.Piece compileMacros(CharSequence piece, int pieceLength) {
+        List<String> literals = new ArrayList<>();
+        List<String> variableNames = new ArrayList<>();
+        List<String> variableReferences = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+
+        int i = 0;
+        while (i < pieceLength) {
+            char c = piece.charAt(i);
+            if (c != '$' || i + 1 >= pieceLength) {
+                literal.append(c);
+                i++;
+                continue;
+            }
+
+            char next = piece.charAt(i + 1);
+            int nameStart = -1;
+            int nameEnd = -1;
+            int referenceEnd = -1;
+            if (next == '$') {
+                literal.append('$');
+                i += 2;
+                continue;
+            } else if (isNameCharacter(next)) {
+                nameStart = i + 1;
+                nameEnd = i + 2;
+                while (nameEnd < pieceLength && isNameCharacter(piece.charAt(nameEnd))) {
+                    nameEnd++;
+                }
+                referenceEnd = nameEnd;
+            } else if (next == '{') {
+                int end = i + 2;
+                while (end < pieceLength && (isNameCharacter(piece.charAt(end)) || piece.charAt(end) == '.')) {
+                    end++;
+                }
+                if (end > i + 2 && end < pieceLength && piece.charAt(end) == '}') {
+                    nameStart = i + 2;
+                    nameEnd = end;
+                    referenceEnd = end + 1;
+                }
+            }
+
+            if (nameStart < 0) {
+                literal.append(c);
+                i++;
+                continue;
+            }
+
+            literals.add(literal.toString());
+            literal.setLength(0);
+            variableNames.add(piece.subSequence(nameStart, nameEnd).toString());
+            // Unresolved variables are left in the argument exactly as they were written.
+            variableReferences.add(piece.subSequence(i, referenceEnd).toString());
+            i = referenceEnd;
+        }
+        literals.add(literal.toString());
+
+        return new DetectArgumentTemplate.Piece(
+            literals.toArray(new String[0]),
+            variableNames.toArray(new String[0]),
+            variableReferences.toArray(new String[0])
+        );
+    }
+
+    private static boolean isNameCharacter(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+}
@@ -12,13 +12,11 @@ import com.blackduck.integration.jenkins.extensions.JenkinsIntLogger;
 import com.blackduck.integration.jenkins.wrapper.JenkinsVersionHelper;
 import com.blackduck.integration.phonehome.request.PhoneHomeRequestBody;
 import com.blackduck.integration.util.IntEnvironmentVariables;
-import hudson.Util;
-import org.apache.commons.lang3.StringUtils;
-import org.apache.tools.ant.types.Commandline;
 
-import java.util.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
 public class DetectArgumentService {
     private static final String DETECT_LOGLEVEL_ARGUMENT = "logging.level.detect";
@@ -26,10 +24,12 @@ public class DetectArgumentService {
     private static final String DETECT_PHONEHOME_PLUGIN_VERSION_ARGUMENT = "detect.phone.home.passthrough.jenkins.plugin.version";
     private final JenkinsIntLogger logger;
     private final JenkinsVersionHelper jenkinsVersionHelper;
+    private final DetectArgumentParser detectArgumentParser;
 
     public DetectArgumentService(JenkinsIntLogger logger, JenkinsVersionHelper jenkinsVersionHelper) {
         this.logger = logger;
         this.jenkinsVersionHelper = jenkinsVersionHelper;
+        this.detectArgumentParser = new DetectArgumentParser(logger);
     }
 
     public List<String> getDetectArguments(
@@ -38,17 +38,27 @@ public class DetectArgumentService {
         List<String> initialArguments,
         String detectArgumentString
     ) {
+        Function<String, String> argumentEscaper = getArgumentEscaper(intEnvironmentVariables, strategyEscaper);
+        List<String> parsedArguments = parseDetectArgumentString(intEnvironmentVariables.getVariables(), argumentEscaper, detectArgumentString);
+        return combineDetectArguments(argumentEscaper, initialArguments, parsedArguments);
+    }
+
+    public Function<String, String> getArgumentEscaper(IntEnvironmentVariables intEnvironmentVariables, Function<String, String> strategyEscaper) {
         boolean shouldEscape = Boolean.parseBoolean(intEnvironmentVariables.getValue(DetectJenkinsEnvironmentVariable.SHOULD_ESCAPE.stringValue(), "true"));
-        Function<String, String> argumentEscaper;
         if (shouldEscape) {
-            argumentEscaper = strategyEscaper;
-        } else {
-            argumentEscaper = Function.identity();
+            return strategyEscaper;
         }
+        return Function.identity();
+    }
 
+    /**
+     * Completes the arguments parsed with {@link #parseDetectArgumentString} once the strategy's initial arguments are known. Parsing does not depend on them, so
+     * callers can parse while the strategy is still being set up on the agent.
+     */
+    public List<String> combineDetectArguments(Function<String, String> argumentEscaper, List<String> initialArguments, List<String> parsedArguments) {
         List<String> detectArguments = new ArrayList<>();
         detectArguments.addAll(initialArguments);
-        detectArguments.addAll(parseDetectArgumentString(intEnvironmentVariables.getVariables(), argumentEscaper, detectArgumentString));
+        detectArguments.addAll(parsedArguments);
 
         if (detectArguments.stream().noneMatch(argument -> argument.contains(DETECT_LOGLEVEL_ARGUMENT))) {
             detectArguments.add(asEscapedDetectArgument(argumentEscaper, DETECT_LOGLEVEL_ARGUMENT, logger.getLogLevel().toString()));
@@ -70,38 +80,6 @@ public class DetectArgumentService {
     public List<String> parseDetectArgumentString(
         Map<String, String> environmentVariables, Function<String, String> argumentEscaper, String argumentString
     ) {
-        return Arrays.stream(Commandline.translateCommandline(argumentString))
-            .map(argumentBlobString -> argumentBlobString.split("\\r?\\n"))
-            .flatMap(Arrays::stream)
-            .map(argument -> Util.replaceMacro(argument, environmentVariables))
-            .filter(this::validateExpandedArguments)
-            .filter(Objects::nonNull)
-            .map(argument -> escapeArgument(argument, argumentEscaper))
-            .collect(Collectors.toList());
-    }
-
-    private boolean validateExpandedArguments(String argument) {
-        if (StringUtils.isBlank(argument)) {
-            return false;
-        }
-
-        if (argument.contains("$")) {
-            logger.warn("A variable may not have been properly replaced in resolved argument: " + argument + ". Make sure the variable has been properly defined.");
-        }
-
-        return true;
-    }
-
-    private String escapeArgument(String argument, Function<String, String> escaper) {
-        // Assume a cleaned argument, then test
-        String cleanedArg = argument;
-        if (argument.startsWith("--") && argument.contains("=") && !argument.contains("&")) {
-            String[] splitArgument = argument.split("=", 2);
-            //The api token should not be escaped... if it contains "=" or "==" padding, it would cause probs.
-            String endArg = splitArgument[0].contains("blackduck.api.token") ? splitArgument[1] : escaper.apply(splitArgument[1]);
-            cleanedArg = splitArgument[0] + "=" + endArg;
-        }
-
-        return cleanedArg;
+        return detectArgumentParser.parse(environmentVariables, argumentEscaper, argumentString);
     }
 }
@@ -0,0 +1,113 @@
+/*
+ * blackduck-detect
+ *
+ * Copyright (c) 2024 Black Duck Software, Inc.
+ *
+ * Use subject to the terms and conditions of the Black Duck Software End User Software License and Maintenance Agreement. All rights reserved worldwide.
+ */
+package com.blackduck.integration.jenkins.detect.service;
+
+import com.blackduck.integration.jenkins.extensions.JenkinsIntLogger;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A tokenized Detect properties string: every argument is a run of literal text with variable slots in between. Templates are immutable and shared between builds.
+ */
+public class DetectArgumentTemplate {
+    private static final String API_TOKEN_PROPERTY = "blackduck.api.token";
+
+    private final List<Piece> pieces;
+
+    public DetectArgumentTemplate(List<Piece> pieces) {
+        this.pieces = Collections.unmodifiableList(new ArrayList<>(pieces));
+    }
+
+    public List<Piece> getPieces() {
+        return pieces;
+    }
+
+    public List<String> render(JenkinsIntLogger logger, Map<String, String> environmentVariables, Function<String, String> argumentEscaper) {
+        List<String> arguments = new ArrayList<>(pieces.size());
+        List<String> unresolvedArguments = new ArrayList<>();
+        StringBuilder expanded = new StringBuilder();
+
+        for (Piece piece : pieces) {
+            String argument = piece.expand(environmentVariables, expanded);
+            if (StringUtils.isBlank(argument)) {
+                continue;
+            }
+
+            if (argument.indexOf('$') >= 0) {
+                unresolvedArguments.add(argument);
+            }
+            arguments.add(escapeArgument(argument, argumentEscaper));
+        }
+
+        for (String unresolvedArgument : unresolvedArguments) {
+            logger.warn("A variable may not have been properly replaced in resolved argument: " + unresolvedArgument + ". Make sure the variable has been properly defined.");
+        }
+
+        return arguments;
+    }
+
+    private String escapeArgument(String argument, Function<String, String> argumentEscaper) {
+        int separatorIndex = argument.indexOf('=');
+        if (!argument.startsWith("--") || separatorIndex < 0 || argument.indexOf('&') >= 0) {
+            return argument;
+        }
+
+        // The api token should not be escaped... if it contains "=" or "==" padding, it would cause probs.
+        int apiTokenIndex = argument.indexOf(API_TOKEN_PROPERTY);
+        if (apiTokenIndex >= 0 && apiTokenIndex + API_TOKEN_PROPERTY.length() <= separatorIndex) {
+            return argument;
+        }
+
+        String value = argument.substring(separatorIndex + 1);
+        String escapedValue = argumentEscaper.apply(value);
+        if (value.equals(escapedValue)) {
+            return argument;
+        }
+        return new StringBuilder(separatorIndex + 1 + escapedValue.length())
+            .append(argument, 0, separatorIndex + 1)
+            .append(escapedValue)
+            .toString();
+    }
+
+    public static class Piece {
+        private final String[] literals;
+        private final String[] variableNames;
+        private final String[] variableReferences;
+
+        public Piece(String[] literals, String[] variableNames, String[] variableReferences) {
+            this.literals = literals;
+            this.variableNames = variableNames;
+            this.variableReferences = variableReferences;
+        }
+
+        public boolean hasVariables() {
+            return variableNames.length > 0;
+        }
+
+        private String expand(Map<String, String> environmentVariables, StringBuilder expanded) {
+            if (!hasVariables()) {
+                return literals[0];
+            }
+
+            expanded.setLength(0);
+            expanded.append(literals[0]);
+            for (int i = 0; i < variableNames.length; i++) {
+                String value = environmentVariables.get(variableNames[i]);
+                expanded.append(value != null ? value : variableReferences[i]);
+                expanded.append(literals[i + 1]);
+            }
+            return expanded.toString();
+        }
+    }
+
+}
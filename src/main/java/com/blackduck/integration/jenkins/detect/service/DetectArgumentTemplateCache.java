@@ -0,0 +1,72 @@
+/*
+ * blackduck-detect
+ *
+ * Copyright (c) 2024 Black Duck Software, Inc.
+ *
+ * Use subject to the terms and conditions of the Black Duck Software End User Software License and Maintenance Agreement. All rights reserved worldwide.
+ */
+package com.blackduck.integration.jenkins.detect.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Least recently used cache of compiled Detect argument templates, keyed by the properties string they were compiled from.
+ */
+public class DetectArgumentTemplateCache {
+    private final Map<String, DetectArgumentTemplate> templates;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    public DetectArgumentTemplateCache(int capacity) {
+        this.templates = new LinkedHashMap<String, DetectArgumentTemplate>(16, 0.75f, true) {
+            private static final long serialVersionUID = 4870734327416294711L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, DetectArgumentTemplate> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public DetectArgumentTemplate getOrCompile(String argumentString, Function<String, DetectArgumentTemplate> compiler) {
+        synchronized (templates) {
+            DetectArgumentTemplate detectArgumentTemplate = templates.get(argumentString);
+            if (detectArgumentTemplate != null) {
+                hitCount.incrementAndGet();
+                return detectArgumentTemplate;
+            }
+        }
+
+        // Compiling outside the lock keeps one long properties string from holding up every other build; a duplicate compile is harmless.
+        missCount.incrementAndGet();
+        DetectArgumentTemplate detectArgumentTemplate = compiler.apply(argumentString);
+        synchronized (templates) {
+            templates.put(argumentString, detectArgumentTemplate);
+        }
+        return detectArgumentTemplate;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public int size() {
+        synchronized (templates) {
+            return templates.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (templates) {
+            templates.clear();
+        }
+    }
+
+}
@@ -10,6 +10,7 @@ package com.blackduck.integration.jenkins.detect.service;
 import com.blackduck.integration.jenkins.detect.DetectFreestyleCommands;
 import com.blackduck.integration.jenkins.detect.DetectPipelineCommands;
 import com.blackduck.integration.jenkins.detect.DetectRunner;
+import com.blackduck.integration.jenkins.detect.service.strategy.DetectArtifactDistributor;
 import com.blackduck.integration.jenkins.detect.service.strategy.DetectStrategyService;
 import com.blackduck.integration.jenkins.extensions.JenkinsIntLogger;
 import com.blackduck.integration.jenkins.service.JenkinsBuildService;
@@ -23,25 +24,35 @@ import hudson.EnvVars;
 import hudson.FilePath;
 import hudson.Launcher;
 import hudson.model.AbstractBuild;
+import hudson.model.Action;
 import hudson.model.BuildListener;
 import hudson.model.Node;
+import hudson.model.Run;
 import hudson.model.TaskListener;
 import hudson.slaves.WorkspaceList;
+import jenkins.model.Jenkins;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 public class DetectCommandsFactory {
     public static final String NULL_WORKSPACE = "Detect cannot be executed when the workspace is null";
+    public static final String TOOLS_DIRECTORY = "tools";
+    public static final String CONTROLLER_CACHE_DIRECTORY = "caches/blackduck-detect";
     private final JenkinsWrapper jenkinsWrapper;
     private final TaskListener listener;
     private final EnvVars envVars;
     private final FilePath workspace;
+    private final Node node;
     private final JenkinsIntLogger jenkinsIntLogger;
 
-    private DetectCommandsFactory(JenkinsWrapper jenkinsWrapper, TaskListener listener, EnvVars envVars, FilePath workspace) throws AbortException {
+    private DetectCommandsFactory(JenkinsWrapper jenkinsWrapper, TaskListener listener, EnvVars envVars, FilePath workspace, Node node) throws AbortException {
         this.jenkinsWrapper = jenkinsWrapper;
         this.listener = listener;
         this.envVars = envVars;
+        this.node = node;
 
         if (null == workspace) {
             throw new AbortException(NULL_WORKSPACE);
@@ -55,7 +66,8 @@ public class DetectCommandsFactory {
             JenkinsWrapper.initializeFromJenkinsJVM(),
             listener,
             build.getEnvironment(listener),
-            build.getWorkspace()
+            build.getWorkspace(),
+            build.getBuiltOn()
         );
 
         JenkinsFreestyleServicesFactory jenkinsFreestyleServicesFactory = new JenkinsFreestyleServicesFactory(
@@ -72,11 +84,23 @@ public class DetectCommandsFactory {
         JenkinsConfigService jenkinsConfigService = jenkinsFreestyleServicesFactory.createJenkinsConfigService();
         JenkinsRemotingService jenkinsRemotingService = jenkinsFreestyleServicesFactory.createJenkinsRemotingService();
 
-        return new DetectFreestyleCommands(jenkinsBuildService, detectCommandsFactory.createDetectRunner(jenkinsConfigService, jenkinsRemotingService));
+        FilePath workspace = detectCommandsFactory.workspace;
+        DetectRunner detectRunner = detectCommandsFactory.createDetectRunner(
+            jenkinsConfigService,
+            jenkinsRemotingService,
+            detectListener -> new JenkinsRemotingService(launcher, workspace, detectListener),
+            detectCommandsFactory.createActionPublisher(build)
+        );
+        return new DetectFreestyleCommands(jenkinsBuildService, detectRunner);
     }
 
     public static DetectPipelineCommands fromPipeline(TaskListener listener, EnvVars envVars, Launcher launcher, Node node, FilePath workspace) throws AbortException {
-        DetectCommandsFactory detectCommandsFactory = new DetectCommandsFactory(JenkinsWrapper.initializeFromJenkinsJVM(), listener, envVars, workspace);
+        return fromPipeline(listener, envVars, launcher, node, workspace, null);
+    }
+
+    public static DetectPipelineCommands fromPipeline(TaskListener listener, EnvVars envVars, Launcher launcher, Node node, FilePath workspace, @Nullable Run<?, ?> run)
+        throws AbortException {
+        DetectCommandsFactory detectCommandsFactory = new DetectCommandsFactory(JenkinsWrapper.initializeFromJenkinsJVM(), listener, envVars, workspace, node);
 
         JenkinsFreestyleServicesFactory jenkinsFreestyleServicesFactory = new JenkinsFreestyleServicesFactory(
             detectCommandsFactory.getLogger(),
@@ -90,19 +114,42 @@ public class DetectCommandsFactory {
         JenkinsConfigService jenkinsConfigService = jenkinsFreestyleServicesFactory.createJenkinsConfigService();
         JenkinsRemotingService jenkinsRemotingService = jenkinsFreestyleServicesFactory.createJenkinsRemotingService();
 
-        return new DetectPipelineCommands(detectCommandsFactory.createDetectRunner(jenkinsConfigService, jenkinsRemotingService), detectCommandsFactory.getLogger());
+        DetectRunner detectRunner = detectCommandsFactory.createDetectRunner(
+            jenkinsConfigService,
+            jenkinsRemotingService,
+            detectListener -> new JenkinsRemotingService(launcher, workspace, detectListener),
+            detectCommandsFactory.createActionPublisher(run)
+        );
+        return new DetectPipelineCommands(detectRunner, detectCommandsFactory.getLogger());
     }
 
-    private DetectRunner createDetectRunner(JenkinsConfigService jenkinsConfigService, JenkinsRemotingService jenkinsRemotingService) {
+    private DetectRunner createDetectRunner(
+        JenkinsConfigService jenkinsConfigService,
+        JenkinsRemotingService jenkinsRemotingService,
+        Function<TaskListener, JenkinsRemotingService> remotingServiceFactory,
+        Consumer<Action> actionConsumer
+    ) {
         return new DetectRunner(
             createDetectEnvironmentService(jenkinsConfigService),
             jenkinsRemotingService,
             createDetectStrategyService(jenkinsConfigService),
             createDetectArgumentService(),
-            getLogger()
+            getLogger(),
+            remotingServiceFactory,
+            actionConsumer,
+            node,
+            () -> DetectExecutionLimiter.getInstance().acquire(getLogger(), node)
         );
     }
 
+    private Consumer<Action> createActionPublisher(@Nullable Run<?, ?> run) {
+        return action -> {
+            if (null != run) {
+                run.addAction(action);
+            }
+        };
+    }
+
     private DetectArgumentService createDetectArgumentService() {
         return new DetectArgumentService(getLogger(), jenkinsWrapper.getVersionHelper());
     }
@@ -119,15 +166,28 @@ public class DetectCommandsFactory {
     }
 
     private DetectStrategyService createDetectStrategyService(JenkinsConfigService jenkinsConfigService) {
-        FilePath workspaceTempDir = WorkspaceList.tempDir(this.workspace);
-        String workSpaceTempDirPath;
+        FilePath toolsDirectory = getToolsDirectory();
+        DetectArtifactDistributor detectArtifactDistributor = new DetectArtifactDistributor(
+            getLogger(),
+            jenkinsWrapper.getProxyHelper(),
+            Jenkins.get().getRootDir().toPath().resolve(CONTROLLER_CACHE_DIRECTORY),
+            toolsDirectory
+        );
+        return new DetectStrategyService(getLogger(), jenkinsWrapper.getProxyHelper(), toolsDirectory.getRemote(), jenkinsConfigService, detectArtifactDistributor);
+    }
 
-        if(workspaceTempDir != null) {
-            workSpaceTempDirPath = workspaceTempDir.getRemote();
-            return new DetectStrategyService(getLogger(), jenkinsWrapper.getProxyHelper(), workSpaceTempDirPath, jenkinsConfigService);
-        } else {
+    private FilePath getToolsDirectory() {
+        // Downloaded Detect artifacts are shared by every build on the node, so they live next to the node's other tools rather than in each workspace.
+        FilePath nodeRootPath = null != node ? node.getRootPath() : null;
+        if (null != nodeRootPath) {
+            return nodeRootPath.child(TOOLS_DIRECTORY);
+        }
+
+        FilePath workspaceTempDir = WorkspaceList.tempDir(this.workspace);
+        if (null == workspaceTempDir) {
             throw new RuntimeException("Work Space Directory Path returned null.");
         }
+        return workspaceTempDir;
     }
 
     private JenkinsIntLogger setLogger() {
@@ -0,0 +1,248 @@
+/*
+ * blackduck-detect
+ *
+ * Copyright (c) 2024 Black Duck Software, Inc.
+ *
+ * Use subject to the terms and conditions of the Black Duck Software End User Software License and Maintenance Agreement. All rights reserved worldwide.
+ */
+package com.blackduck.integration.jenkins.detect.service;
+
+import com.blackduck.integration.jenkins.detect.service.strategy.DetectArtifactDistributor;
+import com.blackduck.integration.jenkins.detect.service.strategy.DetectArtifactStore;
+import com.blackduck.integration.jenkins.detect.service.strategy.DetectScriptCache;
+import com.blackduck.integration.jenkins.detect.service.strategy.DetectScriptStrategy;
+import com.blackduck.integration.jenkins.detect.service.strategy.RemoteJavaService;
+import hudson.Util;
+import jenkins.security.MasterToSlaveCallable;
+import org.apache.commons.lang3.StringUtils;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prunes what Detect leaves behind on a node: the output of past Detect runs, the scripts and jars downloaded into the node's Detect installation, the Detect
+ * installations kept in workspace temporary directories, and the class data sharing archives recorded for warm starts. Entries unused for
+ * longer than the maximum age are removed first, then the least recently used ones until the rest fits in the quota. An entry counts as used when anything in it was
+ * last modified, and entries used within the last hour are never removed since a build may still be writing to them. Nor is a Detect version a build is still
+ * running from, which it holds a lease on in the artifact store.
+ */
+public class DetectDiskCleanupCallable extends MasterToSlaveCallable<DetectDiskCleanupCallable.Result, IOException> {
+    public static final String RUNS_DIRECTORY = "runs";
+    public static final long MIN_IDLE_MILLIS = TimeUnit.HOURS.toMillis(1);
+    // Each entry of these directories of the Detect installation is downloaded again whenever it is missing.
+    public static final List<String> INSTALLATION_DIRECTORIES = Arrays.asList(
+        DetectScriptCache.CACHE_DIRECTORY,
+        DetectArtifactDistributor.DISTRIBUTED_DIRECTORY,
+        DetectArtifactStore.STORE_DIRECTORY
+    );
+
+    private static final long serialVersionUID = -3905816232486720351L;
+
+    private final String toolsDirectory;
+    private final ArrayList<String> outputDirectories;
+    private final ArrayList<String> workspaceDirectories;
+    private final String classDataArchiveDirectory;
+    private final long maxAgeMillis;
+    private final long quotaBytes;
+
+    /**
+     * @param outputDirectories    the Detect output directories to prune, or none for the ones Detect uses by default on the node
+     * @param workspaceDirectories the workspaces of the node, whose temporary directories may hold a Detect installation
+     */
+    public DetectDiskCleanupCallable(String toolsDirectory, List<String> outputDirectories, List<String> workspaceDirectories, long maxAgeMillis, long quotaBytes) {
+        this(toolsDirectory, outputDirectories, workspaceDirectories, null, maxAgeMillis, quotaBytes);
+    }
+
+    DetectDiskCleanupCallable(
+        String toolsDirectory,
+        List<String> outputDirectories,
+        List<String> workspaceDirectories,
+        @Nullable String classDataArchiveDirectory,
+        long maxAgeMillis,
+        long quotaBytes
+    ) {
+        this.toolsDirectory = toolsDirectory;
+        this.outputDirectories = new ArrayList<>(outputDirectories);
+        this.workspaceDirectories = new ArrayList<>(workspaceDirectories);
+        this.classDataArchiveDirectory = classDataArchiveDirectory;
+        this.maxAgeMillis = maxAgeMillis;
+        this.quotaBytes = quotaBytes;
+    }
+
+    @Override
+    public Result call() throws IOException {
+        List<CleanupEntry> cleanupEntries = new ArrayList<>();
+        Path installationDirectory = Paths.get(toolsDirectory, DetectScriptStrategy.DETECT_INSTALL_DIRECTORY);
+        for (String installationSubdirectory : INSTALLATION_DIRECTORIES) {
+            collectEntries(installationDirectory.resolve(installationSubdirectory), cleanupEntries);
+        }
+        for (String outputDirectory : getOutputDirectories()) {
+            collectEntries(Paths.get(outputDirectory, RUNS_DIRECTORY), cleanupEntries);
+        }
+        for (String workspaceDirectory : workspaceDirectories) {
+            collectWorkspaceInstallations(Paths.get(workspaceDirectory), cleanupEntries);
+        }
+        // The archives are recorded in the temporary directory of the agent's JVM, which is where this runs.
+        String archiveDirectory = StringUtils.defaultIfBlank(classDataArchiveDirectory, System.getProperty("java.io.tmpdir"));
+        collectEntries(Paths.get(archiveDirectory, RemoteJavaService.CLASS_DATA_ARCHIVE_DIRECTORY), cleanupEntries);
+
+        long now = System.currentTimeMillis();
+        long totalBytes = cleanupEntries.stream().mapToLong(cleanupEntry -> cleanupEntry.sizeBytes).sum();
+        long reclaimedBytes = 0L;
+        int removedEntries = 0;
+
+        cleanupEntries.sort(Comparator.comparingLong(cleanupEntry -> cleanupEntry.lastUsed));
+        for (CleanupEntry cleanupEntry : cleanupEntries) {
+            long idleMillis = now - cleanupEntry.lastUsed;
+            boolean expired = maxAgeMillis > 0 && idleMillis > maxAgeMillis;
+            boolean overQuota = quotaBytes > 0 && totalBytes > quotaBytes;
+            if (idleMillis < MIN_IDLE_MILLIS || (!expired && !overQuota) || DetectArtifactStore.isLeased(cleanupEntry.path)) {
+                continue;
+            }
+
+            try {
+                Util.deleteRecursive(cleanupEntry.path.toFile());
+            } catch (IOException e) {
+                // A file still held open, as happens on Windows, keeps the entry until the next cleanup without stopping this one.
+                continue;
+            }
+            totalBytes -= cleanupEntry.sizeBytes;
+            reclaimedBytes += cleanupEntry.sizeBytes;
+            removedEntries++;
+        }
+
+        return new Result(reclaimedBytes, removedEntries, totalBytes);
+    }
+
+    private Set<String> getOutputDirectories() {
+        Set<String> candidateDirectories = new LinkedHashSet<>(outputDirectories);
+        if (!candidateDirectories.isEmpty()) {
+            return candidateDirectories;
+        }
+
+        // Detect writes to the home directory of the user running the agent unless told otherwise.
+        candidateDirectories.add(new File(System.getProperty("user.home"), DetectStatusJsonCallable.DEFAULT_OUTPUT_DIRECTORY).getPath());
+        String environmentOutputPath = System.getenv(DetectStatusJsonCallable.OUTPUT_PATH_ENVIRONMENT_VARIABLE);
+        if (StringUtils.isNotBlank(environmentOutputPath)) {
+            candidateDirectories.add(environmentOutputPath);
+        }
+        return candidateDirectories;
+    }
+
+    private static void collectEntries(Path directory, List<CleanupEntry> cleanupEntries) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                cleanupEntries.add(measure(entry));
+            }
+        }
+    }
+
+    private static void collectWorkspaceInstallations(Path workspace, List<CleanupEntry> cleanupEntries) throws IOException {
+        // Older plugin versions installed Detect in every workspace's temporary directory, as builds still do on a node without a root directory. The workspaces
+        // of concurrent builds have temporary directories of their own, such as job@2@tmp. Such an installation is downloaded again whenever it is missing, so it
+        // is removed as a whole.
+        Path parentDirectory = workspace.getParent();
+        Path workspaceName = workspace.getFileName();
+        if (null == parentDirectory || null == workspaceName || !Files.isDirectory(parentDirectory)) {
+            return;
+        }
+
+        String temporaryDirectoryPrefix = workspaceName + "@";
+        DirectoryStream.Filter<Path> temporaryDirectoryFilter = sibling -> {
+            String siblingName = sibling.getFileName().toString();
+            return siblingName.startsWith(temporaryDirectoryPrefix) && siblingName.endsWith("@tmp");
+        };
+        try (DirectoryStream<Path> temporaryDirectories = Files.newDirectoryStream(parentDirectory, temporaryDirectoryFilter)) {
+            for (Path temporaryDirectory : temporaryDirectories) {
+                Path installationDirectory = temporaryDirectory.resolve(DetectScriptStrategy.DETECT_INSTALL_DIRECTORY);
+                if (Files.isDirectory(installationDirectory)) {
+                    cleanupEntries.add(measure(installationDirectory));
+                }
+            }
+        }
+    }
+
+    private static CleanupEntry measure(Path entry) throws IOException {
+        long[] sizeAndLastUsed = new long[2];
+        Files.walkFileTree(entry, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) {
+                sizeAndLastUsed[1] = Math.max(sizeAndLastUsed[1], attributes.lastModifiedTime().toMillis());
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                sizeAndLastUsed[0] += attributes.size();
+                sizeAndLastUsed[1] = Math.max(sizeAndLastUsed[1], attributes.lastModifiedTime().toMillis());
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                // A file removed while the entry is measured, such as a finished download's partial file, is simply not counted.
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return new CleanupEntry(entry, sizeAndLastUsed[1], sizeAndLastUsed[0]);
+    }
+
+    private static class CleanupEntry {
+        private final Path path;
+        private final long lastUsed;
+        private final long sizeBytes;
+
+        private CleanupEntry(Path path, long lastUsed, long sizeBytes) {
+            this.path = path;
+            this.lastUsed = lastUsed;
+            this.sizeBytes = sizeBytes;
+        }
+    }
+
+    public static class Result implements Serializable {
+        private static final long serialVersionUID = 6419573208114375092L;
+
+        private final long reclaimedBytes;
+        private final int removedEntries;
+        private final long remainingBytes;
+
+        public Result(long reclaimedBytes, int removedEntries, long remainingBytes) {
+            this.reclaimedBytes = reclaimedBytes;
+            this.removedEntries = removedEntries;
+            this.remainingBytes = remainingBytes;
+        }
+
+        public long getReclaimedBytes() {
+            return reclaimedBytes;
+        }
+
+        public int getRemovedEntries() {
+            return removedEntries;
+        }
+
+        public long getRemainingBytes() {
+            return remainingBytes;
+        }
+    }
+
+}
@@ -18,6 +18,7 @@ import com.blackduck.integration.jenkins.wrapper.BlackduckCredentialsHelper;
 import com.blackduck.integration.util.IntEnvironmentVariables;
 import org.apache.commons.lang3.StringUtils;
 
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.function.BiConsumer;
@@ -71,10 +72,19 @@ public class DetectEnvironmentService {
             return;
         }
 
-        BlackDuckServerConfigBuilder blackDuckServerConfigBuilder = detectGlobalConfig.get().getBlackDuckServerConfigBuilder(jenkinsProxyHelper, blackduckCredentialsHelper);
+        Map<String, String> blackDuckEnvironment = BlackDuckEnvironmentSnapshotCache.getInstance()
+            .getOrCreate(detectGlobalConfig.get(), () -> createBlackDuckEnvironment(detectGlobalConfig.get()));
+        blackDuckEnvironment.forEach(environmentPutter);
+    }
+
+    private Map<String, String> createBlackDuckEnvironment(DetectGlobalConfig detectGlobalConfig) {
+        logger.debug("Resolving the Black Duck server configuration");
+        BlackDuckServerConfigBuilder blackDuckServerConfigBuilder = detectGlobalConfig.getBlackDuckServerConfigBuilder(jenkinsProxyHelper, blackduckCredentialsHelper);
 
+        Map<String, String> blackDuckEnvironment = new LinkedHashMap<>();
         blackDuckServerConfigBuilder.getProperties()
-            .forEach((builderPropertyKey, propertyValue) -> updateAndFilterVariables(environmentPutter, builderPropertyKey.getKey(), propertyValue));
+            .forEach((builderPropertyKey, propertyValue) -> updateAndFilterVariables(blackDuckEnvironment::put, builderPropertyKey.getKey(), propertyValue));
+        return blackDuckEnvironment;
     }
 
     private void updateAndFilterVariables(BiConsumer<String, String> environmentPutter, String key, String value) {
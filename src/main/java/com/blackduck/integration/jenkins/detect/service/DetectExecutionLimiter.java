@@ -0,0 +1,218 @@
+/*
+ * blackduck-detect
+ *
+ * Copyright (c) 2024 Black Duck Software, Inc.
+ *
+ * Use subject to the terms and conditions of the Black Duck Software End User Software License and Maintenance Agreement. All rights reserved worldwide.
+ */
+package com.blackduck.integration.jenkins.detect.service;
+
+import com.blackduck.integration.jenkins.detect.extensions.global.DetectGlobalConfig;
+import com.blackduck.integration.jenkins.extensions.JenkinsIntLogger;
+import hudson.model.Label;
+import hudson.model.Node;
+import jenkins.model.GlobalConfiguration;
+import jenkins.model.Jenkins;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Limits how many Detect runs execute at once on a node, or on all nodes matching the configured label. Runs beyond the limit wait in FIFO order. Waiting is
+ * asynchronous so pipeline steps can wait without holding a thread.
+ */
+public class DetectExecutionLimiter {
+    private static final DetectExecutionLimiter INSTANCE = new DetectExecutionLimiter();
+
+    private final Map<String, SlotPool> slotPools = new HashMap<>();
+
+    public static DetectExecutionLimiter getInstance() {
+        return INSTANCE;
+    }
+
+    public CompletableFuture<Permit> acquire(JenkinsIntLogger logger, Node node) {
+        DetectGlobalConfig detectGlobalConfig = GlobalConfiguration.all().get(DetectGlobalConfig.class);
+        if (null == detectGlobalConfig || detectGlobalConfig.getMaxConcurrentScansPerNode() <= 0) {
+            return CompletableFuture.completedFuture(Permit.UNLIMITED);
+        }
+
+        return acquire(logger, getLimitKey(detectGlobalConfig.getConcurrencyLimitLabel(), node), detectGlobalConfig.getMaxConcurrentScansPerNode());
+    }
+
+    public Permit acquireBlocking(JenkinsIntLogger logger, Node node) throws InterruptedException {
+        return await(acquire(logger, node));
+    }
+
+    /**
+     * Waits for a permit, and takes it out of the queue again if the wait is interrupted.
+     */
+    public Permit await(CompletableFuture<Permit> permitFuture) throws InterruptedException {
+        try {
+            return permitFuture.get();
+        } catch (InterruptedException e) {
+            cancel(permitFuture);
+            throw e;
+        } catch (ExecutionException e) {
+            // Permits are only ever completed normally or cancelled by their owner.
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public CompletableFuture<Permit> acquire(JenkinsIntLogger logger, String limitKey, int maxConcurrentScans) {
+        if (maxConcurrentScans <= 0) {
+            return CompletableFuture.completedFuture(Permit.UNLIMITED);
+        }
+
+        long requestedAt = System.currentTimeMillis();
+        CompletableFuture<Permit> permitFuture = new CompletableFuture<>();
+        SlotPool slotPool;
+        List<CompletableFuture<Permit>> granted;
+        String waitingMessage = null;
+        synchronized (slotPools) {
+            slotPool = slotPools.computeIfAbsent(limitKey, SlotPool::new);
+            slotPool.limit = maxConcurrentScans;
+            slotPool.waiting.addLast(permitFuture);
+            granted = grant(slotPool);
+            if (!granted.contains(permitFuture)) {
+                waitingMessage = String.format("Waiting for one of %d Detect slots on %s (%d running, %d waiting)", maxConcurrentScans, limitKey, slotPool.running, slotPool.waiting.size());
+            }
+        }
+        complete(granted, slotPool);
+        if (null != waitingMessage) {
+            logger.info(waitingMessage);
+        }
+
+        // The queued future itself is returned so that cancelling it takes the caller out of the queue.
+        permitFuture.thenAccept(permit -> {
+            long waitedMillis = System.currentTimeMillis() - requestedAt;
+            logger.info(String.format("Acquired a Detect slot on %s after waiting %.1f seconds", limitKey, waitedMillis / 1000.0));
+        });
+        return permitFuture;
+    }
+
+    public Permit register(Node node) {
+        DetectGlobalConfig detectGlobalConfig = GlobalConfiguration.all().get(DetectGlobalConfig.class);
+        if (null == detectGlobalConfig || detectGlobalConfig.getMaxConcurrentScansPerNode() <= 0) {
+            return Permit.UNLIMITED;
+        }
+
+        return register(getLimitKey(detectGlobalConfig.getConcurrencyLimitLabel(), node), detectGlobalConfig.getMaxConcurrentScansPerNode());
+    }
+
+    /**
+     * Takes a slot for a Detect process that is already running, such as one a pipeline step watches again after a controller restart. The slot is taken at
+     * once, even beyond the limit, so that waiting scans are only started once that process has finished.
+     */
+    public Permit register(String limitKey, int maxConcurrentScans) {
+        if (maxConcurrentScans <= 0) {
+            return Permit.UNLIMITED;
+        }
+
+        synchronized (slotPools) {
+            SlotPool slotPool = slotPools.computeIfAbsent(limitKey, SlotPool::new);
+            slotPool.limit = maxConcurrentScans;
+            slotPool.running++;
+            return new Permit(this, slotPool);
+        }
+    }
+
+    public void cancel(CompletableFuture<Permit> permitFuture) {
+        // A permit that was granted just before the cancellation is handed back; one still waiting is skipped when its turn comes.
+        if (!permitFuture.cancel(false)) {
+            permitFuture.thenAccept(Permit::release);
+        }
+    }
+
+    public static String getLimitKey(String concurrencyLimitLabel, Node node) {
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        if (StringUtils.isNotBlank(concurrencyLimitLabel) && null != jenkins && null != node) {
+            Label label = jenkins.getLabel(concurrencyLimitLabel);
+            if (null != label && label.matches(node)) {
+                return "label " + concurrencyLimitLabel;
+            }
+        }
+
+        String nodeName = null != node ? node.getNodeName() : StringUtils.EMPTY;
+        return "node " + StringUtils.defaultIfEmpty(nodeName, "(built-in)");
+    }
+
+    int getRunning(String limitKey) {
+        synchronized (slotPools) {
+            SlotPool slotPool = slotPools.get(limitKey);
+            return null != slotPool ? slotPool.running : 0;
+        }
+    }
+
+    private void release(SlotPool slotPool) {
+        List<CompletableFuture<Permit>> granted;
+        synchronized (slotPools) {
+            slotPool.running--;
+            granted = grant(slotPool);
+            if (slotPool.running == 0 && slotPool.waiting.isEmpty()) {
+                slotPools.remove(slotPool.limitKey, slotPool);
+            }
+        }
+        complete(granted, slotPool);
+    }
+
+    private List<CompletableFuture<Permit>> grant(SlotPool slotPool) {
+        List<CompletableFuture<Permit>> granted = new ArrayList<>();
+        while (slotPool.running < slotPool.limit && !slotPool.waiting.isEmpty()) {
+            CompletableFuture<Permit> next = slotPool.waiting.pollFirst();
+            if (!next.isDone()) {
+                slotPool.running++;
+                granted.add(next);
+            }
+        }
+        return granted;
+    }
+
+    private void complete(List<CompletableFuture<Permit>> granted, SlotPool slotPool) {
+        // Completing runs whatever waits on the permit, so it happens outside the lock.
+        for (CompletableFuture<Permit> permitFuture : granted) {
+            Permit permit = new Permit(this, slotPool);
+            if (!permitFuture.complete(permit)) {
+                permit.release();
+            }
+        }
+    }
+
+    private static class SlotPool {
+        private final String limitKey;
+        private final Deque<CompletableFuture<Permit>> waiting = new ArrayDeque<>();
+        private int limit;
+        private int running;
+
+        private SlotPool(String limitKey) {
+            this.limitKey = limitKey;
+        }
+    }
+
+    public static class Permit {
+        public static final Permit UNLIMITED = new Permit(null, null);
+
+        private final DetectExecutionLimiter detectExecutionLimiter;
+        private final SlotPool slotPool;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(DetectExecutionLimiter detectExecutionLimiter, SlotPool slotPool) {
+            this.detectExecutionLimiter = detectExecutionLimiter;
+            this.slotPool = slotPool;
+        }
+
+        public void release() {
+            if (null != slotPool && released.compareAndSet(false, true)) {
+                detectExecutionLimiter.release(slotPool);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,225 @@
+/*
+ * blackduck-detect
+ *
+ * Copyright (c) 2024 Black Duck Software, Inc.
+ *
+ * Use subject to the terms and conditions of the Black Duck Software End User Software License and Maintenance Agreement. All rights reserved worldwide.
+ */
+package com.blackduck.integration.jenkins.detect.service;
+
+import com.blackduck.integration.jenkins.detect.DetectJenkinsEnvironmentVariable;
+import com.blackduck.integration.jenkins.detect.DetectResult;
+import com.blackduck.integration.jenkins.detect.extensions.AirGapDownloadStrategy;
+import com.blackduck.integration.jenkins.detect.extensions.DetectDownloadStrategy;
+import com.blackduck.integration.jenkins.detect.extensions.DetectResultAction;
+import com.blackduck.integration.jenkins.detect.extensions.InheritFromGlobalDownloadStrategy;
+import com.blackduck.integration.jenkins.detect.extensions.global.DetectGlobalConfig;
+import com.blackduck.integration.jenkins.detect.extensions.pipeline.DetectScan;
+import com.blackduck.integration.jenkins.detect.service.strategy.DetectScriptCache;
+import com.blackduck.integration.jenkins.extensions.JenkinsIntLogger;
+import hudson.FilePath;
+import hudson.Util;
+import hudson.model.Run;
+import jenkins.model.GlobalConfiguration;
+import jenkins.model.Jenkins;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lets a build skip Detect when neither the dependency manifests in its workspace nor its Detect properties have changed since the job's last successful scan. Each
+ * job, and so each branch of a multibranch project, keeps the fingerprint of its last successful scan next to its builds on the controller. A scan is forced once
+ * the configured interval has passed, or when the build sets {@code DETECT_PLUGIN_FORCE_SCAN=true}.
+ */
+public class DetectIncrementalScanService {
+    public static final String FINGERPRINT_FILENAME = "blackduck-detect-fingerprint.properties";
+    public static final String CACHED_STATUS = "CACHED";
+
+    private static final String PROPERTY_FINGERPRINT = "fingerprint";
+    private static final String PROPERTY_BUILD_NUMBER = "buildNumber";
+    private static final String PROPERTY_SCANNED_AT = "scannedAt";
+    // The environment variables that choose which Detect runs; another Detect may find different dependencies in the same manifests.
+    private static final List<String> DETECT_SELECTING_VARIABLES = Arrays.asList(
+        DetectJenkinsEnvironmentVariable.DETECT_VERSION.stringValue(),
+        DetectJenkinsEnvironmentVariable.USER_PROVIDED_JAR_PATH.stringValue(),
+        "DETECT_LATEST_RELEASE_VERSION",
+        "DETECT_VERSION_KEY",
+        "DETECT_SOURCE"
+    );
+
+    private final JenkinsIntLogger logger;
+    private final Path fingerprintFile;
+    private final long forcedRescanIntervalMillis;
+    private Properties lastScan;
+
+    public DetectIncrementalScanService(JenkinsIntLogger logger, Path jobRootDirectory, long forcedRescanIntervalMillis) {
+        this.logger = logger;
+        this.fingerprintFile = jobRootDirectory.resolve(FINGERPRINT_FILENAME);
+        this.forcedRescanIntervalMillis = forcedRescanIntervalMillis;
+    }
+
+    public static DetectIncrementalScanService forRun(JenkinsIntLogger logger, Run<?, ?> run) {
+        DetectGlobalConfig detectGlobalConfig = GlobalConfiguration.all().get(DetectGlobalConfig.class);
+        int forcedRescanInterval = null != detectGlobalConfig ? detectGlobalConfig.getForcedRescanInterval() : DetectGlobalConfig.DEFAULT_FORCED_RESCAN_INTERVAL;
+        return new DetectIncrementalScanService(logger, run.getParent().getRootDir().toPath(), TimeUnit.HOURS.toMillis(Math.max(0, forcedRescanInterval)));
+    }
+
+    public static boolean isScanForced(Map<String, String> environmentVariables) {
+        return Boolean.parseBoolean(environmentVariables.get(DetectJenkinsEnvironmentVariable.FORCE_SCAN.stringValue()));
+    }
+
+    /**
+     * @return everything besides the manifests that decides what a scan finds: the Detect properties and scans with the environment applied, the Detect version and
+     * jar chosen through the environment, and the download strategy
+     */
+    public static String getFingerprintInput(
+        String detectProperties,
+        Map<String, String> environmentVariables,
+        @Nullable DetectDownloadStrategy downloadStrategy,
+        @Nullable List<DetectScan> scans
+    ) {
+        StringBuilder fingerprintInput = new StringBuilder(Util.fixNull(Util.replaceMacro(detectProperties, environmentVariables)));
+        for (String variable : DETECT_SELECTING_VARIABLES) {
+            String value = StringUtils.trimToNull(environmentVariables.get(variable));
+            if (null != value) {
+                fingerprintInput.append('\n').append(variable).append('=').append(value);
+            }
+        }
+        fingerprintInput.append("\nDownload strategy ").append(describeDownloadStrategy(downloadStrategy));
+        if (null != scans) {
+            for (DetectScan scan : scans) {
+                fingerprintInput.append('\n').append(Util.replaceMacro(scan.toArgumentString(detectProperties), environmentVariables));
+            }
+        }
+        return fingerprintInput.toString();
+    }
+
+    private static String describeDownloadStrategy(@Nullable DetectDownloadStrategy downloadStrategy) {
+        if (null == downloadStrategy || downloadStrategy instanceof InheritFromGlobalDownloadStrategy) {
+            DetectGlobalConfig detectGlobalConfig = null != Jenkins.getInstanceOrNull() ? GlobalConfiguration.all().get(DetectGlobalConfig.class) : null;
+            if (null == detectGlobalConfig) {
+                return "inherited";
+            }
+            downloadStrategy = null != detectGlobalConfig.getDownloadStrategy() ? detectGlobalConfig.getDownloadStrategy() : detectGlobalConfig.getDefaultDownloadStrategy();
+        }
+
+        String description = downloadStrategy.getClass().getSimpleName();
+        if (downloadStrategy instanceof AirGapDownloadStrategy) {
+            AirGapDownloadStrategy airGapDownloadStrategy = (AirGapDownloadStrategy) downloadStrategy;
+            description += String.format(" %s %s", airGapDownloadStrategy.getAirGapInstallationName(), airGapDownloadStrategy.getAirGapVersion());
+        }
+        return description;
+    }
+
+    /**
+     * @return the fingerprint, or null if the workspace could not be fingerprinted
+     */
+    @CheckForNull
+    public String computeFingerprint(FilePath workspace, String detectArgumentString) throws IOException, InterruptedException {
+        String manifestFingerprint = workspace.act(new ManifestFingerprintCallable(logger));
+        if (null == manifestFingerprint) {
+            return null;
+        }
+        return DigestUtils.sha256Hex(manifestFingerprint + "\n" + StringUtils.defaultString(detectArgumentString));
+    }
+
+    public boolean canSkip(@Nullable String fingerprint, boolean forceScan) {
+        if (forceScan) {
+            logger.info("A Detect scan was requested with " + DetectJenkinsEnvironmentVariable.FORCE_SCAN.stringValue() + ", so it runs regardless of changes.");
+            return false;
+        }
+        if (null == fingerprint) {
+            logger.info("The dependency manifests could not be fingerprinted, so Detect will run.");
+            return false;
+        }
+
+        Properties previousScan = readLastScan();
+        if (!fingerprint.equals(previousScan.getProperty(PROPERTY_FINGERPRINT))) {
+            logger.info("Dependency manifests or Detect properties changed since the last successful scan, so Detect will run.");
+            return false;
+        }
+
+        long scannedAt = parseLong(previousScan.getProperty(PROPERTY_SCANNED_AT));
+        if (forcedRescanIntervalMillis > 0 && System.currentTimeMillis() - scannedAt >= forcedRescanIntervalMillis) {
+            logger.info("The last successful scan is older than the forced rescan interval, so Detect will run.");
+            return false;
+        }
+
+        logger.info(String.format("Dependency manifests and Detect properties are unchanged since the successful scan in build #%s; skipping Detect.", getLastScanBuildNumber()));
+        return true;
+    }
+
+    public DetectResultAction createCachedResultAction() {
+        DetectResult detectResult = new DetectResult();
+        detectResult.setOverallStatus(CACHED_STATUS);
+        detectResult.setStatusMessage(String.format("Dependency manifests unchanged since build #%s", getLastScanBuildNumber()));
+        return new DetectResultAction(null, detectResult);
+    }
+
+    public void recordSuccessfulScan(@Nullable String fingerprint, Run<?, ?> run) {
+        if (null == fingerprint) {
+            return;
+        }
+
+        Properties scan = new Properties();
+        scan.setProperty(PROPERTY_FINGERPRINT, fingerprint);
+        scan.setProperty(PROPERTY_BUILD_NUMBER, String.valueOf(run.getNumber()));
+        scan.setProperty(PROPERTY_SCANNED_AT, String.valueOf(System.currentTimeMillis()));
+
+        try {
+            Files.createDirectories(fingerprintFile.getParent());
+            Path temporaryFile = Files.createTempFile(fingerprintFile.getParent(), FINGERPRINT_FILENAME, ".tmp");
+            try {
+                try (OutputStream outputStream = Files.newOutputStream(temporaryFile)) {
+                    scan.store(outputStream, "Last successful Black Duck Detect scan");
+                }
+                DetectScriptCache.moveAtomically(temporaryFile, fingerprintFile);
+            } finally {
+                Files.deleteIfExists(temporaryFile);
+            }
+            lastScan = scan;
+        } catch (IOException e) {
+            // Failing to record only means the next build scans again.
+            logger.warn("Could not record the Detect scan fingerprint: " + e.getMessage());
+        }
+    }
+
+    private String getLastScanBuildNumber() {
+        return readLastScan().getProperty(PROPERTY_BUILD_NUMBER, "?");
+    }
+
+    private Properties readLastScan() {
+        if (null == lastScan) {
+            lastScan = new Properties();
+            if (Files.isRegularFile(fingerprintFile)) {
+                try (InputStream inputStream = Files.newInputStream(fingerprintFile)) {
+                    lastScan.load(inputStream);
+                } catch (IOException e) {
+                    logger.debug("Could not read the last Detect scan fingerprint: " + e.getMessage(), e);
+                }
+            }
+        }
+        return lastScan;
+    }
+
+    private long parseLong(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
+}
@@ -0,0 +1,63 @@
+/*
+ * blackduck-detect
+ *
+ * Copyright (c) 2024 Black Duck Software, Inc.
+ *
+ * Use subject to the terms and conditions of the Black Duck Software End User Software License and Maintenance Agreement. All rights reserved worldwide.
+ */
+package com.blackduck.integration.jenkins.detect.service;
+
+import com.blackduck.integration.jenkins.detect.DetectResult;
+import hudson.console.LineTransformationOutputStream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Pattern;
+
+/**
+ * Sits between Detect's output and the build log. Every line is handed to a {@link DetectStatusParser} as it goes by, and in quiet mode Detect's routine INFO, DEBUG
+ * and TRACE lines are left out of the build log while warnings, errors, the final summary and anything not logged by Detect itself are still written.
+ */
+public class DetectLogFilter extends LineTransformationOutputStream {
+    // Long lines are still written in full, but only their beginning is parsed; the summary lines are short.
+    public static final int MAX_PARSED_LINE_LENGTH = 8192;
+
+    private static final Pattern ROUTINE_LINE = Pattern.compile("^\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2}\\S*(?: \\S+)? +(?:INFO|DEBUG|TRACE) +\\[");
+
+    private final OutputStream delegate;
+    private final boolean quiet;
+    private final DetectStatusParser detectStatusParser = new DetectStatusParser();
+
+    public DetectLogFilter(OutputStream delegate, boolean quiet) {
+        this.delegate = delegate;
+        this.quiet = quiet;
+    }
+
+    public DetectResult getDetectResult() {
+        return detectStatusParser.getDetectResult();
+    }
+
+    @Override
+    protected void eol(byte[] bytes, int length) throws IOException {
+        String line = new String(bytes, 0, Math.min(length, MAX_PARSED_LINE_LENGTH), StandardCharsets.UTF_8);
+        boolean summary = detectStatusParser.accept(line);
+
+        if (!quiet || summary || !ROUTINE_LINE.matcher(line).find()) {
+            delegate.write(bytes, 0, length);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        delegate.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Only the last unterminated line is written out; the build log itself stays open.
+        super.close();
+        flush();
+    }
+
+}
@@ -0,0 +1,92 @@
+/*
+ * blackduck-detect
+ *
+ * Copyright (c) 2024 Black Duck Software, Inc.
+ *
+ * Use subject to the terms and conditions of the Black Duck Software End User Software License and Maintenance Agreement. All rights reserved worldwide.
+ */
+package com.blackduck.integration.jenkins.detect.service;
+
+import com.blackduck.integration.jenkins.extensions.JenkinsIntLogger;
+import com.codahale.metrics.MetricRegistry;
+import hudson.model.Label;
+import hudson.model.Node;
+import hudson.model.labels.LabelAtom;
+import jenkins.metrics.api.Metrics;
+import jenkins.model.Jenkins;
+import org.apache.commons.lang3.StringUtils;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Records Detect phase timings as histograms in the Metrics plugin's registry, from where exporters such as the Prometheus plugin publish them. There is one
+ * histogram per phase overall, per node and per label of the node. Nothing is recorded when the Metrics plugin is not installed.
+ */
+public class DetectPhaseMetrics {
+    public static final String METRICS_PLUGIN = "metrics";
+    public static final String METRIC_PREFIX = "blackduck.detect.phase";
+    public static final String ALL_NODES = "all";
+
+    private DetectPhaseMetrics() {
+        // This class should not be instantiated
+    }
+
+    public static void record(JenkinsIntLogger logger, @Nullable Node node, Map<String, Long> phaseMillis, long elapsedMillis) {
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        if (null == jenkins || null == jenkins.getPlugin(METRICS_PLUGIN)) {
+            return;
+        }
+
+        Map<String, Long> allPhaseMillis = new LinkedHashMap<>(phaseMillis);
+        allPhaseMillis.put(DetectPhaseTimings.TOTAL, elapsedMillis);
+        try {
+            // The Metrics plugin is an optional dependency, so its classes are only touched once it is known to be installed.
+            HistogramRecorder.record(getMetricScopes(node), allPhaseMillis);
+        } catch (LinkageError | RuntimeException e) {
+            logger.debug("Could not record the Detect phase timings as metrics: " + e.getMessage(), e);
+        }
+    }
+
+    public static List<String> getMetricScopes(@Nullable Node node) {
+        List<String> scopes = new ArrayList<>();
+        scopes.add(ALL_NODES);
+        if (null == node) {
+            return scopes;
+        }
+
+        scopes.add(String.join(".", "node", sanitize(StringUtils.defaultIfEmpty(node.getNodeName(), "built-in"))));
+        LabelAtom selfLabel = node.getSelfLabel();
+        for (Label label : node.getAssignedLabels()) {
+            if (!label.equals(selfLabel)) {
+                scopes.add(String.join(".", "label", sanitize(label.getName())));
+            }
+        }
+        return scopes;
+    }
+
+    public static String getMetricName(String phase, String scope) {
+        return String.join(".", METRIC_PREFIX, sanitize(phase), scope);
+    }
+
+    private static String sanitize(String name) {
+        // Exporters derive metric names and labels from these, so anything but letters, digits, dashes and underscores becomes an underscore.
+        return name.toLowerCase(Locale.ENGLISH).replaceAll("[^a-z0-9_-]", "_");
+    }
+
+    private static class HistogramRecorder {
+        private static void record(List<String> scopes, Map<String, Long> phaseMillis) {
+            MetricRegistry metricRegistry = Metrics.metricRegistry();
+            phaseMillis.forEach((phase, millis) -> {
+                for (String scope : scopes) {
+                    metricRegistry.histogram(getMetricName(phase, scope)).update(millis);
+                }
+            });
+        }
+    }
+
+}
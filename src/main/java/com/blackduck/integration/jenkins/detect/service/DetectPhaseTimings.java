@@ -0,0 +1,78 @@
+/*
+ * blackduck-detect
+ *
+ * Copyright (c) 2024 Black Duck Software, Inc.
+ *
+ * Use subject to the terms and conditions of the Black Duck Software End User Software License and Maintenance Agreement. All rights reserved worldwide.
+ */
+package com.blackduck.integration.jenkins.detect.service;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * How long each phase of a Detect run took. Phases may overlap, so their durations can add up to more than the elapsed time, which is tracked separately. Pipeline
+ * steps keep their timings across a controller restart, so the elapsed time is measured by the wall clock.
+ */
+public class DetectPhaseTimings implements Serializable {
+    public static final String ENVIRONMENT = "environment";
+    public static final String OPERATING_SYSTEM = "operating system";
+    public static final String STRATEGY = "strategy";
+    public static final String DOWNLOAD = "download";
+    public static final String JAVA = "java";
+    public static final String SETUP = "setup";
+    public static final String ARGUMENTS = "arguments";
+    public static final String DETECT = "detect";
+    public static final String STATUS = "status";
+    public static final String TOTAL = "total";
+
+    private static final long serialVersionUID = -2305530612806937541L;
+
+    private final long startedAtMillis = System.currentTimeMillis();
+    private final LinkedHashMap<String, Long> phaseMillis = new LinkedHashMap<>();
+
+    public static long start() {
+        return System.nanoTime();
+    }
+
+    public void record(String phase, long phaseStartedAtNanos) {
+        recordMillis(phase, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - phaseStartedAtNanos));
+    }
+
+    public synchronized void recordMillis(String phase, long millis) {
+        phaseMillis.merge(phase, millis, Long::sum);
+    }
+
+    public synchronized Map<String, Long> getPhaseMillis() {
+        return new LinkedHashMap<>(phaseMillis);
+    }
+
+    public long getElapsedMillis() {
+        return System.currentTimeMillis() - startedAtMillis;
+    }
+
+    public List<String> formatTable() {
+        Map<String, Long> phases = getPhaseMillis();
+        phases.put(TOTAL, getElapsedMillis());
+
+        int nameWidth = phases.keySet().stream().mapToInt(String::length).max().orElse(0);
+        String lineFormat = "%-" + nameWidth + "s %9d ms";
+        List<String> table = new ArrayList<>();
+        phases.forEach((phase, millis) -> table.add(String.format(lineFormat, phase, millis)));
+        return table;
+    }
+
+    @Override
+    public synchronized String toString() {
+        String phases = phaseMillis.entrySet().stream()
+                            .map(entry -> String.format("%s %d ms", entry.getKey(), entry.getValue()))
+                            .collect(Collectors.joining(", "));
+        return String.format("%d ms (%s)", getElapsedMillis(), phases);
+    }
+
+}
@@ -0,0 +1,220 @@
+/*
+ * blackduck-detect
+ *
+ * Copyright (c) 2024 Black Duck Software, Inc.
+ *
+ * Use subject to the terms and conditions of the Black Duck Software End User Software License and Maintenance Agreement. All rights reserved worldwide.
+ */
+package com.blackduck.integration.jenkins.detect.service;
+
+import com.blackduck.integration.exception.IntegrationException;
+import com.blackduck.integration.jenkins.detect.DetectJenkinsEnvironmentVariable;
+import com.blackduck.integration.jenkins.detect.exception.DetectJenkinsException;
+import com.blackduck.integration.jenkins.detect.extensions.AirGapDownloadStrategy;
+import com.blackduck.integration.jenkins.detect.extensions.DetectDownloadStrategy;
+import com.blackduck.integration.jenkins.detect.extensions.global.DetectGlobalConfig;
+import com.blackduck.integration.jenkins.detect.extensions.tool.DetectAirGapInstallation;
+import com.blackduck.integration.jenkins.detect.service.strategy.DetectAirGapJarStrategy;
+import com.blackduck.integration.jenkins.detect.service.strategy.DetectArtifactDistributor;
+import com.blackduck.integration.jenkins.detect.service.strategy.DetectScriptCache;
+import com.blackduck.integration.jenkins.detect.service.strategy.DetectScriptStrategy;
+import com.blackduck.integration.jenkins.detect.service.strategy.DetectStrategyService;
+import com.blackduck.integration.jenkins.extensions.JenkinsIntLogger;
+import com.blackduck.integration.jenkins.wrapper.JenkinsProxyHelper;
+import com.blackduck.integration.util.OperatingSystemType;
+import hudson.EnvVars;
+import hudson.FilePath;
+import hudson.model.Computer;
+import hudson.model.Label;
+import hudson.model.Node;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import hudson.tools.ToolInstallation;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.model.Jenkins;
+import jenkins.security.MasterToSlaveCallable;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Optional;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiPredicate;
+import java.util.stream.Stream;
+
+public class DetectPrewarmService {
+    private static final ThreadPoolExecutor PREWARM_EXECUTOR = new ThreadPoolExecutor(
+        1,
+        1,
+        60,
+        TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(),
+        new NamingThreadFactory(new DaemonThreadFactory(), "Black Duck Detect pre-warm")
+    );
+
+    static {
+        PREWARM_EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private final DetectGlobalConfig detectGlobalConfig;
+    private final JenkinsProxyHelper jenkinsProxyHelper;
+    private final BiPredicate<String, Node> labelMatcher;
+
+    public DetectPrewarmService(DetectGlobalConfig detectGlobalConfig, JenkinsProxyHelper jenkinsProxyHelper) {
+        this(detectGlobalConfig, jenkinsProxyHelper, DetectPrewarmService::matchesLabel);
+    }
+
+    DetectPrewarmService(DetectGlobalConfig detectGlobalConfig, JenkinsProxyHelper jenkinsProxyHelper, BiPredicate<String, Node> labelMatcher) {
+        this.detectGlobalConfig = detectGlobalConfig;
+        this.jenkinsProxyHelper = jenkinsProxyHelper;
+        this.labelMatcher = labelMatcher;
+    }
+
+    public boolean shouldPrewarm(Node node) {
+        String prewarmLabelExpression = detectGlobalConfig.getPrewarmLabelExpression();
+        if (node == null || StringUtils.isBlank(prewarmLabelExpression)) {
+            return false;
+        }
+        return labelMatcher.test(prewarmLabelExpression, node);
+    }
+
+    private static boolean matchesLabel(String labelExpression, Node node) {
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        Label label = null != jenkins ? jenkins.getLabel(labelExpression) : null;
+        return null != label && label.matches(node);
+    }
+
+    public void schedulePrewarm(Computer computer, TaskListener listener) {
+        if (!shouldPrewarm(computer.getNode())) {
+            return;
+        }
+
+        resizeExecutor(Math.max(1, detectGlobalConfig.getPrewarmConcurrency()));
+        PREWARM_EXECUTOR.execute(() -> prewarm(computer, listener));
+    }
+
+    public void prewarm(Computer computer, TaskListener listener) {
+        JenkinsIntLogger logger = JenkinsIntLogger.logToListener(listener);
+        Node node = computer.getNode();
+        VirtualChannel channel = computer.getChannel();
+        FilePath nodeRootPath = null != node ? node.getRootPath() : null;
+        if (null == channel || null == nodeRootPath) {
+            logger.debug(String.format("Skipping Black Duck Detect pre-warm of %s because it is no longer online.", computer.getName()));
+            return;
+        }
+
+        logger.info(String.format("Pre-warming Black Duck Detect on %s", computer.getName()));
+        try {
+            EnvVars environmentVariables = computer.getEnvironment();
+            environmentVariables.overrideAll(computer.buildEnvironment(listener));
+
+            DetectDownloadStrategy detectDownloadStrategy = Optional.ofNullable(detectGlobalConfig.getDownloadStrategy())
+                .orElseGet(detectGlobalConfig::getDefaultDownloadStrategy);
+
+            if (detectDownloadStrategy instanceof AirGapDownloadStrategy) {
+                prewarmAirGap(logger, computer, node, channel, environmentVariables, (AirGapDownloadStrategy) detectDownloadStrategy);
+            } else if (StringUtils.isNotBlank(environmentVariables.get(DetectJenkinsEnvironmentVariable.USER_PROVIDED_JAR_PATH.stringValue()))) {
+                logger.info("Detect is provided through DETECT_JAR on this node, nothing to pre-warm.");
+            } else {
+                prewarmScript(logger, channel, nodeRootPath, environmentVariables);
+            }
+
+            logger.info(String.format("Finished pre-warming Black Duck Detect on %s", computer.getName()));
+        } catch (IOException | IntegrationException e) {
+            logger.warn(String.format("Could not pre-warm Black Duck Detect on %s: %s", computer.getName(), e.getMessage()));
+            logger.trace("Stack trace:", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn(String.format("Pre-warming Black Duck Detect on %s was interrupted.", computer.getName()));
+        }
+    }
+
+    private void prewarmScript(JenkinsIntLogger logger, VirtualChannel channel, FilePath nodeRootPath, EnvVars environmentVariables)
+        throws IOException, InterruptedException, IntegrationException {
+        OperatingSystemType operatingSystemType = channel.call(new OperatingSystemTypeCallable());
+        String toolsDirectory = nodeRootPath.child(DetectCommandsFactory.TOOLS_DIRECTORY).getRemote();
+        DetectScriptStrategy detectScriptStrategy = new DetectScriptStrategy(
+            logger,
+            jenkinsProxyHelper,
+            operatingSystemType,
+            toolsDirectory,
+            DetectScriptCache.toMillis(detectGlobalConfig.getScriptCacheTimeToLive()),
+            detectGlobalConfig.getDistributeFromController() ? createArtifactDistributor(logger, nodeRootPath) : null
+        );
+        detectScriptStrategy.setDownloadTimeout(detectGlobalConfig.getDownloadTimeout());
+        if (detectGlobalConfig.getDistributeFromController()) {
+            String jarDirectory = DetectArtifactDistributor.getJarDirectory(toolsDirectory, operatingSystemType);
+            environmentVariables.put(DetectStrategyService.DETECT_JAR_DOWNLOAD_DIR, jarDirectory);
+            detectScriptStrategy.setJarDistribution(new HashMap<>(environmentVariables), jarDirectory);
+        }
+
+        ArrayList<String> scriptCommand = channel.call(detectScriptStrategy.getSetupCallable()).getDetectCommand();
+        int exitCode = channel.call(new DetectScriptStrategy.DownloadJarCallableImpl(logger, environmentVariables, scriptCommand));
+        if (exitCode != 0) {
+            throw new DetectJenkinsException("Downloading the Detect jar failed with exit code " + exitCode);
+        }
+    }
+
+    private DetectArtifactDistributor createArtifactDistributor(JenkinsIntLogger logger, FilePath nodeRootPath) {
+        return new DetectArtifactDistributor(
+            logger,
+            jenkinsProxyHelper,
+            Jenkins.get().getRootDir().toPath().resolve(DetectCommandsFactory.CONTROLLER_CACHE_DIRECTORY),
+            nodeRootPath.child(DetectCommandsFactory.TOOLS_DIRECTORY)
+        );
+    }
+
+    private void prewarmAirGap(
+        JenkinsIntLogger logger,
+        Computer computer,
+        Node node,
+        VirtualChannel channel,
+        EnvVars environmentVariables,
+        AirGapDownloadStrategy airGapDownloadStrategy
+    ) throws IOException, InterruptedException, IntegrationException {
+        String airGapInstallationName = airGapDownloadStrategy.getAirGapInstallationName();
+        DetectAirGapInstallation.DescriptorImpl detectAirGapInstallationDescriptor = ToolInstallation.all().get(DetectAirGapInstallation.DescriptorImpl.class);
+        DetectAirGapInstallation[] installations = null != detectAirGapInstallationDescriptor ? detectAirGapInstallationDescriptor.getInstallations() : new DetectAirGapInstallation[0];
+
+        DetectAirGapInstallation airGapInstallation = Stream.of(installations)
+            .filter(installation -> installation.getName().equals(airGapInstallationName))
+            .findFirst()
+            .orElseThrow(() -> new DetectJenkinsException(String.format("No Detect Air Gap tool named %s is configured.", airGapInstallationName)))
+            .forNode(node, computer.getListener())
+            .forEnvironment(environmentVariables);
+
+        channel.call(new DetectAirGapJarStrategy.SetupCallableImpl(logger, environmentVariables, null, airGapInstallation.getHome(), airGapDownloadStrategy.getAirGapVersion()));
+    }
+
+    static int getExecutorConcurrency() {
+        synchronized (PREWARM_EXECUTOR) {
+            return PREWARM_EXECUTOR.getMaximumPoolSize();
+        }
+    }
+
+    static void resizeExecutor(int concurrency) {
+        synchronized (PREWARM_EXECUTOR) {
+            if (concurrency > PREWARM_EXECUTOR.getMaximumPoolSize()) {
+                PREWARM_EXECUTOR.setMaximumPoolSize(concurrency);
+                PREWARM_EXECUTOR.setCorePoolSize(concurrency);
+            } else if (concurrency < PREWARM_EXECUTOR.getMaximumPoolSize()) {
+                PREWARM_EXECUTOR.setCorePoolSize(concurrency);
+                PREWARM_EXECUTOR.setMaximumPoolSize(concurrency);
+            }
+        }
+    }
+
+    private static class OperatingSystemTypeCallable extends MasterToSlaveCallable<OperatingSystemType, RuntimeException> {
+        private static final long serialVersionUID = -2431967541127408392L;
+
+        @Override
+        public OperatingSystemType call() {
+            return OperatingSystemType.determineFromSystem();
+        }
+    }
+
+}
@@ -0,0 +1,331 @@
+/*
+ * blackduck-detect
+ *
+ * Copyright (c) 2024 Black Duck Software, Inc.
+ *
+ * Use subject to the terms and conditions of the Black Duck Software End User Software License and Maintenance Agreement. All rights reserved worldwide.
+ */
+package com.blackduck.integration.jenkins.detect.service;
+
+import com.blackduck.integration.jenkins.detect.DetectCommand;
+import com.blackduck.integration.jenkins.detect.DetectStatusSummary;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import jenkins.security.MasterToSlaveCallable;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finds the status.json Detect wrote for the run that just finished and reads it on the agent, returning a {@link DetectStatusSummary}. The file is read as a stream,
+ * so only the summary is ever held in memory or sent to the controller. Builds running at the same time on the agent share Detect's output directory, so a run
+ * only counts as this build's when it is the only one written since Detect was launched for the project this build scanned; otherwise nothing is returned.
+ */
+public class DetectStatusJsonCallable extends MasterToSlaveCallable<DetectStatusSummary, IOException> {
+    public static final String OUTPUT_PATH_ARGUMENT = "--detect.output.path=";
+    public static final String OUTPUT_PATH_ENVIRONMENT_VARIABLE = "DETECT_OUTPUT_PATH";
+    public static final String PROJECT_NAME_ARGUMENT = "--detect.project.name=";
+    public static final String PROJECT_NAME_ENVIRONMENT_VARIABLE = "DETECT_PROJECT_NAME";
+    public static final String DEFAULT_OUTPUT_DIRECTORY = "blackduck";
+    public static final int MAX_ENTRIES = 200;
+    // Run directories are compared against the controller's clock, so allow for the agent's clock being somewhat behind.
+    public static final long CLOCK_SKEW_TOLERANCE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private static final long serialVersionUID = -2587302418406655873L;
+
+    private final ArrayList<String> outputDirectories;
+    private final long modifiedSince;
+    private final ArrayList<String> projectNames;
+
+    public DetectStatusJsonCallable(List<String> outputDirectories, long modifiedSince) {
+        this(outputDirectories, modifiedSince, Collections.emptyList());
+    }
+
+    /**
+     * @param projectNames the spellings of the project name this build passed to Detect, or none if Detect chooses the name itself
+     */
+    public DetectStatusJsonCallable(List<String> outputDirectories, long modifiedSince, List<String> projectNames) {
+        this.outputDirectories = new ArrayList<>(outputDirectories);
+        this.modifiedSince = modifiedSince;
+        this.projectNames = new ArrayList<>(projectNames);
+    }
+
+    public static DetectStatusJsonCallable forDetectCommand(DetectCommand detectCommand, long startedAt) {
+        Set<String> outputDirectories = getArgumentValues(detectCommand, OUTPUT_PATH_ARGUMENT, OUTPUT_PATH_ENVIRONMENT_VARIABLE);
+        Set<String> projectNames = getArgumentValues(detectCommand, PROJECT_NAME_ARGUMENT, PROJECT_NAME_ENVIRONMENT_VARIABLE);
+        return new DetectStatusJsonCallable(new ArrayList<>(outputDirectories), startedAt - CLOCK_SKEW_TOLERANCE_MILLIS, new ArrayList<>(projectNames));
+    }
+
+    private static Set<String> getArgumentValues(DetectCommand detectCommand, String argument, String environmentVariable) {
+        Set<String> values = new LinkedHashSet<>();
+        for (String command : detectCommand.getCommands()) {
+            if (command.startsWith(argument)) {
+                // The value may have been escaped for the shell Detect runs in, so the unescaped spellings are tried as well.
+                String value = command.substring(argument.length());
+                values.add(value);
+                values.add(value.replaceAll("\\\\(.)", "$1"));
+                values.add(value.replaceAll("`(.)", "$1"));
+            }
+        }
+        String environmentValue = detectCommand.getEnvironmentVariables().getValue(environmentVariable);
+        if (StringUtils.isNotBlank(environmentValue)) {
+            values.add(environmentValue);
+        }
+        return values;
+    }
+
+    @Override
+    public DetectStatusSummary call() throws IOException {
+        List<String> candidateDirectories = new ArrayList<>(outputDirectories);
+        candidateDirectories.add(new File(System.getProperty("user.home"), DEFAULT_OUTPUT_DIRECTORY).getPath());
+
+        for (String candidateDirectory : candidateDirectories) {
+            if (StringUtils.isNotBlank(candidateDirectory)) {
+                List<File> statusJsons = findRecentStatusJsons(new File(candidateDirectory, "runs"));
+                if (!statusJsons.isEmpty()) {
+                    return findOwnStatusSummary(statusJsons);
+                }
+            }
+        }
+        return null;
+    }
+
+    private List<File> findRecentStatusJsons(File runsDirectory) {
+        File[] runDirectories = runsDirectory.listFiles(File::isDirectory);
+        if (null == runDirectories) {
+            return Collections.emptyList();
+        }
+
+        List<File> statusJsons = new ArrayList<>();
+        for (File runDirectory : runDirectories) {
+            File statusJson = new File(new File(runDirectory, "status"), "status.json");
+            if (statusJson.lastModified() >= modifiedSince) {
+                statusJsons.add(statusJson);
+            }
+        }
+        return statusJsons;
+    }
+
+    private DetectStatusSummary findOwnStatusSummary(List<File> statusJsons) throws IOException {
+        boolean projectNameKnown = null != projectNames && !projectNames.isEmpty();
+        if (1 == statusJsons.size()) {
+            DetectStatusSummary detectStatusSummary = read(statusJsons.get(0));
+            return !projectNameKnown || projectNames.contains(detectStatusSummary.getProjectName()) ? detectStatusSummary : null;
+        }
+        if (!projectNameKnown) {
+            // Several runs finished since the launch and nothing tells them apart.
+            return null;
+        }
+
+        DetectStatusSummary ownStatusSummary = null;
+        for (File statusJson : statusJsons) {
+            DetectStatusSummary detectStatusSummary;
+            try {
+                detectStatusSummary = read(statusJson);
+            } catch (IOException | IllegalStateException e) {
+                // Another build may still be writing it, in which case it cannot be ruled out.
+                return null;
+            }
+            if (projectNames.contains(detectStatusSummary.getProjectName())) {
+                if (null != ownStatusSummary) {
+                    return null;
+                }
+                ownStatusSummary = detectStatusSummary;
+            }
+        }
+        return ownStatusSummary;
+    }
+
+    private static DetectStatusSummary read(File statusJson) throws IOException {
+        try (Reader reader = new InputStreamReader(Files.newInputStream(statusJson.toPath()), StandardCharsets.UTF_8)) {
+            DetectStatusSummary detectStatusSummary = parse(new JsonReader(reader));
+            detectStatusSummary.setStatusJsonPath(statusJson.getAbsolutePath());
+            return detectStatusSummary;
+        }
+    }
+
+    public static DetectStatusSummary parse(JsonReader jsonReader) throws IOException {
+        DetectStatusSummary detectStatusSummary = new DetectStatusSummary();
+        jsonReader.beginObject();
+        while (jsonReader.hasNext()) {
+            String name = jsonReader.nextName();
+            switch (name) {
+                case "detectVersion":
+                    detectStatusSummary.setDetectVersion(readString(jsonReader));
+                    break;
+                case "projectName":
+                    detectStatusSummary.setProjectName(readString(jsonReader));
+                    break;
+                case "projectVersion":
+                    detectStatusSummary.setProjectVersion(readString(jsonReader));
+                    break;
+                case "overallStatus":
+                    readOverallStatus(jsonReader, detectStatusSummary);
+                    break;
+                case "status":
+                    readStatuses(jsonReader, detectStatusSummary);
+                    break;
+                case "issues":
+                    readIssues(jsonReader, detectStatusSummary);
+                    break;
+                case "results":
+                    readResults(jsonReader, detectStatusSummary);
+                    break;
+                case "codeLocations":
+                    detectStatusSummary.setCodeLocationCount(countElements(jsonReader));
+                    break;
+                default:
+                    jsonReader.skipValue();
+            }
+        }
+        jsonReader.endObject();
+        return detectStatusSummary;
+    }
+
+    private static void readOverallStatus(JsonReader jsonReader, DetectStatusSummary detectStatusSummary) throws IOException {
+        if (jsonReader.peek() != JsonToken.BEGIN_ARRAY) {
+            detectStatusSummary.setOverallStatus(readString(jsonReader));
+            return;
+        }
+
+        // Newer versions of Detect list the exit code and status of every contributing step; the first one is the overall one.
+        jsonReader.beginArray();
+        while (jsonReader.hasNext()) {
+            String[] keyAndStatus = readKeyAndStatus(jsonReader);
+            if (null == detectStatusSummary.getOverallStatus()) {
+                detectStatusSummary.setOverallStatus(StringUtils.defaultIfBlank(keyAndStatus[0], keyAndStatus[1]));
+            }
+        }
+        jsonReader.endArray();
+    }
+
+    private static void readStatuses(JsonReader jsonReader, DetectStatusSummary detectStatusSummary) throws IOException {
+        if (jsonReader.peek() != JsonToken.BEGIN_ARRAY) {
+            jsonReader.skipValue();
+            return;
+        }
+
+        jsonReader.beginArray();
+        while (jsonReader.hasNext()) {
+            String[] keyAndStatus = readKeyAndStatus(jsonReader);
+            if (null != keyAndStatus[0] && detectStatusSummary.getDetectorStatuses().size() < MAX_ENTRIES) {
+                detectStatusSummary.getDetectorStatuses().put(keyAndStatus[0], keyAndStatus[1]);
+            }
+        }
+        jsonReader.endArray();
+    }
+
+    private static void readIssues(JsonReader jsonReader, DetectStatusSummary detectStatusSummary) throws IOException {
+        if (jsonReader.peek() != JsonToken.BEGIN_ARRAY) {
+            jsonReader.skipValue();
+            return;
+        }
+
+        jsonReader.beginArray();
+        while (jsonReader.hasNext()) {
+            String type = readField(jsonReader, "type");
+            detectStatusSummary.setIssueCount(detectStatusSummary.getIssueCount() + 1);
+            String issueType = StringUtils.defaultIfBlank(type, "UNKNOWN");
+            if (detectStatusSummary.getIssueCounts().size() < MAX_ENTRIES || detectStatusSummary.getIssueCounts().containsKey(issueType)) {
+                detectStatusSummary.getIssueCounts().merge(issueType, 1, Integer::sum);
+            }
+        }
+        jsonReader.endArray();
+    }
+
+    private static void readResults(JsonReader jsonReader, DetectStatusSummary detectStatusSummary) throws IOException {
+        if (jsonReader.peek() != JsonToken.BEGIN_ARRAY) {
+            jsonReader.skipValue();
+            return;
+        }
+
+        jsonReader.beginArray();
+        while (jsonReader.hasNext()) {
+            String location = readField(jsonReader, "location");
+            if (StringUtils.isNotBlank(location) && detectStatusSummary.getResultLocations().size() < MAX_ENTRIES) {
+                detectStatusSummary.getResultLocations().add(location);
+            }
+        }
+        jsonReader.endArray();
+    }
+
+    private static String[] readKeyAndStatus(JsonReader jsonReader) throws IOException {
+        String[] keyAndStatus = new String[2];
+        if (jsonReader.peek() != JsonToken.BEGIN_OBJECT) {
+            jsonReader.skipValue();
+            return keyAndStatus;
+        }
+
+        jsonReader.beginObject();
+        while (jsonReader.hasNext()) {
+            String name = jsonReader.nextName();
+            if ("key".equals(name)) {
+                keyAndStatus[0] = readString(jsonReader);
+            } else if ("status".equals(name)) {
+                keyAndStatus[1] = readString(jsonReader);
+            } else {
+                jsonReader.skipValue();
+            }
+        }
+        jsonReader.endObject();
+        return keyAndStatus;
+    }
+
+    private static String readField(JsonReader jsonReader, String fieldName) throws IOException {
+        if (jsonReader.peek() != JsonToken.BEGIN_OBJECT) {
+            jsonReader.skipValue();
+            return null;
+        }
+
+        String value = null;
+        jsonReader.beginObject();
+        while (jsonReader.hasNext()) {
+            if (fieldName.equals(jsonReader.nextName())) {
+                value = readString(jsonReader);
+            } else {
+                jsonReader.skipValue();
+            }
+        }
+        jsonReader.endObject();
+        return value;
+    }
+
+    private static int countElements(JsonReader jsonReader) throws IOException {
+        if (jsonReader.peek() != JsonToken.BEGIN_ARRAY) {
+            jsonReader.skipValue();
+            return 0;
+        }
+
+        int count = 0;
+        jsonReader.beginArray();
+        while (jsonReader.hasNext()) {
+            jsonReader.skipValue();
+            count++;
+        }
+        jsonReader.endArray();
+        return count;
+    }
+
+    private static String readString(JsonReader jsonReader) throws IOException {
+        JsonToken token = jsonReader.peek();
+        if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+            return StringUtils.abbreviate(jsonReader.nextString(), DetectStatusParser.MAX_VALUE_LENGTH);
+        } else if (token == JsonToken.BOOLEAN) {
+            return String.valueOf(jsonReader.nextBoolean());
+        }
+        jsonReader.skipValue();
+        return null;
+    }
+
+}
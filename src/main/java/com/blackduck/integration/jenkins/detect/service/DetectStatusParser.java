@@ -0,0 +1,88 @@
+/*
+ * blackduck-detect
+ *
+ * Copyright (c) 2024 Black Duck Software, Inc.
+ *
+ * Use subject to the terms and conditions of the Black Duck Software End User Software License and Maintenance Agreement. All rights reserved worldwide.
+ */
+package com.blackduck.integration.jenkins.detect.service;
+
+import com.blackduck.integration.jenkins.detect.DetectResult;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Map;
+
+/**
+ * Reads Detect's log one line at a time and collects the summary Detect prints when it finishes into a {@link DetectResult}. Only the summary is kept, and both the
+ * number of entries and their length are capped, so memory stays bounded however long the log is.
+ */
+public class DetectStatusParser {
+    public static final String RESULT_SECTION = "Detect Result";
+    public static final String STATUS_SECTION = "Detect Status";
+    public static final String OVERALL_STATUS = "Overall Status:";
+    public static final int MAX_ENTRIES = 500;
+    public static final int MAX_VALUE_LENGTH = 2048;
+
+    private static final String MESSAGE_SEPARATOR = "--- ";
+    private static final String SECTION_MARKER = "=====";
+
+    private final DetectResult detectResult = new DetectResult();
+    private String section;
+
+    public DetectResult getDetectResult() {
+        return detectResult;
+    }
+
+    /**
+     * @return true if the line is part of Detect's summary
+     */
+    public boolean accept(String line) {
+        String message = getMessage(line);
+
+        if (message.startsWith(SECTION_MARKER)) {
+            section = StringUtils.trimToNull(StringUtils.strip(message, "="));
+            return true;
+        }
+
+        if (message.startsWith(OVERALL_STATUS)) {
+            String overallStatus = message.substring(OVERALL_STATUS.length()).trim();
+            detectResult.setOverallStatus(truncate(StringUtils.substringBefore(overallStatus, " - ").trim()));
+            detectResult.setStatusMessage(truncate(StringUtils.substringAfter(overallStatus, " - ").trim()));
+            return true;
+        }
+
+        if (RESULT_SECTION.equals(section)) {
+            // Results are "name: value", and values such as URLs may contain colons themselves.
+            return put(detectResult.getResults(), message.indexOf(": "), message);
+        } else if (STATUS_SECTION.equals(section)) {
+            // Statuses are "name: STATUS", and names such as scanned paths may contain colons themselves.
+            return put(detectResult.getDetectorResults(), message.lastIndexOf(": "), message);
+        }
+
+        return null != section;
+    }
+
+    private boolean put(Map<String, String> entries, int separatorIndex, String message) {
+        if (separatorIndex <= 0) {
+            return true;
+        }
+
+        String key = truncate(message.substring(0, separatorIndex).trim());
+        if (entries.size() < MAX_ENTRIES || entries.containsKey(key)) {
+            entries.put(key, truncate(message.substring(separatorIndex + 2).trim()));
+        }
+        return true;
+    }
+
+    private static String getMessage(String line) {
+        // Detect prefixes each line with a timestamp, level and thread, separated from the message by "--- ".
+        int separatorIndex = line.indexOf(MESSAGE_SEPARATOR);
+        String message = separatorIndex >= 0 ? line.substring(separatorIndex + MESSAGE_SEPARATOR.length()) : line;
+        return message.trim();
+    }
+
+    private static String truncate(String value) {
+        return StringUtils.abbreviate(value, MAX_VALUE_LENGTH);
+    }
+
+}
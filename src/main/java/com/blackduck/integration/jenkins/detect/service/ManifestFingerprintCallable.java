@@ -0,0 +1,130 @@
+/*
+ * blackduck-detect
+ *
+ * Copyright (c) 2024 Black Duck Software, Inc.
+ *
+ * Use subject to the terms and conditions of the Black Duck Software End User Software License and Maintenance Agreement. All rights reserved worldwide.
+ */
+package com.blackduck.integration.jenkins.detect.service;
+
+import com.blackduck.integration.jenkins.extensions.JenkinsIntLogger;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import javax.annotation.CheckForNull;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Hashes the dependency manifests and lock files in a workspace on the agent. The result changes whenever one of them is added, removed, moved or edited, and only
+ * the hash is sent back to the controller. When part of the workspace cannot be read the fingerprint is unknown, since a manifest may be hiding there.
+ */
+public class ManifestFingerprintCallable extends MasterToSlaveFileCallable<String> {
+    public static final int MAX_DEPTH = 12;
+
+    public static final Set<String> MANIFEST_FILE_NAMES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+        "pom.xml", "build.gradle", "build.gradle.kts", "settings.gradle", "settings.gradle.kts", "gradle.lockfile", "gradle.properties",
+        "package.json", "package-lock.json", "npm-shrinkwrap.json", "yarn.lock", "pnpm-lock.yaml",
+        "requirements.txt", "setup.py", "setup.cfg", "pyproject.toml", "Pipfile", "Pipfile.lock", "poetry.lock",
+        "Gemfile", "Gemfile.lock", "go.mod", "go.sum", "Gopkg.lock", "Cargo.toml", "Cargo.lock",
+        "composer.json", "composer.lock", "packages.config", "packages.lock.json", "project.assets.json", "Directory.Packages.props",
+        "Podfile", "Podfile.lock", "Package.swift", "Package.resolved", "build.sbt", "conanfile.txt", "conanfile.py", "conan.lock",
+        "pubspec.yaml", "pubspec.lock", "mix.exs", "mix.lock", "rebar.config", "rebar.lock", "Makefile.PL", "cpanfile", "DESCRIPTION", "renv.lock",
+        "Cartfile", "Cartfile.resolved", "environment.yml", "meta.yaml", "BUILD.bazel", "WORKSPACE", "MODULE.bazel"
+    )));
+    public static final Set<String> MANIFEST_FILE_EXTENSIONS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+        ".csproj", ".fsproj", ".vbproj", ".sln", ".gemspec", ".cabal", ".nuspec"
+    )));
+    // Dependency caches and build output hold copies of other projects' manifests, which are not this project's dependencies.
+    public static final Set<String> SKIPPED_DIRECTORIES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+        ".git", ".hg", ".svn", ".gradle", ".m2", ".idea", "node_modules", "bower_components", "vendor", "target", "build", "dist", "out", "bin", ".venv", "venv",
+        "__pycache__", ".tox"
+    )));
+
+    private static final long serialVersionUID = -6218047203987360312L;
+
+    private final JenkinsIntLogger logger;
+
+    public ManifestFingerprintCallable(JenkinsIntLogger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * @return the fingerprint of the manifests, or null if some of the workspace could not be read
+     */
+    @Override
+    @CheckForNull
+    public String invoke(File workspace, VirtualChannel channel) throws IOException {
+        Path root = workspace.toPath();
+        TreeMap<String, String> manifestHashes = new TreeMap<>();
+        boolean[] unreadable = new boolean[1];
+
+        Files.walkFileTree(root, EnumSet.noneOf(FileVisitOption.class), MAX_DEPTH, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) {
+                if (!directory.equals(root) && SKIPPED_DIRECTORIES.contains(directory.getFileName().toString())) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                if (attributes.isRegularFile() && isManifest(file.getFileName().toString())) {
+                    try (InputStream inputStream = Files.newInputStream(file)) {
+                        // Separators are normalized so the same checkout hashes the same on every operating system.
+                        manifestHashes.put(root.relativize(file).toString().replace('\\', '/'), DigestUtils.sha256Hex(inputStream));
+                    } catch (IOException e) {
+                        return visitFileFailed(file, e);
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                logger.warn(String.format("Could not read %s while hashing dependency manifests, so they are treated as changed: %s", file, e.getMessage()));
+                unreadable[0] = true;
+                return FileVisitResult.TERMINATE;
+            }
+        });
+        if (unreadable[0]) {
+            return null;
+        }
+
+        MessageDigest messageDigest = DigestUtils.getSha256Digest();
+        manifestHashes.forEach((relativePath, hash) -> {
+            messageDigest.update(relativePath.getBytes(StandardCharsets.UTF_8));
+            messageDigest.update((byte) 0);
+            messageDigest.update(hash.getBytes(StandardCharsets.UTF_8));
+            messageDigest.update((byte) '\n');
+        });
+        return manifestHashes.size() + ":" + Hex.encodeHexString(messageDigest.digest());
+    }
+
+    public static boolean isManifest(String fileName) {
+        if (MANIFEST_FILE_NAMES.contains(fileName)) {
+            return true;
+        }
+        int extensionIndex = fileName.lastIndexOf('.');
+        return extensionIndex > 0 && MANIFEST_FILE_EXTENSIONS.contains(fileName.substring(extensionIndex));
+    }
+
+}
@@ -0,0 +1,48 @@
+/*
+ * blackduck-detect
+ *
+ * Copyright (c) 2024 Black Duck Software, Inc.
+ *
+ * Use subject to the terms and conditions of the Black Duck Software End User Software License and Maintenance Agreement. All rights reserved worldwide.
+ */
+package com.blackduck.integration.jenkins.detect.service;
+
+import hudson.console.LineTransformationOutputStream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes every line to a shared stream with a prefix in front of it. Whole lines are written at once, so several of these can share one build log.
+ */
+public class PrefixingOutputStream extends LineTransformationOutputStream {
+    private final OutputStream delegate;
+    private final byte[] prefix;
+
+    public PrefixingOutputStream(OutputStream delegate, String prefix) {
+        this.delegate = delegate;
+        this.prefix = prefix.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    protected void eol(byte[] bytes, int length) throws IOException {
+        synchronized (delegate) {
+            delegate.write(prefix);
+            delegate.write(bytes, 0, length);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        delegate.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Only the last unterminated line is written out; the shared stream belongs to the build.
+        super.close();
+        flush();
+    }
+
+}
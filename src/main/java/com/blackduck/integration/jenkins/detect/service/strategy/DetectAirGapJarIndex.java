@@ -0,0 +1,230 @@
+/*
+ * blackduck-detect
+ *
+ * Copyright (c) 2024 Black Duck Software, Inc.
+ *
+ * Use subject to the terms and conditions of the Black Duck Software End User Software License and Maintenance Agreement. All rights reserved worldwide.
+ */
+package com.blackduck.integration.jenkins.detect.service.strategy;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+/**
+ * Agent-wide index of the Detect jars in air gap tool installations. A directory is only listed again when its modification time changes, which is what adding,
+ * removing or renaming a jar does, so builds on an unchanged installation never list it. Several versions may sit side by side and are told apart by the version in
+ * their file names.
+ */
+public class DetectAirGapJarIndex {
+    public static final long MODIFICATION_TIME_GRANULARITY_MILLIS = 2000L;
+
+    private static final DetectAirGapJarIndex INSTANCE = new DetectAirGapJarIndex();
+
+    private final ConcurrentMap<String, DirectoryIndex> directoryIndexes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Object> directoryLocks = new ConcurrentHashMap<>();
+
+    public static DetectAirGapJarIndex getInstance() {
+        return INSTANCE;
+    }
+
+    public List<AirGapJar> getJars(String airGapBaseDir) {
+        File directory = new File(airGapBaseDir);
+        DirectoryIndex directoryIndex = directoryIndexes.get(airGapBaseDir);
+        if (null != directoryIndex && directoryIndex.isCurrent(directory)) {
+            return directoryIndex.jars;
+        }
+
+        synchronized (directoryLocks.computeIfAbsent(airGapBaseDir, key -> new Object())) {
+            directoryIndex = directoryIndexes.get(airGapBaseDir);
+            if (null != directoryIndex && directoryIndex.isCurrent(directory)) {
+                return directoryIndex.jars;
+            }
+
+            DirectoryIndex refreshedIndex = index(directory, null != directoryIndex ? directoryIndex.jars : Collections.emptyList());
+            if (refreshedIndex.jars.isEmpty()) {
+                // A missing or empty installation is most likely still being set up, so it is looked at again next time.
+                directoryIndexes.remove(airGapBaseDir);
+            } else {
+                directoryIndexes.put(airGapBaseDir, refreshedIndex);
+            }
+            return refreshedIndex.jars;
+        }
+    }
+
+    public void clear() {
+        directoryIndexes.clear();
+    }
+
+    public int size() {
+        return directoryIndexes.size();
+    }
+
+    /**
+     * Picks the jar for a version constraint: a version such as 9.10.0, or the start of one such as 9 or 9.10 (optionally written as 9.* or 9.10.*), for which the
+     * highest matching version is used.
+     */
+    public static Optional<AirGapJar> select(List<AirGapJar> jars, String versionConstraint) {
+        String versionPrefix = StringUtils.removeEnd(versionConstraint.trim(), ".*");
+        return jars.stream()
+                   .filter(jar -> jar.getVersion().equals(versionPrefix) || jar.getVersion().startsWith(versionPrefix + "."))
+                   .max(Comparator.comparing(AirGapJar::getVersion, DetectAirGapJarIndex::compareVersions));
+    }
+
+    public static String describeVersions(List<AirGapJar> jars) {
+        return jars.stream().map(AirGapJar::getVersion).collect(Collectors.joining(", "));
+    }
+
+    public static String parseVersion(String jarName) {
+        return StringUtils.removeEnd(StringUtils.removeStart(jarName, DetectAirGapJarStrategy.DETECT_JAR_PREFIX), DetectAirGapJarStrategy.DETECT_JAR_SUFFIX);
+    }
+
+    public static int compareVersions(String version, String otherVersion) {
+        // Numeric parts compare as numbers so that 9.10.0 is newer than 9.9.0, and a release is newer than a qualified build of it such as 9.10.0-SNAPSHOT.
+        String[] parts = StringUtils.substringBefore(version, "-").split("\\.");
+        String[] otherParts = StringUtils.substringBefore(otherVersion, "-").split("\\.");
+        for (int i = 0; i < Math.max(parts.length, otherParts.length); i++) {
+            String part = i < parts.length ? parts[i] : "0";
+            String otherPart = i < otherParts.length ? otherParts[i] : "0";
+            int comparison;
+            if (StringUtils.isNumeric(part) && StringUtils.isNumeric(otherPart)) {
+                comparison = new BigInteger(part).compareTo(new BigInteger(otherPart));
+            } else {
+                comparison = part.compareTo(otherPart);
+            }
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+
+        String qualifier = StringUtils.substringAfter(version, "-");
+        String otherQualifier = StringUtils.substringAfter(otherVersion, "-");
+        if (qualifier.isEmpty() || otherQualifier.isEmpty()) {
+            return Boolean.compare(qualifier.isEmpty(), otherQualifier.isEmpty());
+        }
+        return qualifier.compareTo(otherQualifier);
+    }
+
+    private static DirectoryIndex index(File directory, List<AirGapJar> previousJars) {
+        // Read the modification time first, so a jar added during the listing makes the next build list the directory again.
+        long lastModified = directory.lastModified();
+        if (System.currentTimeMillis() - lastModified < MODIFICATION_TIME_GRANULARITY_MILLIS) {
+            // Some file systems only keep modification times to the second or two, so a directory that changed that recently could change again unnoticed.
+            lastModified = 0L;
+        }
+        File[] foundAirGapJars = directory.listFiles(file -> file.getName().startsWith(DetectAirGapJarStrategy.DETECT_JAR_PREFIX)
+                                                                 && file.getName().endsWith(DetectAirGapJarStrategy.DETECT_JAR_SUFFIX));
+        if (null == foundAirGapJars) {
+            return new DirectoryIndex(lastModified, Collections.emptyList());
+        }
+
+        Map<String, AirGapJar> previousJarsByPath = new HashMap<>();
+        previousJars.forEach(jar -> previousJarsByPath.put(jar.getPath(), jar));
+
+        List<AirGapJar> jars = new ArrayList<>();
+        for (File foundAirGapJar : foundAirGapJars) {
+            String path = foundAirGapJar.toString();
+            AirGapJar previousJar = previousJarsByPath.get(path);
+            // Jars that are unchanged keep a checksum that was already computed.
+            if (null != previousJar && previousJar.isCurrent()) {
+                jars.add(previousJar);
+            } else {
+                jars.add(new AirGapJar(path, parseVersion(foundAirGapJar.getName()), foundAirGapJar.lastModified()));
+            }
+        }
+        jars.sort(Comparator.comparing(AirGapJar::getPath));
+        return new DirectoryIndex(lastModified, Collections.unmodifiableList(jars));
+    }
+
+    private static class DirectoryIndex {
+        private final long lastModified;
+        private final List<AirGapJar> jars;
+
+        private DirectoryIndex(long lastModified, List<AirGapJar> jars) {
+            this.lastModified = lastModified;
+            this.jars = jars;
+        }
+
+        private boolean isCurrent(File directory) {
+            return lastModified != 0L && lastModified == directory.lastModified();
+        }
+    }
+
+    public static class AirGapJar {
+        private final String path;
+        private final String version;
+        private final long lastModified;
+        @Nullable
+        private volatile Checksum checksum;
+
+        public AirGapJar(String path, String version, long lastModified) {
+            this.path = path;
+            this.version = version;
+            this.lastModified = lastModified;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * @return the SHA-256 of the jar, which is only computed once it is asked for so that the versions not in use are never read from the installation
+         */
+        public String getSha256() throws IOException {
+            // Replacing a jar in place leaves the directory's modification time alone, so the checksum is tied to the jar's own.
+            long currentLastModified = new File(path).lastModified();
+            Checksum current = checksum;
+            if (null == current || current.lastModified != currentLastModified) {
+                try (InputStream inputStream = Files.newInputStream(new File(path).toPath())) {
+                    current = new Checksum(currentLastModified, DigestUtils.sha256Hex(inputStream));
+                }
+                checksum = current;
+            }
+            return current.sha256;
+        }
+
+        private boolean isCurrent() {
+            return lastModified == new File(path).lastModified();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s (version %s)", path, version);
+        }
+    }
+
+    private static class Checksum {
+        private final long lastModified;
+        private final String sha256;
+
+        private Checksum(long lastModified, String sha256) {
+            this.lastModified = lastModified;
+            this.sha256 = sha256;
+        }
+    }
+
+}
@@ -7,20 +7,23 @@
  */
 package com.blackduck.integration.jenkins.detect.service.strategy;
 
+import com.blackduck.integration.jenkins.detect.DetectJenkinsEnvironmentVariable;
 import com.blackduck.integration.jenkins.detect.extensions.AirGapDownloadStrategy;
 import com.blackduck.integration.jenkins.detect.exception.DetectJenkinsException;
+import com.blackduck.integration.jenkins.detect.service.DetectPhaseTimings;
 import com.blackduck.integration.jenkins.detect.extensions.tool.DetectAirGapInstallation;
 import com.blackduck.integration.exception.IntegrationException;
 import com.blackduck.integration.jenkins.extensions.JenkinsIntLogger;
 import com.blackduck.integration.jenkins.service.JenkinsConfigService;
+import com.blackduck.integration.log.LogLevel;
 import com.blackduck.integration.util.IntEnvironmentVariables;
 import jenkins.security.MasterToSlaveCallable;
+import org.apache.commons.lang3.StringUtils;
 
-import java.io.File;
-import java.io.FileFilter;
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 
@@ -74,61 +77,106 @@ public class DetectAirGapJarStrategy extends DetectExecutionStrategy {
     }
 
     @Override
-    public MasterToSlaveCallable<ArrayList<String>, IntegrationException> getSetupCallable() throws DetectJenkinsException {
+    public MasterToSlaveCallable<DetectSetupResult, IntegrationException> getSetupCallable() throws DetectJenkinsException {
+        // Installing the air gap tool on the node downloads and unpacks it the first time.
+        long startedAt = DetectPhaseTimings.start();
         String airGapBaseDir = getOrDownloadAirGapJar();
+        recordPhase(DetectPhaseTimings.DOWNLOAD, startedAt);
 
         if (airGapBaseDir == null) {
             throw new DetectJenkinsException("Detect AirGap installation directory is null. Check Jenkins tool configuration for installation directory.");
         }
 
-        return new SetupCallableImpl(logger, intEnvironmentVariables.getVariables(), remoteJdkHome, airGapBaseDir);
+        // A version pinned by the step picks among the jars of an installation that does not name one itself.
+        String airGapVersion = StringUtils.defaultIfBlank(
+            airGapDownloadStrategy.getAirGapVersion(),
+            intEnvironmentVariables.getValue(DetectJenkinsEnvironmentVariable.DETECT_VERSION.stringValue())
+        );
+        return new SetupCallableImpl(logger, intEnvironmentVariables.getVariables(), remoteJdkHome, airGapBaseDir, airGapVersion);
     }
 
-    public static class SetupCallableImpl extends MasterToSlaveCallable<ArrayList<String>, IntegrationException> {
+    public static class SetupCallableImpl extends MasterToSlaveCallable<DetectSetupResult, IntegrationException> {
         private static final long serialVersionUID = -8326836838838706367L;
 
         private final JenkinsIntLogger logger;
         private final Map<String, String> environmentVariables;
         private final String remoteJdkHome;
         private final String airGapBaseDir;
+        @Nullable
+        private final String airGapVersion;
 
         public SetupCallableImpl(JenkinsIntLogger logger, Map<String, String> environmentVariables, String remoteJdkHome, String airGapBaseDir) {
+            this(logger, environmentVariables, remoteJdkHome, airGapBaseDir, null);
+        }
+
+        public SetupCallableImpl(JenkinsIntLogger logger, Map<String, String> environmentVariables, String remoteJdkHome, String airGapBaseDir, @Nullable String airGapVersion) {
             this.logger = logger;
             this.environmentVariables = environmentVariables;
             this.remoteJdkHome = remoteJdkHome;
             this.airGapBaseDir = airGapBaseDir;
+            this.airGapVersion = airGapVersion;
         }
 
         @Override
-        public ArrayList<String> call() throws DetectJenkinsException {
-            String airGapJar = getAirGapJar(airGapBaseDir);
+        public DetectSetupResult call() throws DetectJenkinsException {
+            DetectPhaseTimings detectPhaseTimings = new DetectPhaseTimings();
+            long javaStartedAt = DetectPhaseTimings.start();
+            // Resolving Java starts the version probe, which then runs while the jar is looked up.
             RemoteJavaService remoteJavaService = new RemoteJavaService(logger, remoteJdkHome, environmentVariables);
-            String javaExecutablePath = remoteJavaService.getJavaExecutablePath();
+            RemoteJavaCache.ResolvedJava resolvedJava = remoteJavaService.getResolvedJava();
+            String airGapJar = getAirGapJar(airGapBaseDir);
+            String javaExecutablePath = resolvedJava.getExecutablePath();
 
             logger.info("Detect AirGap jar configured: " + airGapJar);
 
-            return new ArrayList<>(Arrays.asList(javaExecutablePath, "-jar", airGapJar));
+            ArrayList<String> detectCommand = new ArrayList<>();
+            detectCommand.add(javaExecutablePath);
+            detectCommand.addAll(remoteJavaService.getWarmStartArguments(javaExecutablePath, airGapJar));
+            detectCommand.add("-jar");
+            detectCommand.add(airGapJar);
+
+            remoteJavaService.reportJavaVersion(resolvedJava);
+            detectPhaseTimings.record(DetectPhaseTimings.JAVA, javaStartedAt);
+            return new DetectSetupResult(detectCommand, detectPhaseTimings);
         }
 
         private String getAirGapJar(String airGapBaseDir) throws DetectJenkinsException {
-            FileFilter fileFilter = file -> file.getName().startsWith(DETECT_JAR_PREFIX) && file.getName().endsWith(DETECT_JAR_SUFFIX);
-            File[] foundAirGapJars = new File(airGapBaseDir).listFiles(fileFilter);
+            List<DetectAirGapJarIndex.AirGapJar> foundAirGapJars = DetectAirGapJarIndex.getInstance().getJars(airGapBaseDir);
 
-            if (foundAirGapJars == null || foundAirGapJars.length == 0) {
+            DetectAirGapJarIndex.AirGapJar airGapJar;
+            if (foundAirGapJars.isEmpty()) {
                 throw new DetectJenkinsException(String.format(
                     "Expected 1 jar from Detect Air Gap tool installation at <%s> and did not find any. Check your Jenkins plugin and tool configuration.",
                     airGapBaseDir
                 ));
-            } else if (foundAirGapJars.length > 1) {
+            } else if (StringUtils.isNotBlank(airGapVersion)) {
+                airGapJar = DetectAirGapJarIndex.select(foundAirGapJars, airGapVersion).orElseThrow(() -> new DetectJenkinsException(
+                    String.format(
+                        "Found no jar matching Detect version %s in Detect Air Gap tool installation at <%s>, only versions %s. Check your Jenkins plugin and tool configuration.",
+                        airGapVersion,
+                        airGapBaseDir,
+                        DetectAirGapJarIndex.describeVersions(foundAirGapJars)
+                    )));
+            } else if (foundAirGapJars.size() > 1) {
                 throw new DetectJenkinsException(
                     String.format(
-                        "Expected 1 jar from Detect Air Gap tool installation at <%s> and instead found %d jars. Check your Jenkins plugin and tool configuration.",
+                        "Expected 1 jar from Detect Air Gap tool installation at <%s> and instead found %d jars. Set the Detect version to choose between versions %s, or check your Jenkins plugin and tool configuration.",
                         airGapBaseDir,
-                        foundAirGapJars.length
+                        foundAirGapJars.size(),
+                        DetectAirGapJarIndex.describeVersions(foundAirGapJars)
                     ));
             } else {
-                return foundAirGapJars[0].toString();
+                airGapJar = foundAirGapJars.get(0);
+            }
+
+            if (logger.getLogLevel().isLoggable(LogLevel.DEBUG)) {
+                try {
+                    logger.debug(String.format("Detect AirGap jar version %s, SHA-256 %s", airGapJar.getVersion(), airGapJar.getSha256()));
+                } catch (IOException e) {
+                    logger.debug("Could not compute the checksum of the Detect AirGap jar: " + e.getMessage(), e);
+                }
             }
+            return airGapJar.getPath();
         }
     }
 
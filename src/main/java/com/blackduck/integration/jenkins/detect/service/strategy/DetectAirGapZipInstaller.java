@@ -0,0 +1,325 @@
+/*
+ * blackduck-detect
+ *
+ * Copyright (c) 2024 Black Duck Software, Inc.
+ *
+ * Use subject to the terms and conditions of the Black Duck Software End User Software License and Maintenance Agreement. All rights reserved worldwide.
+ */
+package com.blackduck.integration.jenkins.detect.service.strategy;
+
+import com.blackduck.integration.exception.IntegrationException;
+import com.blackduck.integration.jenkins.detect.exception.DetectJenkinsException;
+import com.blackduck.integration.jenkins.extensions.JenkinsIntLogger;
+import com.blackduck.integration.rest.HttpUrl;
+import com.blackduck.integration.rest.proxy.ProxyInfo;
+import com.blackduck.integration.rest.request.Request;
+import com.blackduck.integration.rest.response.Response;
+import hudson.Util;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.TeeInputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Installs a Detect air gap zip into a tool directory on the node it runs on. The zip is extracted as it streams in, into a staging directory next to the
+ * installation that is only renamed into place once the SHA-256 of everything read matches. Downloaded bytes are also appended to a partial file, so an interrupted
+ * download continues with a range request and replays what it already has instead of starting over. Downloads go through the proxy Jenkins is configured with for
+ * the URL. A file: URL is read in place without any copy.
+ */
+public class DetectAirGapZipInstaller {
+    public static final String INSTALLED_FROM_FILENAME = ".installedFrom";
+    public static final String PARTIAL_FILE_SUFFIX = ".zip.part";
+    public static final String STAGING_SUFFIX = ".staging";
+    public static final String LOCK_SUFFIX = ".lock";
+    public static final int MAX_DOWNLOAD_ATTEMPTS = 3;
+    public static final int DOWNLOAD_TIMEOUT_SECONDS = 120;
+
+    private static final String INSTALLED_URL = "url";
+    private static final String INSTALLED_SHA256 = "sha256";
+    private static final int HTTP_PARTIAL_CONTENT = 206;
+    private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+
+    // Builds running on different executors of the same agent share this JVM; the file lock below keeps out other processes sharing the tool directory.
+    private static final ConcurrentMap<String, Object> INSTALL_LOCKS = new ConcurrentHashMap<>();
+
+    private final JenkinsIntLogger logger;
+    private final String url;
+    private final String sha256;
+    private final ProxyInfo proxyInfo;
+
+    public DetectAirGapZipInstaller(JenkinsIntLogger logger, String url, String sha256) {
+        this(logger, url, sha256, ProxyInfo.NO_PROXY_INFO);
+    }
+
+    public DetectAirGapZipInstaller(JenkinsIntLogger logger, String url, String sha256, ProxyInfo proxyInfo) {
+        this.logger = logger;
+        this.url = StringUtils.trimToEmpty(url);
+        this.sha256 = StringUtils.trimToEmpty(sha256).toLowerCase(Locale.ENGLISH);
+        this.proxyInfo = proxyInfo;
+    }
+
+    /**
+     * @return true if the zip was installed, false if the installation directory already held it
+     */
+    public boolean install(Path installDirectory) throws IOException, DetectJenkinsException {
+        if (StringUtils.isAnyBlank(url, sha256)) {
+            throw new DetectJenkinsException("The Detect Air Gap installer needs both the URL of the zip and its SHA-256. Check the Jenkins tool configuration.");
+        }
+
+        Path absoluteInstallDirectory = installDirectory.toAbsolutePath();
+        Path parentDirectory = absoluteInstallDirectory.getParent();
+        Files.createDirectories(parentDirectory);
+        String installName = absoluteInstallDirectory.getFileName().toString();
+
+        synchronized (INSTALL_LOCKS.computeIfAbsent(absoluteInstallDirectory.toString(), key -> new Object())) {
+            try (FileChannel lockChannel = FileChannel.open(parentDirectory.resolve(installName + LOCK_SUFFIX), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                FileLock ignored = lockChannel.lock()) {
+                // Whoever held the lock before may have just installed the same zip.
+                if (isInstalled(absoluteInstallDirectory)) {
+                    logger.debug(String.format("Detect Air Gap zip with SHA-256 %s is already installed at %s", sha256, absoluteInstallDirectory));
+                    return false;
+                }
+
+                Path stagingDirectory = parentDirectory.resolve(installName + STAGING_SUFFIX);
+                try {
+                    if (isFileUrl()) {
+                        installFromFile(stagingDirectory);
+                    } else {
+                        installFromDownload(stagingDirectory, parentDirectory.resolve(installName + "-" + sha256.substring(0, Math.min(12, sha256.length())) + PARTIAL_FILE_SUFFIX));
+                    }
+
+                    writeInstalledFrom(stagingDirectory);
+                    replace(absoluteInstallDirectory, stagingDirectory);
+                } finally {
+                    // Only a failed installation leaves its staging directory behind.
+                    deleteIfPresent(stagingDirectory);
+                }
+                logger.info(String.format("Installed Detect Air Gap zip from %s at %s", url, absoluteInstallDirectory));
+                return true;
+            }
+        }
+    }
+
+    public boolean isInstalled(Path installDirectory) {
+        Path installedFrom = installDirectory.resolve(INSTALLED_FROM_FILENAME);
+        if (!Files.isRegularFile(installedFrom)) {
+            return false;
+        }
+
+        Properties properties = new Properties();
+        try (InputStream inputStream = Files.newInputStream(installedFrom)) {
+            properties.load(inputStream);
+        } catch (IOException e) {
+            return false;
+        }
+        // The checksum identifies the zip, so moving it to another mirror does not install it again.
+        return sha256.equals(properties.getProperty(INSTALLED_SHA256));
+    }
+
+    private boolean isFileUrl() {
+        return StringUtils.startsWithIgnoreCase(url, "file:");
+    }
+
+    private void installFromFile(Path stagingDirectory) throws IOException, DetectJenkinsException {
+        Path zipFile;
+        try {
+            zipFile = Paths.get(new URI(url));
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            throw new DetectJenkinsException(String.format("The Detect Air Gap zip URL %s is not a valid file URL.", url), e);
+        }
+
+        logger.info(String.format("Extracting Detect Air Gap zip %s", zipFile));
+        try (InputStream inputStream = Files.newInputStream(zipFile)) {
+            String actualSha256 = extract(inputStream, stagingDirectory);
+            verify(actualSha256);
+        }
+    }
+
+    private void installFromDownload(Path stagingDirectory, Path partialFile) throws IOException, DetectJenkinsException {
+        for (int attempt = 1; attempt <= MAX_DOWNLOAD_ATTEMPTS; attempt++) {
+            long offset = Files.isRegularFile(partialFile) ? Files.size(partialFile) : 0L;
+            try (Response response = requestDownload(offset)) {
+                InputStream remaining;
+                int responseCode = response.getStatusCode();
+                if (offset > 0 && responseCode == HTTP_RANGE_NOT_SATISFIABLE) {
+                    // Everything was downloaded before, only the extraction is left.
+                    remaining = new ByteArrayInputStream(new byte[0]);
+                } else {
+                    if (offset > 0 && responseCode != HTTP_PARTIAL_CONTENT) {
+                        logger.info(String.format("%s does not support resuming downloads, starting over", url));
+                        Files.deleteIfExists(partialFile);
+                        offset = 0L;
+                    }
+                    throwForError(response);
+                    remaining = getContent(response);
+                }
+
+                if (offset > 0) {
+                    logger.info(String.format("Resuming download of the Detect Air Gap zip from %s at byte %d", url, offset));
+                } else {
+                    logger.info(String.format("Downloading and extracting the Detect Air Gap zip from %s", url));
+                }
+
+                String actualSha256;
+                // The partial file replays what an earlier attempt already downloaded, and keeps whatever this attempt adds.
+                try (OutputStream partialOutput = Files.newOutputStream(partialFile, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                    InputStream zipStream = new SequenceInputStream(Files.newInputStream(partialFile), new TeeInputStream(remaining, partialOutput))) {
+                    actualSha256 = extract(zipStream, stagingDirectory);
+                }
+
+                long contentLength = getContentLength(response);
+                long expectedSize = offset + contentLength;
+                if (responseCode != HTTP_RANGE_NOT_SATISFIABLE && contentLength >= 0 && Files.size(partialFile) < expectedSize) {
+                    // A dropped connection can look like the end of the download, so it is only treated as complete once every promised byte arrived.
+                    throw new IOException(String.format("the download ended after %d of %d bytes", Files.size(partialFile), expectedSize));
+                }
+
+                if (!sha256.equals(actualSha256) && offset > 0) {
+                    // The part kept from an earlier attempt may belong to a different file on the server.
+                    logger.warn("The resumed Detect Air Gap zip did not match its SHA-256, downloading it again.");
+                    Files.deleteIfExists(partialFile);
+                    continue;
+                }
+                try {
+                    verify(actualSha256);
+                } finally {
+                    Files.deleteIfExists(partialFile);
+                }
+                return;
+            } catch (IOException e) {
+                logger.warn(String.format("Download of the Detect Air Gap zip was interrupted (attempt %d of %d): %s", attempt, MAX_DOWNLOAD_ATTEMPTS, e.getMessage()));
+                logger.trace("Stack trace:", e);
+            }
+        }
+
+        throw new DetectJenkinsException(String.format("Could not download the Detect Air Gap zip from %s after %d attempts.", url, MAX_DOWNLOAD_ATTEMPTS));
+    }
+
+    private Response requestDownload(long offset) throws IOException {
+        try {
+            Request.Builder requestBuilder = new Request.Builder().url(new HttpUrl(url));
+            if (offset > 0) {
+                requestBuilder.addHeader("Range", "bytes=" + offset + "-");
+            }
+            return DetectHttpClientPool.createHttpClient(logger, DOWNLOAD_TIMEOUT_SECONDS, proxyInfo).execute(requestBuilder.build());
+        } catch (IntegrationException e) {
+            // Failing to reach the mirror is retried like a dropped connection.
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    private static void throwForError(Response response) throws IOException {
+        try {
+            response.throwExceptionForError();
+        } catch (IntegrationException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    private static InputStream getContent(Response response) throws IOException {
+        try {
+            return response.getContent();
+        } catch (IntegrationException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    private static long getContentLength(Response response) {
+        try {
+            return Long.parseLong(StringUtils.trimToEmpty(response.getHeaderValue("Content-Length")));
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    private String extract(InputStream inputStream, Path stagingDirectory) throws IOException, DetectJenkinsException {
+        deleteIfPresent(stagingDirectory);
+        Files.createDirectories(stagingDirectory);
+
+        MessageDigest messageDigest = DigestUtils.getSha256Digest();
+        DigestInputStream digestInputStream = new DigestInputStream(inputStream, messageDigest);
+        ZipInputStream zipInputStream = new ZipInputStream(digestInputStream);
+        ZipEntry zipEntry;
+        while ((zipEntry = zipInputStream.getNextEntry()) != null) {
+            Path target = stagingDirectory.resolve(zipEntry.getName()).normalize();
+            if (!target.startsWith(stagingDirectory)) {
+                throw new DetectJenkinsException(String.format("The Detect Air Gap zip from %s contains %s, which is outside of the installation directory.", url, zipEntry.getName()));
+            }
+
+            if (zipEntry.isDirectory()) {
+                Files.createDirectories(target);
+            } else {
+                Files.createDirectories(target.getParent());
+                Files.copy(zipInputStream, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        // The central directory at the end of the zip is not read by the entries above but is part of the checksum.
+        IOUtils.copyLarge(digestInputStream, NullOutputStream.NULL_OUTPUT_STREAM);
+        return Hex.encodeHexString(messageDigest.digest());
+    }
+
+    private void verify(String actualSha256) throws DetectJenkinsException {
+        if (!sha256.equals(actualSha256)) {
+            throw new DetectJenkinsException(String.format(
+                "The Detect Air Gap zip from %s has SHA-256 %s, but %s was expected. Check the Jenkins tool configuration and the zip on the mirror.",
+                url,
+                actualSha256,
+                sha256
+            ));
+        }
+    }
+
+    private void writeInstalledFrom(Path stagingDirectory) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(INSTALLED_URL, url);
+        properties.setProperty(INSTALLED_SHA256, sha256);
+        try (OutputStream outputStream = Files.newOutputStream(stagingDirectory.resolve(INSTALLED_FROM_FILENAME))) {
+            properties.store(outputStream, "Black Duck Detect Air Gap installation");
+        }
+    }
+
+    private void replace(Path installDirectory, Path stagingDirectory) throws IOException {
+        if (Files.exists(installDirectory)) {
+            // Moving the previous installation aside first keeps the swap a pair of renames.
+            Path previousDirectory = installDirectory.resolveSibling(installDirectory.getFileName() + ".previous-" + System.nanoTime());
+            Files.move(installDirectory, previousDirectory);
+            DetectScriptCache.moveAtomically(stagingDirectory, installDirectory);
+            deleteIfPresent(previousDirectory);
+        } else {
+            DetectScriptCache.moveAtomically(stagingDirectory, installDirectory);
+        }
+    }
+
+    private static void deleteIfPresent(Path directory) throws IOException {
+        if (Files.exists(directory)) {
+            Util.deleteRecursive(directory.toFile());
+        }
+    }
+
+}
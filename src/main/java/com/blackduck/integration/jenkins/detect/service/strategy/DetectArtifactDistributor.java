@@ -0,0 +1,373 @@
+/*
+ * blackduck-detect
+ *
+ * Copyright (c) 2024 Black Duck Software, Inc.
+ *
+ * Use subject to the terms and conditions of the Black Duck Software End User Software License and Maintenance Agreement. All rights reserved worldwide.
+ */
+package com.blackduck.integration.jenkins.detect.service.strategy;
+
+import com.blackduck.integration.exception.IntegrationException;
+import com.blackduck.integration.jenkins.detect.exception.DetectJenkinsException;
+import com.blackduck.integration.jenkins.extensions.JenkinsIntLogger;
+import com.blackduck.integration.jenkins.wrapper.JenkinsProxyHelper;
+import com.blackduck.integration.rest.proxy.ProxyInfo;
+import com.blackduck.integration.util.OperatingSystemType;
+import hudson.FilePath;
+import hudson.remoting.RemoteInputStream;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Fetches Detect artifacts once into a cache on the controller and streams them to agents over the remoting channel. Transfers land in a partial file next to the
+ * target so an interrupted transfer resumes from where it stopped, and the artifact is only renamed into place on the agent once its SHA-256 matches the controller's.
+ * The Detect jar is downloaded on the controller by running the Detect script there with DETECT_DOWNLOAD_ONLY, and is distributed together with the file the script
+ * records the download in, so the script on the agent finds the jar in the directory it is pointed at and skips the download.
+ */
+public class DetectArtifactDistributor {
+    public static final String DISTRIBUTED_DIRECTORY = "distributed";
+    public static final String PARTIAL_FILE_SUFFIX = ".part";
+    public static final String LOCK_SUFFIX = ".lock";
+    public static final String JAR_DIRECTORY = "jar";
+    public static final String LATEST_JAR_DIRECTORY = "latest";
+    public static final int MAX_TRANSFER_ATTEMPTS = 3;
+    public static final long TRANSFER_COMPLETE = -1L;
+
+    // Builds running on different executors of the same agent share this JVM; the file lock below keeps out other processes sharing the tool directory.
+    private static final ConcurrentMap<String, Object> TRANSFER_LOCKS = new ConcurrentHashMap<>();
+    // Builds on different agents download the jar into the same directory on the controller, so only one of them runs the Detect script there at a time.
+    private static final ConcurrentMap<String, Object> JAR_DOWNLOAD_LOCKS = new ConcurrentHashMap<>();
+
+    private final JenkinsIntLogger logger;
+    private final JenkinsProxyHelper jenkinsProxyHelper;
+    private final Path controllerCacheDirectory;
+    private final FilePath agentToolsDirectory;
+
+    public DetectArtifactDistributor(JenkinsIntLogger logger, JenkinsProxyHelper jenkinsProxyHelper, Path controllerCacheDirectory, FilePath agentToolsDirectory) {
+        this.logger = logger;
+        this.jenkinsProxyHelper = jenkinsProxyHelper;
+        this.controllerCacheDirectory = controllerCacheDirectory;
+        this.agentToolsDirectory = agentToolsDirectory;
+    }
+
+    /**
+     * @return the directory the distributed Detect jar is kept in when no Detect version is pinned, as a path on a node with the given operating system
+     */
+    public static String getJarDirectory(String toolsDirectory, OperatingSystemType operatingSystemType) {
+        String separator = operatingSystemType == OperatingSystemType.WINDOWS ? "\\" : "/";
+        return String.join(separator, StringUtils.removeEnd(toolsDirectory, separator), DetectScriptStrategy.DETECT_INSTALL_DIRECTORY, DISTRIBUTED_DIRECTORY, JAR_DIRECTORY);
+    }
+
+    public String distribute(String artifactUrl, String artifactFileName, long cacheTimeToLiveMillis, int downloadTimeoutSeconds) throws IntegrationException, IOException, InterruptedException {
+        Path controllerArtifact = fetch(artifactUrl, artifactFileName, cacheTimeToLiveMillis, downloadTimeoutSeconds);
+
+        FilePath agentArtifact = agentToolsDirectory.child(DetectScriptStrategy.DETECT_INSTALL_DIRECTORY)
+            .child(DISTRIBUTED_DIRECTORY)
+            .child(DetectScriptCache.getCacheKey(artifactUrl))
+            .child(artifactFileName);
+
+        transfer(controllerArtifact, agentArtifact);
+        return agentArtifact.getRemote();
+    }
+
+    /**
+     * Downloads the Detect jar on the controller and transfers it into the given directory on the agent, which the Detect script on the agent must be pointed at
+     * through DETECT_JAR_DOWNLOAD_DIR. The Detect variables of the given environment, such as a pinned version, apply to the download on the controller as well.
+     */
+    public void distributeJar(Map<String, String> environmentVariables, String agentJarDirectory, long cacheTimeToLiveMillis, int downloadTimeoutSeconds)
+        throws IntegrationException, IOException, InterruptedException {
+        String scriptUrl;
+        String scriptFileName;
+        if (OperatingSystemType.determineFromSystem() == OperatingSystemType.WINDOWS) {
+            scriptUrl = DetectScriptStrategy.SUPPORTED_POWERSHELL_SCRIPT_URL;
+            scriptFileName = DetectScriptStrategy.POWERSHELL_SCRIPT_FILENAME;
+        } else {
+            scriptUrl = DetectScriptStrategy.SUPPORTED_SHELL_SCRIPT_URL;
+            scriptFileName = DetectScriptStrategy.SHELL_SCRIPT_FILENAME;
+        }
+        Path controllerScript = fetch(scriptUrl, scriptFileName, cacheTimeToLiveMillis, downloadTimeoutSeconds);
+
+        String detectVersion = StringUtils.defaultIfBlank(environmentVariables.get(DetectStrategyService.DETECT_LATEST_RELEASE_VERSION), LATEST_JAR_DIRECTORY);
+        if (!DetectArtifactStore.isValidVersion(detectVersion)) {
+            throw new DetectJenkinsException(String.format("The Detect version %s is not valid. Use a version such as 10.3.0.", detectVersion));
+        }
+        Path controllerJarDirectory = controllerCacheDirectory.resolve(JAR_DIRECTORY).resolve(detectVersion);
+
+        List<Path> jarFiles;
+        synchronized (JAR_DOWNLOAD_LOCKS.computeIfAbsent(controllerJarDirectory.toAbsolutePath().toString(), key -> new Object())) {
+            Files.createDirectories(controllerJarDirectory);
+            Map<String, String> downloadEnvironment = getDownloadEnvironment(environmentVariables, scriptUrl);
+            downloadEnvironment.put(DetectStrategyService.DETECT_JAR_DOWNLOAD_DIR, controllerJarDirectory.toAbsolutePath().toString());
+
+            logger.info("Downloading the Detect jar on the controller into " + controllerJarDirectory);
+            ArrayList<String> scriptCommand = DetectScriptStrategy.createScriptCommand(controllerScript.toRealPath().toString());
+            int exitCode = new DetectScriptStrategy.DownloadJarCallableImpl(logger, downloadEnvironment, scriptCommand).call();
+            if (exitCode != 0) {
+                throw new DetectJenkinsException("Downloading the Detect jar on the controller failed with exit code " + exitCode);
+            }
+            jarFiles = getJarFiles(controllerJarDirectory);
+        }
+
+        FilePath agentDirectory = new FilePath(agentToolsDirectory.getChannel(), agentJarDirectory);
+        for (Path jarFile : jarFiles) {
+            transfer(jarFile, agentDirectory.child(jarFile.getFileName().toString()));
+        }
+    }
+
+    private Path fetch(String artifactUrl, String artifactFileName, long cacheTimeToLiveMillis, int downloadTimeoutSeconds) throws IntegrationException, IOException {
+        DetectScriptCache controllerCache = new DetectScriptCache(logger, controllerCacheDirectory, cacheTimeToLiveMillis);
+        return controllerCache.getOrDownload(artifactUrl, artifactFileName, () -> DetectHttpClientPool.createHttpClient(logger, downloadTimeoutSeconds, getProxyInfo(artifactUrl)));
+    }
+
+    private Map<String, String> getDownloadEnvironment(Map<String, String> environmentVariables, String scriptUrl) {
+        // Only the variables the Detect scripts read are passed on, so the rest of the build environment stays off the controller.
+        Map<String, String> downloadEnvironment = new HashMap<>();
+        environmentVariables.forEach((key, value) -> {
+            if (null != value && (key.startsWith("DETECT_") || key.startsWith("BLACKDUCK_PROXY_"))) {
+                downloadEnvironment.put(key, value);
+            }
+        });
+
+        if (!downloadEnvironment.containsKey("BLACKDUCK_PROXY_HOST")) {
+            ProxyInfo proxyInfo = getProxyInfo(scriptUrl);
+            proxyInfo.getHost().ifPresent(proxyHost -> {
+                downloadEnvironment.put("BLACKDUCK_PROXY_HOST", proxyHost);
+                downloadEnvironment.put("BLACKDUCK_PROXY_PORT", String.valueOf(proxyInfo.getPort()));
+                proxyInfo.getUsername().ifPresent(proxyUsername -> downloadEnvironment.put("BLACKDUCK_PROXY_USERNAME", proxyUsername));
+                proxyInfo.getPassword().ifPresent(proxyPassword -> downloadEnvironment.put("BLACKDUCK_PROXY_PASSWORD", proxyPassword));
+            });
+        }
+        return downloadEnvironment;
+    }
+
+    /**
+     * @return the newest jar in the directory, which is the one the Detect script just downloaded or found, and the files the script records its downloads in
+     */
+    static List<Path> getJarFiles(Path jarDirectory) throws IOException {
+        List<Path> jarFiles = new ArrayList<>();
+        Path newestJar = null;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(jarDirectory, Files::isRegularFile)) {
+            for (Path file : files) {
+                if (!file.getFileName().toString().endsWith(".jar")) {
+                    jarFiles.add(file);
+                } else if (null == newestJar || Files.getLastModifiedTime(file).compareTo(Files.getLastModifiedTime(newestJar)) > 0) {
+                    newestJar = file;
+                }
+            }
+        }
+        if (null == newestJar) {
+            throw new IOException("The Detect script did not download a jar into " + jarDirectory);
+        }
+        // The jar goes first, so the record of the download never points at a jar the agent does not have yet.
+        jarFiles.add(0, newestJar);
+        return jarFiles;
+    }
+
+    private void transfer(Path controllerArtifact, FilePath agentArtifact) throws IOException, InterruptedException, IntegrationException {
+        String artifactFileName = controllerArtifact.getFileName().toString();
+        String expectedSha256 = sha256(controllerArtifact);
+        long artifactSize = Files.size(controllerArtifact);
+
+        for (int attempt = 1; attempt <= MAX_TRANSFER_ATTEMPTS; attempt++) {
+            try {
+                long offset = agentArtifact.act(new TransferStateCallable(expectedSha256, artifactSize));
+                if (TRANSFER_COMPLETE == offset) {
+                    logger.info(String.format("Using Detect artifact %s already distributed to this agent", agentArtifact.getRemote()));
+                    return;
+                } else if (offset > 0) {
+                    logger.info(String.format("Resuming transfer of %s to this agent at byte %d of %d", artifactFileName, offset, artifactSize));
+                } else {
+                    logger.info(String.format("Transferring %s from the controller to %s", artifactFileName, agentArtifact.getRemote()));
+                }
+
+                long transferred;
+                try (InputStream inputStream = Files.newInputStream(controllerArtifact)) {
+                    skipFully(inputStream, offset);
+                    transferred = agentArtifact.act(new AppendCallable(offset, new RemoteInputStream(inputStream, RemoteInputStream.Flag.GREEDY)));
+                }
+                if (transferred < 0) {
+                    // Another build on this agent appended to the partial file in the meantime, so the next attempt picks up from where that one got to.
+                    logger.info(String.format("%s is being transferred to this agent by another build.", artifactFileName));
+                    continue;
+                }
+
+                if (agentArtifact.act(new CommitCallable(expectedSha256))) {
+                    return;
+                }
+
+                logger.warn(String.format("Transferred %s did not match the controller's checksum, starting over.", artifactFileName));
+            } catch (IOException e) {
+                logger.warn(String.format("Transfer of %s was interrupted (attempt %d of %d): %s", artifactFileName, attempt, MAX_TRANSFER_ATTEMPTS, e.getMessage()));
+                logger.trace("Stack trace:", e);
+            }
+        }
+
+        throw new DetectJenkinsException(String.format("Could not transfer %s to the agent after %d attempts.", artifactFileName, MAX_TRANSFER_ATTEMPTS));
+    }
+
+    private ProxyInfo getProxyInfo(String artifactUrl) {
+        try {
+            return jenkinsProxyHelper.getProxyInfo(artifactUrl);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Black Duck Detect for Jenkins could not resolve proxy info from Jenkins because: " + e.getMessage());
+            logger.warn("Continuing without proxy...");
+            logger.trace("Stack trace:", e);
+            return ProxyInfo.NO_PROXY_INFO;
+        }
+    }
+
+    private static void skipFully(InputStream inputStream, long bytesToSkip) throws IOException {
+        long remaining = bytesToSkip;
+        while (remaining > 0) {
+            long skipped = inputStream.skip(remaining);
+            if (skipped <= 0) {
+                throw new IOException("Could not skip to byte " + bytesToSkip + " of the controller's copy");
+            }
+            remaining -= skipped;
+        }
+    }
+
+    private static String sha256(Path path) throws IOException {
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            return DigestUtils.sha256Hex(inputStream);
+        }
+    }
+
+    static File getPartialFile(File target) {
+        return new File(target.getParentFile(), target.getName() + PARTIAL_FILE_SUFFIX);
+    }
+
+    private static <T> T withTransferLock(File target, TransferAction<T> transferAction) throws IOException {
+        synchronized (TRANSFER_LOCKS.computeIfAbsent(target.getAbsolutePath(), key -> new Object())) {
+            Files.createDirectories(target.getAbsoluteFile().getParentFile().toPath());
+            try (FileChannel lockChannel = FileChannel.open(new File(target.getParentFile(), target.getName() + LOCK_SUFFIX).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                FileLock ignored = lockChannel.lock()) {
+                return transferAction.run();
+            }
+        }
+    }
+
+    private interface TransferAction<T> {
+        T run() throws IOException;
+    }
+
+    /**
+     * Invoked on the target, returns {@link #TRANSFER_COMPLETE} if the target already holds the artifact, or otherwise the offset to resume the transfer from.
+     */
+    static class TransferStateCallable extends MasterToSlaveFileCallable<Long> {
+        private static final long serialVersionUID = -5287043260591386457L;
+        private final String expectedSha256;
+        private final long artifactSize;
+
+        public TransferStateCallable(String expectedSha256, long artifactSize) {
+            this.expectedSha256 = expectedSha256;
+            this.artifactSize = artifactSize;
+        }
+
+        @Override
+        public Long invoke(File file, VirtualChannel channel) throws IOException {
+            return withTransferLock(file, () -> {
+                if (file.isFile() && expectedSha256.equals(sha256(file.toPath()))) {
+                    return TRANSFER_COMPLETE;
+                }
+
+                File partialFile = getPartialFile(file);
+                long offset = partialFile.isFile() ? partialFile.length() : 0L;
+                if (offset > artifactSize) {
+                    Files.delete(partialFile.toPath());
+                    offset = 0L;
+                }
+                return offset;
+            });
+        }
+    }
+
+    /**
+     * Invoked on the target, appends to its partial file and returns the number of bytes appended, or -1 without appending if the partial file no longer ends at the
+     * offset the controller read from.
+     */
+    static class AppendCallable extends MasterToSlaveFileCallable<Long> {
+        private static final long serialVersionUID = 6416250386284183203L;
+        private final long offset;
+        private final InputStream inputStream;
+
+        public AppendCallable(long offset, InputStream inputStream) {
+            this.offset = offset;
+            this.inputStream = inputStream;
+        }
+
+        @Override
+        public Long invoke(File file, VirtualChannel channel) throws IOException {
+            try (InputStream source = inputStream) {
+                return withTransferLock(file, () -> {
+                    Path partialFile = getPartialFile(file).toPath();
+                    long partialSize = Files.isRegularFile(partialFile) ? Files.size(partialFile) : 0L;
+                    if (partialSize != offset) {
+                        return -1L;
+                    }
+
+                    try (OutputStream outputStream = Files.newOutputStream(partialFile, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                        byte[] buffer = new byte[64 * 1024];
+                        long transferred = 0;
+                        int read;
+                        while ((read = source.read(buffer)) != -1) {
+                            outputStream.write(buffer, 0, read);
+                            transferred += read;
+                        }
+                        return transferred;
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Invoked on the target, moves the partial file into place if its SHA-256 matches and deletes it otherwise. A target another build already committed counts as
+     * committed.
+     */
+    static class CommitCallable extends MasterToSlaveFileCallable<Boolean> {
+        private static final long serialVersionUID = -1842290934733106125L;
+        private final String expectedSha256;
+
+        public CommitCallable(String expectedSha256) {
+            this.expectedSha256 = expectedSha256;
+        }
+
+        @Override
+        public Boolean invoke(File file, VirtualChannel channel) throws IOException {
+            return withTransferLock(file, () -> {
+                Path partialFile = getPartialFile(file).toPath();
+                if (!Files.isRegularFile(partialFile)) {
+                    return file.isFile() && expectedSha256.equals(sha256(file.toPath()));
+                }
+
+                if (!expectedSha256.equals(sha256(partialFile))) {
+                    Files.delete(partialFile);
+                    return false;
+                }
+                DetectScriptCache.moveAtomically(partialFile, file.toPath());
+                return true;
+            });
+        }
+    }
+
+}
@@ -0,0 +1,312 @@
+/*
+ * blackduck-detect
+ *
+ * Copyright (c) 2024 Black Duck Software, Inc.
+ *
+ * Use subject to the terms and conditions of the Black Duck Software End User Software License and Maintenance Agreement. All rights reserved worldwide.
+ */
+package com.blackduck.integration.jenkins.detect.service.strategy;
+
+import com.blackduck.integration.jenkins.extensions.JenkinsIntLogger;
+import com.blackduck.integration.util.OperatingSystemType;
+import hudson.Util;
+import jenkins.security.MasterToSlaveCallable;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Node-wide store of Detect jars that keeps one directory per Detect version, so builds pinned to different versions run side by side without downloading again
+ * whenever they take turns. The Detect scripts download into the directory of the version they are given. Each jar is recorded by its SHA-256 the first time it is
+ * seen and checked against it whenever its modification time changes. Jars modified within the last few minutes may still be downloading in another build, so they are
+ * left alone until they settle. Once the store grows past its quota the least recently used versions are removed.
+ * <p>
+ * A build running Detect holds a lease on its version from checkout until Detect has finished, so the version is not removed while it runs, however long that takes.
+ * A lease older than {@link #MAX_LEASE_MILLIS} was left behind by a build that never returned it and no longer counts.
+ */
+public class DetectArtifactStore {
+    public static final String STORE_DIRECTORY = "store";
+    public static final String ENTRY_FILENAME = "entry.properties";
+    public static final String LEASES_DIRECTORY = "leases";
+    public static final String LOCK_SUFFIX = ".lock";
+    public static final long MIN_IDLE_MILLIS = TimeUnit.HOURS.toMillis(1);
+    public static final long MIN_SETTLED_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    public static final long MAX_LEASE_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private static final Pattern VERSION_PATTERN = Pattern.compile("[A-Za-z0-9][A-Za-z0-9._-]*");
+    private static final String ENTRY_LAST_USED = "lastUsed";
+    private static final String JAR_SHA256 = "sha256.";
+    private static final String JAR_SIZE = "size.";
+    private static final String JAR_LAST_MODIFIED = "lastModified.";
+
+    // Builds running on different executors of the same agent share this JVM, so one lock per store keeps a checkout from racing an eviction; the file lock taken
+    // with it keeps out other processes sharing the tool directory.
+    private static final ConcurrentMap<String, Object> STORE_LOCKS = new ConcurrentHashMap<>();
+
+    private final JenkinsIntLogger logger;
+    private final Path storeDirectory;
+    private final long quotaBytes;
+
+    public DetectArtifactStore(JenkinsIntLogger logger, Path storeDirectory, long quotaBytes) {
+        this.logger = logger;
+        this.storeDirectory = storeDirectory;
+        this.quotaBytes = quotaBytes;
+    }
+
+    public static boolean isValidVersion(String detectVersion) {
+        return StringUtils.isNotBlank(detectVersion) && VERSION_PATTERN.matcher(detectVersion).matches();
+    }
+
+    /**
+     * @return the directory of a version in the store under the given tools directory, as a path on a node with the given operating system
+     */
+    public static String getVersionDirectory(String toolsDirectory, OperatingSystemType operatingSystemType, String detectVersion) {
+        String separator = operatingSystemType == OperatingSystemType.WINDOWS ? "\\" : "/";
+        return String.join(separator, StringUtils.removeEnd(toolsDirectory, separator), DetectScriptStrategy.DETECT_INSTALL_DIRECTORY, STORE_DIRECTORY, detectVersion);
+    }
+
+    public Path checkout(String detectVersion) throws IOException {
+        return checkout(detectVersion, null);
+    }
+
+    /**
+     * @param leaseId names the lease taken on the version until {@link #returnLease} is called with it, or null to take none
+     */
+    public Path checkout(String detectVersion, @Nullable String leaseId) throws IOException {
+        Path versionDirectory = storeDirectory.resolve(detectVersion);
+        withStoreLock(() -> {
+            Files.createDirectories(versionDirectory);
+            if (null != leaseId) {
+                Files.write(Files.createDirectories(versionDirectory.resolve(LEASES_DIRECTORY)).resolve(leaseId), new byte[0]);
+            }
+            Properties entry = readEntry(versionDirectory);
+            verifyJars(versionDirectory, entry);
+            entry.setProperty(ENTRY_LAST_USED, String.valueOf(System.currentTimeMillis()));
+            writeEntry(versionDirectory, entry);
+
+            evict(versionDirectory);
+        });
+        return versionDirectory;
+    }
+
+    /**
+     * Gives up a lease taken at checkout once Detect has finished, which also counts as using the version.
+     */
+    public void returnLease(String detectVersion, String leaseId) throws IOException {
+        Path versionDirectory = storeDirectory.resolve(detectVersion);
+        withStoreLock(() -> {
+            Files.deleteIfExists(versionDirectory.resolve(LEASES_DIRECTORY).resolve(leaseId));
+            if (Files.isDirectory(versionDirectory)) {
+                Properties entry = readEntry(versionDirectory);
+                entry.setProperty(ENTRY_LAST_USED, String.valueOf(System.currentTimeMillis()));
+                writeEntry(versionDirectory, entry);
+            }
+        });
+    }
+
+    /**
+     * @return true if a build running Detect holds a lease on the version in the given directory
+     */
+    public static boolean isLeased(Path versionDirectory) throws IOException {
+        Path leasesDirectory = versionDirectory.resolve(LEASES_DIRECTORY);
+        if (!Files.isDirectory(leasesDirectory)) {
+            return false;
+        }
+
+        long now = System.currentTimeMillis();
+        try (DirectoryStream<Path> leases = Files.newDirectoryStream(leasesDirectory)) {
+            for (Path lease : leases) {
+                if (now - Files.getLastModifiedTime(lease).toMillis() < MAX_LEASE_MILLIS) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void withStoreLock(StoreAction storeAction) throws IOException {
+        synchronized (STORE_LOCKS.computeIfAbsent(storeDirectory.toAbsolutePath().toString(), key -> new Object())) {
+            Path absoluteStoreDirectory = storeDirectory.toAbsolutePath();
+            Path lockPath = absoluteStoreDirectory.resolveSibling(absoluteStoreDirectory.getFileName() + LOCK_SUFFIX);
+            Files.createDirectories(lockPath.getParent());
+            try (FileChannel lockChannel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                FileLock ignored = lockChannel.lock()) {
+                storeAction.run();
+            }
+        }
+    }
+
+    private interface StoreAction {
+        void run() throws IOException;
+    }
+
+    private void verifyJars(Path versionDirectory, Properties entry) throws IOException {
+        try (DirectoryStream<Path> jars = Files.newDirectoryStream(versionDirectory, "*.jar")) {
+            long now = System.currentTimeMillis();
+            for (Path jar : jars) {
+                String jarName = jar.getFileName().toString();
+                BasicFileAttributes attributes = Files.readAttributes(jar, BasicFileAttributes.class);
+                if (now - attributes.lastModifiedTime().toMillis() < MIN_SETTLED_MILLIS) {
+                    continue;
+                }
+
+                String size = String.valueOf(attributes.size());
+                String lastModified = String.valueOf(attributes.lastModifiedTime().toMillis());
+                String recordedSha256 = entry.getProperty(JAR_SHA256 + jarName);
+                if (null != recordedSha256 && size.equals(entry.getProperty(JAR_SIZE + jarName)) && lastModified.equals(entry.getProperty(JAR_LAST_MODIFIED + jarName))) {
+                    continue;
+                }
+
+                String sha256;
+                try (InputStream inputStream = Files.newInputStream(jar)) {
+                    sha256 = DigestUtils.sha256Hex(inputStream);
+                }
+                if (null != recordedSha256 && !recordedSha256.equals(sha256) && size.equals(entry.getProperty(JAR_SIZE + jarName))) {
+                    // A released version never changes, so a jar that changed in place is damaged; removing it makes the Detect script download it again. A jar of
+                    // another size was replaced as a whole, for example by a download of a snapshot build, and is recorded anew.
+                    logger.warn(String.format("Detect jar %s no longer matches its recorded checksum and will be downloaded again.", jar));
+                    Files.delete(jar);
+                    entry.remove(JAR_SHA256 + jarName);
+                    entry.remove(JAR_SIZE + jarName);
+                    entry.remove(JAR_LAST_MODIFIED + jarName);
+                    continue;
+                }
+
+                entry.setProperty(JAR_SHA256 + jarName, sha256);
+                entry.setProperty(JAR_SIZE + jarName, size);
+                entry.setProperty(JAR_LAST_MODIFIED + jarName, lastModified);
+            }
+        }
+    }
+
+    private void evict(Path currentVersionDirectory) throws IOException {
+        if (quotaBytes <= 0) {
+            return;
+        }
+
+        List<StoreEntry> storeEntries = new ArrayList<>();
+        long totalBytes = 0L;
+        try (DirectoryStream<Path> versionDirectories = Files.newDirectoryStream(storeDirectory, Files::isDirectory)) {
+            for (Path versionDirectory : versionDirectories) {
+                StoreEntry storeEntry = new StoreEntry(versionDirectory, getLastUsed(readEntry(versionDirectory)), sizeOf(versionDirectory));
+                storeEntries.add(storeEntry);
+                totalBytes += storeEntry.sizeBytes;
+            }
+        }
+
+        storeEntries.sort(Comparator.comparingLong(storeEntry -> storeEntry.lastUsed));
+        long now = System.currentTimeMillis();
+        for (StoreEntry storeEntry : storeEntries) {
+            if (totalBytes <= quotaBytes) {
+                break;
+            }
+            // A version used recently may still be downloading in another build, and a leased one is still running.
+            if (storeEntry.versionDirectory.equals(currentVersionDirectory) || now - storeEntry.lastUsed < MIN_IDLE_MILLIS || isLeased(storeEntry.versionDirectory)) {
+                continue;
+            }
+
+            logger.info(String.format("Removing Detect %s from the artifact store to stay within its quota of %d MB", storeEntry.versionDirectory.getFileName(), quotaBytes / (1024 * 1024)));
+            Util.deleteRecursive(storeEntry.versionDirectory.toFile());
+            totalBytes -= storeEntry.sizeBytes;
+        }
+    }
+
+    private static long getLastUsed(Properties entry) {
+        try {
+            return Long.parseLong(entry.getProperty(ENTRY_LAST_USED, "0"));
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
+    private static long sizeOf(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            return paths.filter(Files::isRegularFile).mapToLong(path -> path.toFile().length()).sum();
+        }
+    }
+
+    private Properties readEntry(Path versionDirectory) {
+        Properties entry = new Properties();
+        Path entryPath = versionDirectory.resolve(ENTRY_FILENAME);
+        if (Files.isRegularFile(entryPath)) {
+            try (InputStream inputStream = Files.newInputStream(entryPath)) {
+                entry.load(inputStream);
+            } catch (IOException e) {
+                logger.debug("Could not read Detect artifact store entry: " + e.getMessage(), e);
+            }
+        }
+        return entry;
+    }
+
+    private void writeEntry(Path versionDirectory, Properties entry) throws IOException {
+        Path entryPath = versionDirectory.resolve(ENTRY_FILENAME);
+        Path temporaryPath = Files.createTempFile(versionDirectory, ENTRY_FILENAME, ".tmp");
+        try {
+            try (OutputStream outputStream = Files.newOutputStream(temporaryPath)) {
+                entry.store(outputStream, "Black Duck Detect artifact store entry");
+            }
+            DetectScriptCache.moveAtomically(temporaryPath, entryPath);
+        } finally {
+            Files.deleteIfExists(temporaryPath);
+        }
+    }
+
+    /**
+     * Returns the lease a build took on a version at checkout, on the agent, once Detect has finished.
+     */
+    public static class ReturnLeaseCallable extends MasterToSlaveCallable<Void, IOException> {
+        private static final long serialVersionUID = 7725381390519262847L;
+        private final JenkinsIntLogger logger;
+        private final String storeDirectory;
+        private final String detectVersion;
+        private final String leaseId;
+
+        public ReturnLeaseCallable(JenkinsIntLogger logger, String storeDirectory, String detectVersion, String leaseId) {
+            this.logger = logger;
+            this.storeDirectory = storeDirectory;
+            this.detectVersion = detectVersion;
+            this.leaseId = leaseId;
+        }
+
+        @Override
+        public Void call() throws IOException {
+            // The quota only matters at checkout, where versions are evicted.
+            new DetectArtifactStore(logger, Paths.get(storeDirectory), 0L).returnLease(detectVersion, leaseId);
+            return null;
+        }
+    }
+
+    private static class StoreEntry {
+        private final Path versionDirectory;
+        private final long lastUsed;
+        private final long sizeBytes;
+
+        private StoreEntry(Path versionDirectory, long lastUsed, long sizeBytes) {
+            this.versionDirectory = versionDirectory;
+            this.lastUsed = lastUsed;
+            this.sizeBytes = sizeBytes;
+        }
+    }
+
+}
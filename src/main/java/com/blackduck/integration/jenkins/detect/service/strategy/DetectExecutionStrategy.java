@@ -8,14 +8,29 @@
 package com.blackduck.integration.jenkins.detect.service.strategy;
 
 import com.blackduck.integration.exception.IntegrationException;
+import com.blackduck.integration.jenkins.detect.service.DetectPhaseTimings;
 import jenkins.security.MasterToSlaveCallable;
 
+import javax.annotation.Nullable;
+
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.function.Function;
 
 public abstract class DetectExecutionStrategy {
-    public abstract MasterToSlaveCallable<ArrayList<String>, IntegrationException> getSetupCallable() throws IntegrationException, IOException, InterruptedException;
+    @Nullable
+    private DetectPhaseTimings detectPhaseTimings;
+
+    public void setPhaseTimings(@Nullable DetectPhaseTimings detectPhaseTimings) {
+        this.detectPhaseTimings = detectPhaseTimings;
+    }
+
+    protected void recordPhase(String phase, long phaseStartedAtNanos) {
+        if (null != detectPhaseTimings) {
+            detectPhaseTimings.record(phase, phaseStartedAtNanos);
+        }
+    }
+
+    public abstract MasterToSlaveCallable<DetectSetupResult, IntegrationException> getSetupCallable() throws IntegrationException, IOException, InterruptedException;
 
     public abstract Function<String, String> getArgumentEscaper();
 }
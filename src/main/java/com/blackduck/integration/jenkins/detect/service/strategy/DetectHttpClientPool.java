@@ -0,0 +1,79 @@
+/*
+ * blackduck-detect
+ *
+ * Copyright (c) 2024 Black Duck Software, Inc.
+ *
+ * Use subject to the terms and conditions of the Black Duck Software End User Software License and Maintenance Agreement. All rights reserved worldwide.
+ */
+package com.blackduck.integration.jenkins.detect.service.strategy;
+
+import com.blackduck.integration.jenkins.extensions.JenkinsIntLogger;
+import com.blackduck.integration.rest.client.IntHttpClient;
+import com.blackduck.integration.rest.proxy.ProxyInfo;
+import com.google.gson.Gson;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JVM-wide pools of HTTP connections for downloading Detect artifacts, one per proxy configuration. Every client handed out builds on the pool of its proxy, so
+ * downloads in later builds on the same node reuse kept-alive connections instead of paying for a new TCP and TLS handshake, which is expensive behind an inspecting
+ * proxy. The connections only outlive a client when its response was read to the end or closed.
+ */
+public class DetectHttpClientPool {
+    public static final int DEFAULT_TIMEOUT_SECONDS = 120;
+    public static final int MAX_CONNECTIONS_PER_ROUTE = 4;
+    public static final int MAX_CONNECTIONS = 16;
+    public static final long IDLE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(60);
+    public static final int VALIDATE_AFTER_INACTIVITY_MILLIS = 2000;
+
+    private static final ConcurrentMap<String, PoolingHttpClientConnectionManager> CONNECTION_MANAGERS = new ConcurrentHashMap<>();
+
+    private DetectHttpClientPool() {
+        // This class should not be instantiated
+    }
+
+    public static IntHttpClient createHttpClient(JenkinsIntLogger logger, int timeoutSeconds, ProxyInfo proxyInfo) {
+        IntHttpClient intHttpClient = new IntHttpClient(logger, new Gson(), timeoutSeconds > 0 ? timeoutSeconds : DEFAULT_TIMEOUT_SECONDS, false, proxyInfo);
+
+        PoolingHttpClientConnectionManager connectionManager = CONNECTION_MANAGERS.computeIfAbsent(getPoolKey(proxyInfo), key -> createConnectionManager());
+        // Connections a server or proxy dropped meanwhile are discarded here, which is cheaper than a background thread per pool.
+        connectionManager.closeExpiredConnections();
+        connectionManager.closeIdleConnections(IDLE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+
+        // Each client is closed with its response, so the pool has to be marked shared to survive it. Gzip and deflate responses stay accepted as HttpClientBuilder
+        // negotiates them by default.
+        intHttpClient.getClientBuilder()
+            .setConnectionManager(connectionManager)
+            .setConnectionManagerShared(true);
+        return intHttpClient;
+    }
+
+    public static int size() {
+        return CONNECTION_MANAGERS.size();
+    }
+
+    static String getPoolKey(ProxyInfo proxyInfo) {
+        // Connections authenticated to a proxy are only shared by requests with the same credentials. The password is hashed so the key does not hold it.
+        return String.join("|",
+            proxyInfo.getHost().orElse(""),
+            String.valueOf(proxyInfo.getPort()),
+            proxyInfo.getUsername().orElse(""),
+            DigestUtils.sha256Hex(proxyInfo.getPassword().orElse("")),
+            proxyInfo.getNtlmDomain().orElse(""),
+            proxyInfo.getNtlmWorkstation().orElse("")
+        );
+    }
+
+    private static PoolingHttpClientConnectionManager createConnectionManager() {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setDefaultMaxPerRoute(MAX_CONNECTIONS_PER_ROUTE);
+        connectionManager.setMaxTotal(MAX_CONNECTIONS);
+        connectionManager.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY_MILLIS);
+        return connectionManager;
+    }
+
+}
@@ -8,12 +8,12 @@
 package com.blackduck.integration.jenkins.detect.service.strategy;
 
 import com.blackduck.integration.exception.IntegrationException;
+import com.blackduck.integration.jenkins.detect.service.DetectPhaseTimings;
 import com.blackduck.integration.jenkins.extensions.JenkinsIntLogger;
 import com.blackduck.integration.util.IntEnvironmentVariables;
 import jenkins.security.MasterToSlaveCallable;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Map;
 import java.util.function.Function;
 
@@ -36,11 +36,11 @@ public class DetectJarStrategy extends DetectExecutionStrategy {
     }
 
     @Override
-    public MasterToSlaveCallable<ArrayList<String>, IntegrationException> getSetupCallable() {
+    public MasterToSlaveCallable<DetectSetupResult, IntegrationException> getSetupCallable() {
         return new SetupCallableImpl(logger, intEnvironmentVariables.getVariables(), detectJarPath, remoteJdkHome);
     }
 
-    public static class SetupCallableImpl extends MasterToSlaveCallable<ArrayList<String>, IntegrationException> {
+    public static class SetupCallableImpl extends MasterToSlaveCallable<DetectSetupResult, IntegrationException> {
         private static final long serialVersionUID = -8326836838838706367L;
         private final JenkinsIntLogger logger;
         private final Map<String, String> environmentVariables;
@@ -55,13 +55,24 @@ public class DetectJarStrategy extends DetectExecutionStrategy {
         }
 
         @Override
-        public ArrayList<String> call() {
+        public DetectSetupResult call() {
+            DetectPhaseTimings detectPhaseTimings = new DetectPhaseTimings();
+            long javaStartedAt = DetectPhaseTimings.start();
             RemoteJavaService remoteJavaService = new RemoteJavaService(logger, remoteJdkHome, environmentVariables);
-            String javaExecutablePath = remoteJavaService.getJavaExecutablePath();
+            RemoteJavaCache.ResolvedJava resolvedJava = remoteJavaService.getResolvedJava();
+            String javaExecutablePath = resolvedJava.getExecutablePath();
 
             logger.info("Detect jar configured: " + detectJarPath);
 
-            return new ArrayList<>(Arrays.asList(javaExecutablePath, "-jar", detectJarPath));
+            ArrayList<String> detectCommand = new ArrayList<>();
+            detectCommand.add(javaExecutablePath);
+            detectCommand.addAll(remoteJavaService.getWarmStartArguments(javaExecutablePath, detectJarPath));
+            detectCommand.add("-jar");
+            detectCommand.add(detectJarPath);
+
+            remoteJavaService.reportJavaVersion(resolvedJava);
+            detectPhaseTimings.record(DetectPhaseTimings.JAVA, javaStartedAt);
+            return new DetectSetupResult(detectCommand, detectPhaseTimings);
         }
     }
 
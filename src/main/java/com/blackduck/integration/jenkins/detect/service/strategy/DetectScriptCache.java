@@ -0,0 +1,216 @@
+/*
+ * blackduck-detect
+ *
+ * Copyright (c) 2024 Black Duck Software, Inc.
+ *
+ * Use subject to the terms and conditions of the Black Duck Software End User Software License and Maintenance Agreement. All rights reserved worldwide.
+ */
+package com.blackduck.integration.jenkins.detect.service.strategy;
+
+import com.blackduck.integration.exception.IntegrationException;
+import com.blackduck.integration.jenkins.detect.exception.DetectJenkinsException;
+import com.blackduck.integration.jenkins.extensions.JenkinsIntLogger;
+import com.blackduck.integration.rest.HttpUrl;
+import com.blackduck.integration.rest.client.IntHttpClient;
+import com.blackduck.integration.rest.request.Request;
+import com.blackduck.integration.rest.response.Response;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Node-wide cache of downloaded Detect scripts. Entries are keyed by the script URL, revalidated with ETag/Last-Modified once their time to live has expired, verified
+ * against the SHA-256 recorded at download time and installed by atomic rename so concurrent builds never observe a partially written script.
+ */
+public class DetectScriptCache {
+    public static final String CACHE_DIRECTORY = "cache";
+    public static final String METADATA_FILENAME = "cache.properties";
+
+    private static final String METADATA_URL = "url";
+    private static final String METADATA_SHA256 = "sha256";
+    private static final String METADATA_ETAG = "etag";
+    private static final String METADATA_LAST_MODIFIED = "lastModified";
+    private static final String METADATA_VALIDATED_AT = "validatedAt";
+    private static final int HTTP_NOT_MODIFIED = 304;
+
+    // Builds running on different executors of the same agent share this JVM, so one lock per entry keeps them from downloading the same script at once.
+    private static final ConcurrentMap<String, Object> ENTRY_LOCKS = new ConcurrentHashMap<>();
+
+    private final JenkinsIntLogger logger;
+    private final Path cacheDirectory;
+    private final long timeToLiveMillis;
+
+    public DetectScriptCache(JenkinsIntLogger logger, Path cacheDirectory, long timeToLiveMillis) {
+        this.logger = logger;
+        this.cacheDirectory = cacheDirectory;
+        this.timeToLiveMillis = timeToLiveMillis;
+    }
+
+    public static String getCacheKey(String scriptUrl) {
+        return DigestUtils.sha256Hex(scriptUrl).substring(0, 16);
+    }
+
+    public Path getEntryDirectory(String scriptUrl) {
+        return cacheDirectory.resolve(getCacheKey(scriptUrl));
+    }
+
+    public Path getOrDownload(String scriptUrl, String scriptFileName, Supplier<IntHttpClient> httpClientSupplier) throws IntegrationException, IOException {
+        Path entryDirectory = getEntryDirectory(scriptUrl);
+        Files.createDirectories(entryDirectory);
+        Path scriptPath = entryDirectory.resolve(scriptFileName);
+        Path metadataPath = entryDirectory.resolve(METADATA_FILENAME);
+
+        synchronized (ENTRY_LOCKS.computeIfAbsent(entryDirectory.toString(), key -> new Object())) {
+            Properties metadata = readMetadata(metadataPath);
+            boolean intact = isIntact(scriptUrl, scriptPath, metadata);
+
+            if (intact && isFresh(metadata)) {
+                logger.info(String.format("Using cached Detect script %s", scriptPath));
+                return scriptPath;
+            }
+
+            Request.Builder requestBuilder = new Request.Builder().url(new HttpUrl(scriptUrl));
+            if (intact) {
+                String etag = metadata.getProperty(METADATA_ETAG);
+                String lastModified = metadata.getProperty(METADATA_LAST_MODIFIED);
+                if (StringUtils.isNotBlank(etag)) {
+                    requestBuilder.addHeader("If-None-Match", etag);
+                }
+                if (StringUtils.isNotBlank(lastModified)) {
+                    requestBuilder.addHeader("If-Modified-Since", lastModified);
+                }
+            }
+
+            logger.info(String.format("Downloading Detect script from %s to %s", scriptUrl, scriptPath));
+            try (Response response = httpClientSupplier.get().execute(requestBuilder.build())) {
+                if (intact && response.getStatusCode() == HTTP_NOT_MODIFIED) {
+                    logger.info(String.format("Cached Detect script %s is up to date", scriptPath));
+                    metadata.setProperty(METADATA_VALIDATED_AT, String.valueOf(System.currentTimeMillis()));
+                    writeMetadata(metadataPath, metadata);
+                    return scriptPath;
+                }
+
+                response.throwExceptionForError();
+                String sha256 = install(response.getContent(), scriptPath);
+
+                Properties updatedMetadata = new Properties();
+                updatedMetadata.setProperty(METADATA_URL, scriptUrl);
+                updatedMetadata.setProperty(METADATA_SHA256, sha256);
+                updatedMetadata.setProperty(METADATA_VALIDATED_AT, String.valueOf(System.currentTimeMillis()));
+                setIfPresent(updatedMetadata, METADATA_ETAG, response.getHeaderValue("ETag"));
+                setIfPresent(updatedMetadata, METADATA_LAST_MODIFIED, response.getHeaderValue("Last-Modified"));
+                writeMetadata(metadataPath, updatedMetadata);
+            }
+        }
+
+        return scriptPath;
+    }
+
+    private boolean isIntact(String scriptUrl, Path scriptPath, Properties metadata) {
+        String expectedSha256 = metadata.getProperty(METADATA_SHA256);
+        if (!scriptUrl.equals(metadata.getProperty(METADATA_URL)) || StringUtils.isBlank(expectedSha256) || !Files.isRegularFile(scriptPath)) {
+            return false;
+        }
+
+        try (InputStream inputStream = Files.newInputStream(scriptPath)) {
+            if (expectedSha256.equals(DigestUtils.sha256Hex(inputStream))) {
+                return true;
+            }
+            logger.warn(String.format("Cached Detect script %s does not match its recorded checksum and will be downloaded again.", scriptPath));
+        } catch (IOException e) {
+            logger.debug("Could not verify cached Detect script: " + e.getMessage(), e);
+        }
+        return false;
+    }
+
+    private boolean isFresh(Properties metadata) {
+        if (timeToLiveMillis <= 0) {
+            return false;
+        }
+
+        try {
+            long validatedAt = Long.parseLong(metadata.getProperty(METADATA_VALIDATED_AT, "0"));
+            return System.currentTimeMillis() - validatedAt < timeToLiveMillis;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private String install(InputStream content, Path scriptPath) throws IOException, DetectJenkinsException {
+        Path temporaryPath = Files.createTempFile(scriptPath.getParent(), scriptPath.getFileName().toString(), ".tmp");
+        try {
+            MessageDigest messageDigest = DigestUtils.getSha256Digest();
+            long size;
+            try (InputStream digestInputStream = new DigestInputStream(content, messageDigest)) {
+                size = Files.copy(digestInputStream, temporaryPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            if (size == 0) {
+                throw new DetectJenkinsException("The downloaded Detect script was empty.");
+            }
+
+            moveAtomically(temporaryPath, scriptPath);
+            return Hex.encodeHexString(messageDigest.digest());
+        } finally {
+            Files.deleteIfExists(temporaryPath);
+        }
+    }
+
+    private void writeMetadata(Path metadataPath, Properties metadata) throws IOException {
+        Path temporaryPath = Files.createTempFile(metadataPath.getParent(), METADATA_FILENAME, ".tmp");
+        try {
+            try (OutputStream outputStream = Files.newOutputStream(temporaryPath)) {
+                metadata.store(outputStream, "Black Duck Detect script cache entry");
+            }
+            moveAtomically(temporaryPath, metadataPath);
+        } finally {
+            Files.deleteIfExists(temporaryPath);
+        }
+    }
+
+    private Properties readMetadata(Path metadataPath) {
+        Properties metadata = new Properties();
+        if (Files.isRegularFile(metadataPath)) {
+            try (InputStream inputStream = Files.newInputStream(metadataPath)) {
+                metadata.load(inputStream);
+            } catch (IOException e) {
+                logger.debug("Could not read Detect script cache metadata: " + e.getMessage(), e);
+            }
+        }
+        return metadata;
+    }
+
+    private void setIfPresent(Properties metadata, String key, String value) {
+        if (StringUtils.isNotBlank(value)) {
+            metadata.setProperty(key, value);
+        }
+    }
+
+    public static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    public static long toMillis(int timeToLiveMinutes) {
+        return TimeUnit.MINUTES.toMillis(Math.max(0, timeToLiveMinutes));
+    }
+
+}
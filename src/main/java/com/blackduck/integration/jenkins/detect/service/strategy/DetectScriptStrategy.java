@@ -9,27 +9,35 @@ package com.blackduck.integration.jenkins.detect.service.strategy;
 
 import com.blackduck.integration.IntegrationEscapeUtils;
 import com.blackduck.integration.jenkins.detect.exception.DetectJenkinsException;
-import com.google.gson.Gson;
+import com.blackduck.integration.jenkins.detect.service.DetectPhaseTimings;
 import com.blackduck.integration.exception.IntegrationException;
 import com.blackduck.integration.jenkins.extensions.JenkinsIntLogger;
 import com.blackduck.integration.jenkins.wrapper.JenkinsProxyHelper;
-import com.blackduck.integration.rest.HttpUrl;
-import com.blackduck.integration.rest.client.IntHttpClient;
 import com.blackduck.integration.rest.credentials.Credentials;
 import com.blackduck.integration.rest.credentials.CredentialsBuilder;
 import com.blackduck.integration.rest.proxy.ProxyInfo;
 import com.blackduck.integration.rest.proxy.ProxyInfoBuilder;
-import com.blackduck.integration.rest.request.Request;
-import com.blackduck.integration.rest.response.Response;
 import com.blackduck.integration.util.OperatingSystemType;
 import jenkins.security.MasterToSlaveCallable;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
 
-import java.nio.file.Files;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Function;
 
 public class DetectScriptStrategy extends DetectExecutionStrategy {
@@ -43,12 +51,65 @@ public class DetectScriptStrategy extends DetectExecutionStrategy {
     private final OperatingSystemType operatingSystemType;
     private final JenkinsProxyHelper jenkinsProxyHelper;
     private final String toolsDirectory;
+    private final long scriptCacheTimeToLiveMillis;
+    private final DetectArtifactDistributor detectArtifactDistributor;
+    @Nullable
+    private String detectVersion;
+    private long artifactStoreQuotaBytes;
+    @Nullable
+    private Map<String, String> jarEnvironmentVariables;
+    @Nullable
+    private String agentJarDirectory;
+    private int downloadTimeoutSeconds = DetectHttpClientPool.DEFAULT_TIMEOUT_SECONDS;
 
     public DetectScriptStrategy(JenkinsIntLogger logger, JenkinsProxyHelper jenkinsProxyHelper, OperatingSystemType operatingSystemType, String toolsDirectory) {
+        this(logger, jenkinsProxyHelper, operatingSystemType, toolsDirectory, 0L);
+    }
+
+    public DetectScriptStrategy(
+        JenkinsIntLogger logger,
+        JenkinsProxyHelper jenkinsProxyHelper,
+        OperatingSystemType operatingSystemType,
+        String toolsDirectory,
+        long scriptCacheTimeToLiveMillis
+    ) {
+        this(logger, jenkinsProxyHelper, operatingSystemType, toolsDirectory, scriptCacheTimeToLiveMillis, null);
+    }
+
+    public DetectScriptStrategy(
+        JenkinsIntLogger logger,
+        JenkinsProxyHelper jenkinsProxyHelper,
+        OperatingSystemType operatingSystemType,
+        String toolsDirectory,
+        long scriptCacheTimeToLiveMillis,
+        DetectArtifactDistributor detectArtifactDistributor
+    ) {
         this.logger = logger;
         this.jenkinsProxyHelper = jenkinsProxyHelper;
         this.operatingSystemType = operatingSystemType;
         this.toolsDirectory = toolsDirectory;
+        this.scriptCacheTimeToLiveMillis = scriptCacheTimeToLiveMillis;
+        this.detectArtifactDistributor = detectArtifactDistributor;
+    }
+
+    /**
+     * Pins the Detect version the script runs. The version's jar is kept in the node's artifact store, which is checked out before the script runs.
+     */
+    public void setDetectVersion(@Nullable String detectVersion, long artifactStoreQuotaBytes) {
+        this.detectVersion = detectVersion;
+        this.artifactStoreQuotaBytes = artifactStoreQuotaBytes;
+    }
+
+    /**
+     * Has the controller distribute the Detect jar as well as the script, into the directory the script on the agent is pointed at through DETECT_JAR_DOWNLOAD_DIR.
+     */
+    public void setJarDistribution(Map<String, String> jarEnvironmentVariables, String agentJarDirectory) {
+        this.jarEnvironmentVariables = jarEnvironmentVariables;
+        this.agentJarDirectory = agentJarDirectory;
+    }
+
+    public void setDownloadTimeout(int downloadTimeoutSeconds) {
+        this.downloadTimeoutSeconds = downloadTimeoutSeconds;
     }
 
     @Override
@@ -60,7 +121,15 @@ public class DetectScriptStrategy extends DetectExecutionStrategy {
     }
 
     @Override
-    public MasterToSlaveCallable<ArrayList<String>, IntegrationException> getSetupCallable() throws IntegrationException {
+    public MasterToSlaveCallable<DetectSetupResult, IntegrationException> getSetupCallable() throws IntegrationException {
+        MasterToSlaveCallable<DetectSetupResult, IntegrationException> scriptSetupCallable = getScriptSetupCallable();
+        if (StringUtils.isBlank(detectVersion)) {
+            return scriptSetupCallable;
+        }
+        return new VersionedSetupCallableImpl(logger, toolsDirectory, detectVersion, artifactStoreQuotaBytes, scriptSetupCallable);
+    }
+
+    private MasterToSlaveCallable<DetectSetupResult, IntegrationException> getScriptSetupCallable() throws IntegrationException {
         String scriptUrl;
         String scriptFileName;
         if (operatingSystemType == OperatingSystemType.WINDOWS) {
@@ -71,6 +140,23 @@ public class DetectScriptStrategy extends DetectExecutionStrategy {
             scriptFileName = SHELL_SCRIPT_FILENAME;
         }
 
+        if (null != detectArtifactDistributor) {
+            long startedAt = DetectPhaseTimings.start();
+            try {
+                distributeJar();
+                return new DistributedSetupCallableImpl(detectArtifactDistributor.distribute(scriptUrl, scriptFileName, scriptCacheTimeToLiveMillis, downloadTimeoutSeconds));
+            } catch (IOException | IntegrationException e) {
+                logger.warn("The Detect script could not be distributed from the controller because: " + e.getMessage());
+                logger.warn("Continuing by downloading it on the agent...");
+                logger.trace("Stack trace:", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DetectJenkinsException("Distributing the Detect script from the controller was interrupted.", e);
+            } finally {
+                recordPhase(DetectPhaseTimings.DOWNLOAD, startedAt);
+            }
+        }
+
         // ProxyInfo itself isn't serializable, so we unpack it into serializable pieces and rebuild it later when we download the script. -- rotte JUL 2020
         ProxyInfo proxyInfo;
         try {
@@ -93,6 +179,8 @@ public class DetectScriptStrategy extends DetectExecutionStrategy {
             toolsDirectory,
             scriptUrl,
             scriptFileName,
+            scriptCacheTimeToLiveMillis,
+            downloadTimeoutSeconds,
             proxyHost,
             proxyPort,
             proxyUsername,
@@ -102,7 +190,22 @@ public class DetectScriptStrategy extends DetectExecutionStrategy {
         );
     }
 
-    public static class SetupCallableImpl extends MasterToSlaveCallable<ArrayList<String>, IntegrationException> {
+    private void distributeJar() throws InterruptedException {
+        if (null == jarEnvironmentVariables || null == agentJarDirectory) {
+            return;
+        }
+
+        try {
+            detectArtifactDistributor.distributeJar(jarEnvironmentVariables, agentJarDirectory, scriptCacheTimeToLiveMillis, downloadTimeoutSeconds);
+        } catch (IOException | IntegrationException e) {
+            // The script on the agent downloads the jar into the same directory itself when it is not there.
+            logger.warn("The Detect jar could not be distributed from the controller because: " + e.getMessage());
+            logger.warn("Continuing by downloading it on the agent...");
+            logger.trace("Stack trace:", e);
+        }
+    }
+
+    public static class SetupCallableImpl extends MasterToSlaveCallable<DetectSetupResult, IntegrationException> {
         private static final long serialVersionUID = -4954105356640324485L;
         private final JenkinsIntLogger logger;
         private final String toolsDirectory;
@@ -114,15 +217,19 @@ public class DetectScriptStrategy extends DetectExecutionStrategy {
         private final String proxyNtlmDomain;
         private final String proxyNtlmWorkstation;
         private final String scriptFileName;
+        private final long scriptCacheTimeToLiveMillis;
+        private final int downloadTimeoutSeconds;
 
         public SetupCallableImpl(
-            JenkinsIntLogger logger, String toolsDirectory, String scriptUrl, String scriptFileName, String proxyHost, int proxyPort, String proxyUsername, String proxyPassword,
-            String proxyNtlmDomain, String proxyNtlmWorkstation
+            JenkinsIntLogger logger, String toolsDirectory, String scriptUrl, String scriptFileName, long scriptCacheTimeToLiveMillis, int downloadTimeoutSeconds,
+            String proxyHost, int proxyPort, String proxyUsername, String proxyPassword, String proxyNtlmDomain, String proxyNtlmWorkstation
         ) {
             this.logger = logger;
             this.toolsDirectory = toolsDirectory;
             this.scriptUrl = scriptUrl;
             this.scriptFileName = scriptFileName;
+            this.scriptCacheTimeToLiveMillis = scriptCacheTimeToLiveMillis;
+            this.downloadTimeoutSeconds = downloadTimeoutSeconds;
             this.proxyHost = proxyHost;
             this.proxyPort = proxyPort;
             this.proxyUsername = proxyUsername;
@@ -132,33 +239,24 @@ public class DetectScriptStrategy extends DetectExecutionStrategy {
         }
 
         @Override
-        public ArrayList<String> call() throws IntegrationException {
+        public DetectSetupResult call() throws IntegrationException {
             String scriptRemotePath;
+            DetectPhaseTimings detectPhaseTimings = new DetectPhaseTimings();
+            long downloadStartedAt = DetectPhaseTimings.start();
 
             try {
-                Path installationDirectory = Paths.get(toolsDirectory, DETECT_INSTALL_DIRECTORY);
-                Files.createDirectories(installationDirectory);
-                Path detectScriptPath = installationDirectory.resolve(scriptFileName);
-
-                logger.info(String.format("Downloading Detect script from %s to %s", scriptUrl, detectScriptPath));
-
-                IntHttpClient intHttpClient = new IntHttpClient(logger, new Gson(), 120, false, rebuildProxyInfo());
-                Request request = new Request.Builder().url(new HttpUrl(scriptUrl)).build();
-
-                try (Response response = intHttpClient.execute(request)) {
-                    response.throwExceptionForError();
-                    Files.copy(response.getContent(), detectScriptPath, StandardCopyOption.REPLACE_EXISTING);
-                }
+                Path cacheDirectory = Paths.get(toolsDirectory, DETECT_INSTALL_DIRECTORY, DetectScriptCache.CACHE_DIRECTORY);
+                DetectScriptCache detectScriptCache = new DetectScriptCache(logger, cacheDirectory, scriptCacheTimeToLiveMillis);
+                Path detectScriptPath = detectScriptCache.getOrDownload(scriptUrl, scriptFileName, () -> DetectHttpClientPool.createHttpClient(logger, downloadTimeoutSeconds, rebuildProxyInfo()));
 
                 scriptRemotePath = detectScriptPath.toRealPath().toString();
             } catch (Exception e) {
                 throw new DetectJenkinsException("[ERROR] The Detect script was not downloaded successfully: " + e.getMessage(), e);
+            } finally {
+                detectPhaseTimings.record(DetectPhaseTimings.DOWNLOAD, downloadStartedAt);
             }
 
-            if (OperatingSystemType.determineFromSystem() == OperatingSystemType.WINDOWS) {
-                return new ArrayList<>(Arrays.asList("powershell", String.format("\"Import-Module '%s'; detect\"", scriptRemotePath)));
-            }
-            return new ArrayList<>(Arrays.asList("bash", scriptRemotePath));
+            return new DetectSetupResult(createScriptCommand(scriptRemotePath), detectPhaseTimings);
         }
 
         private ProxyInfo rebuildProxyInfo() {
@@ -177,4 +275,152 @@ public class DetectScriptStrategy extends DetectExecutionStrategy {
         }
     }
 
+    public static class DistributedSetupCallableImpl extends MasterToSlaveCallable<DetectSetupResult, IntegrationException> {
+        private static final long serialVersionUID = -8126619503265870183L;
+        private final String scriptPath;
+
+        public DistributedSetupCallableImpl(String scriptPath) {
+            this.scriptPath = scriptPath;
+        }
+
+        @Override
+        public DetectSetupResult call() throws IntegrationException {
+            try {
+                // The script was downloaded on the controller, where that time is recorded.
+                return new DetectSetupResult(createScriptCommand(Paths.get(scriptPath).toRealPath().toString()), new DetectPhaseTimings());
+            } catch (IOException e) {
+                throw new DetectJenkinsException("[ERROR] The distributed Detect script could not be found: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    public static class VersionedSetupCallableImpl extends MasterToSlaveCallable<DetectSetupResult, IntegrationException> {
+        private static final long serialVersionUID = 2954105762211934068L;
+        private final JenkinsIntLogger logger;
+        private final String toolsDirectory;
+        private final String detectVersion;
+        private final long artifactStoreQuotaBytes;
+        private final MasterToSlaveCallable<DetectSetupResult, IntegrationException> scriptSetupCallable;
+
+        public VersionedSetupCallableImpl(
+            JenkinsIntLogger logger,
+            String toolsDirectory,
+            String detectVersion,
+            long artifactStoreQuotaBytes,
+            MasterToSlaveCallable<DetectSetupResult, IntegrationException> scriptSetupCallable
+        ) {
+            this.logger = logger;
+            this.toolsDirectory = toolsDirectory;
+            this.detectVersion = detectVersion;
+            this.artifactStoreQuotaBytes = artifactStoreQuotaBytes;
+            this.scriptSetupCallable = scriptSetupCallable;
+        }
+
+        @Override
+        public DetectSetupResult call() throws IntegrationException {
+            // The version is leased until Detect has finished, so that other builds do not evict it while it runs.
+            Path storeDirectory = Paths.get(toolsDirectory, DETECT_INSTALL_DIRECTORY, DetectArtifactStore.STORE_DIRECTORY);
+            String leaseId = UUID.randomUUID().toString();
+            try {
+                Path versionDirectory = new DetectArtifactStore(logger, storeDirectory, artifactStoreQuotaBytes).checkout(detectVersion, leaseId);
+                logger.info(String.format("Detect %s is kept in %s", detectVersion, versionDirectory));
+            } catch (IOException e) {
+                throw new DetectJenkinsException("[ERROR] The Detect artifact store could not be prepared: " + e.getMessage(), e);
+            }
+
+            DetectArtifactStore.ReturnLeaseCallable returnLeaseCallable = new DetectArtifactStore.ReturnLeaseCallable(logger, storeDirectory.toString(), detectVersion, leaseId);
+            DetectSetupResult detectSetupResult;
+            try {
+                detectSetupResult = scriptSetupCallable.call();
+            } catch (IntegrationException | RuntimeException e) {
+                // Detect will not run, so the lease is returned right away.
+                try {
+                    returnLeaseCallable.call();
+                } catch (IOException leaseException) {
+                    e.addSuppressed(leaseException);
+                }
+                throw e;
+            }
+            return new DetectSetupResult(detectSetupResult.getDetectCommand(), detectSetupResult.getPhaseTimings(), returnLeaseCallable);
+        }
+    }
+
+    static ArrayList<String> createScriptCommand(String scriptRemotePath) {
+        if (OperatingSystemType.determineFromSystem() == OperatingSystemType.WINDOWS) {
+            return new ArrayList<>(Arrays.asList("powershell", String.format("\"Import-Module '%s'; detect\"", scriptRemotePath)));
+        }
+        return new ArrayList<>(Arrays.asList("bash", scriptRemotePath));
+    }
+
+    public static class DownloadJarCallableImpl extends MasterToSlaveCallable<Integer, IntegrationException> {
+        private static final long serialVersionUID = 3174560823911432186L;
+        public static final String DETECT_DOWNLOAD_ONLY = "DETECT_DOWNLOAD_ONLY";
+        private static final long DOWNLOAD_TIMEOUT_MINUTES = 30;
+        private static final long OUTPUT_DRAIN_TIMEOUT_SECONDS = 30;
+        private static final ExecutorService OUTPUT_THREADS = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "Black Duck Detect download output");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        private final JenkinsIntLogger logger;
+        private final Map<String, String> environmentVariables;
+        private final ArrayList<String> scriptCommand;
+        private final long downloadTimeoutMillis;
+
+        public DownloadJarCallableImpl(JenkinsIntLogger logger, Map<String, String> environmentVariables, ArrayList<String> scriptCommand) {
+            this(logger, environmentVariables, scriptCommand, TimeUnit.MINUTES.toMillis(DOWNLOAD_TIMEOUT_MINUTES));
+        }
+
+        DownloadJarCallableImpl(JenkinsIntLogger logger, Map<String, String> environmentVariables, ArrayList<String> scriptCommand, long downloadTimeoutMillis) {
+            this.logger = logger;
+            this.environmentVariables = environmentVariables;
+            this.scriptCommand = scriptCommand;
+            this.downloadTimeoutMillis = downloadTimeoutMillis;
+        }
+
+        @Override
+        public Integer call() throws IntegrationException {
+            // The Detect scripts only fetch the Detect jar (into their usual download directory) when DETECT_DOWNLOAD_ONLY is set, which lets us pay for that download ahead of the first scan.
+            ProcessBuilder processBuilder = new ProcessBuilder(scriptCommand);
+            processBuilder.environment().putAll(environmentVariables);
+            processBuilder.environment().put(DETECT_DOWNLOAD_ONLY, "1");
+            processBuilder.redirectErrorStream(true);
+
+            Process process = null;
+            try {
+                process = processBuilder.start();
+                process.getOutputStream().close();
+
+                // The output is copied on another thread so a script that hangs without closing its output still runs into the timeout below.
+                InputStream processOutput = process.getInputStream();
+                CompletableFuture<Void> output = CompletableFuture.runAsync(() -> copyOutput(processOutput), OUTPUT_THREADS);
+                if (!process.waitFor(downloadTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                    throw new DetectJenkinsException(String.format("Downloading the Detect jar did not finish within %d minutes.", TimeUnit.MILLISECONDS.toMinutes(downloadTimeoutMillis)));
+                }
+                // A child process the script left running may keep the output open, so the rest of the output is only waited for briefly.
+                output.get(OUTPUT_DRAIN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                return process.exitValue();
+            } catch (IOException | ExecutionException | TimeoutException e) {
+                throw new DetectJenkinsException("[ERROR] The Detect jar was not downloaded successfully: " + e.getMessage(), e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DetectJenkinsException("Downloading the Detect jar was interrupted.", e);
+            } finally {
+                if (null != process && process.isAlive()) {
+                    process.destroyForcibly();
+                }
+            }
+        }
+
+        private void copyOutput(InputStream inputStream) {
+            try (InputStream processOutput = inputStream) {
+                IOUtils.copy(processOutput, logger.getTaskListener().getLogger());
+            } catch (IOException e) {
+                // Destroying a hung process closes its output under the reader.
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
 }
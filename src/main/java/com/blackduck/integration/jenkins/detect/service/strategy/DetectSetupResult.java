@@ -0,0 +1,54 @@
+/*
+ * blackduck-detect
+ *
+ * Copyright (c) 2024 Black Duck Software, Inc.
+ *
+ * Use subject to the terms and conditions of the Black Duck Software End User Software License and Maintenance Agreement. All rights reserved worldwide.
+ */
+package com.blackduck.integration.jenkins.detect.service.strategy;
+
+import com.blackduck.integration.jenkins.detect.service.DetectPhaseTimings;
+import jenkins.security.MasterToSlaveCallable;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What setting up Detect on a node returns to the controller: the command that runs Detect, how long the phases of the setup that ran on the node took, and
+ * what to run on the node once Detect has finished, if anything.
+ */
+public class DetectSetupResult implements Serializable {
+    private static final long serialVersionUID = 5178634039417283190L;
+
+    private final ArrayList<String> detectCommand;
+    private final DetectPhaseTimings phaseTimings;
+    @Nullable
+    private final MasterToSlaveCallable<Void, IOException> finishCallable;
+
+    public DetectSetupResult(List<String> detectCommand, DetectPhaseTimings phaseTimings) {
+        this(detectCommand, phaseTimings, null);
+    }
+
+    public DetectSetupResult(List<String> detectCommand, DetectPhaseTimings phaseTimings, @Nullable MasterToSlaveCallable<Void, IOException> finishCallable) {
+        this.detectCommand = new ArrayList<>(detectCommand);
+        this.phaseTimings = phaseTimings;
+        this.finishCallable = finishCallable;
+    }
+
+    public ArrayList<String> getDetectCommand() {
+        return detectCommand;
+    }
+
+    public DetectPhaseTimings getPhaseTimings() {
+        return phaseTimings;
+    }
+
+    @Nullable
+    public MasterToSlaveCallable<Void, IOException> getFinishCallable() {
+        return finishCallable;
+    }
+
+}
@@ -21,17 +21,35 @@ import com.blackduck.integration.util.IntEnvironmentVariables;
 import com.blackduck.integration.util.OperatingSystemType;
 import org.apache.commons.lang3.StringUtils;
 
+import java.util.HashMap;
+import java.util.Optional;
+
 public class DetectStrategyService {
+    public static final String DETECT_LATEST_RELEASE_VERSION = "DETECT_LATEST_RELEASE_VERSION";
+    public static final String DETECT_JAR_DOWNLOAD_DIR = "DETECT_JAR_DOWNLOAD_DIR";
+
     private final JenkinsIntLogger logger;
-    private final String remoteTempWorkspacePath;
+    private final String remoteToolsPath;
     private final JenkinsProxyHelper jenkinsProxyHelper;
     private final JenkinsConfigService jenkinsConfigService;
+    private final DetectArtifactDistributor detectArtifactDistributor;
+
+    public DetectStrategyService(JenkinsIntLogger logger, JenkinsProxyHelper jenkinsProxyHelper, String remoteToolsPath, JenkinsConfigService jenkinsConfigService) {
+        this(logger, jenkinsProxyHelper, remoteToolsPath, jenkinsConfigService, null);
+    }
 
-    public DetectStrategyService(JenkinsIntLogger logger, JenkinsProxyHelper jenkinsProxyHelper, String remoteTempWorkspacePath, JenkinsConfigService jenkinsConfigService) {
+    public DetectStrategyService(
+        JenkinsIntLogger logger,
+        JenkinsProxyHelper jenkinsProxyHelper,
+        String remoteToolsPath,
+        JenkinsConfigService jenkinsConfigService,
+        DetectArtifactDistributor detectArtifactDistributor
+    ) {
         this.logger = logger;
         this.jenkinsProxyHelper = jenkinsProxyHelper;
-        this.remoteTempWorkspacePath = remoteTempWorkspacePath;
+        this.remoteToolsPath = remoteToolsPath;
         this.jenkinsConfigService = jenkinsConfigService;
+        this.detectArtifactDistributor = detectArtifactDistributor;
     }
 
     public DetectExecutionStrategy getExecutionStrategy(
@@ -59,6 +77,10 @@ public class DetectStrategyService {
         logger.info(loggingMessage + detectDownloadStrategy.getDisplayName());
 
         String detectJarPath = intEnvironmentVariables.getValue(DetectJenkinsEnvironmentVariable.USER_PROVIDED_JAR_PATH.stringValue());
+        String detectVersion = StringUtils.trimToNull(intEnvironmentVariables.getValue(DetectJenkinsEnvironmentVariable.DETECT_VERSION.stringValue()));
+        if (null != detectVersion && !DetectArtifactStore.isValidVersion(detectVersion)) {
+            throw new DetectJenkinsException(String.format("The Detect version %s is not valid. Use a version such as 10.3.0.", detectVersion));
+        }
         DetectExecutionStrategy detectExecutionStrategy;
 
         if (detectDownloadStrategy instanceof AirGapDownloadStrategy) {
@@ -70,9 +92,49 @@ public class DetectStrategyService {
                 (AirGapDownloadStrategy) detectDownloadStrategy
             );
         } else if (StringUtils.isNotBlank(detectJarPath)) {
+            if (null != detectVersion) {
+                logger.warn(String.format("Ignoring Detect version %s because %s points at a Detect jar.", detectVersion, DetectJenkinsEnvironmentVariable.USER_PROVIDED_JAR_PATH.stringValue()));
+            }
             detectExecutionStrategy = new DetectJarStrategy(logger, intEnvironmentVariables, remoteJdkHome, detectJarPath);
         } else {
-            detectExecutionStrategy = new DetectScriptStrategy(logger, jenkinsProxyHelper, operatingSystemType, remoteTempWorkspacePath);
+            Optional<DetectGlobalConfig> detectGlobalConfig = jenkinsConfigService.getGlobalConfiguration(DetectGlobalConfig.class);
+            long scriptCacheTimeToLiveMillis = detectGlobalConfig
+                .map(DetectGlobalConfig::getScriptCacheTimeToLive)
+                .map(DetectScriptCache::toMillis)
+                .orElse(0L);
+            boolean distributeFromController = detectGlobalConfig.map(DetectGlobalConfig::getDistributeFromController).orElse(false);
+            DetectArtifactDistributor scriptDistributor = distributeFromController ? detectArtifactDistributor : null;
+            DetectScriptStrategy detectScriptStrategy = new DetectScriptStrategy(
+                logger,
+                jenkinsProxyHelper,
+                operatingSystemType,
+                remoteToolsPath,
+                scriptCacheTimeToLiveMillis,
+                scriptDistributor
+            );
+            detectScriptStrategy.setDownloadTimeout(detectGlobalConfig.map(DetectGlobalConfig::getDownloadTimeout).orElse(DetectGlobalConfig.DEFAULT_DOWNLOAD_TIMEOUT));
+
+            String jarDirectory = null;
+            if (null != detectVersion) {
+                // The Detect scripts download the version they are given into the directory they are given, which is that version's entry in the artifact store.
+                jarDirectory = DetectArtifactStore.getVersionDirectory(remoteToolsPath, operatingSystemType, detectVersion);
+                intEnvironmentVariables.put(DETECT_LATEST_RELEASE_VERSION, detectVersion);
+                intEnvironmentVariables.put(DETECT_JAR_DOWNLOAD_DIR, jarDirectory);
+                long artifactStoreQuotaBytes = detectGlobalConfig
+                    .map(DetectGlobalConfig::getArtifactStoreQuota)
+                    .orElse(DetectGlobalConfig.DEFAULT_ARTIFACT_STORE_QUOTA) * 1024L * 1024L;
+                detectScriptStrategy.setDetectVersion(detectVersion, Math.max(0L, artifactStoreQuotaBytes));
+                logger.info(String.format("Running Detect version %s", detectVersion));
+            }
+            if (null != scriptDistributor) {
+                // The jar is distributed into the directory the script on the agent looks in, so the script finds it there instead of downloading it.
+                if (null == jarDirectory) {
+                    jarDirectory = DetectArtifactDistributor.getJarDirectory(remoteToolsPath, operatingSystemType);
+                    intEnvironmentVariables.put(DETECT_JAR_DOWNLOAD_DIR, jarDirectory);
+                }
+                detectScriptStrategy.setJarDistribution(new HashMap<>(intEnvironmentVariables.getVariables()), jarDirectory);
+            }
+            detectExecutionStrategy = detectScriptStrategy;
         }
 
         return detectExecutionStrategy;
@@ -0,0 +1,280 @@
+/*
+ * blackduck-detect
+ *
+ * Copyright (c) 2024 Black Duck Software, Inc.
+ *
+ * Use subject to the terms and conditions of the Black Duck Software End User Software License and Maintenance Agreement. All rights reserved worldwide.
+ */
+package com.blackduck.integration.jenkins.detect.service.strategy;
+
+import org.apache.commons.lang3.StringUtils;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Agent-wide cache of resolved Java executables. Resolving a path and probing its version with {@code java -version} happens once per JDK home and Java environment
+ * variables; later builds on the agent reuse the result for as long as the executable on disk is unchanged and its probe did not fail. The probe runs in the
+ * background, so resolving a path never waits for it. Only the most recently used {@value #MAX_CACHED_JAVAS} executables are kept.
+ */
+public class RemoteJavaCache {
+    public static final int MAX_VERSION_OUTPUT_LENGTH = 8 * 1024;
+    public static final long PROBE_TIMEOUT_SECONDS = 30;
+    public static final int MAX_CACHED_JAVAS = 32;
+
+    private static final ExecutorService PROBE_THREADS = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "Black Duck Detect Java version probe");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final RemoteJavaCache INSTANCE = new RemoteJavaCache(RemoteJavaCache::probeJavaVersion, PROBE_THREADS);
+    private static final Pattern VERSION_PATTERN = Pattern.compile("version \"([^\"]+)\"");
+
+    private final Map<String, ResolvedJava> resolvedJavas = new LinkedHashMap<String, ResolvedJava>(16, 0.75f, true) {
+        private static final long serialVersionUID = -1530826513829541170L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ResolvedJava> eldest) {
+            return size() > MAX_CACHED_JAVAS;
+        }
+    };
+    private final BiFunction<String, Map<String, String>, String> versionProbe;
+    private final Executor probeExecutor;
+
+    public RemoteJavaCache(BiFunction<String, Map<String, String>, String> versionProbe, Executor probeExecutor) {
+        this.versionProbe = versionProbe;
+        this.probeExecutor = probeExecutor;
+    }
+
+    public static RemoteJavaCache getInstance() {
+        return INSTANCE;
+    }
+
+    public static String getCacheKey(@Nullable String remoteJdkHome, String javaExecutableName, Map<String, String> environmentVariables) {
+        // PATH only matters when neither a JDK home nor a Java variable is set and "java" is looked up on it. Builds commonly extend PATH, so leaving it out
+        // otherwise keeps the cache from filling up with copies of the same executable.
+        boolean javaConfigured = null != remoteJdkHome
+                                     || environmentVariables.containsKey(RemoteJavaService.DETECT_JAVA_PATH)
+                                     || environmentVariables.containsKey(RemoteJavaService.JAVA_HOME);
+        return String.join("\u0000",
+            StringUtils.defaultString(remoteJdkHome),
+            javaExecutableName,
+            StringUtils.defaultString(environmentVariables.get(RemoteJavaService.DETECT_JAVA_PATH)),
+            StringUtils.defaultString(environmentVariables.get(RemoteJavaService.JAVA_HOME)),
+            javaConfigured ? "" : StringUtils.defaultString(environmentVariables.get("PATH"))
+        );
+    }
+
+    public ResolvedJava getOrResolve(String cacheKey, Map<String, String> environmentVariables, ResolvedJavaSupplier resolver) {
+        // Resolving a path is quick and the probe runs in the background, so one lock for the whole cache does not hold builds up.
+        synchronized (resolvedJavas) {
+            ResolvedJava cached = resolvedJavas.get(cacheKey);
+            if (null != cached && cached.isCurrent()) {
+                return cached;
+            }
+
+            ResolvedJava unprobed = resolver.resolve();
+            String executablePath = unprobed.getExecutablePath();
+            CompletableFuture<String> versionOutput = CompletableFuture.supplyAsync(() -> versionProbe.apply(executablePath, environmentVariables), probeExecutor)
+                                                          .exceptionally(throwable -> null);
+            ResolvedJava resolvedJava = new ResolvedJava(executablePath, unprobed.getSource(), versionOutput);
+            resolvedJavas.put(cacheKey, resolvedJava);
+            return resolvedJava;
+        }
+    }
+
+    public void clear() {
+        synchronized (resolvedJavas) {
+            resolvedJavas.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (resolvedJavas) {
+            return resolvedJavas.size();
+        }
+    }
+
+    @Nullable
+    public static String probeJavaVersion(String javaExecutablePath, Map<String, String> environmentVariables) {
+        return probeJavaVersion(Arrays.asList(javaExecutablePath, "-version"), environmentVariables, PROBE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @Nullable
+    public static String probeJavaVersion(List<String> command, Map<String, String> environmentVariables, long timeout, TimeUnit timeUnit) {
+        Process process = null;
+        try {
+            ProcessBuilder processBuilder = new ProcessBuilder(command);
+            processBuilder.environment().putAll(environmentVariables);
+            // Java writes its version to stderr; merging the streams lets one reader drain everything while this thread waits, so the process never blocks on a full pipe.
+            processBuilder.redirectErrorStream(true);
+            process = processBuilder.start();
+            process.getOutputStream().close();
+
+            InputStream processOutput = process.getInputStream();
+            CompletableFuture<String> output = CompletableFuture.supplyAsync(() -> readBounded(processOutput), PROBE_THREADS);
+            if (!process.waitFor(timeout, timeUnit)) {
+                return null;
+            }
+            // The output ends once the process has exited, so this only waits for the reader to catch up.
+            return output.get(timeout, timeUnit);
+        } catch (IOException | ExecutionException | TimeoutException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            if (null != process && process.isAlive()) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private static String readBounded(InputStream inputStream) {
+        try (InputStream processOutput = inputStream) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = processOutput.read(buffer)) != -1) {
+                // Keep draining past the limit so the process can exit, but only keep the start of what it wrote.
+                int kept = Math.min(read, MAX_VERSION_OUTPUT_LENGTH - output.size());
+                if (kept > 0) {
+                    output.write(buffer, 0, kept);
+                }
+            }
+            return new String(output.toByteArray(), Charset.defaultCharset());
+        } catch (IOException e) {
+            // Destroying a hung process closes its output under the reader.
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Nullable
+    public static String parseVersion(@Nullable String versionOutput) {
+        if (null == versionOutput) {
+            return null;
+        }
+        Matcher matcher = VERSION_PATTERN.matcher(versionOutput);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    public static int parseMajorVersion(@Nullable String version) {
+        if (StringUtils.isBlank(version)) {
+            return -1;
+        }
+
+        // 1.8.0_292 is Java 8, while 11.0.2, 17 and 21-ea name their major version first.
+        String[] parts = version.split("[._+-]");
+        try {
+            int first = Integer.parseInt(parts[0]);
+            if (first == 1 && parts.length > 1) {
+                return Integer.parseInt(parts[1]);
+            }
+            return first;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @FunctionalInterface
+    public interface ResolvedJavaSupplier {
+        ResolvedJava resolve();
+    }
+
+    public static class ResolvedJava {
+        private final String executablePath;
+        @Nullable
+        private final String source;
+        private final CompletableFuture<String> versionOutput;
+        private final long lastModified;
+
+        public ResolvedJava(String executablePath, @Nullable String source, CompletableFuture<String> versionOutput) {
+            this.executablePath = executablePath;
+            this.source = source;
+            this.versionOutput = versionOutput;
+            this.lastModified = new File(executablePath).lastModified();
+        }
+
+        public ResolvedJava(String executablePath, @Nullable String source) {
+            this(executablePath, source, CompletableFuture.completedFuture(null));
+        }
+
+        public String getExecutablePath() {
+            return executablePath;
+        }
+
+        /**
+         * @return where the path was configured, or null if it could not be resolved and java is looked up on the PATH
+         */
+        @Nullable
+        public String getSource() {
+            return source;
+        }
+
+        public boolean isVersionProbed() {
+            return versionOutput.isDone();
+        }
+
+        /**
+         * Waits at most the given time for the version probe to finish.
+         *
+         * @return whether the probe has finished
+         */
+        public boolean awaitVersionProbe(long timeout, TimeUnit timeUnit) {
+            try {
+                versionOutput.get(timeout, timeUnit);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | TimeoutException e) {
+                // The probe is still running; isVersionProbed reports that below.
+            }
+            return isVersionProbed();
+        }
+
+        /**
+         * @return the output of {@code java -version}, or null while the probe is still running or if it failed or timed out
+         */
+        @Nullable
+        public String getVersionOutput() {
+            return versionOutput.getNow(null);
+        }
+
+        @Nullable
+        public String getVersion() {
+            return parseVersion(getVersionOutput());
+        }
+
+        public int getMajorVersion() {
+            return parseMajorVersion(getVersion());
+        }
+
+        private boolean isCurrent() {
+            // A probe that failed or timed out may succeed on a later try, for example once a busy agent has calmed down.
+            if (isVersionProbed() && null == getVersionOutput()) {
+                return false;
+            }
+            // A JDK upgraded in place gets a new executable, which is resolved and probed again.
+            return lastModified == new File(executablePath).lastModified();
+        }
+    }
+
+}
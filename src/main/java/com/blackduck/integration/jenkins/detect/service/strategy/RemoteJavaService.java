@@ -7,49 +7,118 @@
  */
 package com.blackduck.integration.jenkins.detect.service.strategy;
 
+import com.blackduck.integration.jenkins.detect.DetectJenkinsEnvironmentVariable;
 import com.blackduck.integration.jenkins.extensions.JenkinsIntLogger;
 import com.blackduck.integration.log.LogLevel;
-import org.apache.commons.io.IOUtils;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.SystemUtils;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 public class RemoteJavaService {
     public static final String DETECT_JAVA_PATH = "DETECT_JAVA_PATH";
     public static final String JAVA_HOME = "JAVA_HOME";
+    public static final String CLASS_DATA_ARCHIVE_DIRECTORY = "blackduck-detect-cds";
+    public static final int MINIMUM_JAVA_VERSION = 8;
+    public static final long VERSION_REPORT_WAIT_MILLIS = 2000;
 
     private final JenkinsIntLogger logger;
     private final String remoteJdkHome;
     private final Map<String, String> environmentVariables;
+    private final RemoteJavaCache remoteJavaCache;
 
     public RemoteJavaService(JenkinsIntLogger logger, String remoteJdkHome, Map<String, String> environmentVariables) {
+        this(logger, remoteJdkHome, environmentVariables, RemoteJavaCache.getInstance());
+    }
+
+    public RemoteJavaService(JenkinsIntLogger logger, String remoteJdkHome, Map<String, String> environmentVariables, RemoteJavaCache remoteJavaCache) {
         this.logger = logger;
         this.remoteJdkHome = remoteJdkHome;
         this.environmentVariables = environmentVariables;
+        this.remoteJavaCache = remoteJavaCache;
     }
 
     public String getJavaExecutablePath() {
+        return getResolvedJava().getExecutablePath();
+    }
+
+    public RemoteJavaCache.ResolvedJava getResolvedJava() {
         String javaExecutableName = "java";
         if (SystemUtils.IS_OS_WINDOWS) {
             javaExecutableName = "java.exe";
         }
 
-        String javaExecutablePath = calculateJavaExecutablePath(javaExecutableName);
-        logger.info("Running with JAVA: " + javaExecutablePath);
+        String cacheKey = RemoteJavaCache.getCacheKey(remoteJdkHome, javaExecutableName, environmentVariables);
+        String finalJavaExecutableName = javaExecutableName;
+        RemoteJavaCache.ResolvedJava resolvedJava = remoteJavaCache.getOrResolve(cacheKey, environmentVariables, () -> calculateJavaExecutablePath(finalJavaExecutableName));
+
+        if (null != resolvedJava.getSource()) {
+            logger.debug("Path to Java executable is set based on: " + resolvedJava.getSource());
+        } else {
+            logger.warn("Could not set path to Java executable, falling back to PATH.");
+        }
+        logger.info("Running with JAVA: " + resolvedJava.getExecutablePath());
+        if (logger.getLogLevel().isLoggable(LogLevel.DEBUG)) {
+            logger.debug("PATH: " + environmentVariables.get("PATH"));
+        }
+
+        return resolvedJava;
+    }
 
-        logDebugData(javaExecutablePath);
+    /**
+     * Reports the version found by the probe that {@link #getResolvedJava()} started. Call it once the rest of the setup is done so the probe runs alongside it.
+     * A probe that is still running gets a short while to finish; if it needs longer, the version is reported by a later build instead of holding this one up.
+     */
+    public void reportJavaVersion(RemoteJavaCache.ResolvedJava resolvedJava) {
+        if (!resolvedJava.awaitVersionProbe(VERSION_REPORT_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+            logger.debug("The Java version is still being determined and will be checked by a later build.");
+            return;
+        }
 
-        return javaExecutablePath;
+        logDebugData(resolvedJava);
+        validateJavaVersion(resolvedJava);
     }
 
-    private String calculateJavaExecutablePath(String javaExecutableName) {
-        String fullPathToJava = null;
-        String javaPathSourceLogging = "";
+    public List<String> getWarmStartArguments(String javaExecutablePath, String detectJarPath) {
+        return getWarmStartArguments(javaExecutablePath, detectJarPath, new File(System.getProperty("java.io.tmpdir"), CLASS_DATA_ARCHIVE_DIRECTORY));
+    }
+
+    public List<String> getWarmStartArguments(String javaExecutablePath, String detectJarPath, File archiveDirectory) {
+        if (!Boolean.parseBoolean(environmentVariables.get(DetectJenkinsEnvironmentVariable.WARM_START.stringValue()))) {
+            return Collections.emptyList();
+        }
+
+        if (!archiveDirectory.isDirectory() && !archiveDirectory.mkdirs()) {
+            logger.warn("Could not create the class data sharing archive directory, starting Detect without it: " + archiveDirectory);
+            return Collections.emptyList();
+        }
+
+        // An archive is only valid for the exact JVM and jar that recorded it, so both are part of its name.
+        File detectJar = new File(detectJarPath);
+        String archiveKey = DigestUtils.sha256Hex(String.join("|", javaExecutablePath, detectJar.getAbsolutePath(), String.valueOf(detectJar.length()), String.valueOf(detectJar.lastModified())));
+        File archive = new File(archiveDirectory, "detect-" + archiveKey.substring(0, 16) + ".jsa");
+
+        // Unrecognized options are ignored so JVMs without dynamic archiving simply start cold, and -Xshare:auto falls back to a cold start if the archive is unusable.
+        if (archive.isFile() && archive.length() > 0) {
+            // Recording the use keeps an archive that is started from regularly out of reach of the disk cleanup.
+            archive.setLastModified(System.currentTimeMillis());
+            logger.info("Starting Detect from class data sharing archive: " + archive);
+            return Arrays.asList("-XX:+IgnoreUnrecognizedVMOptions", "-Xshare:auto", "-XX:SharedArchiveFile=" + archive.getAbsolutePath());
+        }
+
+        logger.info("Recording a class data sharing archive for later Detect runs: " + archive);
+        return Arrays.asList("-XX:+IgnoreUnrecognizedVMOptions", "-XX:ArchiveClassesAtExit=" + archive.getAbsolutePath());
+    }
+
+    private RemoteJavaCache.ResolvedJava calculateJavaExecutablePath(String javaExecutableName) {
+        String javaPathSourceLogging = null;
 
         File javaExecutablePath = null;
         if (remoteJdkHome != null) {
@@ -66,41 +135,27 @@ public class RemoteJavaService {
         }
 
         try {
-            fullPathToJava = Objects.requireNonNull(javaExecutablePath).getCanonicalPath();
-            logger.debug("Path to Java executable is set based on: " + javaPathSourceLogging);
+            String fullPathToJava = Objects.requireNonNull(javaExecutablePath).getCanonicalPath();
+            return new RemoteJavaCache.ResolvedJava(fullPathToJava, javaPathSourceLogging);
         } catch (IOException | NullPointerException e) {
-            logger.warn("Could not set path to Java executable, falling back to PATH.");
+            return new RemoteJavaCache.ResolvedJava(javaExecutableName, null);
         }
-
-        return (null != fullPathToJava) ? fullPathToJava : javaExecutableName;
     }
 
-    private void logDebugData(String javaExecutablePath) {
+    private void logDebugData(RemoteJavaCache.ResolvedJava resolvedJava) {
         if (logger.getLogLevel().isLoggable(LogLevel.DEBUG)) {
-            logger.debug("PATH: " + environmentVariables.get("PATH"));
-            try {
-                ProcessBuilder processBuilder = new ProcessBuilder(Arrays.asList(javaExecutablePath, "-version"));
-                processBuilder.environment().putAll(environmentVariables);
-                Process process = processBuilder.start();
-                process.waitFor();
-                logJavaVersion(process);
-            } catch (IOException e) {
-                logger.debug("Error starting process to get Java version: " + e.getMessage(), e);
-            } catch (InterruptedException e) {
-                logger.debug("Error running process to get Java version: " + e.getMessage(), e);
-                Thread.currentThread().interrupt();
+            if (null != resolvedJava.getVersionOutput()) {
+                logger.debug("Java version: " + System.lineSeparator() + resolvedJava.getVersionOutput().trim());
+            } else {
+                logger.debug("Could not get the Java version from " + resolvedJava.getExecutablePath() + " -version.");
             }
         }
     }
 
-    private void logJavaVersion(Process process) {
-        try (InputStream errorStream = Objects.requireNonNull(process).getErrorStream();
-            InputStream inputSteam = Objects.requireNonNull(process).getInputStream()) {
-            logger.debug("Java version: ");
-            IOUtils.copy(errorStream, logger.getTaskListener().getLogger());
-            IOUtils.copy(inputSteam, logger.getTaskListener().getLogger());
-        } catch (IOException e) {
-            logger.debug("Error printing the JAVA version: " + e.getMessage(), e);
+    private void validateJavaVersion(RemoteJavaCache.ResolvedJava resolvedJava) {
+        int majorVersion = resolvedJava.getMajorVersion();
+        if (majorVersion > 0 && majorVersion < MINIMUM_JAVA_VERSION) {
+            logger.warn(String.format("Detect requires Java %d or later, but %s is Java %s. Detect is likely to fail to start.", MINIMUM_JAVA_VERSION, resolvedJava.getExecutablePath(), resolvedJava.getVersion()));
         }
     }
 }
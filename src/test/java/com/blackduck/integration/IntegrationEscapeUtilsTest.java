@@ -0,0 +1,68 @@
+package com.blackduck.integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Random;
+
+import org.apache.commons.text.StringEscapeUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+public class IntegrationEscapeUtilsTest {
+    // Every character either translator handles, plus line break combinations, plain text and characters outside ASCII.
+    private static final String ALPHABET = "|&;<>()$`\\\"' \t*?[#~=%,\r\n\r\nab09-_./:{}]^!@+\u00e9\u4e2d\ud83d\ude00\u0000\u007f\u0080";
+    private static final int SAMPLES = 50000;
+
+    @ParameterizedTest
+    @ValueSource(strings = { "", "plain", "with space", "a\r\nb", "a\rb", "\r\r\n", "\n\n", "trailing\r", "C:\\Program Files (x86)\\detect", "--x='$y'", "a,b" })
+    public void testMatchesTranslators(String input) {
+        assertEquals(IntegrationEscapeUtils.ESCAPE_POWERSHELL.translate(input), IntegrationEscapeUtils.escapePowerShell(input));
+        assertEquals(StringEscapeUtils.ESCAPE_XSI.translate(input), IntegrationEscapeUtils.escapeXSI(input));
+    }
+
+    @Test
+    public void testMatchesTranslatorsForRandomInput() {
+        Random random = new Random(20240611L);
+        for (int i = 0; i < SAMPLES; i++) {
+            String input = randomString(random);
+            assertEquals(IntegrationEscapeUtils.ESCAPE_POWERSHELL.translate(input), IntegrationEscapeUtils.escapePowerShell(input), "PowerShell escaping differs for: " + input);
+            assertEquals(StringEscapeUtils.ESCAPE_XSI.translate(input), IntegrationEscapeUtils.escapeXSI(input), "XSI escaping differs for: " + input);
+        }
+    }
+
+    @Test
+    public void testMatchesTranslatorsForEveryCharacter() {
+        for (char c = 0; c < 256; c++) {
+            String input = "a" + c + "b" + c;
+            assertEquals(IntegrationEscapeUtils.ESCAPE_POWERSHELL.translate(input), IntegrationEscapeUtils.escapePowerShell(input));
+            assertEquals(StringEscapeUtils.ESCAPE_XSI.translate(input), IntegrationEscapeUtils.escapeXSI(input));
+        }
+    }
+
+    @Test
+    public void testUnchangedInputIsReturned() {
+        String input = "https://blackduck.example.com/api/projects";
+
+        assertSame(input, IntegrationEscapeUtils.escapePowerShell(input));
+        assertSame(input, IntegrationEscapeUtils.escapeXSI(input));
+    }
+
+    @Test
+    public void testNullInput() {
+        assertNull(IntegrationEscapeUtils.escapePowerShell(null));
+        assertNull(IntegrationEscapeUtils.escapeXSI(null));
+    }
+
+    private String randomString(Random random) {
+        int length = random.nextInt(24);
+        StringBuilder input = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            input.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return input.toString();
+    }
+
+}
@@ -1,9 +1,12 @@
 package com.blackduck.integration.jenkins.detect;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 
 import org.apache.commons.lang3.StringUtils;
 import org.junit.jupiter.api.BeforeEach;
@@ -12,6 +15,7 @@ import org.mockito.Mockito;
 
 import com.blackduck.integration.jenkins.detect.exception.DetectJenkinsException;
 import com.blackduck.integration.jenkins.detect.extensions.ScriptOrJarDownloadStrategy;
+import com.blackduck.integration.jenkins.detect.extensions.pipeline.DetectScan;
 import com.blackduck.integration.jenkins.extensions.JenkinsIntLogger;
 
 public class DetectPipelineCommandsTest {
@@ -83,4 +87,23 @@ public class DetectPipelineCommandsTest {
             fail("An unexpected exception occurred in the test code: ", e);
         }
     }
+
+    @Test
+    public void testRunDetectScansAggregatesExitCodes() {
+        List<DetectScan> detectScans = Arrays.asList(new DetectScan("frontend"), new DetectScan("backend"), new DetectScan("docs"));
+        try {
+            Mockito.when(mockedDetectRunner.runDetectScans(Mockito.any(), Mockito.anyString(), Mockito.eq(detectScans), Mockito.anyInt(), Mockito.any(ScriptOrJarDownloadStrategy.class)))
+                .thenReturn(Arrays.asList(0, 3, 5));
+
+            DetectPipelineCommands detectCommands = new DetectPipelineCommands(mockedDetectRunner, mockedLogger);
+            assertEquals(3, detectCommands.runDetectScans(true, StringUtils.EMPTY, detectScans, 2, DOWNLOAD_STRATEGY));
+
+            Mockito.verify(mockedLogger).error("Detect failed for scans: backend (exit code 3), docs (exit code 5)");
+        } catch (Exception e) {
+            fail("An unexpected exception occurred in the test code: ", e);
+        }
+
+        DetectPipelineCommands detectCommands = new DetectPipelineCommands(mockedDetectRunner, mockedLogger);
+        assertThrows(DetectJenkinsException.class, () -> detectCommands.runDetectScans(false, StringUtils.EMPTY, detectScans, 2, DOWNLOAD_STRATEGY));
+    }
 }
@@ -5,13 +5,15 @@ import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 import com.blackduck.integration.jenkins.wrapper.BlackduckCredentialsHelper;
 import org.junit.jupiter.api.Test;
@@ -24,12 +26,16 @@ import com.blackduck.integration.jenkins.detect.extensions.AirGapDownloadStrateg
 import com.blackduck.integration.jenkins.detect.extensions.DetectDownloadStrategy;
 import com.blackduck.integration.jenkins.detect.extensions.ScriptOrJarDownloadStrategy;
 import com.blackduck.integration.jenkins.detect.extensions.global.DetectGlobalConfig;
+import com.blackduck.integration.jenkins.detect.extensions.pipeline.DetectScan;
 import com.blackduck.integration.jenkins.detect.extensions.tool.DetectAirGapInstallation;
 import com.blackduck.integration.jenkins.detect.service.DetectArgumentService;
 import com.blackduck.integration.jenkins.detect.service.DetectEnvironmentService;
+import com.blackduck.integration.jenkins.detect.service.DetectExecutionLimiter;
+import com.blackduck.integration.jenkins.detect.service.DetectPhaseTimings;
 import com.blackduck.integration.jenkins.detect.service.strategy.DetectAirGapJarStrategy;
 import com.blackduck.integration.jenkins.detect.service.strategy.DetectJarStrategy;
 import com.blackduck.integration.jenkins.detect.service.strategy.DetectScriptStrategy;
+import com.blackduck.integration.jenkins.detect.service.strategy.DetectSetupResult;
 import com.blackduck.integration.jenkins.detect.service.strategy.DetectStrategyService;
 import com.blackduck.integration.jenkins.extensions.JenkinsIntLogger;
 import com.blackduck.integration.jenkins.service.JenkinsConfigService;
@@ -112,6 +118,31 @@ public class DetectRunnerTest {
         assertTrue(actualCommand.get(i).startsWith("--detect.phone.home.passthrough.jenkins.plugin.version="));
     }
 
+    @Test
+    public void testEachScanTakesADetectSlot() throws Exception {
+        JenkinsRemotingService mockedRemotingService = getMockedRemotingService(OperatingSystemType.LINUX, DETECT_SHELL_PATH);
+        AtomicInteger runningScans = new AtomicInteger();
+        AtomicInteger mostRunningScans = new AtomicInteger();
+        Mockito.when(mockedRemotingService.launch(Mockito.any(), Mockito.any())).thenAnswer(invocation -> {
+            mostRunningScans.accumulateAndGet(runningScans.incrementAndGet(), Math::max);
+            Thread.sleep(50L);
+            runningScans.decrementAndGet();
+            return 0;
+        });
+
+        DetectExecutionLimiter detectExecutionLimiter = new DetectExecutionLimiter();
+        JenkinsIntLogger jenkinsIntLogger = JenkinsIntLogger.logToListener(null);
+        DetectRunner detectRunner = createDetectRunner(new HashMap<>(), mockedRemotingService, () -> detectExecutionLimiter.acquire(jenkinsIntLogger, "node agent", 1));
+
+        List<DetectScan> detectScans = Arrays.asList(new DetectScan("frontend"), new DetectScan("backend"), new DetectScan("docs"));
+        List<Integer> exitCodes = detectRunner.runDetectScans(null, DETECT_PROPERTY_INPUT, detectScans, 3, SCRIPTJAR_DOWNLOAD_STRATEGY);
+
+        assertEquals(Arrays.asList(0, 0, 0), exitCodes);
+        assertEquals(1, mostRunningScans.get());
+        Mockito.verify(mockedRemotingService, Mockito.times(3)).launch(Mockito.any(), Mockito.any());
+        assertTrue(detectExecutionLimiter.acquire(jenkinsIntLogger, "node agent", 1).isDone(), "Every scan should have handed its Detect slot back.");
+    }
+
     @Test
     public void testRunDetectAirGapJar() {
         JenkinsRemotingService mockedRemotingService = getMockedRemotingService(OperatingSystemType.LINUX, DETECT_SHELL_PATH);
@@ -139,15 +170,15 @@ public class DetectRunnerTest {
 
         try {
             Mockito.when(mockedRemotingService.call(Mockito.any(DetectJarStrategy.SetupCallableImpl.class)))
-                .thenReturn(new ArrayList<>(Arrays.asList(JDK_HOME, "-jar", detectPath)));
+                .thenReturn(createSetupResult(JDK_HOME, "-jar", detectPath));
             Mockito.when(mockedRemotingService.call(Mockito.any(DetectAirGapJarStrategy.SetupCallableImpl.class)))
-                .thenReturn(new ArrayList<>(Arrays.asList(JDK_HOME, "-jar", DETECT_AIRGAP_JAR_PATH)));
+                .thenReturn(createSetupResult(JDK_HOME, "-jar", DETECT_AIRGAP_JAR_PATH));
 
             if (operatingSystemType == OperatingSystemType.WINDOWS) {
                 Mockito.when(mockedRemotingService.call(Mockito.any(DetectScriptStrategy.SetupCallableImpl.class)))
-                    .thenReturn(new ArrayList<>(Arrays.asList("powershell", String.format("\"Import-Module '%s'; detect\"", detectPath))));
+                    .thenReturn(createSetupResult("powershell", String.format("\"Import-Module '%s'; detect\"", detectPath)));
             } else {
-                Mockito.when(mockedRemotingService.call(Mockito.any(DetectScriptStrategy.SetupCallableImpl.class))).thenReturn(new ArrayList<>(Arrays.asList("bash", detectPath)));
+                Mockito.when(mockedRemotingService.call(Mockito.any(DetectScriptStrategy.SetupCallableImpl.class))).thenReturn(createSetupResult("bash", detectPath));
             }
 
             Mockito.when(mockedRemotingService.getRemoteOperatingSystemType()).thenReturn(operatingSystemType);
@@ -159,49 +190,17 @@ public class DetectRunnerTest {
         return mockedRemotingService;
     }
 
+    private DetectSetupResult createSetupResult(String... detectCommand) {
+        return new DetectSetupResult(Arrays.asList(detectCommand), new DetectPhaseTimings());
+    }
+
     private List<String> runDetectAndCaptureCommand(
         Map<String, String> environmentVariables,
         JenkinsRemotingService mockedRemotingService,
         DetectDownloadStrategy detectDownloadStrategy
     ) {
         try {
-            JenkinsIntLogger jenkinsIntLogger = JenkinsIntLogger.logToListener(null);
-            Map<BuilderPropertyKey, String> builderEnvironmentVariables = new HashMap<>();
-            builderEnvironmentVariables.put(BlackDuckServerConfigBuilder.TIMEOUT_KEY, "120");
-
-            BlackDuckServerConfigBuilder blackDuckServerConfigBuilder = Mockito.mock(BlackDuckServerConfigBuilder.class);
-            Mockito.when(blackDuckServerConfigBuilder.getProperties()).thenReturn(builderEnvironmentVariables);
-
-            DetectGlobalConfig detectGlobalConfig = Mockito.mock(DetectGlobalConfig.class);
-            Mockito.when(detectGlobalConfig.getBlackDuckServerConfigBuilder(Mockito.any(), Mockito.any())).thenReturn(blackDuckServerConfigBuilder);
-
-            JenkinsConfigService jenkinsConfigService = Mockito.mock(JenkinsConfigService.class);
-            Mockito.when(jenkinsConfigService.getGlobalConfiguration(DetectGlobalConfig.class)).thenReturn(Optional.of(detectGlobalConfig));
-
-            // Mocks specific to AirGap
-            DetectAirGapInstallation detectAirGapInstallationMock = Mockito.mock(DetectAirGapInstallation.class);
-            Mockito.when(jenkinsConfigService.getInstallationForNodeAndEnvironment(DetectAirGapInstallation.DescriptorImpl.class, AIRGAP_TOOL_NAME))
-                .thenReturn(Optional.ofNullable(detectAirGapInstallationMock));
-            Mockito.doReturn(AIRGAP_TOOL_PATH).when(detectAirGapInstallationMock).getHome();
-
-            JenkinsVersionHelper mockedVersionHelper = Mockito.mock(JenkinsVersionHelper.class);
-
-            BlackduckCredentialsHelper mockedCredentialsHelper = Mockito.mock(BlackduckCredentialsHelper.class);
-
-            JenkinsProxyHelper blankProxyHelper = new JenkinsProxyHelper();
-
-            DetectEnvironmentService detectEnvironmentService = new DetectEnvironmentService(
-                jenkinsIntLogger,
-                blankProxyHelper,
-                mockedVersionHelper,
-                mockedCredentialsHelper,
-                jenkinsConfigService,
-                environmentVariables
-            );
-            DetectArgumentService detectArgumentService = new DetectArgumentService(jenkinsIntLogger, mockedVersionHelper);
-            DetectStrategyService detectStrategyService = new DetectStrategyService(jenkinsIntLogger, blankProxyHelper, WORKSPACE_TMP_REL_PATH, jenkinsConfigService);
-
-            DetectRunner detectRunner = new DetectRunner(detectEnvironmentService, mockedRemotingService, detectStrategyService, detectArgumentService, jenkinsIntLogger);
+            DetectRunner detectRunner = createDetectRunner(environmentVariables, mockedRemotingService, () -> CompletableFuture.completedFuture(DetectExecutionLimiter.Permit.UNLIMITED));
 
             // run the method we're testing
             detectRunner.runDetect(null, DETECT_PROPERTY_INPUT, detectDownloadStrategy);
@@ -226,4 +225,58 @@ public class DetectRunnerTest {
         }
         return Collections.emptyList();
     }
+
+    private DetectRunner createDetectRunner(
+        Map<String, String> environmentVariables,
+        JenkinsRemotingService mockedRemotingService,
+        Supplier<CompletableFuture<DetectExecutionLimiter.Permit>> scanPermitSupplier
+    ) throws Exception {
+        JenkinsIntLogger jenkinsIntLogger = JenkinsIntLogger.logToListener(null);
+        Map<BuilderPropertyKey, String> builderEnvironmentVariables = new HashMap<>();
+        builderEnvironmentVariables.put(BlackDuckServerConfigBuilder.TIMEOUT_KEY, "120");
+
+        BlackDuckServerConfigBuilder blackDuckServerConfigBuilder = Mockito.mock(BlackDuckServerConfigBuilder.class);
+        Mockito.when(blackDuckServerConfigBuilder.getProperties()).thenReturn(builderEnvironmentVariables);
+
+        DetectGlobalConfig detectGlobalConfig = Mockito.mock(DetectGlobalConfig.class);
+        Mockito.when(detectGlobalConfig.getBlackDuckServerConfigBuilder(Mockito.any(), Mockito.any())).thenReturn(blackDuckServerConfigBuilder);
+
+        JenkinsConfigService jenkinsConfigService = Mockito.mock(JenkinsConfigService.class);
+        Mockito.when(jenkinsConfigService.getGlobalConfiguration(DetectGlobalConfig.class)).thenReturn(Optional.of(detectGlobalConfig));
+
+        // Mocks specific to AirGap
+        DetectAirGapInstallation detectAirGapInstallationMock = Mockito.mock(DetectAirGapInstallation.class);
+        Mockito.when(jenkinsConfigService.getInstallationForNodeAndEnvironment(DetectAirGapInstallation.DescriptorImpl.class, AIRGAP_TOOL_NAME))
+            .thenReturn(Optional.ofNullable(detectAirGapInstallationMock));
+        Mockito.doReturn(AIRGAP_TOOL_PATH).when(detectAirGapInstallationMock).getHome();
+
+        JenkinsVersionHelper mockedVersionHelper = Mockito.mock(JenkinsVersionHelper.class);
+
+        BlackduckCredentialsHelper mockedCredentialsHelper = Mockito.mock(BlackduckCredentialsHelper.class);
+
+        JenkinsProxyHelper blankProxyHelper = new JenkinsProxyHelper();
+
+        DetectEnvironmentService detectEnvironmentService = new DetectEnvironmentService(
+            jenkinsIntLogger,
+            blankProxyHelper,
+            mockedVersionHelper,
+            mockedCredentialsHelper,
+            jenkinsConfigService,
+            environmentVariables
+        );
+        DetectArgumentService detectArgumentService = new DetectArgumentService(jenkinsIntLogger, mockedVersionHelper);
+        DetectStrategyService detectStrategyService = new DetectStrategyService(jenkinsIntLogger, blankProxyHelper, WORKSPACE_TMP_REL_PATH, jenkinsConfigService);
+
+        return new DetectRunner(
+            detectEnvironmentService,
+            mockedRemotingService,
+            detectStrategyService,
+            detectArgumentService,
+            jenkinsIntLogger,
+            listener -> mockedRemotingService,
+            action -> {},
+            null,
+            scanPermitSupplier
+        );
+    }
 }
@@ -0,0 +1,94 @@
+package com.blackduck.integration.jenkins.detect.extensions.pipeline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+import com.blackduck.integration.jenkins.detect.DetectCommand;
+import com.blackduck.integration.util.IntEnvironmentVariables;
+import com.blackduck.integration.util.OperatingSystemType;
+
+import hudson.EnvVars;
+
+public class DetectDurableTaskTest {
+    private static final List<String> ARGUMENTS = Arrays.asList(
+        "--detect.project.name=Test Project",
+        "--detect.project.version.name=\"1.0\" & echo injected",
+        "--detect.source.path=%WORKSPACE%",
+        "--detect.project.tags=a|b<c>d^e",
+        "--blackduck.api.token=it's secret",
+        ""
+    );
+
+    @Test
+    @DisabledOnOs(OS.WINDOWS)
+    public void testBourneShellScriptPassesArgumentsUnchanged() throws IOException, InterruptedException {
+        List<String> commands = new ArrayList<>(Arrays.asList("printf", "[%s]\\n"));
+        commands.addAll(ARGUMENTS);
+
+        Process process = new ProcessBuilder("sh", "-c", DetectDurableTask.toBourneShellScript(commands)).start();
+        String output;
+        try (InputStream inputStream = process.getInputStream()) {
+            output = IOUtils.toString(inputStream, StandardCharsets.UTF_8);
+        }
+
+        assertEquals(0, process.waitFor());
+        StringBuilder expectedOutput = new StringBuilder();
+        ARGUMENTS.forEach(argument -> expectedOutput.append('[').append(argument).append("]\n"));
+        assertEquals(expectedOutput.toString(), output);
+    }
+
+    @Test
+    public void testWindowsBatchScriptOnlyRefersToArguments() {
+        String batchScript = DetectDurableTask.toWindowsBatchScript(Arrays.asList("powershell", "\"Import-Module 'C:\\detect.ps1'; detect\"", "--a=b & c"));
+
+        assertEquals(
+            "@echo off\r\nsetlocal EnableDelayedExpansion\r\n!DETECT_PLUGIN_ARGUMENT_0! !DETECT_PLUGIN_ARGUMENT_1! !DETECT_PLUGIN_ARGUMENT_2!",
+            batchScript
+        );
+        for (String argument : ARGUMENTS) {
+            assertFalse(DetectDurableTask.toWindowsBatchScript(Arrays.asList("java", argument)).contains(argument.isEmpty() ? "\"\"" : argument));
+        }
+    }
+
+    @Test
+    public void testWindowsArgumentsAreQuotedForCreateProcess() {
+        Map<String, String> argumentVariables = DetectDurableTask.toWindowsArgumentVariables(ARGUMENTS);
+
+        assertEquals("\"--detect.project.name=Test Project\"", argumentVariables.get("DETECT_PLUGIN_ARGUMENT_0"));
+        assertEquals("\"--detect.project.version.name=\"1.0\" & echo injected\"", argumentVariables.get("DETECT_PLUGIN_ARGUMENT_1"));
+        assertEquals("--detect.source.path=%WORKSPACE%", argumentVariables.get("DETECT_PLUGIN_ARGUMENT_2"));
+        assertEquals("--detect.project.tags=a|b<c>d^e", argumentVariables.get("DETECT_PLUGIN_ARGUMENT_3"));
+        assertEquals("\"--blackduck.api.token=it's secret\"", argumentVariables.get("DETECT_PLUGIN_ARGUMENT_4"));
+        assertEquals("\"\"", argumentVariables.get("DETECT_PLUGIN_ARGUMENT_5"));
+        assertEquals("\"C:\\Program Files\\\\\"", DetectDurableTask.toWindowsArgumentVariables(Arrays.asList("C:\\Program Files\\")).get("DETECT_PLUGIN_ARGUMENT_0"));
+        assertEquals("\"Import-Module 'C:\\detect.ps1'; detect\"", DetectDurableTask.toWindowsArgumentVariables(Arrays.asList("\"Import-Module 'C:\\detect.ps1'; detect\"")).get("DETECT_PLUGIN_ARGUMENT_0"));
+    }
+
+    @Test
+    public void testArgumentsArePassedInTheEnvironmentOnWindows() {
+        IntEnvironmentVariables environmentVariables = IntEnvironmentVariables.empty();
+        environmentVariables.put("BLACKDUCK_URL", "https://blackduck.example.com");
+        List<String> commands = Arrays.asList("java", "-jar", "detect.jar");
+
+        EnvVars windowsEnvVars = DetectDurableTask.toEnvVars(new DetectCommand(environmentVariables, commands, OperatingSystemType.WINDOWS));
+        assertEquals("https://blackduck.example.com", windowsEnvVars.get("BLACKDUCK_URL"));
+        assertEquals("detect.jar", windowsEnvVars.get("DETECT_PLUGIN_ARGUMENT_2"));
+
+        EnvVars linuxEnvVars = DetectDurableTask.toEnvVars(new DetectCommand(environmentVariables, commands, OperatingSystemType.LINUX));
+        assertFalse(linuxEnvVars.containsKey("DETECT_PLUGIN_ARGUMENT_0"));
+    }
+
+}
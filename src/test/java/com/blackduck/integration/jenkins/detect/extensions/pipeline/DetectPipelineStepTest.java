@@ -0,0 +1,200 @@
+package com.blackduck.integration.jenkins.detect.extensions.pipeline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+
+import com.blackduck.integration.jenkins.detect.exception.DetectJenkinsException;
+import com.blackduck.integration.jenkins.detect.extensions.DetectTimingsAction;
+import com.blackduck.integration.jenkins.detect.service.DetectPhaseTimings;
+
+import hudson.EnvVars;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+
+public class DetectPipelineStepTest {
+    @TempDir
+    public Path tempDirectory;
+
+    private StepContext context;
+    private TaskListener listener;
+    private FilePath workspace;
+    private Launcher launcher;
+    private Run<?, ?> run;
+    private ScheduledExecutorService scheduler;
+    private DetectRemoteProcess detectProcess;
+    private DetectPipelineStep detectPipelineStep;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        listener = Mockito.mock(TaskListener.class);
+        Mockito.when(listener.getLogger()).thenReturn(new PrintStream(new ByteArrayOutputStream()));
+        workspace = new FilePath(tempDirectory.toFile());
+        launcher = Mockito.mock(Launcher.class);
+        run = Mockito.mock(Run.class);
+
+        context = Mockito.mock(StepContext.class);
+        Mockito.when(context.get(TaskListener.class)).thenReturn(listener);
+        Mockito.when(context.get(EnvVars.class)).thenReturn(new EnvVars());
+        Mockito.when(context.get(FilePath.class)).thenReturn(workspace);
+        Mockito.when(context.get(Launcher.class)).thenReturn(launcher);
+        Mockito.doReturn(run).when(context).get(Run.class);
+
+        scheduler = Mockito.mock(ScheduledExecutorService.class);
+        detectProcess = Mockito.mock(DetectRemoteProcess.class);
+        detectPipelineStep = new DetectPipelineStep("--detect.project.name=test");
+    }
+
+    @Test
+    public void testPollingBacksOffWhileDetectIsQuiet() throws Exception {
+        DetectPipelineStep.Execution execution = watch();
+
+        execution.poll();
+        execution.poll();
+        assertEquals(1000L, execution.getPollIntervalMillis());
+
+        Mockito.when(detectProcess.writeLog(Mockito.eq(workspace), Mockito.any())).thenReturn(true);
+        execution.poll();
+        assertEquals(250L, execution.getPollIntervalMillis());
+
+        Mockito.verify(scheduler, Mockito.times(2)).schedule(Mockito.any(Runnable.class), Mockito.eq(250L), Mockito.eq(TimeUnit.MILLISECONDS));
+        Mockito.verify(scheduler).schedule(Mockito.any(Runnable.class), Mockito.eq(500L), Mockito.eq(TimeUnit.MILLISECONDS));
+        Mockito.verify(scheduler).schedule(Mockito.any(Runnable.class), Mockito.eq(1000L), Mockito.eq(TimeUnit.MILLISECONDS));
+        Mockito.verify(context, Mockito.never()).onSuccess(Mockito.any());
+    }
+
+    @Test
+    public void testSuccessfulExitCodeFinishesStep() throws Exception {
+        DetectPipelineStep.Execution execution = watch();
+        Mockito.when(detectProcess.exitStatus(workspace, launcher, listener)).thenReturn(0);
+
+        execution.poll();
+
+        Mockito.verify(detectProcess).cleanup(workspace);
+        Mockito.verify(run).addAction(Mockito.any(DetectTimingsAction.class));
+        Mockito.verify(context).onSuccess(0);
+    }
+
+    @Test
+    public void testFailedExitCodeFailsStep() throws Exception {
+        DetectPipelineStep.Execution execution = watch();
+        Mockito.when(detectProcess.exitStatus(workspace, launcher, listener)).thenReturn(3);
+
+        execution.poll();
+
+        Mockito.verify(context).onFailure(Mockito.any(DetectJenkinsException.class));
+        Mockito.verify(context, Mockito.never()).onSuccess(Mockito.any());
+    }
+
+    @Test
+    public void testFailedExitCodeIsReturned() throws Exception {
+        detectPipelineStep.setReturnStatus(true);
+        DetectPipelineStep.Execution execution = watch();
+        Mockito.when(detectProcess.exitStatus(workspace, launcher, listener)).thenReturn(3);
+
+        execution.poll();
+
+        Mockito.verify(context).onSuccess(3);
+    }
+
+    @Test
+    public void testUnreachableAgentIsPolledUntilTimeout() throws Exception {
+        DetectPipelineStep.Execution execution = watch();
+        execution.setAgentUnreachableTimeout(TimeUnit.MINUTES.toMillis(10));
+        Mockito.when(context.get(FilePath.class)).thenReturn(null);
+
+        execution.poll();
+        execution.poll();
+
+        assertEquals(15000L, execution.getPollIntervalMillis());
+        Mockito.verify(context, Mockito.never()).onFailure(Mockito.any());
+
+        execution.setAgentUnreachableTimeout(1L);
+        Thread.sleep(5L);
+        execution.poll();
+
+        Mockito.verify(context).onFailure(Mockito.any(DetectJenkinsException.class));
+    }
+
+    @Test
+    public void testReconnectedAgentRestartsTimeout() throws Exception {
+        DetectPipelineStep.Execution execution = watch();
+        execution.setAgentUnreachableTimeout(1L);
+        Mockito.when(context.get(FilePath.class)).thenReturn(null);
+        execution.poll();
+
+        Mockito.when(context.get(FilePath.class)).thenReturn(workspace);
+        execution.poll();
+
+        Mockito.when(context.get(FilePath.class)).thenReturn(null);
+        Thread.sleep(5L);
+        execution.poll();
+
+        Mockito.verify(context, Mockito.never()).onFailure(Mockito.any());
+    }
+
+    @Test
+    public void testResumeWatchesProcessAgain() throws Exception {
+        DetectPipelineStep.Execution execution = watch();
+        execution.poll();
+
+        execution.onResume();
+
+        assertEquals(250L, execution.getPollIntervalMillis());
+        Mockito.verify(scheduler, Mockito.times(2)).schedule(Mockito.any(Runnable.class), Mockito.eq(250L), Mockito.eq(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testResumeBeforeLaunchFailsStep() throws Exception {
+        DetectPipelineStep.Execution execution = detectPipelineStep.new Execution(context);
+
+        execution.onResume();
+
+        Mockito.verify(context).onFailure(Mockito.any(DetectJenkinsException.class));
+    }
+
+    @Test
+    public void testStopStopsProcess() throws Exception {
+        DetectPipelineStep.Execution execution = watch();
+        Exception cause = new InterruptedException();
+
+        execution.stop(cause);
+        execution.poll();
+
+        Mockito.verify(detectProcess).stop(workspace, launcher);
+        Mockito.verify(detectProcess, Mockito.never()).exitStatus(Mockito.any(), Mockito.any(), Mockito.any());
+        Mockito.verify(context).onFailure(cause);
+    }
+
+    @Test
+    public void testStopDuringLaunchStopsProcess() throws Exception {
+        DetectPipelineStep.Execution execution = detectPipelineStep.new Execution(context);
+        execution.setScheduler(scheduler);
+        execution.stop(new InterruptedException());
+
+        execution.watch(detectProcess, new DetectPhaseTimings(), null, false);
+
+        Mockito.verify(detectProcess).stop(workspace, launcher);
+        Mockito.verifyZeroInteractions(scheduler);
+    }
+
+    private DetectPipelineStep.Execution watch() throws Exception {
+        DetectPipelineStep.Execution execution = detectPipelineStep.new Execution(context);
+        execution.setScheduler(scheduler);
+        execution.watch(detectProcess, new DetectPhaseTimings(), null, false);
+        return execution;
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.blackduck.integration.jenkins.detect.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import com.blackduck.integration.jenkins.detect.extensions.global.DetectGlobalConfig;
+
+public class BlackDuckEnvironmentSnapshotCacheTest {
+    private final DetectGlobalConfig detectGlobalConfig = Mockito.mock(DetectGlobalConfig.class);
+    private final AtomicInteger resolutions = new AtomicInteger();
+    private final Supplier<Map<String, String>> environmentSupplier = () -> Collections.singletonMap("BLACKDUCK_URL", "https://blackduck" + resolutions.incrementAndGet());
+
+    @Test
+    public void testSnapshotIsReused() {
+        BlackDuckEnvironmentSnapshotCache snapshotCache = new BlackDuckEnvironmentSnapshotCache(60000);
+
+        Map<String, String> first = snapshotCache.getOrCreate(detectGlobalConfig, environmentSupplier);
+        Map<String, String> second = snapshotCache.getOrCreate(detectGlobalConfig, environmentSupplier);
+
+        assertSame(first, second);
+        assertEquals(1, resolutions.get());
+    }
+
+    @Test
+    public void testInvalidateResolvesAgain() {
+        BlackDuckEnvironmentSnapshotCache snapshotCache = new BlackDuckEnvironmentSnapshotCache(60000);
+
+        snapshotCache.getOrCreate(detectGlobalConfig, environmentSupplier);
+        snapshotCache.invalidate();
+        Map<String, String> environment = snapshotCache.getOrCreate(detectGlobalConfig, environmentSupplier);
+
+        assertEquals("https://blackduck2", environment.get("BLACKDUCK_URL"));
+        assertEquals(2, resolutions.get());
+    }
+
+    @Test
+    public void testOtherConfigurationResolvesAgain() {
+        BlackDuckEnvironmentSnapshotCache snapshotCache = new BlackDuckEnvironmentSnapshotCache(60000);
+
+        snapshotCache.getOrCreate(detectGlobalConfig, environmentSupplier);
+        snapshotCache.getOrCreate(Mockito.mock(DetectGlobalConfig.class), environmentSupplier);
+
+        assertEquals(2, resolutions.get());
+    }
+
+    @Test
+    public void testExpiredSnapshotResolvesAgain() {
+        BlackDuckEnvironmentSnapshotCache snapshotCache = new BlackDuckEnvironmentSnapshotCache(0);
+
+        snapshotCache.getOrCreate(detectGlobalConfig, environmentSupplier);
+        snapshotCache.getOrCreate(detectGlobalConfig, environmentSupplier);
+
+        assertEquals(2, resolutions.get());
+    }
+
+    @Test
+    public void testInvalidationDuringResolutionIsNotOverwritten() {
+        BlackDuckEnvironmentSnapshotCache snapshotCache = new BlackDuckEnvironmentSnapshotCache(60000);
+
+        snapshotCache.getOrCreate(detectGlobalConfig, () -> {
+            snapshotCache.invalidate();
+            return environmentSupplier.get();
+        });
+        snapshotCache.getOrCreate(detectGlobalConfig, environmentSupplier);
+
+        assertEquals(2, resolutions.get());
+    }
+
+}
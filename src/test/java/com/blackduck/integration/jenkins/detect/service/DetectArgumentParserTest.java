@@ -0,0 +1,162 @@
+package com.blackduck.integration.jenkins.detect.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.types.Commandline;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.mockito.Mockito;
+
+import com.blackduck.integration.IntegrationEscapeUtils;
+import com.blackduck.integration.jenkins.extensions.JenkinsIntLogger;
+
+import hudson.Util;
+import hudson.model.TaskListener;
+
+public class DetectArgumentParserTest {
+    private static final String ALPHABET = "ab=-_.&$${}'\" \r\n\tXY1";
+    private static final Function<String, String> POWERSHELL_ESCAPER = IntegrationEscapeUtils::escapePowerShell;
+
+    private final Map<String, String> environmentVariables = new HashMap<>();
+    private ByteArrayOutputStream parserLog;
+    private ByteArrayOutputStream referenceLog;
+    private DetectArgumentParser detectArgumentParser;
+    private JenkinsIntLogger referenceLogger;
+
+    @BeforeEach
+    public void setUp() {
+        environmentVariables.put("a", "value of a");
+        environmentVariables.put("X", "$b");
+        environmentVariables.put("Y1", "");
+        environmentVariables.put("a.b", "dotted");
+        environmentVariables.put("ab", "ab'\"=&");
+
+        parserLog = new ByteArrayOutputStream();
+        referenceLog = new ByteArrayOutputStream();
+        detectArgumentParser = new DetectArgumentParser(createLogger(parserLog));
+        referenceLogger = createLogger(referenceLog);
+    }
+
+    private static Stream<String> argumentStrings() {
+        return Stream.of(
+            "",
+            "--detect.project.name=test",
+            "--a=1 --b=2\n--c=3\r\n--d=4\r",
+            "--detect.project.name=\"my project\" --detect.source.path='/some path/here'",
+            "'--quoted.newline=one\ntwo' \"--crlf=x\r\ny\"",
+            "--x=$a --y=${a} --z=$$a --w=${a.b} --v=$missing --u=${missing.name} --t=${} --s=$",
+            "--expanded.quote=$X --nested=$ab",
+            "--blackduck.api.token=abc== --other.blackduck.api.token.suffix=x=y --k=blackduck.api.token",
+            "--with&ampersand=a b --no.equals positional=value",
+            "'' \"\" --after.empty=1",
+            "\r\n\r\n--only.breaks=1\n\n",
+            "--carriage=a\r b\r\r\n",
+            "\t--tab=value\t"
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("argumentStrings")
+    public void testMatchesReferenceImplementation(String argumentString) {
+        assertMatchesReference(argumentString, Function.identity());
+        assertMatchesReference(argumentString, POWERSHELL_ESCAPER);
+        assertMatchesReference(argumentString, IntegrationEscapeUtils::escapeXSI);
+    }
+
+    @Test
+    public void testMatchesReferenceImplementationForRandomInput() {
+        Random random = new Random(8675309L);
+        for (int i = 0; i < 20000; i++) {
+            int length = random.nextInt(40);
+            StringBuilder argumentString = new StringBuilder(random.nextBoolean() ? "--" : "");
+            for (int j = 0; j < length; j++) {
+                argumentString.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            }
+            assertMatchesReference(argumentString.toString(), POWERSHELL_ESCAPER);
+        }
+    }
+
+    @Test
+    public void testUnbalancedQuotes() {
+        String argumentString = "--detect.project.name='unbalanced";
+
+        BuildException expected = assertThrows(BuildException.class, () -> Commandline.translateCommandline(argumentString));
+        BuildException actual = assertThrows(BuildException.class, () -> detectArgumentParser.parse(environmentVariables, Function.identity(), argumentString));
+        assertEquals(expected.getMessage(), actual.getMessage());
+    }
+
+    private void assertMatchesReference(String argumentString, Function<String, String> escaper) {
+        parserLog.reset();
+        referenceLog.reset();
+
+        List<String> expected;
+        try {
+            expected = parseWithReference(argumentString, escaper);
+        } catch (BuildException e) {
+            assertThrows(BuildException.class, () -> detectArgumentParser.parse(environmentVariables, escaper, argumentString), "Expected unbalanced quotes for: " + argumentString);
+            return;
+        }
+
+        assertEquals(expected, detectArgumentParser.parse(environmentVariables, escaper, argumentString), "Arguments differ for: " + argumentString);
+        assertEquals(referenceLog.toString(), parserLog.toString(), "Warnings differ for: " + argumentString);
+    }
+
+    // The implementation DetectArgumentParser replaced, kept here as the reference its output is compared against.
+    private List<String> parseWithReference(String argumentString, Function<String, String> escaper) {
+        return Arrays.stream(Commandline.translateCommandline(argumentString))
+            .map(argumentBlobString -> argumentBlobString.split("\\r?\\n"))
+            .flatMap(Arrays::stream)
+            .map(argument -> Util.replaceMacro(argument, environmentVariables))
+            .filter(this::validateWithReference)
+            .filter(Objects::nonNull)
+            .map(argument -> escapeWithReference(argument, escaper))
+            .collect(Collectors.toList());
+    }
+
+    private boolean validateWithReference(String argument) {
+        if (StringUtils.isBlank(argument)) {
+            return false;
+        }
+
+        if (argument.contains("$")) {
+            referenceLogger.warn("A variable may not have been properly replaced in resolved argument: " + argument + ". Make sure the variable has been properly defined.");
+        }
+
+        return true;
+    }
+
+    private String escapeWithReference(String argument, Function<String, String> escaper) {
+        String cleanedArg = argument;
+        if (argument.startsWith("--") && argument.contains("=") && !argument.contains("&")) {
+            String[] splitArgument = argument.split("=", 2);
+            String endArg = splitArgument[0].contains("blackduck.api.token") ? splitArgument[1] : escaper.apply(splitArgument[1]);
+            cleanedArg = splitArgument[0] + "=" + endArg;
+        }
+
+        return cleanedArg;
+    }
+
+    private JenkinsIntLogger createLogger(ByteArrayOutputStream log) {
+        TaskListener taskListener = Mockito.mock(TaskListener.class);
+        Mockito.when(taskListener.getLogger()).thenReturn(new PrintStream(log));
+        return JenkinsIntLogger.logToListener(taskListener);
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.blackduck.integration.jenkins.detect.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import com.blackduck.integration.jenkins.extensions.JenkinsIntLogger;
+
+import hudson.model.TaskListener;
+
+public class DetectArgumentTemplateCacheTest {
+    private final JenkinsIntLogger logger = JenkinsIntLogger.logToListener(Mockito.mock(TaskListener.class));
+
+    @Test
+    public void testHitsAndMisses() {
+        DetectArgumentTemplateCache detectArgumentTemplateCache = new DetectArgumentTemplateCache(2);
+
+        DetectArgumentTemplate first = detectArgumentTemplateCache.getOrCompile("--a=1", DetectArgumentParser::compile);
+        DetectArgumentTemplate second = detectArgumentTemplateCache.getOrCompile("--a=1", DetectArgumentParser::compile);
+
+        assertSame(first, second);
+        assertEquals(1, detectArgumentTemplateCache.getHitCount());
+        assertEquals(1, detectArgumentTemplateCache.getMissCount());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        DetectArgumentTemplateCache detectArgumentTemplateCache = new DetectArgumentTemplateCache(2);
+
+        detectArgumentTemplateCache.getOrCompile("--a=1", DetectArgumentParser::compile);
+        detectArgumentTemplateCache.getOrCompile("--b=2", DetectArgumentParser::compile);
+        detectArgumentTemplateCache.getOrCompile("--a=1", DetectArgumentParser::compile);
+        detectArgumentTemplateCache.getOrCompile("--c=3", DetectArgumentParser::compile);
+        detectArgumentTemplateCache.getOrCompile("--b=2", DetectArgumentParser::compile);
+
+        assertEquals(2, detectArgumentTemplateCache.size());
+        assertEquals(1, detectArgumentTemplateCache.getHitCount());
+        assertEquals(4, detectArgumentTemplateCache.getMissCount());
+    }
+
+    @Test
+    public void testTemplateIsRenderedPerEnvironment() {
+        DetectArgumentTemplateCache detectArgumentTemplateCache = new DetectArgumentTemplateCache(2);
+        DetectArgumentParser detectArgumentParser = new DetectArgumentParser(logger, detectArgumentTemplateCache);
+        String argumentString = "--detect.project.version.name=${BRANCH}-$BUILD_NUMBER";
+
+        Map<String, String> environmentVariables = new HashMap<>();
+        environmentVariables.put("BRANCH", "main");
+        assertEquals(Collections.singletonList("--detect.project.version.name=main-$BUILD_NUMBER"), detectArgumentParser.parse(environmentVariables, Function.identity(), argumentString));
+
+        environmentVariables.put("BRANCH", "release");
+        environmentVariables.put("BUILD_NUMBER", "7");
+        assertEquals(Collections.singletonList("--detect.project.version.name=release-7"), detectArgumentParser.parse(environmentVariables, Function.identity(), argumentString));
+
+        assertEquals(1, detectArgumentTemplateCache.getMissCount());
+        assertEquals(1, detectArgumentTemplateCache.getHitCount());
+    }
+
+}
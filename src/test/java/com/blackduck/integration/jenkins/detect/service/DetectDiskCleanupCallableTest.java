@@ -0,0 +1,156 @@
+package com.blackduck.integration.jenkins.detect.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.blackduck.integration.jenkins.detect.service.strategy.DetectArtifactStore;
+import com.blackduck.integration.jenkins.detect.service.strategy.DetectScriptCache;
+import com.blackduck.integration.jenkins.detect.service.strategy.DetectScriptStrategy;
+import com.blackduck.integration.jenkins.detect.service.strategy.RemoteJavaService;
+
+public class DetectDiskCleanupCallableTest {
+    private static final long NOW = System.currentTimeMillis();
+    private static final long ONE_DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    @TempDir
+    public Path tempDirectory;
+
+    @Test
+    public void testRemovesExpiredEntries() throws IOException {
+        Path oldRun = createEntry(outputDirectory().resolve(DetectDiskCleanupCallable.RUNS_DIRECTORY).resolve("2024-01-01-00-00-00-000"), 1000, NOW - 20 * ONE_DAY_MILLIS);
+        Path newRun = createEntry(outputDirectory().resolve(DetectDiskCleanupCallable.RUNS_DIRECTORY).resolve("2024-02-01-00-00-00-000"), 1000, NOW - ONE_DAY_MILLIS);
+        Path oldVersion = createEntry(installationDirectory().resolve(DetectArtifactStore.STORE_DIRECTORY).resolve("9.10.0"), 3000, NOW - 30 * ONE_DAY_MILLIS);
+
+        DetectDiskCleanupCallable.Result result = cleanup(TimeUnit.DAYS.toMillis(14), 0L);
+
+        assertFalse(Files.exists(oldRun));
+        assertFalse(Files.exists(oldVersion));
+        assertTrue(Files.exists(newRun));
+        assertEquals(4000L, result.getReclaimedBytes());
+        assertEquals(2, result.getRemovedEntries());
+        assertEquals(1000L, result.getRemainingBytes());
+    }
+
+    @Test
+    public void testRemovesLeastRecentlyUsedEntriesOverQuota() throws IOException {
+        Path oldest = createEntry(installationDirectory().resolve(DetectScriptCache.CACHE_DIRECTORY).resolve("a"), 1000, NOW - 3 * ONE_DAY_MILLIS);
+        Path older = createEntry(outputDirectory().resolve(DetectDiskCleanupCallable.RUNS_DIRECTORY).resolve("b"), 1000, NOW - 2 * ONE_DAY_MILLIS);
+        Path newest = createEntry(installationDirectory().resolve(DetectArtifactStore.STORE_DIRECTORY).resolve("c"), 1000, NOW - ONE_DAY_MILLIS);
+
+        DetectDiskCleanupCallable.Result result = cleanup(0L, 1500L);
+
+        assertFalse(Files.exists(oldest));
+        assertFalse(Files.exists(older));
+        assertTrue(Files.exists(newest));
+        assertEquals(2000L, result.getReclaimedBytes());
+    }
+
+    @Test
+    public void testKeepsRecentlyUsedEntries() throws IOException {
+        // A run still in progress only has its newest file touched, which is what counts.
+        Path runningRun = createEntry(outputDirectory().resolve(DetectDiskCleanupCallable.RUNS_DIRECTORY).resolve("running"), 1000, NOW - 20 * ONE_DAY_MILLIS);
+        Files.write(runningRun.resolve("detect.log"), new byte[10]);
+
+        DetectDiskCleanupCallable.Result result = cleanup(TimeUnit.DAYS.toMillis(14), 1L);
+
+        assertTrue(Files.exists(runningRun));
+        assertEquals(0L, result.getReclaimedBytes());
+        assertEquals(1010L, result.getRemainingBytes());
+    }
+
+    @Test
+    public void testLeavesOtherFilesAlone() throws IOException {
+        Path inspector = createEntry(outputDirectory().resolve("tools").resolve("nuget"), 1000, NOW - 30 * ONE_DAY_MILLIS);
+        Path script = Files.write(Files.createDirectories(installationDirectory()).resolve("detect10.sh"), new byte[1000]);
+        assertTrue(script.toFile().setLastModified(NOW - 30 * ONE_DAY_MILLIS));
+
+        DetectDiskCleanupCallable.Result result = cleanup(TimeUnit.DAYS.toMillis(14), 1L);
+
+        assertTrue(Files.exists(inspector));
+        assertTrue(Files.exists(script));
+        assertEquals(0, result.getRemovedEntries());
+    }
+
+    @Test
+    public void testRemovesWorkspaceInstallations() throws IOException {
+        Path workspaceInstallation = createEntry(workspaceDirectory().resolveSibling("job@tmp").resolve(DetectScriptStrategy.DETECT_INSTALL_DIRECTORY), 1000, NOW - 20 * ONE_DAY_MILLIS);
+        Path concurrentInstallation = createEntry(workspaceDirectory().resolveSibling("job@2@tmp").resolve(DetectScriptStrategy.DETECT_INSTALL_DIRECTORY), 1000, NOW - 20 * ONE_DAY_MILLIS);
+        Path otherJobInstallation = createEntry(workspaceDirectory().resolveSibling("job2@tmp").resolve(DetectScriptStrategy.DETECT_INSTALL_DIRECTORY), 1000, NOW - 20 * ONE_DAY_MILLIS);
+        Path workspaceTempFile = createEntry(workspaceDirectory().resolveSibling("job@tmp").resolve("durable-1234"), 1000, NOW - 20 * ONE_DAY_MILLIS);
+
+        DetectDiskCleanupCallable.Result result = cleanup(TimeUnit.DAYS.toMillis(14), 0L);
+
+        assertFalse(Files.exists(workspaceInstallation));
+        assertFalse(Files.exists(concurrentInstallation));
+        assertTrue(Files.exists(otherJobInstallation));
+        assertTrue(Files.exists(workspaceTempFile));
+        assertEquals(2, result.getRemovedEntries());
+    }
+
+    @Test
+    public void testRemovesClassDataArchives() throws IOException {
+        Path archiveDirectory = Files.createDirectories(tempDirectory.resolve("tmp").resolve(RemoteJavaService.CLASS_DATA_ARCHIVE_DIRECTORY));
+        Path oldArchive = Files.write(archiveDirectory.resolve("detect-0123456789abcdef.jsa"), new byte[1000]);
+        assertTrue(oldArchive.toFile().setLastModified(NOW - 20 * ONE_DAY_MILLIS));
+        Path newArchive = Files.write(archiveDirectory.resolve("detect-fedcba9876543210.jsa"), new byte[1000]);
+        assertTrue(newArchive.toFile().setLastModified(NOW - ONE_DAY_MILLIS));
+
+        DetectDiskCleanupCallable.Result result = cleanup(TimeUnit.DAYS.toMillis(14), 0L);
+
+        assertFalse(Files.exists(oldArchive));
+        assertTrue(Files.exists(newArchive));
+        assertEquals(1000L, result.getReclaimedBytes());
+    }
+
+    @Test
+    public void testMissingDirectories() throws IOException {
+        DetectDiskCleanupCallable.Result result = cleanup(TimeUnit.DAYS.toMillis(14), 1L);
+        assertEquals(0L, result.getReclaimedBytes());
+        assertEquals(0L, result.getRemainingBytes());
+    }
+
+    private DetectDiskCleanupCallable.Result cleanup(long maxAgeMillis, long quotaBytes) throws IOException {
+        String toolsDirectory = tempDirectory.resolve("tools").toString();
+        return new DetectDiskCleanupCallable(
+            toolsDirectory,
+            Collections.singletonList(outputDirectory().toString()),
+            Collections.singletonList(workspaceDirectory().toString()),
+            tempDirectory.resolve("tmp").toString(),
+            maxAgeMillis,
+            quotaBytes
+        ).call();
+    }
+
+    private Path workspaceDirectory() {
+        return tempDirectory.resolve("workspace").resolve("job");
+    }
+
+    private Path outputDirectory() {
+        return tempDirectory.resolve("blackduck");
+    }
+
+    private Path installationDirectory() {
+        return tempDirectory.resolve("tools").resolve(DetectScriptStrategy.DETECT_INSTALL_DIRECTORY);
+    }
+
+    private static Path createEntry(Path entry, int sizeBytes, long lastModified) throws IOException {
+        Files.createDirectories(entry);
+        Files.write(entry.resolve("content.bin"), new byte[sizeBytes]);
+        try (Stream<Path> paths = Files.walk(entry)) {
+            paths.forEach(path -> assertTrue(path.toFile().setLastModified(lastModified)));
+        }
+        return entry;
+    }
+
+}
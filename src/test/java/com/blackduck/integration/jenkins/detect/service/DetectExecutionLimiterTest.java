@@ -0,0 +1,98 @@
+package com.blackduck.integration.jenkins.detect.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import com.blackduck.integration.jenkins.extensions.JenkinsIntLogger;
+
+import hudson.model.TaskListener;
+
+public class DetectExecutionLimiterTest {
+    private static final String LIMIT_KEY = "node agent";
+
+    private final JenkinsIntLogger logger = JenkinsIntLogger.logToListener(Mockito.mock(TaskListener.class));
+    private final DetectExecutionLimiter detectExecutionLimiter = new DetectExecutionLimiter();
+
+    @Test
+    public void testWaitersAreGrantedInOrder() {
+        CompletableFuture<DetectExecutionLimiter.Permit> first = detectExecutionLimiter.acquire(logger, LIMIT_KEY, 1);
+        CompletableFuture<DetectExecutionLimiter.Permit> second = detectExecutionLimiter.acquire(logger, LIMIT_KEY, 1);
+        CompletableFuture<DetectExecutionLimiter.Permit> third = detectExecutionLimiter.acquire(logger, LIMIT_KEY, 1);
+
+        assertTrue(first.isDone());
+        assertFalse(second.isDone());
+        assertFalse(third.isDone());
+
+        first.join().release();
+        assertTrue(second.isDone());
+        assertFalse(third.isDone());
+
+        second.join().release();
+        assertTrue(third.isDone());
+        third.join().release();
+        assertEquals(0, detectExecutionLimiter.getRunning(LIMIT_KEY));
+    }
+
+    @Test
+    public void testReleaseIsIdempotent() {
+        DetectExecutionLimiter.Permit permit = detectExecutionLimiter.acquire(logger, LIMIT_KEY, 2).join();
+        detectExecutionLimiter.acquire(logger, LIMIT_KEY, 2).join();
+
+        permit.release();
+        permit.release();
+
+        assertEquals(1, detectExecutionLimiter.getRunning(LIMIT_KEY));
+    }
+
+    @Test
+    public void testCancelledWaiterIsSkipped() {
+        CompletableFuture<DetectExecutionLimiter.Permit> first = detectExecutionLimiter.acquire(logger, LIMIT_KEY, 1);
+        CompletableFuture<DetectExecutionLimiter.Permit> cancelled = detectExecutionLimiter.acquire(logger, LIMIT_KEY, 1);
+        CompletableFuture<DetectExecutionLimiter.Permit> third = detectExecutionLimiter.acquire(logger, LIMIT_KEY, 1);
+
+        detectExecutionLimiter.cancel(cancelled);
+        first.join().release();
+
+        assertTrue(cancelled.isCancelled());
+        assertTrue(third.isDone());
+        assertEquals(1, detectExecutionLimiter.getRunning(LIMIT_KEY));
+    }
+
+    @Test
+    public void testCancellingGrantedPermitReleasesIt() {
+        CompletableFuture<DetectExecutionLimiter.Permit> granted = detectExecutionLimiter.acquire(logger, LIMIT_KEY, 1);
+
+        detectExecutionLimiter.cancel(granted);
+
+        assertEquals(0, detectExecutionLimiter.getRunning(LIMIT_KEY));
+    }
+
+    @Test
+    public void testRegisteredProcessHoldsASlotBeyondTheLimit() {
+        CompletableFuture<DetectExecutionLimiter.Permit> running = detectExecutionLimiter.acquire(logger, LIMIT_KEY, 1);
+        DetectExecutionLimiter.Permit resumed = detectExecutionLimiter.register(LIMIT_KEY, 1);
+        CompletableFuture<DetectExecutionLimiter.Permit> waiting = detectExecutionLimiter.acquire(logger, LIMIT_KEY, 1);
+
+        assertEquals(2, detectExecutionLimiter.getRunning(LIMIT_KEY));
+
+        running.join().release();
+        assertFalse(waiting.isDone());
+
+        resumed.release();
+        assertTrue(waiting.isDone());
+        assertEquals(1, detectExecutionLimiter.getRunning(LIMIT_KEY));
+    }
+
+    @Test
+    public void testNoLimit() {
+        assertSame(DetectExecutionLimiter.Permit.UNLIMITED, detectExecutionLimiter.acquire(logger, LIMIT_KEY, 0).join());
+    }
+
+}
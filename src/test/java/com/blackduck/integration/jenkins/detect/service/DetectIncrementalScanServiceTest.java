@@ -0,0 +1,114 @@
+package com.blackduck.integration.jenkins.detect.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+
+import com.blackduck.integration.jenkins.detect.DetectJenkinsEnvironmentVariable;
+import com.blackduck.integration.jenkins.detect.DetectResult;
+import com.blackduck.integration.jenkins.detect.extensions.AirGapDownloadStrategy;
+import com.blackduck.integration.jenkins.detect.extensions.ScriptOrJarDownloadStrategy;
+import com.blackduck.integration.jenkins.detect.extensions.pipeline.DetectScan;
+import com.blackduck.integration.jenkins.extensions.JenkinsIntLogger;
+
+import hudson.FilePath;
+import hudson.model.Run;
+
+public class DetectIncrementalScanServiceTest {
+    private static final JenkinsIntLogger LOGGER = JenkinsIntLogger.logToListener(null);
+    private static final String DETECT_PROPERTIES = "--detect.project.name=test";
+
+    @TempDir
+    public Path jobRootDirectory;
+
+    @Test
+    public void testUnchangedFingerprintIsSkipped() {
+        DetectIncrementalScanService incrementalScanService = new DetectIncrementalScanService(LOGGER, jobRootDirectory, TimeUnit.HOURS.toMillis(24));
+        assertFalse(incrementalScanService.canSkip("first", false));
+
+        incrementalScanService.recordSuccessfulScan("first", mockRun(7));
+
+        DetectIncrementalScanService nextBuild = new DetectIncrementalScanService(LOGGER, jobRootDirectory, TimeUnit.HOURS.toMillis(24));
+        assertTrue(nextBuild.canSkip("first", false));
+        assertFalse(nextBuild.canSkip("second", false));
+        assertFalse(nextBuild.canSkip("first", true));
+
+        DetectResult detectResult = nextBuild.createCachedResultAction().getDetectResult();
+        assertEquals(DetectIncrementalScanService.CACHED_STATUS, detectResult.getOverallStatus());
+        assertEquals("Dependency manifests unchanged since build #7", detectResult.getStatusMessage());
+    }
+
+    @Test
+    public void testUnknownFingerprintIsNotSkipped() {
+        DetectIncrementalScanService incrementalScanService = new DetectIncrementalScanService(LOGGER, jobRootDirectory, TimeUnit.HOURS.toMillis(24));
+        incrementalScanService.recordSuccessfulScan("first", mockRun(7));
+        incrementalScanService.recordSuccessfulScan(null, mockRun(8));
+
+        DetectIncrementalScanService nextBuild = new DetectIncrementalScanService(LOGGER, jobRootDirectory, TimeUnit.HOURS.toMillis(24));
+        assertFalse(nextBuild.canSkip(null, false));
+        assertTrue(nextBuild.canSkip("first", false));
+    }
+
+    @Test
+    public void testDetectVersionChangeForcesScan() throws Exception {
+        Path workspaceDirectory = Files.createDirectories(jobRootDirectory.resolve("workspace"));
+        Files.write(workspaceDirectory.resolve("pom.xml"), "<project/>".getBytes(StandardCharsets.UTF_8));
+        FilePath workspace = new FilePath(workspaceDirectory.toFile());
+        Map<String, String> environmentVariables = new HashMap<>();
+        environmentVariables.put(DetectJenkinsEnvironmentVariable.DETECT_VERSION.stringValue(), "10.2.0");
+
+        DetectIncrementalScanService incrementalScanService = new DetectIncrementalScanService(LOGGER, jobRootDirectory, TimeUnit.HOURS.toMillis(24));
+        String fingerprint = incrementalScanService.computeFingerprint(workspace, DetectIncrementalScanService.getFingerprintInput(DETECT_PROPERTIES, environmentVariables, null, null));
+        incrementalScanService.recordSuccessfulScan(fingerprint, mockRun(7));
+
+        DetectIncrementalScanService nextBuild = new DetectIncrementalScanService(LOGGER, jobRootDirectory, TimeUnit.HOURS.toMillis(24));
+        assertTrue(nextBuild.canSkip(nextBuild.computeFingerprint(workspace, DetectIncrementalScanService.getFingerprintInput(DETECT_PROPERTIES, environmentVariables, null, null)), false));
+
+        environmentVariables.put(DetectJenkinsEnvironmentVariable.DETECT_VERSION.stringValue(), "10.3.0");
+        assertFalse(nextBuild.canSkip(nextBuild.computeFingerprint(workspace, DetectIncrementalScanService.getFingerprintInput(DETECT_PROPERTIES, environmentVariables, null, null)), false));
+    }
+
+    @Test
+    public void testFingerprintInputIncludesDownloadStrategyAndScans() {
+        Map<String, String> environmentVariables = Collections.singletonMap("PROJECT", "frontend");
+        String scriptInput = DetectIncrementalScanService.getFingerprintInput("--detect.project.name=$PROJECT", environmentVariables, new ScriptOrJarDownloadStrategy(), null);
+        assertTrue(scriptInput.startsWith("--detect.project.name=frontend"));
+
+        AirGapDownloadStrategy airGapDownloadStrategy = new AirGapDownloadStrategy();
+        airGapDownloadStrategy.setAirGapInstallationName("Air Gap");
+        assertNotEquals(scriptInput, DetectIncrementalScanService.getFingerprintInput("--detect.project.name=$PROJECT", environmentVariables, airGapDownloadStrategy, null));
+
+        List<DetectScan> scans = Collections.singletonList(new DetectScan("docs"));
+        assertNotEquals(scriptInput, DetectIncrementalScanService.getFingerprintInput("--detect.project.name=$PROJECT", environmentVariables, new ScriptOrJarDownloadStrategy(), scans));
+    }
+
+    @Test
+    public void testExpiredScanIsRepeated() throws InterruptedException {
+        new DetectIncrementalScanService(LOGGER, jobRootDirectory, 0).recordSuccessfulScan("first", mockRun(1));
+        Thread.sleep(5);
+
+        assertTrue(new DetectIncrementalScanService(LOGGER, jobRootDirectory, 0).canSkip("first", false));
+        assertFalse(new DetectIncrementalScanService(LOGGER, jobRootDirectory, 1).canSkip("first", false));
+    }
+
+    private Run<?, ?> mockRun(int number) {
+        Run<?, ?> run = Mockito.mock(Run.class);
+        Mockito.when(run.getNumber()).thenReturn(number);
+        return run;
+    }
+
+}
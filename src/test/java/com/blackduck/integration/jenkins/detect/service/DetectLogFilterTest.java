@@ -0,0 +1,105 @@
+package com.blackduck.integration.jenkins.detect.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import com.blackduck.integration.jenkins.detect.DetectResult;
+
+public class DetectLogFilterTest {
+    private static final String DETECT_LOG = String.join("\n",
+        "Detect Shell Script 3.2.0",
+        "2024-02-08 10:15:01 EST INFO  [main] --- Starting Detect",
+        "2024-02-08 10:15:02 EST DEBUG [main] --- Evaluating detectors",
+        "2024-02-08 10:15:03 EST WARN  [main] --- Could not find a git executable",
+        "2024-02-08 10:20:00 EST INFO  [main] --- ",
+        "2024-02-08 10:20:00 EST INFO  [main] --- ======== Detect Result ========",
+        "2024-02-08 10:20:00 EST INFO  [main] --- Black Duck Project BOM: https://blackduck.example.com/api/projects/1/versions/2/components",
+        "2024-02-08 10:20:00 EST INFO  [main] --- Risk Report PDF: /work/reports/risk_report.pdf",
+        "2024-02-08 10:20:00 EST INFO  [main] --- ======== Detect Status ========",
+        "2024-02-08 10:20:00 EST INFO  [main] --- GIT: SUCCESS",
+        "2024-02-08 10:20:00 EST INFO  [main] --- MAVEN: FAILURE",
+        "2024-02-08 10:20:00 EST INFO  [main] --- Signature scan / Snippet scan on C:\\work\\project: SUCCESS",
+        "2024-02-08 10:20:00 EST INFO  [main] --- Overall Status: FAILURE_DETECTOR - Detect exited with FAILURE_DETECTOR.",
+        "2024-02-08 10:20:00 EST INFO  [main] --- ===================================",
+        "2024-02-08 10:20:01 EST INFO  [main] --- Detect duration: 00h 05m 00s 000ms"
+    );
+
+    @Test
+    public void testSummaryIsParsed() throws IOException {
+        DetectLogFilter detectLogFilter = new DetectLogFilter(new ByteArrayOutputStream(), false);
+        write(detectLogFilter, DETECT_LOG);
+
+        DetectResult detectResult = detectLogFilter.getDetectResult();
+        assertEquals("FAILURE_DETECTOR", detectResult.getOverallStatus());
+        assertEquals("Detect exited with FAILURE_DETECTOR.", detectResult.getStatusMessage());
+        assertEquals("https://blackduck.example.com/api/projects/1/versions/2/components", detectResult.getBomUrl());
+        assertEquals("/work/reports/risk_report.pdf", detectResult.getRiskReportUrl());
+        assertEquals(3, detectResult.getDetectorResults().size());
+        assertEquals("FAILURE", detectResult.getDetectorResults().get("MAVEN"));
+        assertEquals("SUCCESS", detectResult.getDetectorResults().get("Signature scan / Snippet scan on C:\\work\\project"));
+        assertFalse(detectResult.isSuccess());
+    }
+
+    @Test
+    public void testEverythingIsWrittenByDefault() throws IOException {
+        ByteArrayOutputStream buildLog = new ByteArrayOutputStream();
+        DetectLogFilter detectLogFilter = new DetectLogFilter(buildLog, false);
+        write(detectLogFilter, DETECT_LOG);
+
+        assertEquals(DETECT_LOG, buildLog.toString(StandardCharsets.UTF_8.name()));
+    }
+
+    @Test
+    public void testQuietKeepsWarningsAndSummary() throws IOException {
+        ByteArrayOutputStream buildLog = new ByteArrayOutputStream();
+        DetectLogFilter detectLogFilter = new DetectLogFilter(buildLog, true);
+        write(detectLogFilter, DETECT_LOG);
+
+        String written = buildLog.toString(StandardCharsets.UTF_8.name());
+        assertTrue(written.contains("Detect Shell Script 3.2.0"));
+        assertTrue(written.contains("Could not find a git executable"));
+        assertTrue(written.contains("Overall Status: FAILURE_DETECTOR"));
+        assertTrue(written.contains("MAVEN: FAILURE"));
+        assertFalse(written.contains("Starting Detect"));
+        assertFalse(written.contains("Evaluating detectors"));
+        assertFalse(written.contains("Detect duration"));
+    }
+
+    @Test
+    public void testNonWebBomUrlIsIgnored() throws IOException {
+        DetectLogFilter detectLogFilter = new DetectLogFilter(new ByteArrayOutputStream(), false);
+        write(detectLogFilter, "======== Detect Result ========\nBlack Duck Project BOM: javascript:alert(1)\n");
+
+        assertNull(detectLogFilter.getDetectResult().getBomUrl());
+    }
+
+    @Test
+    public void testEntriesAreBounded() throws IOException {
+        DetectLogFilter detectLogFilter = new DetectLogFilter(new ByteArrayOutputStream(), false);
+        StringBuilder log = new StringBuilder("======== Detect Status ========\n");
+        for (int i = 0; i < DetectStatusParser.MAX_ENTRIES * 2; i++) {
+            log.append("DETECTOR_").append(i).append(": SUCCESS\n");
+        }
+        write(detectLogFilter, log.toString());
+
+        assertEquals(DetectStatusParser.MAX_ENTRIES, detectLogFilter.getDetectResult().getDetectorResults().size());
+    }
+
+    private void write(DetectLogFilter detectLogFilter, String log) throws IOException {
+        // Written in small chunks, the way output arrives from the agent.
+        byte[] bytes = log.getBytes(StandardCharsets.UTF_8);
+        for (int offset = 0; offset < bytes.length; offset += 7) {
+            detectLogFilter.write(bytes, offset, Math.min(7, bytes.length - offset));
+        }
+        detectLogFilter.close();
+    }
+
+}
@@ -0,0 +1,44 @@
+package com.blackduck.integration.jenkins.detect.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+public class DetectPhaseTimingsTest {
+    @Test
+    public void testPhasesAreRecordedInOrder() throws InterruptedException {
+        DetectPhaseTimings detectPhaseTimings = new DetectPhaseTimings();
+
+        long startedAt = DetectPhaseTimings.start();
+        Thread.sleep(20);
+        detectPhaseTimings.record(DetectPhaseTimings.ENVIRONMENT, startedAt);
+        detectPhaseTimings.record(DetectPhaseTimings.SETUP, DetectPhaseTimings.start());
+
+        Map<String, Long> phaseMillis = detectPhaseTimings.getPhaseMillis();
+        assertEquals(Arrays.asList(DetectPhaseTimings.ENVIRONMENT, DetectPhaseTimings.SETUP), new ArrayList<>(phaseMillis.keySet()));
+        assertTrue(phaseMillis.get(DetectPhaseTimings.ENVIRONMENT) >= 20);
+        assertTrue(detectPhaseTimings.getElapsedMillis() >= phaseMillis.get(DetectPhaseTimings.ENVIRONMENT));
+        assertTrue(detectPhaseTimings.toString().contains("environment "));
+    }
+
+    @Test
+    public void testTableEndsWithTotal() {
+        DetectPhaseTimings detectPhaseTimings = new DetectPhaseTimings();
+        detectPhaseTimings.recordMillis(DetectPhaseTimings.OPERATING_SYSTEM, 25);
+        detectPhaseTimings.recordMillis(DetectPhaseTimings.DETECT, 1200);
+        detectPhaseTimings.recordMillis(DetectPhaseTimings.DETECT, 300);
+
+        List<String> table = detectPhaseTimings.formatTable();
+        assertEquals(3, table.size());
+        assertEquals("operating system        25 ms", table.get(0));
+        assertEquals("detect                1500 ms", table.get(1));
+        assertTrue(table.get(2).startsWith("total     "));
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.blackduck.integration.jenkins.detect.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import com.blackduck.integration.jenkins.detect.extensions.global.DetectGlobalConfig;
+import com.blackduck.integration.jenkins.wrapper.JenkinsProxyHelper;
+
+import hudson.model.Node;
+
+public class DetectPrewarmServiceTest {
+    private final DetectGlobalConfig detectGlobalConfig = Mockito.mock(DetectGlobalConfig.class);
+    private final Node node = Mockito.mock(Node.class);
+    private final List<String> matchedExpressions = new ArrayList<>();
+
+    @AfterEach
+    public void resetExecutor() {
+        DetectPrewarmService.resizeExecutor(1);
+    }
+
+    @Test
+    public void testShouldPrewarmMatchingNode() {
+        Mockito.when(detectGlobalConfig.getPrewarmLabelExpression()).thenReturn("linux && docker");
+
+        assertTrue(createPrewarmService(true).shouldPrewarm(node));
+        assertFalse(createPrewarmService(false).shouldPrewarm(node));
+        assertEquals("linux && docker", matchedExpressions.get(0));
+    }
+
+    @Test
+    public void testShouldNotPrewarmWithoutLabelExpression() {
+        Mockito.when(detectGlobalConfig.getPrewarmLabelExpression()).thenReturn(" ");
+
+        assertFalse(createPrewarmService(true).shouldPrewarm(node));
+        assertTrue(matchedExpressions.isEmpty());
+    }
+
+    @Test
+    public void testShouldNotPrewarmMissingNode() {
+        Mockito.when(detectGlobalConfig.getPrewarmLabelExpression()).thenReturn("linux");
+
+        assertFalse(createPrewarmService(true).shouldPrewarm(null));
+        assertTrue(matchedExpressions.isEmpty());
+    }
+
+    @Test
+    public void testExecutorFollowsConcurrency() {
+        DetectPrewarmService.resizeExecutor(4);
+        assertEquals(4, DetectPrewarmService.getExecutorConcurrency());
+
+        DetectPrewarmService.resizeExecutor(2);
+        assertEquals(2, DetectPrewarmService.getExecutorConcurrency());
+
+        DetectPrewarmService.resizeExecutor(2);
+        assertEquals(2, DetectPrewarmService.getExecutorConcurrency());
+    }
+
+    private DetectPrewarmService createPrewarmService(boolean labelMatches) {
+        return new DetectPrewarmService(detectGlobalConfig, new JenkinsProxyHelper(), (labelExpression, matchedNode) -> {
+            matchedExpressions.add(labelExpression);
+            return labelMatches;
+        });
+    }
+
+}
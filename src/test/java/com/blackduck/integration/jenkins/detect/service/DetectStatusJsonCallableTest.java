@@ -0,0 +1,113 @@
+package com.blackduck.integration.jenkins.detect.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.blackduck.integration.jenkins.detect.DetectCommand;
+import com.blackduck.integration.jenkins.detect.DetectStatusSummary;
+import com.blackduck.integration.util.IntEnvironmentVariables;
+import com.blackduck.integration.util.OperatingSystemType;
+
+public class DetectStatusJsonCallableTest {
+    private static final String STATUS_JSON = "{"
+        + "\"formatVersion\": \"0.0.1\","
+        + "\"detectVersion\": \"10.3.0\","
+        + "\"projectName\": \"my-project\","
+        + "\"projectVersion\": \"1.0\","
+        + "\"detectors\": [{\"folder\": \"/work\", \"detectorType\": \"MAVEN\", \"relevantFiles\": [\"pom.xml\"], \"explanations\": [{\"nested\": [1, 2, {\"deep\": true}]}]}],"
+        + "\"status\": [{\"key\": \"MAVEN\", \"status\": \"FAILURE\"}, {\"key\": \"GIT\", \"status\": \"SUCCESS\"}],"
+        + "\"issues\": [{\"type\": \"EXCEPTION\", \"title\": \"x\", \"messages\": [\"a\"]}, {\"type\": \"DETECTOR\"}, {\"type\": \"EXCEPTION\"}],"
+        + "\"results\": [{\"location\": \"https://blackduck.example.com/api/projects/1\", \"message\": \"Black Duck Project BOM\"}, {\"message\": \"no location\"}],"
+        + "\"codeLocations\": [{\"codeLocationName\": \"a\"}, {\"codeLocationName\": \"b\"}],"
+        + "\"overallStatus\": [{\"key\": \"FAILURE_DETECTOR\", \"status\": \"FAILURE\"}],"
+        + "\"propertyValues\": {\"detect.project.name\": \"my-project\"},"
+        + "\"operations\": null"
+        + "}";
+
+    @TempDir
+    public Path outputDirectory;
+
+    @Test
+    public void testStatusJsonIsSummarized() throws IOException {
+        writeStatusJson("2024_02_08_10_15_01_000_0", STATUS_JSON);
+
+        DetectStatusSummary detectStatusSummary = new DetectStatusJsonCallable(Collections.singletonList(outputDirectory.toString()), 0).call();
+
+        assertEquals("10.3.0", detectStatusSummary.getDetectVersion());
+        assertEquals("my-project", detectStatusSummary.getProjectName());
+        assertEquals("1.0", detectStatusSummary.getProjectVersion());
+        assertEquals("FAILURE_DETECTOR", detectStatusSummary.getOverallStatus());
+        assertEquals("FAILURE", detectStatusSummary.getDetectorStatuses().get("MAVEN"));
+        assertEquals(1, detectStatusSummary.getFailedDetectorCount());
+        assertEquals(3, detectStatusSummary.getIssueCount());
+        assertEquals(2, detectStatusSummary.getIssueCounts().get("EXCEPTION").intValue());
+        assertEquals(Collections.singletonList("https://blackduck.example.com/api/projects/1"), detectStatusSummary.getResultLocations());
+        assertEquals(2, detectStatusSummary.getCodeLocationCount());
+    }
+
+    @Test
+    public void testRunIsMatchedByProjectName() throws IOException {
+        writeStatusJson("other", "{\"projectName\": \"other\"}");
+        writeStatusJson("own", "{\"projectName\": \"own\"}");
+
+        DetectStatusSummary detectStatusSummary = new DetectStatusJsonCallable(Collections.singletonList(outputDirectory.toString()), 0, Collections.singletonList("own")).call();
+
+        assertEquals("own", detectStatusSummary.getProjectName());
+    }
+
+    @Test
+    public void testOtherProjectIsIgnored() throws IOException {
+        writeStatusJson("other", "{\"projectName\": \"other\"}");
+
+        assertNull(new DetectStatusJsonCallable(Collections.singletonList(outputDirectory.toString()), 0, Collections.singletonList("own")).call());
+    }
+
+    @Test
+    public void testAmbiguousRunsAreSkipped() throws IOException {
+        writeStatusJson("first", "{\"projectName\": \"own\"}");
+        writeStatusJson("second", "{\"projectName\": \"own\"}");
+
+        assertNull(new DetectStatusJsonCallable(Collections.singletonList(outputDirectory.toString()), 0).call());
+        assertNull(new DetectStatusJsonCallable(Collections.singletonList(outputDirectory.toString()), 0, Collections.singletonList("own")).call());
+    }
+
+    @Test
+    public void testProjectNameIsTakenFromArguments() throws IOException {
+        writeStatusJson("other", "{\"projectName\": \"other project\"}");
+        writeStatusJson("own", "{\"projectName\": \"my project\"}");
+        DetectCommand detectCommand = new DetectCommand(
+            IntEnvironmentVariables.empty(),
+            Arrays.asList("bash", "detect.sh", "--detect.project.name=my\\ project", "--detect.output.path=" + outputDirectory),
+            OperatingSystemType.LINUX
+        );
+
+        DetectStatusSummary detectStatusSummary = DetectStatusJsonCallable.forDetectCommand(detectCommand, System.currentTimeMillis()).call();
+
+        assertEquals("my project", detectStatusSummary.getProjectName());
+    }
+
+    @Test
+    public void testRunsBeforeTheLaunchAreIgnored() throws IOException {
+        Path statusJson = writeStatusJson("older", STATUS_JSON);
+        Files.setLastModifiedTime(statusJson, FileTime.fromMillis(System.currentTimeMillis() - 600000));
+
+        assertNull(new DetectStatusJsonCallable(Collections.singletonList(outputDirectory.toString()), System.currentTimeMillis() - 60000).call());
+    }
+
+    private Path writeStatusJson(String runId, String content) throws IOException {
+        Path statusDirectory = Files.createDirectories(outputDirectory.resolve("runs").resolve(runId).resolve("status"));
+        return Files.write(statusDirectory.resolve("status.json"), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
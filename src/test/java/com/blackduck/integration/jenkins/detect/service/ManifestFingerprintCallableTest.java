@@ -0,0 +1,90 @@
+package com.blackduck.integration.jenkins.detect.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.blackduck.integration.jenkins.extensions.JenkinsIntLogger;
+
+public class ManifestFingerprintCallableTest {
+    private static final JenkinsIntLogger LOGGER = JenkinsIntLogger.logToListener(null);
+
+    @TempDir
+    public Path workspace;
+
+    @Test
+    public void testFingerprintChangesWithManifests() throws IOException {
+        write("pom.xml", "<project/>");
+        write("module/package-lock.json", "{}");
+        String original = fingerprint();
+        assertTrue(original.startsWith("2:"));
+        assertEquals(original, fingerprint());
+
+        write("module/package-lock.json", "{\"lockfileVersion\": 3}");
+        String edited = fingerprint();
+        assertNotEquals(original, edited);
+
+        Files.move(workspace.resolve("module/package-lock.json"), workspace.resolve("package-lock.json"));
+        assertNotEquals(edited, fingerprint());
+    }
+
+    @Test
+    public void testSourcesAndDependencyCachesAreIgnored() throws IOException {
+        write("pom.xml", "<project/>");
+        String original = fingerprint();
+
+        write("src/Main.java", "class Main {}");
+        write("node_modules/left-pad/package.json", "{}");
+        write("target/classes/META-INF/maven/pom.xml", "<project/>");
+        assertEquals(original, fingerprint());
+    }
+
+    @Test
+    @DisabledOnOs(OS.WINDOWS)
+    public void testUnreadableWorkspaceHasNoFingerprint() throws IOException {
+        write("pom.xml", "<project/>");
+        write("module/package-lock.json", "{}");
+        Path module = workspace.resolve("module");
+        Files.setPosixFilePermissions(module, PosixFilePermissions.fromString("---------"));
+        try {
+            // Permissions do not apply to root, so there is nothing to test then.
+            assumeFalse(Files.isReadable(module));
+            assertNull(fingerprint());
+        } finally {
+            Files.setPosixFilePermissions(module, PosixFilePermissions.fromString("rwx------"));
+        }
+    }
+
+    @Test
+    public void testManifestFileNames() {
+        assertTrue(ManifestFingerprintCallable.isManifest("yarn.lock"));
+        assertTrue(ManifestFingerprintCallable.isManifest("App.csproj"));
+        assertFalse(ManifestFingerprintCallable.isManifest(".csproj"));
+        assertFalse(ManifestFingerprintCallable.isManifest("README.md"));
+    }
+
+    private String fingerprint() throws IOException {
+        return new ManifestFingerprintCallable(LOGGER).invoke(workspace.toFile(), null);
+    }
+
+    private void write(String relativePath, String content) throws IOException {
+        Path file = workspace.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
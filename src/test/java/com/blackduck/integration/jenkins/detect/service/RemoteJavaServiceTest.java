@@ -4,13 +4,19 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.List;
 
 import org.apache.commons.lang3.SystemUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mockito;
 
+import com.blackduck.integration.jenkins.detect.DetectJenkinsEnvironmentVariable;
 import com.blackduck.integration.jenkins.detect.service.strategy.RemoteJavaService;
 import com.blackduck.integration.jenkins.extensions.JenkinsIntLogger;
 import com.blackduck.integration.log.LogLevel;
@@ -31,6 +37,9 @@ public class RemoteJavaServiceTest {
     private JenkinsIntLogger logger;
     private ByteArrayOutputStream byteArrayOutputStream;
 
+    @TempDir
+    public File archiveDirectory;
+
     @BeforeEach
     public void setup() {
         TaskListener taskListener = Mockito.mock(TaskListener.class);
@@ -99,4 +108,27 @@ public class RemoteJavaServiceTest {
         assertTrue(byteArrayOutputStream.toString().contains(expectedDetectJavaPath), "Log message does not contain correct Java path.");
         assertTrue(byteArrayOutputStream.toString().contains("DETECT_JAVA_PATH environment variable"), "Log message does not contain correct 'based on' message.");
     }
+
+    @Test
+    public void testWarmStartDisabledByDefault() {
+        RemoteJavaService remoteJavaService = new RemoteJavaService(logger, null, environmentVariables.getVariables());
+
+        assertTrue(remoteJavaService.getWarmStartArguments(expectedTestJavaPath, "detect.jar", archiveDirectory).isEmpty(), "Warm start arguments should not be added unless enabled.");
+    }
+
+    @Test
+    public void testWarmStartRecordsThenUsesArchive() throws IOException {
+        environmentVariables.put(DetectJenkinsEnvironmentVariable.WARM_START.stringValue(), "true");
+        RemoteJavaService remoteJavaService = new RemoteJavaService(logger, null, environmentVariables.getVariables());
+
+        List<String> recordingArguments = remoteJavaService.getWarmStartArguments(expectedTestJavaPath, "detect.jar", archiveDirectory);
+        String recordingArgument = recordingArguments.get(recordingArguments.size() - 1);
+        assertTrue(recordingArgument.startsWith("-XX:ArchiveClassesAtExit="), "First run should record an archive.");
+
+        Files.write(new File(recordingArgument.substring("-XX:ArchiveClassesAtExit=".length())).toPath(), new byte[] { 1 });
+
+        List<String> sharingArguments = remoteJavaService.getWarmStartArguments(expectedTestJavaPath, "detect.jar", archiveDirectory);
+        assertTrue(sharingArguments.contains("-Xshare:auto"), "Later runs should use the recorded archive.");
+        assertEquals(recordingArgument.replace("ArchiveClassesAtExit", "SharedArchiveFile"), sharingArguments.get(sharingArguments.size() - 1));
+    }
 }
@@ -0,0 +1,132 @@
+package com.blackduck.integration.jenkins.detect.service.strategy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class DetectAirGapJarIndexTest {
+    private static final long AN_HOUR_AGO = System.currentTimeMillis() - 60 * 60 * 1000L;
+
+    @TempDir
+    public Path airGapBaseDir;
+
+    private final DetectAirGapJarIndex detectAirGapJarIndex = new DetectAirGapJarIndex();
+
+    @Test
+    public void testIndexesVersions() throws IOException {
+        Files.createFile(airGapBaseDir.resolve("detect-9.10.0.jar"));
+        Files.createFile(airGapBaseDir.resolve("detect-9.9.0.jar"));
+        Files.createFile(airGapBaseDir.resolve("other-1.0.0.jar"));
+        Files.createFile(airGapBaseDir.resolve("detect-9.8.0.zip"));
+
+        List<DetectAirGapJarIndex.AirGapJar> jars = detectAirGapJarIndex.getJars(airGapBaseDir.toString());
+
+        assertEquals(Arrays.asList("9.10.0", "9.9.0"), jars.stream().map(DetectAirGapJarIndex.AirGapJar::getVersion).collect(Collectors.toList()));
+        assertEquals(airGapBaseDir.resolve("detect-9.10.0.jar").toString(), jars.get(0).getPath());
+    }
+
+    @Test
+    public void testUnchangedDirectoryIsNotListedAgain() throws IOException {
+        Files.createFile(airGapBaseDir.resolve("detect-9.10.0.jar"));
+        setDirectoryLastModified(AN_HOUR_AGO);
+        assertEquals(1, detectAirGapJarIndex.getJars(airGapBaseDir.toString()).size());
+
+        // Restoring the modification time hides the new jar, which shows the directory was not listed again.
+        Files.createFile(airGapBaseDir.resolve("detect-9.11.0.jar"));
+        setDirectoryLastModified(AN_HOUR_AGO);
+        assertEquals(1, detectAirGapJarIndex.getJars(airGapBaseDir.toString()).size());
+
+        setDirectoryLastModified(AN_HOUR_AGO + 1000L);
+        assertEquals(2, detectAirGapJarIndex.getJars(airGapBaseDir.toString()).size());
+    }
+
+    @Test
+    public void testRecentlyChangedDirectoryIsListedAgain() throws IOException {
+        Files.createFile(airGapBaseDir.resolve("detect-9.10.0.jar"));
+        assertEquals(1, detectAirGapJarIndex.getJars(airGapBaseDir.toString()).size());
+
+        Files.createFile(airGapBaseDir.resolve("detect-9.11.0.jar"));
+        assertEquals(2, detectAirGapJarIndex.getJars(airGapBaseDir.toString()).size());
+    }
+
+    @Test
+    public void testMissingDirectory() {
+        assertTrue(detectAirGapJarIndex.getJars(airGapBaseDir.resolve("missing").toString()).isEmpty());
+        assertEquals(0, detectAirGapJarIndex.size());
+    }
+
+    @Test
+    public void testChecksumFollowsJarContent() throws IOException {
+        Path jarPath = airGapBaseDir.resolve("detect-9.10.0.jar");
+        Files.write(jarPath, "first".getBytes(StandardCharsets.UTF_8));
+        assertTrue(jarPath.toFile().setLastModified(AN_HOUR_AGO));
+        setDirectoryLastModified(AN_HOUR_AGO);
+
+        DetectAirGapJarIndex.AirGapJar airGapJar = detectAirGapJarIndex.getJars(airGapBaseDir.toString()).get(0);
+        String firstChecksum = airGapJar.getSha256();
+        assertEquals("a7937b64b8caa58f03721bb6bacf5c78cb235febe0e70b1b84cd99541461a08e", firstChecksum);
+
+        // Replacing a jar in place does not change the directory.
+        Files.write(jarPath, "second".getBytes(StandardCharsets.UTF_8));
+        setDirectoryLastModified(AN_HOUR_AGO);
+
+        assertNotEquals(firstChecksum, detectAirGapJarIndex.getJars(airGapBaseDir.toString()).get(0).getSha256());
+    }
+
+    @Test
+    public void testSelect() {
+        List<DetectAirGapJarIndex.AirGapJar> jars = Arrays.asList(
+            jar("9.9.0"),
+            jar("9.10.0-SNAPSHOT"),
+            jar("9.10.0"),
+            jar("10.0.0"),
+            jar("19.0.0")
+        );
+
+        assertEquals("9.10.0", DetectAirGapJarIndex.select(jars, "9").get().getVersion());
+        assertEquals("9.10.0", DetectAirGapJarIndex.select(jars, "9.*").get().getVersion());
+        assertEquals("9.9.0", DetectAirGapJarIndex.select(jars, " 9.9 ").get().getVersion());
+        assertEquals("9.10.0-SNAPSHOT", DetectAirGapJarIndex.select(jars, "9.10.0-SNAPSHOT").get().getVersion());
+        assertEquals("10.0.0", DetectAirGapJarIndex.select(jars, "10").get().getVersion());
+        assertFalse(DetectAirGapJarIndex.select(jars, "1").isPresent());
+        assertFalse(DetectAirGapJarIndex.select(jars, "8").isPresent());
+    }
+
+    @Test
+    public void testCompareVersions() {
+        assertTrue(DetectAirGapJarIndex.compareVersions("9.10.0", "9.9.0") > 0);
+        assertTrue(DetectAirGapJarIndex.compareVersions("9.10.0", "9.10.0-SNAPSHOT") > 0);
+        assertTrue(DetectAirGapJarIndex.compareVersions("9.10.1", "9.10") > 0);
+        assertTrue(DetectAirGapJarIndex.compareVersions("8.11.0", "9.0.0") < 0);
+        assertEquals(0, DetectAirGapJarIndex.compareVersions("9.10", "9.10.0"));
+    }
+
+    @Test
+    public void testParseVersion() {
+        assertEquals("9.10.0", DetectAirGapJarIndex.parseVersion("detect-9.10.0.jar"));
+        assertEquals("9.10.0-SNAPSHOT", DetectAirGapJarIndex.parseVersion("detect-9.10.0-SNAPSHOT.jar"));
+    }
+
+    private void setDirectoryLastModified(long lastModified) {
+        File directory = airGapBaseDir.toFile();
+        assertTrue(directory.setLastModified(lastModified));
+    }
+
+    private DetectAirGapJarIndex.AirGapJar jar(String version) {
+        return new DetectAirGapJarIndex.AirGapJar(airGapBaseDir.resolve("detect-" + version + ".jar").toString(), version, 0L);
+    }
+
+}
@@ -1,5 +1,6 @@
 package com.blackduck.integration.jenkins.detect.service.strategy;
 
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -30,6 +31,7 @@ import com.blackduck.integration.exception.IntegrationException;
 import com.blackduck.integration.jenkins.detect.exception.DetectJenkinsException;
 import com.blackduck.integration.jenkins.detect.extensions.AirGapDownloadStrategy;
 import com.blackduck.integration.jenkins.detect.extensions.tool.DetectAirGapInstallation;
+import com.blackduck.integration.jenkins.detect.service.DetectPhaseTimings;
 import com.blackduck.integration.jenkins.extensions.JenkinsIntLogger;
 import com.blackduck.integration.jenkins.service.JenkinsConfigService;
 import com.blackduck.integration.log.LogLevel;
@@ -253,16 +255,42 @@ public class DetectAirGapJarStrategyTest {
         );
     }
 
+    @Test
+    public void testVersionConstraintSelectsNewestMatchingJar() throws IOException {
+        // A jar with a different version was created during setup()
+        createAirGapJar("detect-9.9.0.jar");
+        File expectedAirGapJar = createAirGapJar("detect-9.10.0.jar");
+        createAirGapJar("detect-10.0.0.jar");
+
+        MasterToSlaveCallable<DetectSetupResult, IntegrationException> setupCallable = new DetectAirGapJarStrategy.SetupCallableImpl(logger, environmentVariables.getVariables(), null, tempJarDirectoryPathName, "9");
+        ArrayList<String> airGapJarExecutionElements = assertDoesNotThrow(setupCallable::call).getDetectCommand();
+        assertEquals(expectedAirGapJar.getPath(), airGapJarExecutionElements.get(airGapJarExecutionElements.size() - 1));
+    }
+
+    @Test
+    public void testVersionConstraintNotFound() throws IOException {
+        createAirGapJar("detect-9.10.0.jar");
+
+        MasterToSlaveCallable<DetectSetupResult, IntegrationException> setupCallable = new DetectAirGapJarStrategy.SetupCallableImpl(logger, environmentVariables.getVariables(), null, tempJarDirectoryPathName, "8.11");
+        DetectJenkinsException exception = assertThrows(DetectJenkinsException.class, setupCallable::call);
+        assertTrue(
+            exception.getMessage().contains(String.format("Found no jar matching Detect version 8.11 in Detect Air Gap tool installation at <%s>", tempJarDirectoryPathName)),
+            "Stacktrace does not contain expected message: " + exception.getMessage()
+        );
+    }
+
     private void executeAndValidateSetupCallable(String javaHomeInput, String expectedJavaPath, String toolHomeDirectory, File expectedAirGapJar) {
         try {
             DetectAirGapJarStrategy detectAirGapJarStrategy = configureCallable(javaHomeInput, toolHomeDirectory);
-            MasterToSlaveCallable<ArrayList<String>, IntegrationException> setupCallable = detectAirGapJarStrategy.getSetupCallable();
-            ArrayList<String> airGapJarExecutionElements = setupCallable.call();
+            MasterToSlaveCallable<DetectSetupResult, IntegrationException> setupCallable = detectAirGapJarStrategy.getSetupCallable();
+            DetectSetupResult detectSetupResult = setupCallable.call();
+            ArrayList<String> airGapJarExecutionElements = detectSetupResult.getDetectCommand();
             String resolvedExpectedJavaPath = resolveDirectory(expectedJavaPath);
 
             assertEquals(resolvedExpectedJavaPath, airGapJarExecutionElements.get(0));
             assertEquals("-jar", airGapJarExecutionElements.get(1));
             assertEquals(expectedAirGapJar.getPath(), airGapJarExecutionElements.get(2));
+            assertTrue(detectSetupResult.getPhaseTimings().getPhaseMillis().containsKey(DetectPhaseTimings.JAVA));
         } catch (IntegrationException e) {
             fail("An unexpected exception occurred: ", e);
         }
@@ -313,6 +341,12 @@ public class DetectAirGapJarStrategyTest {
         return tempJarDirectory;
     }
 
+    private File createAirGapJar(String name) throws IOException {
+        File airGapJar = Files.createFile(Paths.get(tempJarDirectoryPathName, name)).toFile();
+        airGapJar.deleteOnExit();
+        return airGapJar;
+    }
+
     private File createTempAirGapJar(String prefix, String suffix) {
         File tempAirGapJar = null;
         try {
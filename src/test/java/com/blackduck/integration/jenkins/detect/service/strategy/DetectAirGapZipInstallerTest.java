@@ -0,0 +1,222 @@
+package com.blackduck.integration.jenkins.detect.service.strategy;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+
+import com.blackduck.integration.jenkins.detect.exception.DetectJenkinsException;
+import com.blackduck.integration.jenkins.extensions.JenkinsIntLogger;
+import com.blackduck.integration.rest.credentials.Credentials;
+import com.blackduck.integration.rest.credentials.CredentialsBuilder;
+import com.blackduck.integration.rest.proxy.ProxyInfo;
+import com.blackduck.integration.rest.proxy.ProxyInfoBuilder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import hudson.model.TaskListener;
+
+public class DetectAirGapZipInstallerTest {
+    private static final byte[] DETECT_JAR_CONTENT = "detect".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    public Path tempDirectory;
+
+    private JenkinsIntLogger logger;
+    private Path installDirectory;
+    private HttpServer httpServer;
+
+    @BeforeEach
+    public void setup() {
+        TaskListener taskListener = Mockito.mock(TaskListener.class);
+        Mockito.when(taskListener.getLogger()).thenReturn(new PrintStream(new ByteArrayOutputStream()));
+        logger = JenkinsIntLogger.logToListener(taskListener);
+        installDirectory = tempDirectory.resolve("tools").resolve("DetectAirGap");
+    }
+
+    @AfterEach
+    public void stopServer() {
+        if (null != httpServer) {
+            httpServer.stop(0);
+        }
+    }
+
+    @Test
+    public void testInstallFromFileUrl() throws Exception {
+        byte[] zip = createZip("detect-9.10.0.jar", "packaged-inspectors/nuget/inspector.jar");
+        Path zipFile = Files.write(tempDirectory.resolve("airgap.zip"), zip);
+        DetectAirGapZipInstaller installer = new DetectAirGapZipInstaller(logger, zipFile.toUri().toString(), DigestUtils.sha256Hex(zip));
+
+        assertTrue(installer.install(installDirectory));
+        assertArrayEquals(DETECT_JAR_CONTENT, Files.readAllBytes(installDirectory.resolve("detect-9.10.0.jar")));
+        assertTrue(Files.isRegularFile(installDirectory.resolve("packaged-inspectors/nuget/inspector.jar")));
+        assertTrue(installer.isInstalled(installDirectory));
+        assertEquals(Arrays.asList("DetectAirGap", "DetectAirGap.lock"), listNames(installDirectory.getParent()));
+
+        assertFalse(installer.install(installDirectory), "An installed zip should not be extracted again");
+    }
+
+    @Test
+    public void testNewChecksumReplacesInstallation() throws Exception {
+        byte[] zip = createZip("detect-9.9.0.jar");
+        Path zipFile = Files.write(tempDirectory.resolve("airgap.zip"), zip);
+        assertTrue(new DetectAirGapZipInstaller(logger, zipFile.toUri().toString(), DigestUtils.sha256Hex(zip)).install(installDirectory));
+
+        byte[] newZip = createZip("detect-9.10.0.jar");
+        Files.write(zipFile, newZip);
+        assertTrue(new DetectAirGapZipInstaller(logger, zipFile.toUri().toString(), DigestUtils.sha256Hex(newZip)).install(installDirectory));
+
+        assertTrue(Files.exists(installDirectory.resolve("detect-9.10.0.jar")));
+        assertFalse(Files.exists(installDirectory.resolve("detect-9.9.0.jar")));
+        assertEquals(Arrays.asList("DetectAirGap", "DetectAirGap.lock"), listNames(installDirectory.getParent()));
+    }
+
+    @Test
+    public void testChecksumMismatch() throws Exception {
+        byte[] zip = createZip("detect-9.10.0.jar");
+        Path zipFile = Files.write(tempDirectory.resolve("airgap.zip"), zip);
+        DetectAirGapZipInstaller installer = new DetectAirGapZipInstaller(logger, zipFile.toUri().toString(), DigestUtils.sha256Hex("other"));
+
+        DetectJenkinsException exception = assertThrows(DetectJenkinsException.class, () -> installer.install(installDirectory));
+        assertTrue(exception.getMessage().contains("but " + DigestUtils.sha256Hex("other") + " was expected"), "Unexpected message: " + exception.getMessage());
+        assertEquals(Arrays.asList("DetectAirGap.lock"), listNames(installDirectory.getParent()));
+    }
+
+    @Test
+    public void testEntryOutsideInstallation() throws Exception {
+        byte[] zip = createZip("../evil.jar");
+        Path zipFile = Files.write(tempDirectory.resolve("airgap.zip"), zip);
+        DetectAirGapZipInstaller installer = new DetectAirGapZipInstaller(logger, zipFile.toUri().toString(), DigestUtils.sha256Hex(zip));
+
+        DetectJenkinsException exception = assertThrows(DetectJenkinsException.class, () -> installer.install(installDirectory));
+        assertTrue(exception.getMessage().contains("outside of the installation directory"), "Unexpected message: " + exception.getMessage());
+        assertFalse(Files.exists(installDirectory.getParent().resolve("evil.jar")));
+    }
+
+    @Test
+    public void testMissingChecksum() {
+        DetectAirGapZipInstaller installer = new DetectAirGapZipInstaller(logger, "http://localhost/airgap.zip", null);
+        assertThrows(DetectJenkinsException.class, () -> installer.install(installDirectory));
+    }
+
+    @Test
+    public void testResumesInterruptedDownload() throws Exception {
+        byte[] zip = createZip("detect-9.10.0.jar", "packaged-inspectors/nuget/inspector.jar");
+        int interruptAt = zip.length / 2;
+        List<String> ranges = new ArrayList<>();
+
+        httpServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        httpServer.createContext("/airgap.zip", exchange -> {
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            ranges.add(range);
+            if (null == range) {
+                // The first response promises the whole zip but the connection drops halfway.
+                exchange.sendResponseHeaders(200, zip.length);
+                writeAndClose(exchange, Arrays.copyOf(zip, interruptAt));
+            } else {
+                int offset = Integer.parseInt(range.replace("bytes=", "").replace("-", ""));
+                exchange.getResponseHeaders().add("Content-Range", String.format("bytes %d-%d/%d", offset, zip.length - 1, zip.length));
+                exchange.sendResponseHeaders(206, zip.length - offset);
+                writeAndClose(exchange, Arrays.copyOfRange(zip, offset, zip.length));
+            }
+        });
+        httpServer.start();
+
+        String url = String.format("http://localhost:%d/airgap.zip", httpServer.getAddress().getPort());
+        DetectAirGapZipInstaller installer = new DetectAirGapZipInstaller(logger, url, DigestUtils.sha256Hex(zip));
+
+        assertTrue(installer.install(installDirectory));
+        assertArrayEquals(DETECT_JAR_CONTENT, Files.readAllBytes(installDirectory.resolve("detect-9.10.0.jar")));
+        assertNull(ranges.get(0));
+        assertEquals("bytes=" + interruptAt + "-", ranges.get(1));
+        assertEquals(2, ranges.size());
+        assertEquals(Arrays.asList("DetectAirGap", "DetectAirGap.lock"), listNames(installDirectory.getParent()));
+    }
+
+    @Test
+    public void testDownloadUsesProxy() throws Exception {
+        byte[] zip = createZip("detect-9.10.0.jar");
+        List<String> requestedUris = new ArrayList<>();
+
+        httpServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        httpServer.createContext("/", exchange -> {
+            requestedUris.add(exchange.getRequestURI().toString());
+            exchange.sendResponseHeaders(200, zip.length);
+            writeAndClose(exchange, zip);
+        });
+        httpServer.start();
+
+        CredentialsBuilder credentialsBuilder = Credentials.newBuilder();
+        credentialsBuilder.setUsernameAndPassword(null, null);
+        ProxyInfoBuilder proxyInfoBuilder = ProxyInfo.newBuilder();
+        proxyInfoBuilder.setHost("localhost");
+        proxyInfoBuilder.setPort(httpServer.getAddress().getPort());
+        proxyInfoBuilder.setCredentials(credentialsBuilder.build());
+
+        // The mirror's host does not resolve, so the zip can only arrive through the proxy.
+        DetectAirGapZipInstaller installer = new DetectAirGapZipInstaller(logger, "http://mirror.invalid/airgap.zip", DigestUtils.sha256Hex(zip), proxyInfoBuilder.build());
+
+        assertTrue(installer.install(installDirectory));
+        assertEquals(Arrays.asList("http://mirror.invalid/airgap.zip"), requestedUris);
+    }
+
+    private static void writeAndClose(HttpExchange exchange, byte[] content) throws IOException {
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+            responseBody.write(content);
+        }
+        exchange.close();
+    }
+
+    private static byte[] createZip(String... entryNames) throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(byteArrayOutputStream)) {
+            for (String entryName : entryNames) {
+                zipOutputStream.putNextEntry(new ZipEntry(entryName));
+                zipOutputStream.write(DETECT_JAR_CONTENT);
+                zipOutputStream.closeEntry();
+            }
+
+            // Random content does not compress, which makes the zip large enough to interrupt in the middle of an entry.
+            byte[] padding = new byte[16 * 1024];
+            new Random(42L).nextBytes(padding);
+            zipOutputStream.putNextEntry(new ZipEntry("padding.bin"));
+            zipOutputStream.write(padding);
+            zipOutputStream.closeEntry();
+        }
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    private static List<String> listNames(Path directory) throws IOException {
+        List<String> names = new ArrayList<>();
+        try (Stream<Path> paths = Files.list(directory)) {
+            paths.map(path -> path.getFileName().toString()).sorted().forEach(names::add);
+        }
+        return names;
+    }
+
+}
@@ -0,0 +1,121 @@
+package com.blackduck.integration.jenkins.detect.service.strategy;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.blackduck.integration.util.OperatingSystemType;
+
+public class DetectArtifactDistributorTest {
+    private static final byte[] ARTIFACT = "#!/bin/bash\necho detect\n".getBytes(StandardCharsets.UTF_8);
+    private static final String ARTIFACT_SHA256 = DigestUtils.sha256Hex(ARTIFACT);
+
+    @TempDir
+    public Path tempDirectory;
+
+    private File target;
+    private Path partialFile;
+
+    @BeforeEach
+    public void setup() {
+        target = tempDirectory.resolve("distributed").resolve("detect10.sh").toFile();
+        partialFile = DetectArtifactDistributor.getPartialFile(target).toPath();
+    }
+
+    @Test
+    public void testResumesPartialTransfer() throws IOException {
+        int offset = 10;
+        Files.createDirectories(partialFile.getParent());
+        Files.write(partialFile, Arrays.copyOf(ARTIFACT, offset));
+
+        assertEquals(offset, transferState());
+        assertEquals(ARTIFACT.length - offset, append(offset, Arrays.copyOfRange(ARTIFACT, offset, ARTIFACT.length)));
+        assertTrue(new DetectArtifactDistributor.CommitCallable(ARTIFACT_SHA256).invoke(target, null));
+
+        assertArrayEquals(ARTIFACT, Files.readAllBytes(target.toPath()));
+        assertFalse(Files.exists(partialFile));
+        assertEquals(DetectArtifactDistributor.TRANSFER_COMPLETE, transferState());
+    }
+
+    @Test
+    public void testAppendAtStaleOffsetIsRejected() throws IOException {
+        Files.createDirectories(partialFile.getParent());
+        Files.write(partialFile, Arrays.copyOf(ARTIFACT, 10));
+
+        // Another build appended past the offset this transfer read.
+        assertEquals(-1L, append(5, Arrays.copyOfRange(ARTIFACT, 5, ARTIFACT.length)));
+        assertEquals(10L, Files.size(partialFile));
+    }
+
+    @Test
+    public void testOversizedPartialFileIsDiscarded() throws IOException {
+        Files.createDirectories(partialFile.getParent());
+        Files.write(partialFile, new byte[ARTIFACT.length + 1]);
+
+        assertEquals(0L, transferState());
+        assertFalse(Files.exists(partialFile));
+    }
+
+    @Test
+    public void testMismatchedTransferIsDiscarded() throws IOException {
+        byte[] damaged = Arrays.copyOf(ARTIFACT, ARTIFACT.length);
+        damaged[0] = 'X';
+        assertEquals(damaged.length, append(0, damaged));
+
+        assertFalse(new DetectArtifactDistributor.CommitCallable(ARTIFACT_SHA256).invoke(target, null));
+        assertFalse(Files.exists(partialFile));
+        assertFalse(target.exists());
+        assertEquals(0L, transferState());
+    }
+
+    @Test
+    public void testCommitAfterAnotherBuildCommitted() throws IOException {
+        Files.createDirectories(target.getParentFile().toPath());
+        Files.write(target.toPath(), ARTIFACT);
+
+        assertTrue(new DetectArtifactDistributor.CommitCallable(ARTIFACT_SHA256).invoke(target, null));
+        assertFalse(new DetectArtifactDistributor.CommitCallable(DigestUtils.sha256Hex("other")).invoke(target, null));
+    }
+
+    @Test
+    public void testNewestJarIsDistributedFirst() throws IOException {
+        Path jarDirectory = Files.createDirectories(tempDirectory.resolve("jar"));
+        Path oldJar = Files.write(jarDirectory.resolve("detect-10.2.0.jar"), ARTIFACT);
+        Files.setLastModifiedTime(oldJar, FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1)));
+        Path newJar = Files.write(jarDirectory.resolve("detect-10.3.0.jar"), ARTIFACT);
+        Path downloadRecord = Files.write(jarDirectory.resolve("detect-last-downloaded-jar.txt"), "detect-10.3.0.jar".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(Arrays.asList(newJar, downloadRecord), DetectArtifactDistributor.getJarFiles(jarDirectory));
+    }
+
+    @Test
+    public void testJarDirectory() {
+        assertEquals("/agent/tools/Detect_Installation/distributed/jar", DetectArtifactDistributor.getJarDirectory("/agent/tools/", OperatingSystemType.LINUX));
+        assertEquals("C:\\agent\\tools\\Detect_Installation\\distributed\\jar", DetectArtifactDistributor.getJarDirectory("C:\\agent\\tools", OperatingSystemType.WINDOWS));
+    }
+
+    private long transferState() throws IOException {
+        return new DetectArtifactDistributor.TransferStateCallable(ARTIFACT_SHA256, ARTIFACT.length).invoke(target, null);
+    }
+
+    private long append(long offset, byte[] content) throws IOException {
+        return new DetectArtifactDistributor.AppendCallable(offset, new ByteArrayInputStream(content)).invoke(target, null);
+    }
+
+}
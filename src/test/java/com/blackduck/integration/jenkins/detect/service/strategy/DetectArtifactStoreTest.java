@@ -0,0 +1,207 @@
+package com.blackduck.integration.jenkins.detect.service.strategy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+
+import com.blackduck.integration.jenkins.extensions.JenkinsIntLogger;
+import com.blackduck.integration.util.OperatingSystemType;
+
+import hudson.model.TaskListener;
+
+public class DetectArtifactStoreTest {
+    private static final long TWO_HOURS_AGO = System.currentTimeMillis() - 2 * 60 * 60 * 1000L;
+
+    @TempDir
+    public Path tempDirectory;
+
+    private Path storeDirectory;
+    private JenkinsIntLogger logger;
+
+    @BeforeEach
+    public void setup() {
+        // The store's lock file is kept next to it, so the store is not the temporary directory itself.
+        storeDirectory = tempDirectory.resolve(DetectArtifactStore.STORE_DIRECTORY);
+        TaskListener taskListener = Mockito.mock(TaskListener.class);
+        Mockito.when(taskListener.getLogger()).thenReturn(new PrintStream(new ByteArrayOutputStream()));
+        logger = JenkinsIntLogger.logToListener(taskListener);
+    }
+
+    @Test
+    public void testCheckoutRecordsJars() throws IOException {
+        DetectArtifactStore detectArtifactStore = new DetectArtifactStore(logger, storeDirectory, 0L);
+        Path versionDirectory = detectArtifactStore.checkout("10.3.0");
+        assertEquals(storeDirectory.resolve("10.3.0"), versionDirectory);
+        assertTrue(Files.isDirectory(versionDirectory));
+
+        writeSettledJar(versionDirectory.resolve("detect-10.3.0.jar"), "detect", TWO_HOURS_AGO);
+        detectArtifactStore.checkout("10.3.0");
+
+        Properties entry = readEntry(versionDirectory);
+        assertEquals("cfacfd3ec33b9608b59a343d05da204c18abf0eebac9aee076fe9d97a3acee87", entry.getProperty("sha256.detect-10.3.0.jar"));
+        assertEquals("6", entry.getProperty("size.detect-10.3.0.jar"));
+    }
+
+    @Test
+    public void testChangedJarIsRemoved() throws IOException {
+        DetectArtifactStore detectArtifactStore = new DetectArtifactStore(logger, storeDirectory, 0L);
+        Path versionDirectory = storeDirectory.resolve("10.3.0");
+        Path jarPath = versionDirectory.resolve("detect-10.3.0.jar");
+        Files.createDirectories(versionDirectory);
+        writeSettledJar(jarPath, "detect", TWO_HOURS_AGO);
+        detectArtifactStore.checkout("10.3.0");
+
+        writeSettledJar(jarPath, "damage", TWO_HOURS_AGO + 1000L);
+        detectArtifactStore.checkout("10.3.0");
+
+        assertFalse(Files.exists(jarPath));
+        assertFalse(readEntry(versionDirectory).containsKey("sha256.detect-10.3.0.jar"));
+    }
+
+    @Test
+    public void testReplacedJarIsRecordedAgain() throws IOException {
+        DetectArtifactStore detectArtifactStore = new DetectArtifactStore(logger, storeDirectory, 0L);
+        Path versionDirectory = storeDirectory.resolve("10.3.0");
+        Path jarPath = versionDirectory.resolve("detect-10.3.0.jar");
+        Files.createDirectories(versionDirectory);
+        writeSettledJar(jarPath, "detect", TWO_HOURS_AGO);
+        detectArtifactStore.checkout("10.3.0");
+
+        writeSettledJar(jarPath, "replaced", TWO_HOURS_AGO + 1000L);
+        detectArtifactStore.checkout("10.3.0");
+
+        assertTrue(Files.exists(jarPath));
+        assertEquals("8", readEntry(versionDirectory).getProperty("size.detect-10.3.0.jar"));
+    }
+
+    @Test
+    public void testDownloadingJarIsLeftAlone() throws IOException {
+        DetectArtifactStore detectArtifactStore = new DetectArtifactStore(logger, storeDirectory, 0L);
+        Path versionDirectory = storeDirectory.resolve("10.3.0");
+        Path jarPath = versionDirectory.resolve("detect-10.3.0.jar");
+        Files.createDirectories(versionDirectory);
+        writeSettledJar(jarPath, "detect", TWO_HOURS_AGO);
+        detectArtifactStore.checkout("10.3.0");
+
+        // Another build is still writing the jar.
+        Files.write(jarPath, "detec".getBytes(StandardCharsets.UTF_8));
+        detectArtifactStore.checkout("10.3.0");
+
+        assertTrue(Files.exists(jarPath));
+        assertEquals("6", readEntry(versionDirectory).getProperty("size.detect-10.3.0.jar"));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedVersionIsEvicted() throws IOException {
+        createVersion("10.1.0", TWO_HOURS_AGO - 1000L);
+        createVersion("10.2.0", TWO_HOURS_AGO);
+
+        // Two of the three 10 kB versions fit in the quota.
+        DetectArtifactStore detectArtifactStore = new DetectArtifactStore(logger, storeDirectory, 25_000L);
+        Path versionDirectory = storeDirectory.resolve("10.3.0");
+        Files.createDirectories(versionDirectory);
+        Files.write(versionDirectory.resolve("detect-10.3.0.jar"), new byte[10_000]);
+        detectArtifactStore.checkout("10.3.0");
+
+        assertFalse(Files.exists(storeDirectory.resolve("10.1.0")));
+        assertTrue(Files.exists(storeDirectory.resolve("10.2.0")));
+        assertTrue(Files.exists(versionDirectory));
+    }
+
+    @Test
+    public void testRecentlyUsedVersionIsKept() throws IOException {
+        createVersion("10.1.0", System.currentTimeMillis());
+
+        DetectArtifactStore detectArtifactStore = new DetectArtifactStore(logger, storeDirectory, 1L);
+        detectArtifactStore.checkout("10.3.0");
+
+        assertTrue(Files.exists(storeDirectory.resolve("10.1.0")));
+    }
+
+    @Test
+    public void testLeasedVersionIsKept() throws IOException {
+        DetectArtifactStore detectArtifactStore = new DetectArtifactStore(logger, storeDirectory, 1L);
+        detectArtifactStore.checkout("10.1.0", "running-build");
+        // Detect has been running for longer than a version counts as recently used.
+        createVersion("10.1.0", TWO_HOURS_AGO);
+
+        detectArtifactStore.checkout("10.3.0");
+        assertTrue(Files.exists(storeDirectory.resolve("10.1.0")));
+        assertTrue(Files.exists(tempDirectory.resolve(DetectArtifactStore.STORE_DIRECTORY + DetectArtifactStore.LOCK_SUFFIX)));
+
+        detectArtifactStore.returnLease("10.1.0", "running-build");
+        assertFalse(DetectArtifactStore.isLeased(storeDirectory.resolve("10.1.0")));
+        long lastUsed = Long.parseLong(readEntry(storeDirectory.resolve("10.1.0")).getProperty("lastUsed"));
+        assertTrue(lastUsed > TWO_HOURS_AGO);
+    }
+
+    @Test
+    public void testAbandonedLeaseIsIgnored() throws IOException {
+        DetectArtifactStore detectArtifactStore = new DetectArtifactStore(logger, storeDirectory, 1L);
+        detectArtifactStore.checkout("10.1.0", "crashed-build");
+        createVersion("10.1.0", TWO_HOURS_AGO);
+        Path lease = storeDirectory.resolve("10.1.0").resolve(DetectArtifactStore.LEASES_DIRECTORY).resolve("crashed-build");
+        assertTrue(lease.toFile().setLastModified(System.currentTimeMillis() - DetectArtifactStore.MAX_LEASE_MILLIS - 1000L));
+
+        detectArtifactStore.checkout("10.3.0");
+
+        assertFalse(Files.exists(storeDirectory.resolve("10.1.0")));
+    }
+
+    @Test
+    public void testIsValidVersion() {
+        assertTrue(DetectArtifactStore.isValidVersion("10.3.0"));
+        assertTrue(DetectArtifactStore.isValidVersion("10.3.0-SNAPSHOT"));
+        assertFalse(DetectArtifactStore.isValidVersion(null));
+        assertFalse(DetectArtifactStore.isValidVersion(" "));
+        assertFalse(DetectArtifactStore.isValidVersion("../10.3.0"));
+        assertFalse(DetectArtifactStore.isValidVersion("10.3.0 --help"));
+    }
+
+    @Test
+    public void testGetVersionDirectory() {
+        assertEquals("/jenkins/tools/Detect_Installation/store/10.3.0", DetectArtifactStore.getVersionDirectory("/jenkins/tools/", OperatingSystemType.LINUX, "10.3.0"));
+        assertEquals("C:\\jenkins\\tools\\Detect_Installation\\store\\10.3.0", DetectArtifactStore.getVersionDirectory("C:\\jenkins\\tools", OperatingSystemType.WINDOWS, "10.3.0"));
+    }
+
+    private void createVersion(String version, long lastUsed) throws IOException {
+        Path versionDirectory = storeDirectory.resolve(version);
+        Files.createDirectories(versionDirectory);
+        Files.write(versionDirectory.resolve("detect-" + version + ".jar"), new byte[10_000]);
+
+        Properties entry = new Properties();
+        entry.setProperty("lastUsed", String.valueOf(lastUsed));
+        try (OutputStream outputStream = Files.newOutputStream(versionDirectory.resolve(DetectArtifactStore.ENTRY_FILENAME))) {
+            entry.store(outputStream, null);
+        }
+    }
+
+    private static void writeSettledJar(Path jarPath, String content, long lastModified) throws IOException {
+        Files.write(jarPath, content.getBytes(StandardCharsets.UTF_8));
+        assertTrue(jarPath.toFile().setLastModified(lastModified));
+    }
+
+    private static Properties readEntry(Path versionDirectory) throws IOException {
+        Properties entry = new Properties();
+        try (InputStream inputStream = Files.newInputStream(versionDirectory.resolve(DetectArtifactStore.ENTRY_FILENAME))) {
+            entry.load(inputStream);
+        }
+        return entry;
+    }
+
+}
@@ -0,0 +1,101 @@
+package com.blackduck.integration.jenkins.detect.service.strategy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import com.blackduck.integration.jenkins.extensions.JenkinsIntLogger;
+import com.blackduck.integration.rest.HttpUrl;
+import com.blackduck.integration.rest.credentials.Credentials;
+import com.blackduck.integration.rest.credentials.CredentialsBuilder;
+import com.blackduck.integration.rest.proxy.ProxyInfo;
+import com.blackduck.integration.rest.proxy.ProxyInfoBuilder;
+import com.blackduck.integration.rest.request.Request;
+import com.blackduck.integration.rest.response.Response;
+import com.sun.net.httpserver.HttpServer;
+
+import hudson.model.TaskListener;
+
+public class DetectHttpClientPoolTest {
+    private static final byte[] SCRIPT_CONTENT = "echo detect".getBytes(StandardCharsets.UTF_8);
+
+    private JenkinsIntLogger logger;
+    private HttpServer httpServer;
+
+    @BeforeEach
+    public void setup() {
+        TaskListener taskListener = Mockito.mock(TaskListener.class);
+        Mockito.when(taskListener.getLogger()).thenReturn(new PrintStream(new ByteArrayOutputStream()));
+        logger = JenkinsIntLogger.logToListener(taskListener);
+    }
+
+    @AfterEach
+    public void stopServer() {
+        if (null != httpServer) {
+            httpServer.stop(0);
+        }
+    }
+
+    @Test
+    public void testConnectionIsReusedAcrossClients() throws Exception {
+        List<Integer> clientPorts = new ArrayList<>();
+        httpServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        httpServer.createContext("/detect10.sh", exchange -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            exchange.sendResponseHeaders(200, SCRIPT_CONTENT.length);
+            try (OutputStream responseBody = exchange.getResponseBody()) {
+                responseBody.write(SCRIPT_CONTENT);
+            }
+        });
+        httpServer.start();
+        HttpUrl scriptUrl = new HttpUrl(String.format("http://localhost:%d/detect10.sh", httpServer.getAddress().getPort()));
+
+        for (int download = 0; download < 2; download++) {
+            Request request = new Request.Builder().url(scriptUrl).build();
+            try (Response response = DetectHttpClientPool.createHttpClient(logger, 10, ProxyInfo.NO_PROXY_INFO).execute(request)) {
+                assertEquals("echo detect", response.getContentString());
+            }
+        }
+
+        // The second client sends its request over the connection the first one left open.
+        assertEquals(2, clientPorts.size());
+        assertEquals(clientPorts.get(0), clientPorts.get(1));
+    }
+
+    @Test
+    public void testPoolKey() {
+        String noProxyKey = DetectHttpClientPool.getPoolKey(ProxyInfo.NO_PROXY_INFO);
+        String proxyKey = DetectHttpClientPool.getPoolKey(createProxyInfo("proxy.example.com", "user", "secret"));
+
+        assertEquals(proxyKey, DetectHttpClientPool.getPoolKey(createProxyInfo("proxy.example.com", "user", "secret")));
+        assertNotEquals(noProxyKey, proxyKey);
+        assertNotEquals(proxyKey, DetectHttpClientPool.getPoolKey(createProxyInfo("proxy.example.com", "user", "other")));
+        assertNotEquals(proxyKey, DetectHttpClientPool.getPoolKey(createProxyInfo("other.example.com", "user", "secret")));
+        assertFalse(proxyKey.contains("secret"));
+    }
+
+    private static ProxyInfo createProxyInfo(String host, String username, String password) {
+        CredentialsBuilder credentialsBuilder = Credentials.newBuilder();
+        credentialsBuilder.setUsernameAndPassword(username, password);
+
+        ProxyInfoBuilder proxyInfoBuilder = ProxyInfo.newBuilder();
+        proxyInfoBuilder.setHost(host);
+        proxyInfoBuilder.setPort(3128);
+        proxyInfoBuilder.setCredentials(credentialsBuilder.build());
+        return proxyInfoBuilder.build();
+    }
+
+}
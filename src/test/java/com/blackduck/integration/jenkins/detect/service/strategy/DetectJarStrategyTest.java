@@ -25,6 +25,7 @@ import org.junit.jupiter.params.provider.MethodSource;
 import org.mockito.Mockito;
 
 import com.blackduck.integration.exception.IntegrationException;
+import com.blackduck.integration.jenkins.detect.service.DetectPhaseTimings;
 import com.blackduck.integration.jenkins.extensions.JenkinsIntLogger;
 import com.blackduck.integration.log.LogLevel;
 import com.blackduck.integration.util.IntEnvironmentVariables;
@@ -146,13 +147,15 @@ public class DetectJarStrategyTest {
     private void executeAndValidateSetupCallable(String javaHomeInput, String expectedJavaPath) {
         try {
             DetectJarStrategy detectJarStrategy = new DetectJarStrategy(logger, environmentVariables, javaHomeInput, DETECT_JAR_PATH);
-            MasterToSlaveCallable<ArrayList<String>, IntegrationException> setupCallable = detectJarStrategy.getSetupCallable();
-            ArrayList<String> jarExecutionElements = setupCallable.call();
+            MasterToSlaveCallable<DetectSetupResult, IntegrationException> setupCallable = detectJarStrategy.getSetupCallable();
+            DetectSetupResult detectSetupResult = setupCallable.call();
+            ArrayList<String> jarExecutionElements = detectSetupResult.getDetectCommand();
             String resolvedExpectedJavaPath = resolveDirectory(expectedJavaPath);
 
             assertEquals(resolvedExpectedJavaPath, jarExecutionElements.get(0));
             assertEquals("-jar", jarExecutionElements.get(1));
             assertEquals(DETECT_JAR_PATH, jarExecutionElements.get(2));
+            assertTrue(detectSetupResult.getPhaseTimings().getPhaseMillis().containsKey(DetectPhaseTimings.JAVA));
         } catch (IntegrationException e) {
             fail("An unexpected exception occurred: ", e);
         }
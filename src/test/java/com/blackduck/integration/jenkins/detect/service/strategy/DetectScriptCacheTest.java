@@ -0,0 +1,141 @@
+package com.blackduck.integration.jenkins.detect.service.strategy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import com.blackduck.integration.exception.IntegrationException;
+import com.blackduck.integration.jenkins.detect.exception.DetectJenkinsException;
+import com.blackduck.integration.jenkins.extensions.JenkinsIntLogger;
+import com.blackduck.integration.rest.client.IntHttpClient;
+import com.blackduck.integration.rest.request.Request;
+import com.blackduck.integration.rest.response.Response;
+
+import hudson.model.TaskListener;
+
+public class DetectScriptCacheTest {
+    private static final String SCRIPT_URL = "https://detect.example.com/detect.sh";
+    private static final String SCRIPT_FILENAME = "detect.sh";
+    private static final String SCRIPT_CONTENT = "#!/bin/bash\necho detect\n";
+    private static final String ETAG = "\"abc123\"";
+
+    private JenkinsIntLogger logger;
+    private Path cacheDirectory;
+    private IntHttpClient mockedHttpClient;
+    private AtomicInteger httpClientsCreated;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        TaskListener mockedTaskListener = Mockito.mock(TaskListener.class);
+        Mockito.when(mockedTaskListener.getLogger()).thenReturn(new PrintStream(new ByteArrayOutputStream()));
+        logger = JenkinsIntLogger.logToListener(mockedTaskListener);
+        cacheDirectory = Files.createTempDirectory("testDetectScriptCache");
+        mockedHttpClient = Mockito.mock(IntHttpClient.class);
+        httpClientsCreated = new AtomicInteger();
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        try {
+            FileUtils.deleteDirectory(cacheDirectory.toFile());
+        } catch (IOException e) {
+            fail("Clean up failed: ", e);
+        }
+    }
+
+    @Test
+    public void testFirstDownloadIsCached() throws IntegrationException, IOException {
+        mockResponse(200, SCRIPT_CONTENT);
+
+        Path scriptPath = createCache(TimeUnit.HOURS.toMillis(1)).getOrDownload(SCRIPT_URL, SCRIPT_FILENAME, this::createHttpClient);
+
+        assertEquals(SCRIPT_CONTENT, new String(Files.readAllBytes(scriptPath), StandardCharsets.UTF_8));
+        assertTrue(Files.exists(scriptPath.resolveSibling(DetectScriptCache.METADATA_FILENAME)), "Cache metadata was not written");
+        assertEquals(1, httpClientsCreated.get());
+    }
+
+    @Test
+    public void testFreshEntrySkipsNetwork() throws IntegrationException, IOException {
+        mockResponse(200, SCRIPT_CONTENT);
+        DetectScriptCache detectScriptCache = createCache(TimeUnit.HOURS.toMillis(1));
+        Path firstPath = detectScriptCache.getOrDownload(SCRIPT_URL, SCRIPT_FILENAME, this::createHttpClient);
+
+        Path secondPath = detectScriptCache.getOrDownload(SCRIPT_URL, SCRIPT_FILENAME, this::createHttpClient);
+
+        assertEquals(firstPath, secondPath);
+        assertEquals(1, httpClientsCreated.get(), "A fresh cache entry should not contact the download site");
+    }
+
+    @Test
+    public void testExpiredEntryIsRevalidated() throws IntegrationException, IOException {
+        mockResponse(200, SCRIPT_CONTENT);
+        DetectScriptCache detectScriptCache = createCache(0);
+        detectScriptCache.getOrDownload(SCRIPT_URL, SCRIPT_FILENAME, this::createHttpClient);
+
+        mockResponse(304, "");
+        Path scriptPath = detectScriptCache.getOrDownload(SCRIPT_URL, SCRIPT_FILENAME, this::createHttpClient);
+
+        ArgumentCaptor<Request> requestCaptor = ArgumentCaptor.forClass(Request.class);
+        Mockito.verify(mockedHttpClient, Mockito.times(2)).execute(requestCaptor.capture());
+        assertEquals(ETAG, requestCaptor.getValue().getHeaders().get("If-None-Match"));
+        assertEquals(SCRIPT_CONTENT, new String(Files.readAllBytes(scriptPath), StandardCharsets.UTF_8), "A not modified response should keep the cached script");
+    }
+
+    @Test
+    public void testCorruptedEntryIsDownloadedAgain() throws IntegrationException, IOException {
+        mockResponse(200, SCRIPT_CONTENT);
+        DetectScriptCache detectScriptCache = createCache(TimeUnit.HOURS.toMillis(1));
+        Path scriptPath = detectScriptCache.getOrDownload(SCRIPT_URL, SCRIPT_FILENAME, this::createHttpClient);
+        Files.write(scriptPath, "tampered".getBytes(StandardCharsets.UTF_8));
+
+        mockResponse(200, SCRIPT_CONTENT);
+        detectScriptCache.getOrDownload(SCRIPT_URL, SCRIPT_FILENAME, this::createHttpClient);
+
+        ArgumentCaptor<Request> requestCaptor = ArgumentCaptor.forClass(Request.class);
+        Mockito.verify(mockedHttpClient, Mockito.times(2)).execute(requestCaptor.capture());
+        assertTrue(!requestCaptor.getValue().getHeaders().containsKey("If-None-Match"), "A corrupted entry should not be revalidated conditionally");
+        assertEquals(SCRIPT_CONTENT, new String(Files.readAllBytes(scriptPath), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testEmptyDownloadFails() throws IntegrationException {
+        mockResponse(200, "");
+
+        assertThrows(DetectJenkinsException.class, () -> createCache(0).getOrDownload(SCRIPT_URL, SCRIPT_FILENAME, this::createHttpClient));
+    }
+
+    private DetectScriptCache createCache(long timeToLiveMillis) {
+        return new DetectScriptCache(logger, cacheDirectory, timeToLiveMillis);
+    }
+
+    private IntHttpClient createHttpClient() {
+        httpClientsCreated.incrementAndGet();
+        return mockedHttpClient;
+    }
+
+    private void mockResponse(int statusCode, String content) throws IntegrationException {
+        Response mockedResponse = Mockito.mock(Response.class);
+        Mockito.when(mockedResponse.getStatusCode()).thenReturn(statusCode);
+        Mockito.when(mockedResponse.getContent()).thenReturn(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+        Mockito.when(mockedResponse.getHeaderValue("ETag")).thenReturn(ETAG);
+        Mockito.when(mockedHttpClient.execute(Mockito.any(Request.class))).thenReturn(mockedResponse);
+    }
+}
@@ -15,6 +15,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.SystemUtils;
@@ -24,6 +26,7 @@ import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
 import com.blackduck.integration.exception.IntegrationException;
+import com.blackduck.integration.jenkins.detect.service.DetectPhaseTimings;
 import com.blackduck.integration.jenkins.extensions.JenkinsIntLogger;
 import com.blackduck.integration.jenkins.wrapper.JenkinsProxyHelper;
 import com.blackduck.integration.util.OperatingSystemType;
@@ -31,15 +34,16 @@ import com.blackduck.integration.util.OperatingSystemType;
 import hudson.model.TaskListener;
 
 public class DetectScriptStrategyCallableTest {
+    private ByteArrayOutputStream defaultLogOutput;
     private JenkinsIntLogger defaultLogger;
     private JenkinsProxyHelper defaultProxyHelper;
     private String toolsDirectoryPath;
 
     @BeforeEach
     public void setUp() {
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        defaultLogOutput = new ByteArrayOutputStream();
         TaskListener mockedTaskListener = Mockito.mock(TaskListener.class);
-        Mockito.when(mockedTaskListener.getLogger()).thenReturn(new PrintStream(byteArrayOutputStream));
+        Mockito.when(mockedTaskListener.getLogger()).thenReturn(new PrintStream(defaultLogOutput));
         defaultLogger = JenkinsIntLogger.logToListener(mockedTaskListener);
         defaultProxyHelper = new JenkinsProxyHelper();
 
@@ -104,17 +108,43 @@ public class DetectScriptStrategyCallableTest {
         downloadAndValidateScript(OperatingSystemType.determineFromSystem());
     }
 
+    @Test
+    public void testDownloadJarOnly() throws IntegrationException {
+        assumeFalse(SystemUtils.IS_OS_WINDOWS, "Skipping test because it runs a shell script.");
+
+        ArrayList<String> scriptCommand = new ArrayList<>(Arrays.asList("sh", "-c", "echo download only $DETECT_DOWNLOAD_ONLY"));
+        int exitCode = new DetectScriptStrategy.DownloadJarCallableImpl(defaultLogger, Collections.emptyMap(), scriptCommand).call();
+
+        assertEquals(0, exitCode);
+        assertTrue(defaultLogOutput.toString().contains("download only 1"));
+    }
+
+    @Test
+    public void testHungDownloadTimesOut() {
+        assumeFalse(SystemUtils.IS_OS_WINDOWS, "Skipping test because it runs a shell script.");
+
+        // The script keeps its output open while it hangs, which used to keep the timeout from ever being checked.
+        ArrayList<String> scriptCommand = new ArrayList<>(Arrays.asList("sh", "-c", "echo downloading; sleep 60"));
+        DetectScriptStrategy.DownloadJarCallableImpl downloadJarCallable = new DetectScriptStrategy.DownloadJarCallableImpl(defaultLogger, Collections.emptyMap(), scriptCommand, 500L);
+
+        long startedAt = System.currentTimeMillis();
+        assertThrows(IntegrationException.class, downloadJarCallable::call);
+        assertTrue(System.currentTimeMillis() - startedAt < 30_000L);
+    }
+
     private void downloadAndValidateScript(OperatingSystemType operatingSystemType) {
         try {
             String expectedScriptPath = new File(toolsDirectoryPath, DetectScriptStrategy.DETECT_INSTALL_DIRECTORY).getPath();
 
             DetectScriptStrategy detectScriptStrategy = new DetectScriptStrategy(defaultLogger, defaultProxyHelper, operatingSystemType, toolsDirectoryPath);
-            ArrayList<String> scriptStrategyArgs = detectScriptStrategy.getSetupCallable().call();
+            DetectSetupResult detectSetupResult = detectScriptStrategy.getSetupCallable().call();
+            ArrayList<String> scriptStrategyArgs = detectSetupResult.getDetectCommand();
             File remoteScriptFile = new File(parseScriptStrategyArgs(scriptStrategyArgs));
 
-            assertEquals(expectedScriptPath, remoteScriptFile.getParent(), String.format("Script was not downloaded to <%s>", expectedScriptPath));
+            assertTrue(remoteScriptFile.getPath().startsWith(expectedScriptPath), String.format("Script was not downloaded to <%s>", expectedScriptPath));
             assertTrue(remoteScriptFile.exists(), String.format("Expected script does not exist <%s>", expectedScriptPath));
             assertTrue(Files.size(remoteScriptFile.toPath()) > 0, String.format("Expected script exists, but it's empty <%s>", expectedScriptPath));
+            assertTrue(detectSetupResult.getPhaseTimings().getPhaseMillis().containsKey(DetectPhaseTimings.DOWNLOAD), "The download on the agent was not timed");
         } catch (IntegrationException | IOException e) {
             fail("Unexpected exception occurred: ", e);
         }
@@ -120,6 +120,22 @@ public class DetectStrategyServiceTest {
         assertTrue(byteArrayOutputStream.toString().contains(ScriptOrJarDownloadStrategy.DISPLAY_NAME), "Log does not contain message with correct download strategy.");
     }
 
+    @Test
+    public void testGetScriptStrategyWithDetectVersion() {
+        intEnvironmentVariables.put(DetectJenkinsEnvironmentVariable.DETECT_VERSION.stringValue(), "10.3.0");
+
+        DetectExecutionStrategy detectExecutionStrategy = testGetExecutionStrategy(intEnvironmentVariables, SCRIPTJAR_DOWNLOAD_STRATEGY);
+        assertEquals(DetectScriptStrategy.class, detectExecutionStrategy.getClass());
+        assertEquals("10.3.0", intEnvironmentVariables.getValue(DetectStrategyService.DETECT_LATEST_RELEASE_VERSION));
+        assertTrue(intEnvironmentVariables.getValue(DetectStrategyService.DETECT_JAR_DOWNLOAD_DIR).endsWith("10.3.0"));
+    }
+
+    @Test
+    public void testInvalidDetectVersionFailure() {
+        intEnvironmentVariables.put(DetectJenkinsEnvironmentVariable.DETECT_VERSION.stringValue(), "../10.3.0");
+        assertThrows(DetectJenkinsException.class, () -> detectStrategyService.getExecutionStrategy(intEnvironmentVariables, null, null, SCRIPTJAR_DOWNLOAD_STRATEGY));
+    }
+
     public DetectExecutionStrategy testGetExecutionStrategy(IntEnvironmentVariables intEnvironmentVariables, DetectDownloadStrategy downloadStrategy) {
         DetectExecutionStrategy executionStrategy = null;
         try {
@@ -0,0 +1,166 @@
+package com.blackduck.integration.jenkins.detect.service.strategy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang3.SystemUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class RemoteJavaCacheTest {
+    private static final String JAVA_17_OUTPUT = "openjdk version \"17.0.2\" 2022-01-18\nOpenJDK Runtime Environment (build 17.0.2+8-86)\n";
+    private static final Map<String, String> ENVIRONMENT = Collections.singletonMap(RemoteJavaService.JAVA_HOME, "/opt/jdk");
+
+    @TempDir
+    public File jdkHome;
+
+    @Test
+    public void testResolvedJavaIsReused() throws IOException {
+        File javaExecutable = new File(jdkHome, "java");
+        Files.write(javaExecutable.toPath(), new byte[] { 1 });
+
+        AtomicInteger probes = new AtomicInteger();
+        AtomicInteger resolutions = new AtomicInteger();
+        RemoteJavaCache remoteJavaCache = new RemoteJavaCache((path, environment) -> {
+            probes.incrementAndGet();
+            return JAVA_17_OUTPUT;
+        }, Runnable::run);
+        RemoteJavaCache.ResolvedJavaSupplier resolver = () -> {
+            resolutions.incrementAndGet();
+            return new RemoteJavaCache.ResolvedJava(javaExecutable.getAbsolutePath(), "test");
+        };
+
+        String cacheKey = RemoteJavaCache.getCacheKey(null, "java", ENVIRONMENT);
+        RemoteJavaCache.ResolvedJava first = remoteJavaCache.getOrResolve(cacheKey, ENVIRONMENT, resolver);
+        RemoteJavaCache.ResolvedJava second = remoteJavaCache.getOrResolve(cacheKey, ENVIRONMENT, resolver);
+
+        assertSame(first, second);
+        assertEquals(1, probes.get());
+        assertEquals(1, resolutions.get());
+        assertEquals("17.0.2", first.getVersion());
+        assertEquals(17, first.getMajorVersion());
+
+        // Replacing the executable, as an in-place JDK upgrade does, resolves and probes again.
+        javaExecutable.setLastModified(javaExecutable.lastModified() - 60000);
+        remoteJavaCache.getOrResolve(cacheKey, ENVIRONMENT, resolver);
+        assertEquals(2, probes.get());
+    }
+
+    @Test
+    public void testVersionParsing() {
+        assertEquals(8, RemoteJavaCache.parseMajorVersion(RemoteJavaCache.parseVersion("java version \"1.8.0_292\"")));
+        assertEquals(11, RemoteJavaCache.parseMajorVersion("11.0.20"));
+        assertEquals(21, RemoteJavaCache.parseMajorVersion("21-ea"));
+        assertEquals(-1, RemoteJavaCache.parseMajorVersion(null));
+        assertNull(RemoteJavaCache.parseVersion("Error: could not find java.dll"));
+    }
+
+    @Test
+    public void testProbeFailureIsRetried() {
+        AtomicInteger probes = new AtomicInteger();
+        RemoteJavaCache remoteJavaCache = new RemoteJavaCache((path, environment) -> {
+            probes.incrementAndGet();
+            return null;
+        }, Runnable::run);
+        String cacheKey = RemoteJavaCache.getCacheKey("/missing/jdk", "java", ENVIRONMENT);
+        RemoteJavaCache.ResolvedJavaSupplier resolver = () -> new RemoteJavaCache.ResolvedJava("/missing/jdk/bin/java", "Node environment");
+
+        assertEquals(-1, remoteJavaCache.getOrResolve(cacheKey, ENVIRONMENT, resolver).getMajorVersion());
+        remoteJavaCache.getOrResolve(cacheKey, ENVIRONMENT, resolver);
+        assertEquals(2, probes.get());
+    }
+
+    @Test
+    public void testPathIsOnlyPartOfKeyWithoutConfiguredJava() {
+        Map<String, String> environment = new HashMap<>(ENVIRONMENT);
+        environment.put("PATH", "/usr/bin");
+        Map<String, String> extendedEnvironment = new HashMap<>(environment);
+        extendedEnvironment.put("PATH", "/build/123/bin:/usr/bin");
+
+        assertEquals(RemoteJavaCache.getCacheKey(null, "java", environment), RemoteJavaCache.getCacheKey(null, "java", extendedEnvironment));
+        assertEquals(RemoteJavaCache.getCacheKey("/opt/jdk", "java", Collections.singletonMap("PATH", "/usr/bin")), RemoteJavaCache.getCacheKey("/opt/jdk", "java", Collections.singletonMap("PATH", "/bin")));
+        assertNotEquals(RemoteJavaCache.getCacheKey(null, "java", Collections.singletonMap("PATH", "/usr/bin")), RemoteJavaCache.getCacheKey(null, "java", Collections.singletonMap("PATH", "/bin")));
+    }
+
+    @Test
+    public void testCacheIsBounded() {
+        RemoteJavaCache remoteJavaCache = new RemoteJavaCache((path, environment) -> JAVA_17_OUTPUT, Runnable::run);
+        RemoteJavaCache.ResolvedJavaSupplier resolver = () -> new RemoteJavaCache.ResolvedJava("/opt/jdk/bin/java", "Node environment");
+        String firstKey = RemoteJavaCache.getCacheKey(null, "java", Collections.singletonMap("PATH", "/build/0/bin"));
+        RemoteJavaCache.ResolvedJava first = remoteJavaCache.getOrResolve(firstKey, ENVIRONMENT, resolver);
+
+        for (int i = 1; i <= RemoteJavaCache.MAX_CACHED_JAVAS; i++) {
+            remoteJavaCache.getOrResolve(RemoteJavaCache.getCacheKey(null, "java", Collections.singletonMap("PATH", "/build/" + i + "/bin")), ENVIRONMENT, resolver);
+        }
+
+        assertEquals(RemoteJavaCache.MAX_CACHED_JAVAS, remoteJavaCache.size());
+        assertNotSame(first, remoteJavaCache.getOrResolve(firstKey, ENVIRONMENT, resolver));
+    }
+
+    @Test
+    public void testProbeDoesNotWait() {
+        List<Runnable> pendingProbes = new ArrayList<>();
+        RemoteJavaCache remoteJavaCache = new RemoteJavaCache((path, environment) -> JAVA_17_OUTPUT, pendingProbes::add);
+        String cacheKey = RemoteJavaCache.getCacheKey("/opt/jdk", "java", ENVIRONMENT);
+
+        RemoteJavaCache.ResolvedJava resolvedJava = remoteJavaCache.getOrResolve(cacheKey, ENVIRONMENT, () -> new RemoteJavaCache.ResolvedJava("/opt/jdk/bin/java", "Node environment"));
+        assertFalse(resolvedJava.isVersionProbed());
+        assertNull(resolvedJava.getVersion());
+
+        pendingProbes.forEach(Runnable::run);
+        assertTrue(resolvedJava.isVersionProbed());
+        assertEquals(17, resolvedJava.getMajorVersion());
+    }
+
+    @Test
+    public void testAwaitVersionProbe() {
+        List<Runnable> pendingProbes = new ArrayList<>();
+        RemoteJavaCache remoteJavaCache = new RemoteJavaCache((path, environment) -> JAVA_17_OUTPUT, pendingProbes::add);
+        String cacheKey = RemoteJavaCache.getCacheKey("/opt/jdk", "java", ENVIRONMENT);
+        RemoteJavaCache.ResolvedJava resolvedJava = remoteJavaCache.getOrResolve(cacheKey, ENVIRONMENT, () -> new RemoteJavaCache.ResolvedJava("/opt/jdk/bin/java", "Node environment"));
+
+        long startedAt = System.currentTimeMillis();
+        assertFalse(resolvedJava.awaitVersionProbe(100, TimeUnit.MILLISECONDS));
+        assertTrue(System.currentTimeMillis() - startedAt < 10000);
+
+        new Thread(() -> pendingProbes.forEach(Runnable::run)).start();
+        assertTrue(resolvedJava.awaitVersionProbe(10, TimeUnit.SECONDS));
+        assertEquals(17, resolvedJava.getMajorVersion());
+    }
+
+    @Test
+    public void testLargeOutputIsDrained() {
+        assumeFalse(SystemUtils.IS_OS_WINDOWS);
+
+        String output = RemoteJavaCache.probeJavaVersion(Arrays.asList("sh", "-c", "head -c 1000000 /dev/zero | tr '\\0' x >&2; echo done"), Collections.emptyMap(), 30, TimeUnit.SECONDS);
+        assertEquals(RemoteJavaCache.MAX_VERSION_OUTPUT_LENGTH, output.length());
+    }
+
+    @Test
+    public void testHungProbeTimesOut() {
+        assumeFalse(SystemUtils.IS_OS_WINDOWS);
+
+        long startedAt = System.currentTimeMillis();
+        assertNull(RemoteJavaCache.probeJavaVersion(Arrays.asList("sleep", "30"), Collections.emptyMap(), 200, TimeUnit.MILLISECONDS));
+        assertTrue(System.currentTimeMillis() - startedAt < 10000);
+    }
+
+}